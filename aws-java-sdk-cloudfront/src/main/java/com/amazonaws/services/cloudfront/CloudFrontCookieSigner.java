@@ -80,8 +80,12 @@ import com.amazonaws.util.DateUtils;
  *              s3ObjectKey, keyPairId, activeFrom,
  *              expiresOn, ipRange);
  * </pre>
+ * <p>
+ * The methods taking a private key file load and parse the key on every call.
+ * Use a {@link CloudFrontSigner} to sign many cookies with the same key.
  *
  * @see DateUtils
+ * @see CloudFrontSigner
  */
 public enum CloudFrontCookieSigner {
     ;
@@ -184,17 +188,25 @@ public enum CloudFrontCookieSigner {
             final String cannedPolicy = buildCannedPolicy(resourceUrlOrPath, expiresOn);
             byte[] signatureBytes = signWithSha1RSA(cannedPolicy.getBytes(UTF8), privateKey);
             String urlSafeSignature = makeBytesUrlSafe(signatureBytes);
-            // Create the cookies
-            final CookiesForCannedPolicy cookies = new CookiesForCannedPolicy();
-            cookies.setExpires(String.valueOf(MILLISECONDS.toSeconds(expiresOn.getTime())));
-            cookies.setSignature(urlSafeSignature);
-            cookies.setKeyPairId(keyPairId);
-            return cookies;
+            return createCookiesForCannedPolicy(keyPairId, expiresOn, urlSafeSignature);
         } catch (InvalidKeyException e) {
             throw new AmazonClientException("Couldn't sign canned policy cookie", e);
         }
     }
 
+    /**
+     * Creates the cookies of a canned policy from its url safe signature.
+     */
+    static CookiesForCannedPolicy createCookiesForCannedPolicy(String keyPairId,
+                                                               Date expiresOn,
+                                                               String urlSafeSignature) {
+        final CookiesForCannedPolicy cookies = new CookiesForCannedPolicy();
+        cookies.setExpires(String.valueOf(MILLISECONDS.toSeconds(expiresOn.getTime())));
+        cookies.setSignature(urlSafeSignature);
+        cookies.setKeyPairId(keyPairId);
+        return cookies;
+    }
+
     /**
      * Returns signed cookies that provides tailored access to private content based on an access time window and an ip range.
      *
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.cloudfront;
+
+import static com.amazonaws.services.cloudfront.util.SignerUtils.buildCannedPolicy;
+import static com.amazonaws.services.cloudfront.util.SignerUtils.generateResourcePath;
+import static com.amazonaws.services.cloudfront.util.SignerUtils.loadPrivateKey;
+import static com.amazonaws.services.cloudfront.util.SignerUtils.makeBytesUrlSafe;
+import static com.amazonaws.services.cloudfront.util.SignerUtils.signWithSha1RSA;
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.PrivateKey;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.cloudfront.CloudFrontCookieSigner.CookiesForCannedPolicy;
+import com.amazonaws.services.cloudfront.CloudFrontCookieSigner.CookiesForCustomPolicy;
+import com.amazonaws.services.cloudfront.util.SignerUtils.Protocol;
+
+/**
+ * Generates signed URLs and signed cookies for private CloudFront content
+ * with a private key that is loaded once. Produces the same output as
+ * {@link CloudFrontUrlSigner} and {@link CloudFrontCookieSigner}.
+ * <p>
+ * Signatures of canned policies only depend on the resource and the
+ * expiration date, so they are cached and reused for requests of the same
+ * resource with the same expiration date. Expired signatures are dropped when
+ * the cache is full. Rounding expiration dates, for example to the minute,
+ * increases the hit rate.
+ * <p>
+ * Instances are thread safe.
+ *
+ * <pre>
+ * CloudFrontSigner signer = CloudFrontSigner.fromPrivateKeyFile(
+ *              "APKAJCEOKRHC3XIVU5NA", new File("/path/to/rsa-private-key.pem"));
+ *
+ * String url = signer.getSignedURLWithCannedPolicy(
+ *              Protocol.https, "d1b2c3a4g5h6.cloudfront.net", "a/b/images.jpeg", dateLessThan);
+ *
+ * List&lt;String&gt; urls = signer.getSignedURLsWithCannedPolicy(
+ *              resourceUrls, dateLessThan, executorService);
+ * </pre>
+ */
+public class CloudFrontSigner {
+
+    /**
+     * Default maximum number of cached canned policy signatures.
+     */
+    public static final int DEFAULT_MAX_CACHED_SIGNATURES = 10000;
+
+    /**
+     * Number of resources signed by a single task of the bulk methods.
+     */
+    private static final int BULK_BATCH_SIZE = 64;
+
+    private static final class CachedSignature {
+        private final String urlSafeSignature;
+        private final long expiresOnMillis;
+
+        private CachedSignature(String urlSafeSignature, long expiresOnMillis) {
+            this.urlSafeSignature = urlSafeSignature;
+            this.expiresOnMillis = expiresOnMillis;
+        }
+    }
+
+    private interface ResourceSigner<T> {
+        T sign(String resourceUrlOrPath);
+    }
+
+    private final String keyPairId;
+    private final PrivateKey privateKey;
+    private final int maxCachedSignatures;
+    private final ConcurrentMap<String, CachedSignature> cannedPolicySignatures =
+            new ConcurrentHashMap<String, CachedSignature>();
+
+    /**
+     * @param keyPairId
+     *            Identifier of a public/private certificate keypair already
+     *            configured in your Amazon Web Services account.
+     * @param privateKey
+     *            The RSA private key that corresponds to the keypair
+     *            identified by keyPairId.
+     */
+    public CloudFrontSigner(String keyPairId, PrivateKey privateKey) {
+        this(keyPairId, privateKey, DEFAULT_MAX_CACHED_SIGNATURES);
+    }
+
+    /**
+     * @param keyPairId
+     *            Identifier of a public/private certificate keypair already
+     *            configured in your Amazon Web Services account.
+     * @param privateKey
+     *            The RSA private key that corresponds to the keypair
+     *            identified by keyPairId.
+     * @param maxCachedSignatures
+     *            Maximum number of canned policy signatures to cache, 0
+     *            disables caching.
+     */
+    public CloudFrontSigner(String keyPairId, PrivateKey privateKey, int maxCachedSignatures) {
+        if (keyPairId == null) {
+            throw new IllegalArgumentException("keyPairId must not be null");
+        }
+        if (privateKey == null) {
+            throw new IllegalArgumentException("privateKey must not be null");
+        }
+        if (maxCachedSignatures < 0) {
+            throw new IllegalArgumentException("maxCachedSignatures must not be negative");
+        }
+        this.keyPairId = keyPairId;
+        this.privateKey = privateKey;
+        this.maxCachedSignatures = maxCachedSignatures;
+    }
+
+    /**
+     * Returns a signer using the private key loaded from the given file. RSA
+     * private key (.pem) and pkcs8 (.der) files are supported.
+     */
+    public static CloudFrontSigner fromPrivateKeyFile(String keyPairId, File privateKeyFile)
+            throws InvalidKeySpecException, IOException {
+        return new CloudFrontSigner(keyPairId, loadPrivateKey(privateKeyFile));
+    }
+
+    public String getKeyPairId() {
+        return keyPairId;
+    }
+
+    /**
+     * @see CloudFrontUrlSigner#getSignedURLWithCannedPolicy(Protocol, String,
+     *      File, String, String, Date)
+     */
+    public String getSignedURLWithCannedPolicy(Protocol protocol,
+                                               String distributionDomain,
+                                               String s3ObjectKey,
+                                               Date dateLessThan) {
+        return getSignedURLWithCannedPolicy(generateResourcePath(protocol, distributionDomain, s3ObjectKey),
+                dateLessThan);
+    }
+
+    /**
+     * @see CloudFrontUrlSigner#getSignedURLWithCannedPolicy(String, String,
+     *      PrivateKey, Date)
+     */
+    public String getSignedURLWithCannedPolicy(String resourceUrlOrPath, Date dateLessThan) {
+        return CloudFrontUrlSigner.buildSignedURLWithCannedPolicy(resourceUrlOrPath, keyPairId, dateLessThan,
+                getCannedPolicySignature(resourceUrlOrPath, dateLessThan));
+    }
+
+    /**
+     * @see CloudFrontUrlSigner#getSignedURLWithCustomPolicy(Protocol, String,
+     *      File, String, String, Date, Date, String)
+     */
+    public String getSignedURLWithCustomPolicy(Protocol protocol,
+                                               String distributionDomain,
+                                               String s3ObjectKey,
+                                               Date dateLessThan,
+                                               Date dateGreaterThan,
+                                               String ipRange) {
+        String resourcePath = generateResourcePath(protocol, distributionDomain, s3ObjectKey);
+        String policy = CloudFrontUrlSigner.buildCustomPolicyForSignedUrl(resourcePath, dateLessThan, ipRange,
+                dateGreaterThan);
+        return getSignedURLWithCustomPolicy(resourcePath, policy);
+    }
+
+    /**
+     * @see CloudFrontUrlSigner#getSignedURLWithCustomPolicy(String, String,
+     *      PrivateKey, String)
+     */
+    public String getSignedURLWithCustomPolicy(String resourceUrlOrPath, String policy) {
+        return CloudFrontUrlSigner.getSignedURLWithCustomPolicy(resourceUrlOrPath, keyPairId, privateKey, policy);
+    }
+
+    /**
+     * @see CloudFrontCookieSigner#getCookiesForCannedPolicy(Protocol, String,
+     *      PrivateKey, String, String, Date)
+     */
+    public CookiesForCannedPolicy getCookiesForCannedPolicy(Protocol protocol,
+                                                            String distributionDomain,
+                                                            String resourcePath,
+                                                            Date expiresOn) {
+        return getCookiesForCannedPolicy(generateResourcePath(protocol, distributionDomain, resourcePath), expiresOn);
+    }
+
+    /**
+     * @see CloudFrontCookieSigner#getCookiesForCannedPolicy(String, String,
+     *      PrivateKey, Date)
+     */
+    public CookiesForCannedPolicy getCookiesForCannedPolicy(String resourceUrlOrPath, Date expiresOn) {
+        return CloudFrontCookieSigner.createCookiesForCannedPolicy(keyPairId, expiresOn,
+                getCannedPolicySignature(resourceUrlOrPath, expiresOn));
+    }
+
+    /**
+     * @see CloudFrontCookieSigner#getCookiesForCustomPolicy(String, PrivateKey,
+     *      String, Date, Date, String)
+     */
+    public CookiesForCustomPolicy getCookiesForCustomPolicy(String resourceUrlOrPath,
+                                                            Date expiresOn,
+                                                            Date activeFrom,
+                                                            String ipRange) {
+        return CloudFrontCookieSigner.getCookiesForCustomPolicy(resourceUrlOrPath, privateKey, keyPairId, expiresOn,
+                activeFrom, ipRange);
+    }
+
+    /**
+     * Returns canned policy signed URLs for the given resources, in the same
+     * order.
+     *
+     * @param resourceUrlsOrPaths
+     *            The URLs or paths of the resources to sign.
+     * @param dateLessThan
+     *            The expiration date of the signed URLs in UTC
+     * @param executorService
+     *            Executor used to sign batches of resources in parallel, or
+     *            null to sign them on the calling thread.
+     */
+    public List<String> getSignedURLsWithCannedPolicy(List<String> resourceUrlsOrPaths,
+                                                      final Date dateLessThan,
+                                                      ExecutorService executorService) {
+        return signAll(resourceUrlsOrPaths, executorService, new ResourceSigner<String>() {
+            @Override
+            public String sign(String resourceUrlOrPath) {
+                return getSignedURLWithCannedPolicy(resourceUrlOrPath, dateLessThan);
+            }
+        });
+    }
+
+    /**
+     * Returns canned policy signed cookies for the given resources, in the
+     * same order.
+     *
+     * @param resourceUrlsOrPaths
+     *            The URLs or paths of the resources to sign.
+     * @param expiresOn
+     *            The expiration date till which content can be accessed using
+     *            the generated cookies.
+     * @param executorService
+     *            Executor used to sign batches of resources in parallel, or
+     *            null to sign them on the calling thread.
+     */
+    public List<CookiesForCannedPolicy> getCookiesForCannedPolicies(List<String> resourceUrlsOrPaths,
+                                                                    final Date expiresOn,
+                                                                    ExecutorService executorService) {
+        return signAll(resourceUrlsOrPaths, executorService, new ResourceSigner<CookiesForCannedPolicy>() {
+            @Override
+            public CookiesForCannedPolicy sign(String resourceUrlOrPath) {
+                return getCookiesForCannedPolicy(resourceUrlOrPath, expiresOn);
+            }
+        });
+    }
+
+    /**
+     * @return the number of canned policy signatures currently cached
+     */
+    public int getCachedSignatureCount() {
+        return cannedPolicySignatures.size();
+    }
+
+    public void clearSignatureCache() {
+        cannedPolicySignatures.clear();
+    }
+
+    private String getCannedPolicySignature(String resourceUrlOrPath, Date dateLessThan) {
+        String cannedPolicy = buildCannedPolicy(resourceUrlOrPath, dateLessThan);
+        if (maxCachedSignatures > 0) {
+            CachedSignature cached = cannedPolicySignatures.get(cannedPolicy);
+            if (cached != null) {
+                return cached.urlSafeSignature;
+            }
+        }
+        String urlSafeSignature;
+        try {
+            urlSafeSignature = makeBytesUrlSafe(signWithSha1RSA(cannedPolicy.getBytes(UTF8), privateKey));
+        } catch (InvalidKeyException e) {
+            throw new AmazonClientException("Couldn't sign canned policy", e);
+        }
+        if (maxCachedSignatures > 0) {
+            cannedPolicySignatures.put(cannedPolicy, new CachedSignature(urlSafeSignature, dateLessThan.getTime()));
+            if (cannedPolicySignatures.size() > maxCachedSignatures) {
+                evictSignatures();
+            }
+        }
+        return urlSafeSignature;
+    }
+
+    /**
+     * Drops expired signatures, or all of them if that is not enough to get
+     * back under the limit.
+     */
+    private void evictSignatures() {
+        long now = System.currentTimeMillis();
+        Iterator<CachedSignature> iterator = cannedPolicySignatures.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expiresOnMillis <= now) {
+                iterator.remove();
+            }
+        }
+        if (cannedPolicySignatures.size() > maxCachedSignatures) {
+            cannedPolicySignatures.clear();
+        }
+    }
+
+    private <T> List<T> signAll(List<String> resourceUrlsOrPaths,
+                                ExecutorService executorService,
+                                final ResourceSigner<T> signer) {
+        if (executorService == null || resourceUrlsOrPaths.size() <= BULK_BATCH_SIZE) {
+            return signBatch(resourceUrlsOrPaths, signer);
+        }
+        List<Callable<List<T>>> tasks = new ArrayList<Callable<List<T>>>();
+        for (int start = 0; start < resourceUrlsOrPaths.size(); start += BULK_BATCH_SIZE) {
+            final List<String> batch = resourceUrlsOrPaths.subList(start,
+                    Math.min(start + BULK_BATCH_SIZE, resourceUrlsOrPaths.size()));
+            tasks.add(new Callable<List<T>>() {
+                @Override
+                public List<T> call() {
+                    return signBatch(batch, signer);
+                }
+            });
+        }
+        List<T> result = new ArrayList<T>(resourceUrlsOrPaths.size());
+        try {
+            for (Future<List<T>> future : executorService.invokeAll(tasks)) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while signing resources", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException("Couldn't sign resources", cause);
+        }
+        return result;
+    }
+
+    private static <T> List<T> signBatch(List<String> resourceUrlsOrPaths, ResourceSigner<T> signer) {
+        List<T> result = new ArrayList<T>(resourceUrlsOrPaths.size());
+        for (String resourceUrlOrPath : resourceUrlsOrPaths) {
+            result.add(signer.sign(resourceUrlOrPath));
+        }
+        return result;
+    }
+}
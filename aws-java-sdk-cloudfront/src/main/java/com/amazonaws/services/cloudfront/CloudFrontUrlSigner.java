@@ -63,8 +63,12 @@ import com.amazonaws.util.DateUtils;
  *              s3ObjectKey, keyPairId, dateLessThan,
  *              dateGreaterThan, ipRange);
  * </pre>
+ * <p>
+ * The methods taking a private key file load and parse the key on every call.
+ * Use a {@link CloudFrontSigner} to sign many URLs with the same key.
  *
  * @see DateUtils
+ * @see CloudFrontSigner
  */
 public enum CloudFrontUrlSigner {
     ;
@@ -231,18 +235,28 @@ public enum CloudFrontUrlSigner {
             String cannedPolicy = buildCannedPolicy(resourceUrlOrPath, dateLessThan);
             byte[] signatureBytes = signWithSha1RSA(cannedPolicy.getBytes(UTF8), privateKey);
             String urlSafeSignature = makeBytesUrlSafe(signatureBytes);
-            String signedUrl = resourceUrlOrPath
-                             + (resourceUrlOrPath.indexOf('?') >= 0 ? "&" : "?")
-                             + "Expires=" + MILLISECONDS.toSeconds(dateLessThan.getTime())
-                             + "&Signature=" + urlSafeSignature
-                             + "&Key-Pair-Id=" + keyPairId
-                             ;
-            return signedUrl;
+            return buildSignedURLWithCannedPolicy(resourceUrlOrPath, keyPairId, dateLessThan, urlSafeSignature);
         } catch ( InvalidKeyException e ) {
             throw new AmazonClientException("Couldn't sign url", e);
         }
     }
 
+    /**
+     * Appends the query parameters of a canned policy signed URL to the given
+     * resource.
+     */
+    static String buildSignedURLWithCannedPolicy(String resourceUrlOrPath,
+                                                 String keyPairId,
+                                                 Date dateLessThan,
+                                                 String urlSafeSignature) {
+        return resourceUrlOrPath
+             + (resourceUrlOrPath.indexOf('?') >= 0 ? "&" : "?")
+             + "Expires=" + MILLISECONDS.toSeconds(dateLessThan.getTime())
+             + "&Signature=" + urlSafeSignature
+             + "&Key-Pair-Id=" + keyPairId
+             ;
+    }
+
     /**
      * Generate a policy document that describes custom access permissions to
      * apply via a private distribution's signed URL.
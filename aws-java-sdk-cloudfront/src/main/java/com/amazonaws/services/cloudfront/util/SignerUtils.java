@@ -43,6 +43,48 @@ public class SignerUtils {
 
     private static final SecureRandom srand = new SecureRandom();
 
+    /**
+     * Looking up a signature implementation is expensive compared to signing
+     * a short policy, so each thread keeps its own instance.
+     */
+    private static final ThreadLocal<Sha1RsaSigner> sha1RsaSigner = new ThreadLocal<Sha1RsaSigner>() {
+        @Override
+        protected Sha1RsaSigner initialValue() {
+            try {
+                return new Sha1RsaSigner(Signature.getInstance("SHA1withRSA"));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private static final class Sha1RsaSigner {
+        private final Signature signature;
+        private PrivateKey privateKey;
+
+        private Sha1RsaSigner(Signature signature) {
+            this.signature = signature;
+        }
+
+        private byte[] sign(byte[] dataToSign, PrivateKey key)
+                throws InvalidKeyException, SignatureException {
+            // A signature is reset to its initialized state by sign(), so
+            // it only needs to be initialized again for a different key
+            if (key != privateKey) {
+                privateKey = null;
+                signature.initSign(key, srand);
+                privateKey = key;
+            }
+            try {
+                signature.update(dataToSign);
+                return signature.sign();
+            } catch (SignatureException e) {
+                privateKey = null;
+                throw e;
+            }
+        }
+    }
+
     /**
      * Enumeration of protocols for presigned URLs
      */
@@ -138,14 +180,8 @@ public class SignerUtils {
      */
     public static byte[] signWithSha1RSA(byte[] dataToSign,
             PrivateKey privateKey) throws InvalidKeyException {
-        Signature signature;
         try {
-            signature = Signature.getInstance("SHA1withRSA");
-            signature.initSign(privateKey, srand);
-            signature.update(dataToSign);
-            return signature.sign();
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException(e);
+            return sha1RsaSigner.get().sign(dataToSign, privateKey);
         } catch (SignatureException e) {
             throw new IllegalStateException(e);
         }
@@ -18,17 +18,21 @@ import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 
+import com.amazonaws.http.SharedConnectionPool;
+
 /**
  * Used for Apache HTTP client specific custom configurations.
  */
 @NotThreadSafe
 public final class ApacheHttpClientConfig {
     private ConnectionSocketFactory sslSocketFactory;
+    private SharedConnectionPool sharedConnectionPool;
 
     ApacheHttpClientConfig() {}
 
     ApacheHttpClientConfig(ApacheHttpClientConfig that) {
         this.sslSocketFactory = that.sslSocketFactory;
+        this.sharedConnectionPool = that.sharedConnectionPool;
     }
 
     /**
@@ -61,4 +65,37 @@ public final class ApacheHttpClientConfig {
         this.sslSocketFactory = sslSocketFactory;
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the connection pool shared with other clients; or null if the
+     * client creates its own pool.
+     */
+    public SharedConnectionPool getSharedConnectionPool() {
+        return sharedConnectionPool;
+    }
+
+    /**
+     * Sets a connection pool shared with other clients. The connection
+     * settings of the pool are used instead of the connection settings of
+     * this client configuration, including the maximum number of connections
+     * and the SSL socket factory.
+     *
+     * @param sharedConnectionPool a connection pool shared with other
+     * clients; or null if the client should create its own pool.
+     */
+    public void setSharedConnectionPool(SharedConnectionPool sharedConnectionPool) {
+        this.sharedConnectionPool = sharedConnectionPool;
+    }
+
+    /**
+     * Fluent API for setting a connection pool shared with other clients.
+     *
+     * @param sharedConnectionPool a connection pool shared with other
+     * clients; or null if the client should create its own pool.
+     */
+    public ApacheHttpClientConfig withSharedConnectionPool(
+            SharedConnectionPool sharedConnectionPool) {
+        this.sharedConnectionPool = sharedConnectionPool;
+        return this;
+    }
+}
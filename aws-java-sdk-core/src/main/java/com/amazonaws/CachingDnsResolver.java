@@ -0,0 +1,366 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * DNS resolver that caches the addresses of each host and spreads
+ * connections across them.
+ * <p>
+ * The addresses of a host are cached for a fixed time to live, since the
+ * record TTLs are not visible through {@link InetAddress}. Once most of the
+ * time to live has passed, the next resolution of the host returns the cached
+ * addresses and looks them up again in the background, so that callers only
+ * wait for a lookup the first time a host is resolved or after it has not
+ * been used for a whole time to live. A host that fails to resolve is cached
+ * as such for the same time to live, so its lookup is not retried on every
+ * request.
+ * <p>
+ * The HTTP client connects to the first address returned and only tries the
+ * others if that fails. This resolver rotates the order of the addresses on
+ * every resolution so that connections to a host with several addresses are
+ * spread over all of them, and moves addresses that recently failed to
+ * connect to the end of the list for
+ * {@link #setFailedAddressTimeout(long, TimeUnit) some time}. Connection
+ * failures are reported automatically when this resolver is set as the
+ * {@link ClientConfiguration#setDnsResolver(DnsResolver) DNS resolver} of a
+ * client.
+ */
+@ThreadSafe
+public class CachingDnsResolver implements DnsResolver {
+
+    private static final Log log = LogFactory.getLog(CachingDnsResolver.class);
+
+    /** Default time to live of the cached addresses, in milliseconds. */
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+
+    /** Default time a failed address is tried last, in milliseconds. */
+    public static final long DEFAULT_FAILED_ADDRESS_TIMEOUT = 30 * 1000;
+
+    /**
+     * Part of the time to live after which the addresses are looked up again
+     * in the background.
+     */
+    private static final double REFRESH_RATIO = 0.75;
+
+    /**
+     * Number of cached hosts above which expired hosts are evicted, for
+     * example when each S3 bucket is addressed by its own host name.
+     */
+    private static final int EVICTION_THRESHOLD = 1024;
+
+    private final DnsResolver lookup;
+
+    private final long timeToLiveNanos;
+
+    private volatile long failedAddressTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FAILED_ADDRESS_TIMEOUT);
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /** Time until which each address that failed to connect is tried last. */
+    private final ConcurrentMap<InetAddress, Long> failedAddresses = new ConcurrentHashMap<InetAddress, Long>();
+
+    private final ThreadPoolExecutor refreshExecutor;
+
+    /**
+     * Creates a resolver that looks up addresses with
+     * {@link SystemDefaultDnsResolver} and caches them for
+     * {@link #DEFAULT_TIME_TO_LIVE}.
+     */
+    public CachingDnsResolver() {
+        this(new SystemDefaultDnsResolver());
+    }
+
+    /**
+     * Creates a resolver that looks up addresses with the given resolver and
+     * caches them for {@link #DEFAULT_TIME_TO_LIVE}.
+     */
+    public CachingDnsResolver(DnsResolver lookup) {
+        this(lookup, DEFAULT_TIME_TO_LIVE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param lookup
+     *            Resolver used to look up the addresses of a host.
+     * @param timeToLive
+     *            How long the addresses of a host are cached.
+     * @param unit
+     *            Unit of timeToLive.
+     */
+    public CachingDnsResolver(DnsResolver lookup, long timeToLive, TimeUnit unit) {
+        if (lookup == null) {
+            throw new IllegalArgumentException("lookup must not be null");
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("timeToLive must be positive: " + timeToLive);
+        }
+        this.lookup = lookup;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.refreshExecutor = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "java-sdk-dns-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Sets how long an address that failed to connect is returned after the
+     * other addresses of its host.
+     */
+    public void setFailedAddressTimeout(long timeout, TimeUnit unit) {
+        this.failedAddressTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        Entry entry = entries.get(host);
+        if (entry == null) {
+            Entry newEntry = new Entry(host);
+            entry = entries.putIfAbsent(host, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+                if (entries.size() > EVICTION_THRESHOLD) {
+                    evictExpiredEntries();
+                }
+            }
+        }
+        return order(entry.getAddresses(), entry.nextOffset());
+    }
+
+    /**
+     * Reports that connecting to the given address failed, so that it is
+     * returned after the other addresses of its host for a while.
+     */
+    public void reportConnectFailure(InetAddress address) {
+        if (address != null) {
+            failedAddresses.put(address, System.nanoTime() + failedAddressTimeoutNanos);
+        }
+    }
+
+    /**
+     * Drops all cached addresses.
+     */
+    public void clear() {
+        entries.clear();
+        failedAddresses.clear();
+    }
+
+    private void evictExpiredEntries() {
+        long now = System.nanoTime();
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the addresses rotated by the given offset, with the
+     * addresses that recently failed to connect at the end.
+     */
+    private InetAddress[] order(InetAddress[] addresses, int offset) {
+        int count = addresses.length;
+        if (count == 0) {
+            return addresses;
+        }
+        InetAddress[] ordered = new InetAddress[count];
+        List<InetAddress> failed = null;
+        int index = 0;
+        long now = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            InetAddress address = addresses[(offset + i) % count];
+            if (hasFailed(address, now)) {
+                if (failed == null) {
+                    failed = new ArrayList<InetAddress>();
+                }
+                failed.add(address);
+            } else {
+                ordered[index++] = address;
+            }
+        }
+        if (failed != null) {
+            for (InetAddress address : failed) {
+                ordered[index++] = address;
+            }
+        }
+        return ordered;
+    }
+
+    private boolean hasFailed(InetAddress address, long now) {
+        if (failedAddresses.isEmpty()) {
+            return false;
+        }
+        Long failedUntil = failedAddresses.get(address);
+        if (failedUntil == null) {
+            return false;
+        }
+        if (failedUntil - now <= 0) {
+            failedAddresses.remove(address, failedUntil);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The cached addresses of a host, or the cached failure to look them up.
+     */
+    private final class Entry {
+
+        private final String host;
+
+        /** The result of the last lookup; null until the first one completes. */
+        private volatile LookupResult result;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private final AtomicInteger offset = new AtomicInteger();
+
+        Entry(String host) {
+            this.host = host;
+        }
+
+        boolean isExpired(long now) {
+            LookupResult current = result;
+            return current != null && current.isExpired(now);
+        }
+
+        int nextOffset() {
+            return offset.getAndIncrement() & Integer.MAX_VALUE;
+        }
+
+        InetAddress[] getAddresses() throws UnknownHostException {
+            long now = System.nanoTime();
+            LookupResult current = result;
+            if (current == null || current.isExpired(now)) {
+                current = load();
+            } else if (current.addresses != null && current.refreshTime - now <= 0
+                    && refreshing.compareAndSet(false, true)) {
+                refreshInBackground();
+            }
+            return current.getAddresses();
+        }
+
+        private synchronized LookupResult load() {
+            LookupResult current = result;
+            if (current != null && !current.isExpired(System.nanoTime())) {
+                // Loaded by another thread while waiting
+                return current;
+            }
+            try {
+                return lookup();
+            } catch (UnknownHostException e) {
+                // Cache the failure like addresses, so that a host that does
+                // not resolve is not looked up again on every request
+                current = new LookupResult(null, e, System.nanoTime());
+                result = current;
+                return current;
+            }
+        }
+
+        private LookupResult lookup() throws UnknownHostException {
+            InetAddress[] loaded = lookup.resolve(host);
+            LookupResult current = new LookupResult(loaded, null, System.nanoTime());
+            result = current;
+            return current;
+        }
+
+        private void refreshInBackground() {
+            try {
+                refreshExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            synchronized (Entry.this) {
+                                lookup();
+                            }
+                        } catch (Exception e) {
+                            // Keep the current addresses until they expire and
+                            // retry halfway to the expiration
+                            LookupResult current = result;
+                            long now = System.nanoTime();
+                            current.refreshTime = now + (current.expirationTime - now) / 2;
+                            if (log.isDebugEnabled()) {
+                                log.debug("Unable to refresh the addresses of " + host, e);
+                            }
+                        } finally {
+                            refreshing.set(false);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                refreshing.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The addresses of a host, or the failure to look them up, with the time
+     * they expire.
+     */
+    private final class LookupResult {
+
+        private final InetAddress[] addresses;
+
+        private final UnknownHostException failure;
+
+        private volatile long refreshTime;
+
+        private final long expirationTime;
+
+        LookupResult(InetAddress[] addresses, UnknownHostException failure, long now) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.refreshTime = now + (long) (timeToLiveNanos * REFRESH_RATIO);
+            this.expirationTime = now + timeToLiveNanos;
+        }
+
+        boolean isExpired(long now) {
+            return expirationTime - now <= 0;
+        }
+
+        InetAddress[] getAddresses() throws UnknownHostException {
+            if (addresses != null) {
+                return addresses;
+            }
+            // A new exception each time, as callers may add suppressed
+            // exceptions or change its stack trace
+            UnknownHostException e = new UnknownHostException(failure.getMessage());
+            e.initCause(failure);
+            throw e;
+        }
+    }
+}
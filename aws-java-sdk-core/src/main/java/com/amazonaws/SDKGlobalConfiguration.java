@@ -200,6 +200,15 @@ public class SDKGlobalConfiguration {
      */
     public static final String AWS_CBOR_DISABLE_SYSTEM_PROPERTY = "com.amazonaws.sdk.disableCbor";
 
+    /**
+     * System property to schedule request timeout and client execution
+     * timeout tasks on a hashed wheel timer shared by all clients instead of a
+     * scheduled thread pool per client. Scheduling and canceling a timeout is
+     * then a constant time operation, at the cost of expiring timeouts with
+     * the granularity of the wheel's tick (10 milliseconds).
+     */
+    public static final String ENABLE_HASHED_WHEEL_TIMER_SYSTEM_PROPERTY = "com.amazonaws.sdk.enableHashedWheelTimer";
+
 
     /**
      * @deprecated by {@link SDKGlobalTime#setGlobalTimeOffset(int)}
@@ -230,6 +239,10 @@ public class SDKGlobalConfiguration {
                 isPropertyEnabled(System.getenv(AWS_CBOR_DISABLE_ENV_VAR));
     }
 
+    public static boolean isHashedWheelTimerEnabled() {
+        return isPropertyEnabled(System.getProperty(ENABLE_HASHED_WHEEL_TIMER_SYSTEM_PROPERTY));
+    }
+
     private static boolean isPropertyEnabled(final String property) {
         if (property == null || property.equalsIgnoreCase("false")) {
             return false;
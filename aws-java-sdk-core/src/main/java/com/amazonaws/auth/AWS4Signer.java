@@ -19,6 +19,7 @@ import com.amazonaws.ReadLimitInfo;
 import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.internal.AWS4SignerRequestParams;
 import com.amazonaws.auth.internal.AWS4SignerUtils;
+import com.amazonaws.auth.internal.Sha256Appender;
 import com.amazonaws.auth.internal.SignerKey;
 import com.amazonaws.internal.FIFOCache;
 import com.amazonaws.log.InternalLogApi;
@@ -30,14 +31,18 @@ import com.amazonaws.util.StringUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import static com.amazonaws.auth.internal.SignerConstants.AUTHORIZATION;
@@ -66,6 +71,18 @@ public class AWS4Signer extends AbstractAWSSigner implements
     private static final FIFOCache<SignerKey> signerCache = new FIFOCache<SignerKey>(SIGNER_CACHE_MAX_SIZE);
     private static final List<String> listOfHeadersToIgnoreInLowerCase = Arrays.asList("connection");
 
+    /**
+     * Methods that build the canonical request and the string to sign as
+     * strings. Signers that don't override any of them have the canonical
+     * request written straight into its hash instead.
+     */
+    private static final List<String> canonicalRequestMethodNames = Arrays.asList(
+            "createCanonicalRequest", "createStringToSign",
+            "getCanonicalizedHeaderString", "getSignedHeadersString", "hash");
+
+    private static final ConcurrentMap<Class<?>, Boolean> canonicalRequestHashable =
+            new ConcurrentHashMap<Class<?>, Boolean>();
+
     /**
      * Service name override for use when the endpoint can't be used to
      * determine the service name.
@@ -198,11 +215,20 @@ public class AWS4Signer extends AbstractAWSSigner implements
             request.addHeader(X_AMZ_CONTENT_SHA256, contentSha256);
         }
 
-        final String canonicalRequest = createCanonicalRequest(request,
-                contentSha256);
-
-        final String stringToSign = createStringToSign(canonicalRequest,
-                signerParams);
+        final String stringToSign;
+        final String signedHeaders;
+        if (!log.isDebugEnabled() && isCanonicalRequestHashable(getClass())) {
+            final List<String> headers = getSortedSignedHeaders(request);
+            signedHeaders = getSignedHeadersString(headers);
+            stringToSign = createStringToSign(
+                    hashCanonicalRequest(request, contentSha256, headers, signedHeaders),
+                    signerParams);
+        } else {
+            final String canonicalRequest = createCanonicalRequest(request,
+                    contentSha256);
+            stringToSign = createStringToSign(canonicalRequest, signerParams);
+            signedHeaders = getSignedHeadersString(request);
+        }
 
         final byte[] signingKey = deriveSigningKey(sanitizedCredentials,
                 signerParams);
@@ -212,7 +238,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
 
         request.addHeader(
                 AUTHORIZATION,
-                buildAuthorizationHeader(request, signature,
+                buildAuthorizationHeader(signedHeaders, signature,
                         sanitizedCredentials, signerParams));
 
         processRequestPayload(request, signature, signingKey,
@@ -303,6 +329,94 @@ public class AWS4Signer extends AbstractAWSSigner implements
         return canonicalRequest;
     }
 
+    /**
+     * Returns the hash of the canonical request, which is the same as
+     * <code>hash(createCanonicalRequest(request, contentSha256))</code>
+     * but doesn't build the canonical request in memory.
+     */
+    private byte[] hashCanonicalRequest(SignableRequest<?> request,
+            String contentSha256, List<String> sortedHeaders,
+            String signedHeaders) {
+        final String path = SdkHttpUtils.appendUri(
+                request.getEndpoint().getPath(), request.getResourcePath());
+
+        final Sha256Appender canonicalRequest = Sha256Appender.get();
+        canonicalRequest.append(request.getHttpMethod().toString())
+                .append(LINE_SEPARATOR)
+                .append(getCanonicalizedResourcePath(path, doubleUrlEncode))
+                .append(LINE_SEPARATOR)
+                .append(getCanonicalizedQueryString(request))
+                .append(LINE_SEPARATOR);
+
+        final Map<String, String> requestHeaders = request.getHeaders();
+        for (String header : sortedHeaders) {
+            appendCompactedString(canonicalRequest, StringUtils.lowerCase(header));
+            canonicalRequest.append(':');
+            String value = requestHeaders.get(header);
+            if (value != null) {
+                appendCompactedString(canonicalRequest, value);
+            }
+            canonicalRequest.append('\n');
+        }
+
+        return canonicalRequest.append(LINE_SEPARATOR)
+                .append(signedHeaders)
+                .append(LINE_SEPARATOR)
+                .append(contentSha256)
+                .digest();
+    }
+
+    /**
+     * Same as {@link StringUtils#appendCompactedString(StringBuilder, String)}.
+     */
+    private static void appendCompactedString(Sha256Appender destination,
+            String source) {
+        boolean previousIsWhiteSpace = false;
+        final int length = source.length();
+
+        for (int i = 0; i < length; i++) {
+            char ch = source.charAt(i);
+            if (StringUtils.isWhiteSpace(ch)) {
+                if (previousIsWhiteSpace) {
+                    continue;
+                }
+                destination.append(' ');
+                previousIsWhiteSpace = true;
+            } else {
+                destination.append(ch);
+                previousIsWhiteSpace = false;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given signer class builds the canonical request the
+     * same way as this class, so that it can be hashed without building it.
+     */
+    private static boolean isCanonicalRequestHashable(Class<?> signerClass) {
+        Boolean hashable = canonicalRequestHashable.get(signerClass);
+        if (hashable == null) {
+            hashable = !overridesCanonicalRequestMethods(signerClass);
+            canonicalRequestHashable.put(signerClass, hashable);
+        }
+        return hashable;
+    }
+
+    private static boolean overridesCanonicalRequestMethods(Class<?> signerClass) {
+        try {
+            for (Class<?> c = signerClass; c != AWS4Signer.class; c = c.getSuperclass()) {
+                for (Method method : c.getDeclaredMethods()) {
+                    if (canonicalRequestMethodNames.contains(method.getName())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (SecurityException e) {
+            return true;
+        }
+    }
+
     /**
      * Step 2 of the AWS Signature version 4 calculation. Refer to
      * http://docs.aws
@@ -310,6 +424,11 @@ public class AWS4Signer extends AbstractAWSSigner implements
      */
     protected String createStringToSign(String canonicalRequest,
             AWS4SignerRequestParams signerParams) {
+        return createStringToSign(hash(canonicalRequest), signerParams);
+    }
+
+    private String createStringToSign(byte[] canonicalRequestHash,
+            AWS4SignerRequestParams signerParams) {
 
         final StringBuilder stringToSignBuilder = new StringBuilder(
                 signerParams.getSigningAlgorithm());
@@ -318,7 +437,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
                 .append(LINE_SEPARATOR)
                 .append(signerParams.getScope())
                 .append(LINE_SEPARATOR)
-                .append(BinaryUtils.toHex(hash(canonicalRequest)));
+                .append(BinaryUtils.toHex(canonicalRequestHash));
 
         final String stringToSign = stringToSignBuilder.toString();
 
@@ -393,7 +512,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
     /**
      * Creates the authorization header to be included in the request.
      */
-    private String buildAuthorizationHeader(SignableRequest<?> request,
+    private String buildAuthorizationHeader(String signedHeaders,
             byte[] signature, AWSCredentials credentials,
             AWS4SignerRequestParams signerParams) {
         final String signingCredentials = credentials.getAWSAccessKeyId() + "/"
@@ -402,7 +521,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
         final String credential = "Credential="
                 + signingCredentials;
         final String signerHeaders = "SignedHeaders="
-                + getSignedHeadersString(request);
+                + signedHeaders;
         final String signatureHeader = "Signature="
                 + BinaryUtils.toHex(signature);
 
@@ -445,16 +564,11 @@ public class AWS4Signer extends AbstractAWSSigner implements
     }
 
     protected String getCanonicalizedHeaderString(SignableRequest<?> request) {
-        final List<String> sortedHeaders = new ArrayList<String>(request.getHeaders()
-                .keySet());
-        Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
+        final List<String> sortedHeaders = getSortedSignedHeaders(request);
 
         final Map<String, String> requestHeaders = request.getHeaders();
         StringBuilder buffer = new StringBuilder();
         for (String header : sortedHeaders) {
-            if (shouldExcludeHeaderFromSigning(header)) {
-                continue;
-            }
             String key = StringUtils.lowerCase(header);
             String value = requestHeaders.get(header);
 
@@ -471,15 +585,12 @@ public class AWS4Signer extends AbstractAWSSigner implements
     }
 
     protected String getSignedHeadersString(SignableRequest<?> request) {
-        final List<String> sortedHeaders = new ArrayList<String>(request
-                .getHeaders().keySet());
-        Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
+        return getSignedHeadersString(getSortedSignedHeaders(request));
+    }
 
+    private static String getSignedHeadersString(List<String> sortedHeaders) {
         StringBuilder buffer = new StringBuilder();
         for (String header : sortedHeaders) {
-            if (shouldExcludeHeaderFromSigning(header)) {
-                continue;
-            }
             if (buffer.length() > 0)
                 buffer.append(";");
             buffer.append(StringUtils.lowerCase(header));
@@ -488,6 +599,23 @@ public class AWS4Signer extends AbstractAWSSigner implements
         return buffer.toString();
     }
 
+    /**
+     * Returns the names of the request headers to sign, in the order of the
+     * canonical request.
+     */
+    private List<String> getSortedSignedHeaders(SignableRequest<?> request) {
+        final List<String> sortedHeaders = new ArrayList<String>(request
+                .getHeaders().keySet());
+        Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
+
+        for (Iterator<String> iterator = sortedHeaders.iterator(); iterator.hasNext();) {
+            if (shouldExcludeHeaderFromSigning(iterator.next())) {
+                iterator.remove();
+            }
+        }
+        return sortedHeaders;
+    }
+
     protected boolean shouldExcludeHeaderFromSigning(String header) {
         return listOfHeadersToIgnoreInLowerCase.contains(header.toLowerCase());
     }
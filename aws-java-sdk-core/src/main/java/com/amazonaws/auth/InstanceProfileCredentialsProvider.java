@@ -16,14 +16,19 @@ package com.amazonaws.auth;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.Random;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.SdkTestInternalApi;
 import com.amazonaws.internal.EC2MetadataClient;
 import com.amazonaws.util.DateUtils;
 import com.amazonaws.util.json.Jackson;
@@ -60,11 +65,24 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     private static final String TOKEN = "Token";
 
     /**
-     * The wait time, after which the background thread initiates a refresh to
-     * load latest credentials if needed.
+     * The minimum wait time, after which the background thread initiates
+     * another refresh to load latest credentials.
      */
     private static final int ASYNC_REFRESH_INTERVAL_TIME_MINUTES= 1;
 
+    /**
+     * Upper bound of the random amount (in milliseconds) by which a
+     * background refresh is moved earlier, so that instances started together
+     * don't all call the metadata service at the same time.
+     */
+    private static final int ASYNC_REFRESH_JITTER = 1000 * 60 * 5;
+
+    /** Delay (in milliseconds) before the first retry of a failed background refresh. */
+    private static final int ASYNC_RETRY_BASE_DELAY = 1000;
+
+    /** Maximum delay (in milliseconds) between retries of a failed background refresh. */
+    private static final int ASYNC_RETRY_MAX_DELAY = 1000 * 60;
+
 
     /** The current instance profile credentials */
     protected volatile AWSCredentials credentials;
@@ -81,6 +99,19 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
      */
     private volatile ScheduledExecutorService executor;
 
+    private final EC2MetadataClient metadataClient;
+
+    private final Random random = new Random();
+
+    /** Set while a background refresh requested by a caller is queued. */
+    private final AtomicBoolean asyncRefreshRequested = new AtomicBoolean();
+
+    /** The next scheduled background refresh, only accessed by the executor thread. */
+    private ScheduledFuture<?> nextAsyncRefresh;
+
+    /** Number of consecutive failed background refreshes, only accessed by the executor thread. */
+    private int asyncRefreshFailures;
+
     public InstanceProfileCredentialsProvider() {
         this(false);
     }
@@ -89,37 +120,104 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
      * Spins up a new thread to refresh the credentials asynchronously if
      * refreshCredentialsAsync is set to true, otherwise the credentials will be
      * refreshed from the instance metadata service synchronously,
+     * <p>
+     * When refreshing asynchronously, credentials are reloaded in the
+     * background ahead of their expiration and callers are only blocked if
+     * there are no valid credentials at all. Failed refreshes are retried with
+     * backoff while the current credentials remain valid.
      *
      * @param refreshCredentialsAsync
      *            true if credentials needs to be refreshed asynchronously else
      *            false.
      */
     public InstanceProfileCredentialsProvider(boolean refreshCredentialsAsync) {
+        this(refreshCredentialsAsync, new EC2MetadataClient());
+    }
+
+    /**
+     * @param metadataClient
+     *            Client for the metadata service, for example one pointing to
+     *            a local stub.
+     */
+    @SdkTestInternalApi
+    InstanceProfileCredentialsProvider(boolean refreshCredentialsAsync, EC2MetadataClient metadataClient) {
+        this.metadataClient = metadataClient;
         if (refreshCredentialsAsync) {
-            executor = Executors.newScheduledThreadPool(1);
-            executor.scheduleWithFixedDelay(new Runnable() {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
                 @Override
-                public void run() {
-                    try {
-                        getCredentials();
-                    } catch (AmazonClientException ace) {
-                        handleError(ace);
-                    } catch (RuntimeException re) {
-                        handleError(re);
-                    } catch (Error e) {
-                        handleError(e);
-                    }
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                    thread.setName("instance-profile-credentials-refresh");
+                    thread.setDaemon(true);
+                    return thread;
                 }
-            }, 0, ASYNC_REFRESH_INTERVAL_TIME_MINUTES, TimeUnit.MINUTES);
+            });
+            executor.execute(asyncRefreshTask);
         }
     }
 
-    private void handleError(Throwable t) {
-        credentials = null;
-        LOG.error(t.getMessage(), t);
+    private final Runnable asyncRefreshTask = new Runnable() {
+        @Override
+        public void run() {
+            asyncRefreshRequested.set(false);
+            long delay;
+            try {
+                if (fetchCredentials()) {
+                    asyncRefreshFailures = 0;
+                    delay = nextAsyncRefreshDelay();
+                } else {
+                    delay = nextAsyncRetryDelay();
+                }
+            } catch (AmazonClientException ace) {
+                LOG.error(ace.getMessage(), ace);
+                delay = nextAsyncRetryDelay();
+            } catch (RuntimeException re) {
+                LOG.error(re.getMessage(), re);
+                delay = nextAsyncRetryDelay();
+            }
+            if (nextAsyncRefresh != null) {
+                nextAsyncRefresh.cancel(false);
+            }
+            nextAsyncRefresh = executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+        }
+    };
+
+    /**
+     * Returns the delay until the next background refresh: ahead of the
+     * thresholds at which callers would need new credentials, minus a random
+     * jitter.
+     */
+    private long nextAsyncRefreshDelay() {
+        long now = System.currentTimeMillis();
+        long refreshTime = lastInstanceProfileCheck.getTime() + REFRESH_THRESHOLD;
+        Date expiration = credentialsExpiration;
+        if (expiration != null) {
+            refreshTime = Math.min(refreshTime, expiration.getTime() - EXPIRATION_THRESHOLD);
+        }
+        refreshTime -= (long) (nextRandom() * ASYNC_REFRESH_JITTER);
+        return Math.max(refreshTime - now, TimeUnit.MINUTES.toMillis(ASYNC_REFRESH_INTERVAL_TIME_MINUTES));
+    }
+
+    private long nextAsyncRetryDelay() {
+        asyncRefreshFailures++;
+        long backoff = Math.min(ASYNC_RETRY_MAX_DELAY,
+                (long) ASYNC_RETRY_BASE_DELAY << Math.min(asyncRefreshFailures - 1, 16));
+        return backoff / 2 + (long) (nextRandom() * backoff / 2);
+    }
+
+    private synchronized double nextRandom() {
+        return random.nextDouble();
     }
 
     public AWSCredentials getCredentials() {
+        if (executor != null && credentials != null && !expired()) {
+            // Serve the current credentials without blocking, the background
+            // thread loads new ones
+            if (needsToLoadCredentials()) {
+                requestAsyncRefresh();
+            }
+            return credentials;
+        }
         if (needsToLoadCredentials())
             loadCredentials();
         if (expired()) {
@@ -133,6 +231,20 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
         credentials = null;
     }
 
+    /**
+     * Queues an immediate background refresh unless one is already queued.
+     */
+    private void requestAsyncRefresh() {
+        if (asyncRefreshRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(asyncRefreshTask);
+            } catch (RuntimeException e) {
+                // Executor was shut down
+                asyncRefreshRequested.set(false);
+            }
+        }
+    }
+
     protected boolean needsToLoadCredentials() {
         if (credentials == null) return true;
 
@@ -176,14 +288,25 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
 
     private synchronized void loadCredentials() {
         if (!needsToLoadCredentials()) return;
+        fetchCredentials();
+    }
 
+    /**
+     * Loads credentials from the metadata service.
+     *
+     * @return true if new credentials were loaded, false if loading failed
+     *         but the current credentials are still valid
+     * @throws AmazonClientException
+     *             If loading failed and there are no valid credentials
+     */
+    private synchronized boolean fetchCredentials() {
         JsonNode accessKey;
         JsonNode secretKey;
         JsonNode node;
         JsonNode token;
         try {
             lastInstanceProfileCheck = new Date();
-            String credentialsResponse = new EC2MetadataClient()
+            String credentialsResponse = metadataClient
                     .getDefaultCredentials();
 
             node = Jackson.jsonNodeOf(credentialsResponse);
@@ -217,13 +340,16 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
                     credentialsExpiration = DateUtils.parseISO8601Date(expiration);
                 } catch(Exception ex) {
                     handleError("Unable to parse credentials expiration date from Amazon EC2 metadata service", ex);
+                    return false;
                 }
             }
+            return true;
         } catch (JsonMappingException e) {
             handleError("Unable to parse credentials from Amazon EC2 metadata service", e);
         } catch (IOException e) {
             handleError("Unable to load credentials from Amazon EC2 metadata service", e);
         }
+        return false;
     }
 
     /**
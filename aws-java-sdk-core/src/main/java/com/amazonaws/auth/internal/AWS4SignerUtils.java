@@ -17,6 +17,8 @@ package com.amazonaws.auth.internal;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
+import com.amazonaws.util.FastDateFormat;
+
 /**
  * Utility methods that is used by the different AWS Signer implementations.
  * This class is strictly internal and is subjected to change.
@@ -36,7 +38,8 @@ public final class AWS4SignerUtils {
      * For example, given a time "1416863450581", this method returns "20141124"
      */
     public static String formatDateStamp(long timeMilli) {
-        return dateFormatter.print(timeMilli);
+        final String formatted = FastDateFormat.formatDateStamp(timeMilli);
+        return formatted != null ? formatted : dateFormatter.print(timeMilli);
     }
 
     /**
@@ -47,6 +50,7 @@ public final class AWS4SignerUtils {
      * "20141124T211050Z"
      */
     public static String formatTimestamp(long timeMilli) {
-        return timeFormatter.print(timeMilli);
+        final String formatted = FastDateFormat.formatCompressedIso8601(timeMilli);
+        return formatted != null ? formatted : timeFormatter.print(timeMilli);
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth.internal;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Computes the SHA-256 hash of the UTF-8 encoding of the appended text,
+ * without building the text or its encoding in memory. The result is the same
+ * as hashing {@code text.getBytes(UTF8)}, including for unpaired surrogates
+ * which are encoded as '?'.
+ * <p>
+ * Instances are reused by the thread that obtains them with {@link #get()},
+ * so they must not be kept after calling {@link #digest()}. This class is
+ * strictly internal and is subjected to change.
+ */
+public final class Sha256Appender {
+
+    private static final ThreadLocal<Sha256Appender> INSTANCES = new ThreadLocal<Sha256Appender>() {
+        @Override
+        protected Sha256Appender initialValue() {
+            return new Sha256Appender();
+        }
+    };
+
+    private final MessageDigest messageDigest;
+
+    private final byte[] buffer = new byte[1024];
+
+    private int position;
+
+    /** High surrogate waiting for the low surrogate that follows it. */
+    private char pendingHighSurrogate;
+
+    private Sha256Appender() {
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AmazonClientException(
+                    "Unable to compute hash while signing request: "
+                            + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns an empty appender owned by the current thread.
+     */
+    public static Sha256Appender get() {
+        Sha256Appender appender = INSTANCES.get();
+        appender.reset();
+        return appender;
+    }
+
+    public Sha256Appender append(String text) {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            append(text.charAt(i));
+        }
+        return this;
+    }
+
+    public Sha256Appender append(char ch) {
+        if (pendingHighSurrogate != 0) {
+            final char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(ch)) {
+                write(Character.toCodePoint(high, ch));
+                return this;
+            }
+            write('?');
+        }
+        if (Character.isHighSurrogate(ch)) {
+            pendingHighSurrogate = ch;
+        } else if (Character.isLowSurrogate(ch)) {
+            write('?');
+        } else {
+            write(ch);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the hash of the text appended since this appender was obtained.
+     */
+    public byte[] digest() {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            write('?');
+        }
+        messageDigest.update(buffer, 0, position);
+        position = 0;
+        return messageDigest.digest();
+    }
+
+    private void reset() {
+        messageDigest.reset();
+        position = 0;
+        pendingHighSurrogate = 0;
+    }
+
+    private void write(int codePoint) {
+        // Room for the longest encoding
+        if (position > buffer.length - 4) {
+            messageDigest.update(buffer, 0, position);
+            position = 0;
+        }
+        if (codePoint < 0x80) {
+            buffer[position++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (codePoint >> 6));
+            buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            buffer[position++] = (byte) (0xE0 | (codePoint >> 12));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+    }
+}
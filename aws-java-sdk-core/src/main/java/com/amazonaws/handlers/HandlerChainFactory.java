@@ -19,7 +19,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.util.ClassLoaderHelper;
@@ -30,6 +33,14 @@ import com.amazonaws.util.StringUtils;
  */
 public class HandlerChainFactory {
 
+    /**
+     * Handler class names read from the classpath resources, keyed by factory
+     * class and resource name. Handlers are still instantiated for every chain
+     * since they may keep per client state.
+     */
+    private static final Map<String, List<String>> HANDLER_CLASS_NAMES =
+            new ConcurrentHashMap<String, List<String>>();
+
     /**
      * For backward compatibility, constructs a new request handler chain
      * adapted to {@link RequestHandler2} by analyzing the specified classpath
@@ -63,20 +74,9 @@ public class HandlerChainFactory {
 
     private List<RequestHandler2> createRequestHandlerChain(String resource, Class<?> handlerApiClass) {
         List<RequestHandler2> handlers = new ArrayList<RequestHandler2>();
-        BufferedReader reader = null;
 
         try {
-            InputStream input = getClass().getResourceAsStream(resource);
-            if (input == null) return handlers;
-
-            reader = new BufferedReader(new InputStreamReader(input, StringUtils.UTF8));
-            while (true) {
-                String requestHandlerClassName = reader.readLine();
-                if (requestHandlerClassName == null)
-                    break;
-                requestHandlerClassName = requestHandlerClassName.trim();
-                if (requestHandlerClassName.equals(""))
-                    continue;
+            for (String requestHandlerClassName : getHandlerClassNames(resource)) {
                 Class<?> requestHandlerClass = ClassLoaderHelper.loadClass(
                     requestHandlerClassName,
                     handlerApiClass, getClass());
@@ -103,6 +103,44 @@ public class HandlerChainFactory {
         } catch (Exception e) {
             throw new AmazonClientException("Unable to instantiate request handler chain for client: "
                     + e.getMessage(), e);
+        }
+        return handlers;
+    }
+
+    /**
+     * Returns the handler class names listed in the given classpath resource,
+     * reading the resource only the first time it is requested. Most services
+     * don't ship handler resources, and looking up a missing resource scans
+     * the whole classpath every time a client is created.
+     */
+    private List<String> getHandlerClassNames(String resource) throws IOException {
+        String cacheKey = getClass().getName() + ":" + resource;
+        List<String> classNames = HANDLER_CLASS_NAMES.get(cacheKey);
+        if (classNames == null) {
+            classNames = readHandlerClassNames(resource);
+            HANDLER_CLASS_NAMES.put(cacheKey, classNames);
+        }
+        return classNames;
+    }
+
+    private List<String> readHandlerClassNames(String resource) throws IOException {
+        List<String> classNames = new ArrayList<String>();
+        BufferedReader reader = null;
+
+        try {
+            InputStream input = getClass().getResourceAsStream(resource);
+            if (input == null) return Collections.emptyList();
+
+            reader = new BufferedReader(new InputStreamReader(input, StringUtils.UTF8));
+            while (true) {
+                String requestHandlerClassName = reader.readLine();
+                if (requestHandlerClassName == null)
+                    break;
+                requestHandlerClassName = requestHandlerClassName.trim();
+                if (requestHandlerClassName.equals(""))
+                    continue;
+                classNames.add(requestHandlerClassName);
+            }
         } finally {
             try {
                 if (reader != null) {
@@ -111,6 +149,6 @@ public class HandlerChainFactory {
             } catch (IOException e) {
             }
         }
-        return handlers;
+        return Collections.unmodifiableList(classNames);
     }
 }
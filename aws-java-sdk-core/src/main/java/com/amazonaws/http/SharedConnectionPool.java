@@ -0,0 +1,310 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import com.amazonaws.ApacheHttpClientConfig;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.http.apache.client.impl.ApacheConnectionManagerFactory;
+import com.amazonaws.http.settings.HttpClientSettings;
+
+/**
+ * A connection pool that can be shared by many service clients, so that the
+ * number of open sockets and TLS sessions depends on the hosts being called
+ * rather than on the number of client instances.
+ * <p>
+ * The pool is configured once from a {@link ClientConfiguration}: its
+ * maximum number of connections is the global cap across all clients using
+ * the pool, and its SSL socket factory, DNS resolver, socket settings and
+ * connection TTL apply to all of them. Use
+ * {@link #setMaxConnectionsPerHost(int)} and
+ * {@link #setMaxConnectionsForEndpoint(URI, int)} to limit the connections
+ * to a single host. The pool is registered with the
+ * {@link IdleConnectionReaper} once, regardless of the number of clients.
+ * <p>
+ * Clients use the pool when it is set on their
+ * {@link ApacheHttpClientConfig#setSharedConnectionPool(SharedConnectionPool)}.
+ * Shutting down a client doesn't close the pool; call {@link #shutdown()}
+ * once no client uses it anymore.
+ */
+@ThreadSafe
+public class SharedConnectionPool {
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final boolean useReaper;
+
+    /** Number of clients currently using the pool. */
+    private final AtomicInteger clientCount = new AtomicInteger();
+
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a pool using the connection settings of the default
+     * {@link ClientConfiguration}.
+     */
+    public SharedConnectionPool() {
+        this(new ClientConfiguration());
+    }
+
+    /**
+     * Creates a pool using the connection settings of the given
+     * configuration. {@link ClientConfiguration#getMaxConnections()} is the
+     * maximum number of connections of the pool as well as the default
+     * maximum per host.
+     */
+    public SharedConnectionPool(ClientConfiguration config) {
+        this.connectionManager = (PoolingHttpClientConnectionManager)
+                new ApacheConnectionManagerFactory().create(HttpClientSettings.adapt(config));
+        this.useReaper = config.useReaper();
+        if (useReaper) {
+            IdleConnectionReaper.registerConnectionManager(connectionManager);
+        }
+    }
+
+    /**
+     * Sets the maximum number of connections of the pool across all hosts and
+     * clients.
+     */
+    public void setMaxConnections(int maxConnections) {
+        connectionManager.setMaxTotal(maxConnections);
+    }
+
+    public int getMaxConnections() {
+        return connectionManager.getMaxTotal();
+    }
+
+    /**
+     * Sets the default maximum number of connections to a single host.
+     */
+    public void setMaxConnectionsPerHost(int maxConnections) {
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return connectionManager.getDefaultMaxPerRoute();
+    }
+
+    /**
+     * Sets the maximum number of direct connections to the host of the given
+     * endpoint, for example <code>https://s3.amazonaws.com</code>, overriding
+     * {@link #setMaxConnectionsPerHost(int)}.
+     */
+    public void setMaxConnectionsForEndpoint(URI endpoint, int maxConnections) {
+        connectionManager.setMaxPerRoute(toRoute(endpoint), maxConnections);
+    }
+
+    public int getMaxConnectionsForEndpoint(URI endpoint) {
+        return connectionManager.getMaxPerRoute(toRoute(endpoint));
+    }
+
+    /**
+     * Returns the number of connections currently used by a request.
+     */
+    public int getLeasedConnectionCount() {
+        return connectionManager.getTotalStats().getLeased();
+    }
+
+    /**
+     * Returns the number of idle connections kept open in the pool.
+     */
+    public int getAvailableConnectionCount() {
+        return connectionManager.getTotalStats().getAvailable();
+    }
+
+    /**
+     * Returns the number of requests waiting for a connection.
+     */
+    public int getPendingConnectionCount() {
+        return connectionManager.getTotalStats().getPending();
+    }
+
+    /**
+     * Returns the number of connections to the host of the given endpoint
+     * currently used by a request.
+     */
+    public int getLeasedConnectionCount(URI endpoint) {
+        return connectionManager.getStats(toRoute(endpoint)).getLeased();
+    }
+
+    /**
+     * Returns the number of clients currently using this pool.
+     */
+    public int getClientCount() {
+        return clientCount.get();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Closes all the connections of the pool. Clients using the pool can no
+     * longer send requests.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (useReaper) {
+            IdleConnectionReaper.removeConnectionManager(connectionManager);
+        }
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Returns a connection manager for a new client. Shutting it down only
+     * releases the client's use of the pool.
+     */
+    @SdkInternalApi
+    public HttpClientConnectionManager newClientConnectionManager() {
+        if (shutdown) {
+            throw new IllegalStateException("Connection pool shut down");
+        }
+        clientCount.incrementAndGet();
+        return new ClientConnectionManager();
+    }
+
+    /**
+     * Returns the route of a direct connection to the endpoint, as computed by
+     * the route planner of the client.
+     */
+    private static HttpRoute toRoute(URI endpoint) {
+        boolean secure = "https".equalsIgnoreCase(endpoint.getScheme());
+        int port = endpoint.getPort() > 0 ? endpoint.getPort() : secure ? 443 : 80;
+        return new HttpRoute(new HttpHost(endpoint.getHost(), port, endpoint.getScheme()), null, secure);
+    }
+
+    @Override
+    public String toString() {
+        PoolStats stats = connectionManager.getTotalStats();
+        return "SharedConnectionPool[clients=" + clientCount.get() + ", " + stats + "]";
+    }
+
+    /**
+     * The view of the pool handed to a single client. Its limits can be read
+     * but not changed, since they apply to all the clients of the pool.
+     */
+    private final class ClientConnectionManager implements HttpClientConnectionManager, ConnPoolControl<HttpRoute> {
+
+        private volatile boolean released;
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            if (released) {
+                throw new IllegalStateException("Connection pool shut down");
+            }
+            return connectionManager.requestConnection(route, state);
+        }
+
+        @Override
+        public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration,
+                TimeUnit timeUnit) {
+            connectionManager.releaseConnection(conn, newState, validDuration, timeUnit);
+        }
+
+        @Override
+        public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+                throws IOException {
+            connectionManager.connect(conn, route, connectTimeout, context);
+        }
+
+        @Override
+        public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            connectionManager.upgrade(conn, route, context);
+        }
+
+        @Override
+        public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context)
+                throws IOException {
+            connectionManager.routeComplete(conn, route, context);
+        }
+
+        @Override
+        public void closeIdleConnections(long idletime, TimeUnit tunit) {
+            connectionManager.closeIdleConnections(idletime, tunit);
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+            connectionManager.closeExpiredConnections();
+        }
+
+        @Override
+        public synchronized void shutdown() {
+            if (!released) {
+                released = true;
+                clientCount.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void setMaxTotal(int max) {
+            throw new UnsupportedOperationException(
+                    "The limits of a shared pool are set on the SharedConnectionPool");
+        }
+
+        @Override
+        public int getMaxTotal() {
+            return connectionManager.getMaxTotal();
+        }
+
+        @Override
+        public void setDefaultMaxPerRoute(int max) {
+            throw new UnsupportedOperationException(
+                    "The limits of a shared pool are set on the SharedConnectionPool");
+        }
+
+        @Override
+        public int getDefaultMaxPerRoute() {
+            return connectionManager.getDefaultMaxPerRoute();
+        }
+
+        @Override
+        public void setMaxPerRoute(HttpRoute route, int max) {
+            throw new UnsupportedOperationException(
+                    "The limits of a shared pool are set on the SharedConnectionPool");
+        }
+
+        @Override
+        public int getMaxPerRoute(HttpRoute route) {
+            return connectionManager.getMaxPerRoute(route);
+        }
+
+        @Override
+        public PoolStats getTotalStats() {
+            return connectionManager.getTotalStats();
+        }
+
+        @Override
+        public PoolStats getStats(HttpRoute route) {
+            return connectionManager.getStats(route);
+        }
+    }
+}
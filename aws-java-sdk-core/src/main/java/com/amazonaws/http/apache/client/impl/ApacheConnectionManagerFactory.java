@@ -14,10 +14,12 @@
  */
 package com.amazonaws.http.apache.client.impl;
 
+import com.amazonaws.CachingDnsResolver;
 import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.http.AmazonHttpClient;
 import com.amazonaws.http.DelegatingDnsResolver;
 import com.amazonaws.http.client.ConnectionManagerFactory;
+import com.amazonaws.http.conn.ConnectFailureReportingSocketFactory;
 import com.amazonaws.http.conn.ssl.SdkTLSSocketFactory;
 import com.amazonaws.http.settings.HttpClientSettings;
 import com.amazonaws.internal.SdkSSLContext;
@@ -66,7 +68,7 @@ public class ApacheConnectionManagerFactory implements
 
         final PoolingHttpClientConnectionManager cm = new
                 PoolingHttpClientConnectionManager(
-                createSocketFactoryRegistry(sslsf),
+                createSocketFactoryRegistry(sslsf, settings),
                 null,
                 DefaultSchemePortResolver.INSTANCE,
                 new DelegatingDnsResolver(settings.getDnsResolver()),
@@ -120,7 +122,8 @@ public class ApacheConnectionManagerFactory implements
                 : SSLConnectionSocketFactory.STRICT_HOSTNAME_VERIFIER;
     }
 
-    private Registry<ConnectionSocketFactory> createSocketFactoryRegistry(ConnectionSocketFactory sslSocketFactory) {
+    private Registry<ConnectionSocketFactory> createSocketFactoryRegistry(ConnectionSocketFactory sslSocketFactory,
+                                                                  HttpClientSettings settings) {
 
         /*
          * If SSL cert checking for endpoints has been explicitly disabled,
@@ -135,8 +138,20 @@ public class ApacheConnectionManagerFactory implements
             sslSocketFactory = new TrustingSocketFactory();
         }
 
+        ConnectionSocketFactory plainSocketFactory = PlainConnectionSocketFactory.getSocketFactory();
+
+        /*
+         * Let a caching resolver know which addresses fail to connect so
+         * that it returns them last.
+         */
+        if (settings.getDnsResolver() instanceof CachingDnsResolver) {
+            CachingDnsResolver resolver = (CachingDnsResolver) settings.getDnsResolver();
+            plainSocketFactory = ConnectFailureReportingSocketFactory.wrap(plainSocketFactory, resolver);
+            sslSocketFactory = ConnectFailureReportingSocketFactory.wrap(sslSocketFactory, resolver);
+        }
+
         return RegistryBuilder.<ConnectionSocketFactory>create()
-                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("http", plainSocketFactory)
                 .register("https", sslSocketFactory)
                 .build();
     }
@@ -23,6 +23,7 @@ import org.apache.http.impl.client.HttpClients;
 
 import com.amazonaws.http.AmazonHttpClient;
 import com.amazonaws.http.IdleConnectionReaper;
+import com.amazonaws.http.SharedConnectionPool;
 import com.amazonaws.http.apache.SdkProxyRoutePlanner;
 import com.amazonaws.http.apache.utils.ApacheUtils;
 import com.amazonaws.http.client.ConnectionManagerFactory;
@@ -47,7 +48,10 @@ public class ApacheHttpClientFactory implements HttpClientFactory<ConnectionMana
         // Note that it is important we register the original connection manager with the
         // IdleConnectionReaper as it's required for the successful deregistration of managers
         // from the reaper. See https://github.com/aws/aws-sdk-java/issues/722.
-        final HttpClientConnectionManager cm = cmFactory.create(settings);
+        final SharedConnectionPool sharedPool = settings.getApacheHttpClientConfig().getSharedConnectionPool();
+        final HttpClientConnectionManager cm = sharedPool != null
+                ? sharedPool.newClientConnectionManager()
+                : cmFactory.create(settings);
 
         builder.setRequestExecutor(new SdkHttpRequestExecutor())
                 .setKeepAliveStrategy(buildKeepAliveStrategy(settings))
@@ -69,7 +73,8 @@ public class ApacheHttpClientFactory implements HttpClientFactory<ConnectionMana
 
         final ConnectionManagerAwareHttpClient httpClient = new SdkHttpClient(builder.build(), cm);
 
-        if (settings.useReaper()) {
+        // A shared pool is registered with the reaper once by the pool itself
+        if (settings.useReaper() && sharedPool == null) {
             IdleConnectionReaper.registerConnectionManager(cm);
         }
 
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+
+import com.amazonaws.CachingDnsResolver;
+import com.amazonaws.annotation.SdkInternalApi;
+
+/**
+ * Reports the addresses that fail to connect to a {@link CachingDnsResolver},
+ * so that they are tried last by the next connections to the same host.
+ */
+@SdkInternalApi
+public class ConnectFailureReportingSocketFactory {
+
+    /**
+     * Returns a wrapped instance of {@link ConnectionSocketFactory} that
+     * reports connect failures to the given resolver. The returned instance
+     * is a {@link LayeredConnectionSocketFactory} if the original one is.
+     *
+     * @param orig the target instance to be wrapped
+     */
+    public static ConnectionSocketFactory wrap(ConnectionSocketFactory orig, CachingDnsResolver resolver) {
+        final Class<?>[] interfaces = orig instanceof LayeredConnectionSocketFactory
+                ? new Class<?>[] { LayeredConnectionSocketFactory.class }
+                : new Class<?>[] { ConnectionSocketFactory.class };
+        return (ConnectionSocketFactory) Proxy.newProxyInstance(
+                ConnectFailureReportingSocketFactory.class.getClassLoader(),
+                interfaces,
+                new Handler(orig, resolver));
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final ConnectionSocketFactory orig;
+        private final CachingDnsResolver resolver;
+
+        Handler(ConnectionSocketFactory orig, CachingDnsResolver resolver) {
+            this.orig = orig;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(orig, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException && "connectSocket".equals(method.getName())) {
+                    for (Object arg : args) {
+                        if (arg instanceof InetSocketAddress) {
+                            // The remote address precedes the local one
+                            resolver.reportConnectFailure(((InetSocketAddress) arg).getAddress());
+                            break;
+                        }
+                    }
+                }
+                throw cause;
+            }
+        }
+    }
+}
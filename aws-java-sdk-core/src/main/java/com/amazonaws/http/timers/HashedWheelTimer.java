@@ -0,0 +1,429 @@
+/*
+ * Copyright 2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.timers;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.util.ValidationUtils;
+
+/**
+ * Timer that keeps scheduled tasks in a wheel of buckets, one per tick, and a
+ * single thread that advances the wheel and runs the tasks of the current
+ * bucket. Unlike a {@link java.util.concurrent.ScheduledThreadPoolExecutor}
+ * scheduling and canceling a task is a constant time operation that does not
+ * contend on a shared priority queue, which suits timeouts that are scheduled
+ * for every request and almost always canceled.
+ * <p>
+ * Tasks are never run before their delay has elapsed, but may run up to one
+ * tick late. They run on the timer thread and must be short. The thread is
+ * started when a task is scheduled and stops after being idle for a while.
+ */
+@SdkInternalApi
+@ThreadSafe
+public class HashedWheelTimer {
+
+    private static final Log log = LogFactory.getLog(HashedWheelTimer.class);
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Same as the keep alive time of the thread pool built by
+     * {@link TimeoutThreadPoolBuilder}.
+     */
+    public static final long DEFAULT_IDLE_MILLIS = 5000;
+
+    /**
+     * Bounds the number of newly scheduled tasks added to the wheel per tick
+     * so a burst doesn't delay the expiration of earlier tasks.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private static final HashedWheelTimer SHARED_INSTANCE = new HashedWheelTimer(DEFAULT_TICK_MILLIS,
+            DEFAULT_WHEEL_SIZE, DEFAULT_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+
+    private static final int STATE_SCHEDULED = 0;
+    private static final int STATE_CANCELED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER = AtomicIntegerFieldUpdater
+            .newUpdater(WheelTimeout.class, "state");
+
+    private final long tickNanos;
+    private final long idleNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+
+    /**
+     * Newly scheduled tasks, added to the wheel by the timer thread.
+     */
+    private final Queue<WheelTimeout> scheduledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+    /**
+     * Canceled tasks, removed from the wheel by the timer thread.
+     */
+    private final Queue<WheelTimeout> canceledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+    private final AtomicInteger pendingTimeouts = new AtomicInteger();
+
+    private volatile Thread workerThread;
+
+    /**
+     * @param tickDuration
+     *            Granularity of the timer
+     * @param wheelSize
+     *            Number of buckets, rounded up to a power of two. Tasks
+     *            further away than a full revolution of the wheel are kept in
+     *            the bucket for multiple revolutions.
+     * @param idleTimeout
+     *            How long the timer thread keeps running without tasks
+     */
+    public HashedWheelTimer(long tickDuration, int wheelSize, long idleTimeout, TimeUnit unit) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheelSize must be between 1 and 2^30: " + wheelSize);
+        }
+        int normalizedWheelSize = 1;
+        while (normalizedWheelSize < wheelSize) {
+            normalizedWheelSize <<= 1;
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.idleNanos = unit.toNanos(idleTimeout);
+        this.mask = normalizedWheelSize - 1;
+        this.wheel = new Bucket[normalizedWheelSize];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+    }
+
+    /**
+     * @return The timer shared by all clients for request timeout and client execution timeout
+     *         tasks
+     */
+    public static HashedWheelTimer getSharedInstance() {
+        return SHARED_INSTANCE;
+    }
+
+    /**
+     * Schedules the task to run once after the given delay.
+     *
+     * @return Future that can be used to cancel the task. Canceling never interrupts a running
+     *         task.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        ValidationUtils.assertNotNull(task, "task");
+        WheelTimeout timeout = new WheelTimeout(task, System.nanoTime() + unit.toNanos(delay));
+        pendingTimeouts.incrementAndGet();
+        scheduledTimeouts.add(timeout);
+        if (workerThread == null) {
+            startWorker();
+        }
+        return timeout;
+    }
+
+    /**
+     * @return Number of tasks that are neither canceled nor expired
+     */
+    public int getPendingTimeoutCount() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * @return True if the timer thread is running
+     */
+    public boolean isWorkerRunning() {
+        return workerThread != null;
+    }
+
+    private synchronized void startWorker() {
+        if (workerThread == null) {
+            Thread thread = new Thread(new Worker(), "aws-sdk-timeout-timer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            workerThread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * @return True if the calling timer thread should exit
+     */
+    private synchronized boolean stopWorkerIfIdle() {
+        // Clearing the thread before checking the count guarantees that a task
+        // scheduled concurrently either is seen here or starts a new thread
+        workerThread = null;
+        if (pendingTimeouts.get() == 0) {
+            // Only canceled tasks are left on the wheel. A new timer thread
+            // can't start until this returns, so it gets an empty wheel
+            removeCanceledTimeouts();
+            for (Bucket bucket : wheel) {
+                bucket.clear();
+            }
+            return true;
+        }
+        workerThread = Thread.currentThread();
+        return false;
+    }
+
+    /**
+     * Only called by the timer thread, or with the lock held while no timer thread runs.
+     */
+    private void removeCanceledTimeouts() {
+        WheelTimeout timeout;
+        while ((timeout = canceledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final long startTime = System.nanoTime();
+
+        private long tick;
+
+        @Override
+        public void run() {
+            long lastBusyTime = startTime;
+            while (true) {
+                long now = waitForNextTick();
+                removeCanceledTimeouts();
+                transferScheduledTimeouts();
+                wheel[(int) (tick & mask)].expireTimeouts();
+                tick++;
+
+                if (pendingTimeouts.get() > 0) {
+                    lastBusyTime = now;
+                } else if (now - lastBusyTime >= idleNanos && stopWorkerIfIdle()) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Sleeps until the end of the current tick, so every task in its bucket has reached its
+         * deadline.
+         */
+        private long waitForNextTick() {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            while (true) {
+                long now = System.nanoTime();
+                long sleepNanos = deadline - now;
+                if (sleepNanos <= 0) {
+                    return now;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException ignored) {
+                    // The shared timer is never shut down, keep ticking
+                }
+            }
+        }
+
+        private void transferScheduledTimeouts() {
+            for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+                WheelTimeout timeout = scheduledTimeouts.poll();
+                if (timeout == null) {
+                    return;
+                }
+                if (timeout.state != STATE_SCHEDULED) {
+                    continue;
+                }
+                long calculatedTick = (timeout.deadline - startTime + tickNanos - 1) / tickNanos - 1;
+                timeout.remainingRounds = (calculatedTick - tick) / wheel.length;
+                long targetTick = Math.max(calculatedTick, tick);
+                wheel[(int) (targetTick & mask)].add(timeout);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the tasks in one slot of the wheel. Only accessed by the timer thread.
+     */
+    private final class Bucket {
+
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = timeout;
+                tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expireTimeouts() {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void clear() {
+            while (head != null) {
+                remove(head);
+            }
+        }
+    }
+
+    private final class WheelTimeout implements ScheduledFuture<Object> {
+
+        private final Runnable task;
+        private final long deadline;
+
+        volatile int state = STATE_SCHEDULED;
+
+        /** Guarded by this */
+        private boolean done;
+
+        // Only accessed by the timer thread
+        private long remainingRounds;
+        private WheelTimeout next;
+        private WheelTimeout prev;
+        private Bucket bucket;
+
+        WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, STATE_SCHEDULED, STATE_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.warn("Timer task threw an exception", t);
+            } finally {
+                pendingTimeouts.decrementAndGet();
+                markDone();
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!STATE_UPDATER.compareAndSet(this, STATE_SCHEDULED, STATE_CANCELED)) {
+                return false;
+            }
+            pendingTimeouts.decrementAndGet();
+            canceledTimeouts.add(this);
+            markDone();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == STATE_CANCELED;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public synchronized Object get() throws InterruptedException {
+            while (!done) {
+                wait();
+            }
+            return getResult();
+        }
+
+        @Override
+        public synchronized Object get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            long waitUntil = System.nanoTime() + unit.toNanos(timeout);
+            while (!done) {
+                long remaining = waitUntil - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return getResult();
+        }
+
+        private Object getResult() {
+            if (isCancelled()) {
+                throw new CancellationException();
+            }
+            return null;
+        }
+
+        private synchronized void markDone() {
+            done = true;
+            notifyAll();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+    }
+}
@@ -18,10 +18,12 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.annotation.SdkTestInternalApi;
 import com.amazonaws.annotation.ThreadSafe;
 import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.timers.HashedWheelTimer;
 import com.amazonaws.http.timers.TimeoutThreadPoolBuilder;
 
 /**
@@ -35,6 +37,25 @@ public class ClientExecutionTimer {
 
     private volatile ScheduledThreadPoolExecutor executor;
 
+    /**
+     * Used instead of {@link #executor} when set
+     */
+    private final HashedWheelTimer wheelTimer;
+
+    public ClientExecutionTimer() {
+        this(SDKGlobalConfiguration.isHashedWheelTimerEnabled() ? HashedWheelTimer.getSharedInstance() : null);
+    }
+
+    /**
+     * @param wheelTimer
+     *            Timer to schedule tasks on, or null to schedule them on a lazily created
+     *            {@link ScheduledThreadPoolExecutor} owned by this timer
+     */
+    @SdkTestInternalApi
+    public ClientExecutionTimer(HashedWheelTimer wheelTimer) {
+        this.wheelTimer = wheelTimer;
+    }
+
     /**
      * Start the timer with the specified timeout and return a object that can be used to track the
      * state of the timer and cancel it if need be.
@@ -48,7 +69,7 @@ public class ClientExecutionTimer {
     public ClientExecutionAbortTrackerTask startTimer(int clientExecutionTimeoutMillis) {
         if (isTimeoutDisabled(clientExecutionTimeoutMillis)) {
             return NoOpClientExecutionAbortTrackerTask.INSTANCE;
-        } else if (executor == null) {
+        } else if (wheelTimer == null && executor == null) {
             initializeExecutor();
         }
         return scheduleTimerTask(clientExecutionTimeoutMillis);
@@ -85,8 +106,9 @@ public class ClientExecutionTimer {
 
     private ClientExecutionAbortTrackerTask scheduleTimerTask(int clientExecutionTimeoutMillis) {
         ClientExecutionAbortTask timerTask = new ClientExecutionAbortTaskImpl(Thread.currentThread());
-        ScheduledFuture<?> timerTaskFuture = executor.schedule(timerTask, clientExecutionTimeoutMillis,
-                TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> timerTaskFuture = wheelTimer != null
+                ? wheelTimer.schedule(timerTask, clientExecutionTimeoutMillis, TimeUnit.MILLISECONDS)
+                : executor.schedule(timerTask, clientExecutionTimeoutMillis, TimeUnit.MILLISECONDS);
         return new ClientExecutionAbortTrackerTaskImpl(timerTask, timerTaskFuture);
     }
 
@@ -20,9 +20,11 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.http.client.methods.HttpRequestBase;
 
+import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.annotation.SdkTestInternalApi;
 import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.http.timers.HashedWheelTimer;
 import com.amazonaws.http.timers.TimeoutThreadPoolBuilder;
 
 /**
@@ -34,6 +36,25 @@ public class HttpRequestTimer {
 
     private volatile ScheduledThreadPoolExecutor executor;
 
+    /**
+     * Used instead of {@link #executor} when set
+     */
+    private final HashedWheelTimer wheelTimer;
+
+    public HttpRequestTimer() {
+        this(SDKGlobalConfiguration.isHashedWheelTimerEnabled() ? HashedWheelTimer.getSharedInstance() : null);
+    }
+
+    /**
+     * @param wheelTimer
+     *            Timer to schedule tasks on, or null to schedule them on a lazily created
+     *            {@link ScheduledThreadPoolExecutor} owned by this timer
+     */
+    @SdkTestInternalApi
+    public HttpRequestTimer(HashedWheelTimer wheelTimer) {
+        this.wheelTimer = wheelTimer;
+    }
+
     /**
      * Start the timer with the specified timeout and return a object that can be used to track the
      * state of the timer and cancel it if need be.
@@ -49,14 +70,21 @@ public class HttpRequestTimer {
     public HttpRequestAbortTaskTracker startTimer(final HttpRequestBase apacheRequest, final int requestTimeoutMillis) {
         if (isTimeoutDisabled(requestTimeoutMillis)) {
             return NoOpHttpRequestAbortTaskTracker.INSTANCE;
-        } else if (executor == null) {
-            initializeExecutor();
         }
         HttpRequestAbortTaskImpl timerTask = new HttpRequestAbortTaskImpl(apacheRequest);
-        ScheduledFuture<?> timerTaskFuture = executor.schedule(timerTask, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> timerTaskFuture = schedule(timerTask, requestTimeoutMillis);
         return new HttpRequestAbortTaskTrackerImpl(timerTask, timerTaskFuture);
     }
 
+    private ScheduledFuture<?> schedule(Runnable timerTask, int requestTimeoutMillis) {
+        if (wheelTimer != null) {
+            return wheelTimer.schedule(timerTask, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } else if (executor == null) {
+            initializeExecutor();
+        }
+        return executor.schedule(timerTask, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
     private boolean isTimeoutDisabled(final int requestTimeoutMillis) {
         return requestTimeoutMillis <= 0;
     }
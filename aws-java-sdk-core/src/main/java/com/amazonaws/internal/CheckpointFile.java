@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * A properties file mapping shard ids to checkpoints. The whole file is
+ * rewritten on every update, to a temporary file that then replaces it.
+ * Backs the file checkpoint stores of the buffered Kinesis consumer and the
+ * DynamoDB streams reader.
+ */
+@SdkInternalApi
+public final class CheckpointFile {
+    private final File file;
+    private final Properties checkpoints = new Properties();
+
+    /**
+     * @param file
+     *            the file holding the checkpoints, which is loaded if it
+     *            exists, and created otherwise
+     */
+    public CheckpointFile(File file) {
+        this.file = file;
+        if (file.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                checkpoints.load(in);
+            } catch (IOException e) {
+                throw new AmazonClientException("Unable to load checkpoints from " + file, e);
+            } finally {
+                IOUtils.closeQuietly(in, null);
+            }
+        }
+    }
+
+    public synchronized String getCheckpoint(String shardId) {
+        return checkpoints.getProperty(shardId);
+    }
+
+    public synchronized void setCheckpoint(String shardId, String checkpoint) {
+        final String previous = checkpoints.getProperty(shardId);
+        checkpoints.setProperty(shardId, checkpoint);
+        try {
+            save();
+        } catch (IOException e) {
+            if (previous == null)
+                checkpoints.remove(shardId);
+            else
+                checkpoints.setProperty(shardId, previous);
+            throw new AmazonClientException("Unable to save checkpoints to " + file, e);
+        }
+    }
+
+    private void save() throws IOException {
+        final File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            checkpoints.store(out, null);
+            out.close();
+        } finally {
+            IOUtils.closeQuietly(out, null);
+        }
+        // File.renameTo does not replace an existing file on all platforms
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file)))
+            throw new IOException("Unable to rename " + temp + " to " + file);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.annotation.SdkInternalApi;
+
+/**
+ * We need daemon threads so that we don't keep the process running if our
+ * threads are the only ones left in the process. Shared by the buffered
+ * Kinesis and Firehose clients and the DynamoDB streams reader.
+ */
+@SdkInternalApi
+public final class DaemonThreadFactory implements ThreadFactory {
+    static final AtomicInteger threadCount = new AtomicInteger(0);
+
+    private final String namePrefix;
+
+    public DaemonThreadFactory(String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        thread.setName(namePrefix + threadCount.incrementAndGet());
+        return thread;
+    }
+}
@@ -40,6 +40,29 @@ public class EC2MetadataClient {
 
     private static final Log log = LogFactory.getLog(EC2MetadataClient.class);
 
+    /**
+     * Endpoint used instead of the default or system property endpoint, may be null.
+     */
+    private final String endpointOverride;
+
+    public EC2MetadataClient() {
+        this(null);
+    }
+
+    /**
+     * Creates a client for the metadata service at the given endpoint, for example a local stub in
+     * tests. Takes precedence over the
+     * {@link com.amazonaws.SDKGlobalConfiguration#EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY}
+     * system property.
+     *
+     * @param endpointOverride
+     *            Endpoint such as <code>http://localhost:8080</code>, or null to use the default
+     *            endpoint.
+     */
+    public EC2MetadataClient(String endpointOverride) {
+        this.endpointOverride = endpointOverride;
+    }
+
     /**
      * Connects to the Amazon EC2 Instance Metadata Service to retrieve the
      * default credential information (if any).
@@ -142,7 +165,9 @@ public class EC2MetadataClient {
      */
     private URL getEc2MetadataServiceUrlForResource(String resourcePath) throws IOException {
         String endpoint = EC2_METADATA_SERVICE_URL;
-        if (System.getProperty(EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY) != null) {
+        if (endpointOverride != null) {
+            endpoint = endpointOverride;
+        } else if (System.getProperty(EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY) != null) {
             endpoint = System.getProperty(EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY);
         }
 
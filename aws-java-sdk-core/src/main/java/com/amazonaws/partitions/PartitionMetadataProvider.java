@@ -39,11 +39,22 @@ public class PartitionMetadataProvider extends AbstractRegionMetadataProvider {
 
     private final Map<String, Region> regionCache = new ConcurrentHashMap<String, Region>();
 
+    /**
+     * Partition of each region explicitly listed in the partition files, so
+     * that looking up a known region doesn't have to match every partition.
+     */
+    private final Map<String, Partition> regionIndex = new HashMap<String, Partition>();
+
     public PartitionMetadataProvider(List<Partition> partitions) {
         ValidationUtils.assertNotNull(partitions, "partitions");
 
         for (Partition p : partitions) {
             partitionMap.put(p.getPartition(), p);
+            for (String regionName : p.getRegions().keySet()) {
+                if (!regionIndex.containsKey(regionName)) {
+                    regionIndex.put(regionName, p);
+                }
+            }
         }
     }
 
@@ -76,6 +87,11 @@ public class PartitionMetadataProvider extends AbstractRegionMetadataProvider {
     }
 
     private Region createNewRegion(String regionName) {
+        final Partition indexed = regionIndex.get(regionName);
+        if (indexed != null) {
+            return cacheRegion(new PartitionRegionImpl(regionName, indexed));
+        }
+
         for (Partition p : partitionMap.values()) {
             if (p.hasRegion(regionName)) {
                 return cacheRegion(new PartitionRegionImpl(regionName, p));
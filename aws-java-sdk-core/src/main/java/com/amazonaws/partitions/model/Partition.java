@@ -55,6 +55,11 @@ public class Partition {
      */
     private String regionRegex;
 
+    /**
+     * compiled {@link #regionRegex}, or null if not set.
+     */
+    private Pattern regionPattern;
+
     /**
      * default endpoint configuration.
      */
@@ -117,6 +122,7 @@ public class Partition {
      */
     public void setRegionRegex(String regionRegex) {
         this.regionRegex = regionRegex;
+        this.regionPattern = regionRegex == null ? null : Pattern.compile(regionRegex);
     }
 
     /**
@@ -157,8 +163,7 @@ public class Partition {
     }
 
     private boolean matchesRegionRegex(String region) {
-        final Pattern p = Pattern.compile(regionRegex);
-        return p.matcher(region).matches();
+        return regionPattern != null && regionPattern.matcher(region).matches();
     }
 
     /**
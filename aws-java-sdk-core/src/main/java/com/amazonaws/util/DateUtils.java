@@ -34,6 +34,9 @@ import com.amazonaws.annotation.ThreadSafe;
 
 /**
  * Utilities for parsing and formatting dates.
+ * <p>
+ * Dates in the usual formats are handled by {@link FastDateFormat}; other
+ * inputs go through the Joda-Time formatters.
  */
 @ThreadSafe
 public class DateUtils {
@@ -90,6 +93,11 @@ public class DateUtils {
                     .concat("Z");
         }
 
+        final long fastMillis = FastDateFormat.parseIso8601(dateString);
+        if (fastMillis != FastDateFormat.UNPARSEABLE) {
+            return new Date(fastMillis);
+        }
+
         // https://github.com/aws/aws-sdk-java/issues/233
         String temp = tempDateStringForJodaTime(dateString);
         try {
@@ -158,6 +166,10 @@ public class DateUtils {
      * @return The ISO 8601 string representing the specified date.
      */
     public static String formatISO8601Date(Date date) {
+        final String formatted = FastDateFormat.formatIso8601(date.getTime());
+        if (formatted != null) {
+            return formatted;
+        }
         try {
             return iso8601DateFormat.print(date.getTime());
         } catch(RuntimeException ex) {
@@ -192,6 +204,10 @@ public class DateUtils {
         if (dateString == null) {
             return null;
         }
+        final long fastMillis = FastDateFormat.parseRfc822(dateString);
+        if (fastMillis != FastDateFormat.UNPARSEABLE) {
+            return new Date(fastMillis);
+        }
         try {
             return new Date(rfc822DateFormat.parseMillis(dateString));
         } catch(RuntimeException ex) {
@@ -208,6 +224,10 @@ public class DateUtils {
      * @return The RFC 822 string representing the specified date.
      */
     public static String formatRFC822Date(Date date) {
+        final String formatted = FastDateFormat.formatRfc822(date.getTime());
+        if (formatted != null) {
+            return formatted;
+        }
         try {
             return rfc822DateFormat.print(date.getTime());
         } catch(RuntimeException ex) {
@@ -225,6 +245,10 @@ public class DateUtils {
      * @return The parsed Date object.
      */
     public static Date parseCompressedISO8601Date(String dateString) {
+        final long fastMillis = FastDateFormat.parseCompressedIso8601(dateString);
+        if (fastMillis != FastDateFormat.UNPARSEABLE) {
+            return new Date(fastMillis);
+        }
         try {
             return new Date(compressedIso8601DateFormat.parseMillis(dateString));
         } catch (RuntimeException ex) {
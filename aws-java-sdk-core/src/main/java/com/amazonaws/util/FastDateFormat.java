@@ -0,0 +1,348 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Parsers and formatters for the fixed date formats used by the SDK, in the
+ * GMT time zone and for the years 0000 to 9999.
+ * <p>
+ * Parsers return {@link #UNPARSEABLE} for any input they don't recognize,
+ * and formatters return null for dates outside the supported years, so that
+ * callers can fall back to the general Joda-Time formatters, which keep
+ * producing the same results and errors as before. The formats that are
+ * typically produced for the current time are cached for the last second
+ * formatted.
+ */
+@SdkInternalApi
+@ThreadSafe
+public final class FastDateFormat {
+
+    /** Returned by the parsers when the input is not in the expected format. */
+    public static final long UNPARSEABLE = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * MILLIS_PER_SECOND;
+
+    /** Days from 0000-03-01 to 1970-01-01. */
+    private static final long DAYS_0000_TO_1970 = 719468L;
+
+    /** 0000-01-01T00:00:00.000Z */
+    private static final long MIN_MILLIS = -62167219200000L;
+
+    /** 10000-01-01T00:00:00.000Z */
+    private static final long MAX_MILLIS = 253402300800000L;
+
+    private static final String[] DAYS_OF_WEEK = { "Thu", "Fri", "Sat", "Sun", "Mon", "Tue", "Wed" };
+
+    private static final String[] MONTHS = {
+            "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private static volatile CachedFormat rfc822Cache = CachedFormat.NONE;
+
+    private static volatile CachedFormat compressedIso8601Cache = CachedFormat.NONE;
+
+    private FastDateFormat() {
+    }
+
+    /**
+     * Parses <code>yyyy-MM-dd'T'HH:mm:ss[.S[S[S]]]'Z'</code>.
+     */
+    public static long parseIso8601(String s) {
+        int length = s.length();
+        if (length < 20 || length > 24 || s.charAt(length - 1) != 'Z' || s.charAt(4) != '-'
+                || s.charAt(7) != '-' || s.charAt(10) != 'T' || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return UNPARSEABLE;
+        }
+        int millis = 0;
+        if (length > 20) {
+            if (s.charAt(19) != '.' || length == 21) {
+                return UNPARSEABLE;
+            }
+            millis = digits(s, 20, length - 1);
+            if (millis < 0) {
+                return UNPARSEABLE;
+            }
+            for (int i = length; i < 24; i++) {
+                millis *= 10;
+            }
+        }
+        return toMillis(digits(s, 0, 4), digits(s, 5, 7), digits(s, 8, 10),
+                digits(s, 11, 13), digits(s, 14, 16), digits(s, 17, 19), millis);
+    }
+
+    /**
+     * Parses <code>yyyyMMdd'T'HHmmss'Z'</code>.
+     */
+    public static long parseCompressedIso8601(String s) {
+        if (s.length() != 16 || s.charAt(8) != 'T' || s.charAt(15) != 'Z') {
+            return UNPARSEABLE;
+        }
+        return toMillis(digits(s, 0, 4), digits(s, 4, 6), digits(s, 6, 8),
+                digits(s, 9, 11), digits(s, 11, 13), digits(s, 13, 15), 0);
+    }
+
+    /**
+     * Parses <code>EEE, dd MMM yyyy HH:mm:ss 'GMT'</code>. Inputs whose day of
+     * week doesn't match the date are left to the general parser.
+     */
+    public static long parseRfc822(String s) {
+        if (s.length() != 29 || s.charAt(3) != ',' || s.charAt(4) != ' ' || s.charAt(7) != ' '
+                || s.charAt(11) != ' ' || s.charAt(16) != ' ' || s.charAt(19) != ':' || s.charAt(22) != ':'
+                || !s.endsWith(" GMT")) {
+            return UNPARSEABLE;
+        }
+        int month = indexOf(MONTHS, s, 8) + 1;
+        if (month == 0) {
+            return UNPARSEABLE;
+        }
+        long millis = toMillis(digits(s, 12, 16), month, digits(s, 5, 7),
+                digits(s, 17, 19), digits(s, 20, 22), digits(s, 23, 25), 0);
+        if (millis == UNPARSEABLE || !s.regionMatches(0, dayOfWeek(millis), 0, 3)) {
+            return UNPARSEABLE;
+        }
+        return millis;
+    }
+
+    /**
+     * Formats as <code>yyyy-MM-dd'T'HH:mm:ss.SSS'Z'</code>.
+     *
+     * @return null if the year is not between 0000 and 9999
+     */
+    public static String formatIso8601(long millis) {
+        if (millis < MIN_MILLIS || millis >= MAX_MILLIS) {
+            return null;
+        }
+        char[] buffer = new char[24];
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int millisOfDay = (int) (millis - days * MILLIS_PER_DAY);
+        int date = civilFromDays(days);
+        append4(buffer, 0, date / 10000);
+        buffer[4] = '-';
+        append2(buffer, 5, date / 100 % 100);
+        buffer[7] = '-';
+        append2(buffer, 8, date % 100);
+        buffer[10] = 'T';
+        appendTime(buffer, 11, millisOfDay, ':');
+        buffer[19] = '.';
+        int millisOfSecond = millisOfDay % 1000;
+        buffer[20] = (char) ('0' + millisOfSecond / 100);
+        append2(buffer, 21, millisOfSecond % 100);
+        buffer[23] = 'Z';
+        return new String(buffer);
+    }
+
+    /**
+     * Formats as <code>yyyyMMdd'T'HHmmss'Z'</code>.
+     *
+     * @return null if the year is not between 0000 and 9999
+     */
+    public static String formatCompressedIso8601(long millis) {
+        if (millis < MIN_MILLIS || millis >= MAX_MILLIS) {
+            return null;
+        }
+        long second = floorDiv(millis, MILLIS_PER_SECOND);
+        CachedFormat cached = compressedIso8601Cache;
+        if (cached.second == second) {
+            return cached.value;
+        }
+        char[] buffer = new char[16];
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int date = civilFromDays(days);
+        append4(buffer, 0, date / 10000);
+        append2(buffer, 4, date / 100 % 100);
+        append2(buffer, 6, date % 100);
+        buffer[8] = 'T';
+        appendTime(buffer, 9, (int) (millis - days * MILLIS_PER_DAY), (char) 0);
+        buffer[15] = 'Z';
+        String value = new String(buffer);
+        compressedIso8601Cache = new CachedFormat(second, value);
+        return value;
+    }
+
+    /**
+     * Formats as <code>yyyyMMdd</code>.
+     *
+     * @return null if the year is not between 0000 and 9999
+     */
+    public static String formatDateStamp(long millis) {
+        String timestamp = formatCompressedIso8601(millis);
+        return timestamp == null ? null : timestamp.substring(0, 8);
+    }
+
+    /**
+     * Formats as <code>EEE, dd MMM yyyy HH:mm:ss 'GMT'</code>.
+     *
+     * @return null if the year is not between 0000 and 9999
+     */
+    public static String formatRfc822(long millis) {
+        if (millis < MIN_MILLIS || millis >= MAX_MILLIS) {
+            return null;
+        }
+        long second = floorDiv(millis, MILLIS_PER_SECOND);
+        CachedFormat cached = rfc822Cache;
+        if (cached.second == second) {
+            return cached.value;
+        }
+        char[] buffer = new char[29];
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int date = civilFromDays(days);
+        dayOfWeek(millis).getChars(0, 3, buffer, 0);
+        buffer[3] = ',';
+        buffer[4] = ' ';
+        append2(buffer, 5, date % 100);
+        buffer[7] = ' ';
+        MONTHS[date / 100 % 100 - 1].getChars(0, 3, buffer, 8);
+        buffer[11] = ' ';
+        append4(buffer, 12, date / 10000);
+        buffer[16] = ' ';
+        appendTime(buffer, 17, (int) (millis - days * MILLIS_PER_DAY), ':');
+        " GMT".getChars(0, 4, buffer, 25);
+        String value = new String(buffer);
+        rfc822Cache = new CachedFormat(second, value);
+        return value;
+    }
+
+    /**
+     * Returns the epoch millis of the given GMT date time, or
+     * {@link #UNPARSEABLE} if any field is out of range.
+     */
+    private static long toMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0) {
+            return UNPARSEABLE;
+        }
+        int daysInMonth = month == 2 && isLeapYear(year) ? 29 : DAYS_IN_MONTH[month - 1];
+        if (day > daysInMonth) {
+            return UNPARSEABLE;
+        }
+        long days = daysFromCivil(year, month, day);
+        return days * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * MILLIS_PER_SECOND + millis;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 of the given date, for years
+     * 0000 to 9999.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Returns the date of the given number of days since 1970-01-01 as
+     * yyyyMMdd.
+     */
+    private static int civilFromDays(long days) {
+        long z = days + DAYS_0000_TO_1970;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static String dayOfWeek(long millis) {
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        return DAYS_OF_WEEK[(int) (days % 7 + 7) % 7];
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    /**
+     * Returns the decimal value of the digits between the given indexes, or -1
+     * if any character is not a digit.
+     */
+    private static int digits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int indexOf(String[] names, String s, int offset) {
+        for (int i = 0; i < names.length; i++) {
+            if (s.regionMatches(offset, names[i], 0, 3)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Appends HHmmss at the given offset, with the given separator unless it
+     * is 0.
+     */
+    private static void appendTime(char[] buffer, int offset, int millisOfDay, char separator) {
+        int secondOfDay = millisOfDay / 1000;
+        int step = separator == 0 ? 2 : 3;
+        append2(buffer, offset, secondOfDay / 3600);
+        append2(buffer, offset + step, secondOfDay / 60 % 60);
+        append2(buffer, offset + 2 * step, secondOfDay % 60);
+        if (separator != 0) {
+            buffer[offset + 2] = separator;
+            buffer[offset + 5] = separator;
+        }
+    }
+
+    private static void append2(char[] buffer, int offset, int value) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private static void append4(char[] buffer, int offset, int value) {
+        append2(buffer, offset, value / 100);
+        append2(buffer, offset + 2, value % 100);
+    }
+
+    /**
+     * A formatted date and the second it represents.
+     */
+    private static final class CachedFormat {
+        static final CachedFormat NONE = new CachedFormat(Long.MIN_VALUE, null);
+
+        final long second;
+        final String value;
+
+        CachedFormat(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+}
@@ -17,13 +17,10 @@ package com.amazonaws.util;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.amazonaws.SignableRequest;
 import com.amazonaws.http.HttpMethodName;
@@ -33,31 +30,35 @@ public class SdkHttpUtils {
     private static final String DEFAULT_ENCODING = "UTF-8";
 
     /**
-     * Regex which matches any of the sequences that we need to fix up after
-     * URLEncoder.encode().
+     * Characters that are left as is by {@link #urlEncode(String, boolean)},
+     * which are the unreserved characters of RFC 3986.
      */
-    private static final Pattern ENCODED_CHARACTERS_PATTERN;
+    private static final boolean[] UNRESERVED_CHARACTERS = new boolean[128];
     static {
-        StringBuilder pattern = new StringBuilder();
-
-        pattern
-            .append(Pattern.quote("+"))
-            .append("|")
-            .append(Pattern.quote("*"))
-            .append("|")
-            .append(Pattern.quote("%7E"))
-            .append("|")
-            .append(Pattern.quote("%2F"));
-
-        ENCODED_CHARACTERS_PATTERN = Pattern.compile(pattern.toString());
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            UNRESERVED_CHARACTERS[ch] = true;
+        }
+        for (char ch = 'A'; ch <= 'Z'; ch++) {
+            UNRESERVED_CHARACTERS[ch] = true;
+        }
+        for (char ch = '0'; ch <= '9'; ch++) {
+            UNRESERVED_CHARACTERS[ch] = true;
+        }
+        UNRESERVED_CHARACTERS['-'] = true;
+        UNRESERVED_CHARACTERS['_'] = true;
+        UNRESERVED_CHARACTERS['.'] = true;
+        UNRESERVED_CHARACTERS['~'] = true;
     }
 
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
     /**
-     * Encode a string for use in the path of a URL; uses URLEncoder.encode,
-     * (which encodes a string for use in the query portion of a URL), then
-     * applies some postfilters to fix things up per the RFC. Can optionally
-     * handle strings which are meant to encode a path (ie include '/'es
-     * which should NOT be escaped).
+     * Encode a string for use in the path of a URL, per RFC 3986: all
+     * characters but the unreserved ones are percent-encoded as UTF-8. Can
+     * optionally handle strings which are meant to encode a path (ie include
+     * '/'es which should NOT be escaped).
+     * <p>
+     * The value is returned as is when it doesn't need any encoding.
      *
      * @param value the value to encode
      * @param path true if the value is intended to represent a path
@@ -68,34 +69,49 @@ public class SdkHttpUtils {
             return "";
         }
 
-        try {
-            String encoded = URLEncoder.encode(value, DEFAULT_ENCODING);
-
-            Matcher matcher = ENCODED_CHARACTERS_PATTERN.matcher(encoded);
-            StringBuffer buffer = new StringBuffer(encoded.length());
-
-            while (matcher.find()) {
-                String replacement = matcher.group(0);
-
-                if ("+".equals(replacement)) {
-                    replacement = "%20";
-                } else if ("*".equals(replacement)) {
-                    replacement = "%2A";
-                } else if ("%7E".equals(replacement)) {
-                    replacement = "~";
-                } else if (path && "%2F".equals(replacement)) {
-                    replacement = "/";
-                }
+        final int length = value.length();
+        int index = 0;
+        while (index < length && isUnreserved(value.charAt(index), path)) {
+            index++;
+        }
+        if (index == length) {
+            return value;
+        }
 
-                matcher.appendReplacement(buffer, replacement);
+        final StringBuilder encoded = new StringBuilder(length + 16);
+        encoded.append(value, 0, index);
+        for (; index < length; index++) {
+            final char ch = value.charAt(index);
+            if (ch >= 0x80) {
+                break;
+            }
+            if (isUnreserved(ch, path)) {
+                encoded.append(ch);
+            } else {
+                appendEncodedByte(encoded, ch);
             }
+        }
+        if (index < length) {
+            // Lone surrogates are encoded as '?', like URLEncoder does
+            for (byte b : value.substring(index).getBytes(StringUtils.UTF8)) {
+                if (b >= 0 && isUnreserved((char) b, path)) {
+                    encoded.append((char) b);
+                } else {
+                    appendEncodedByte(encoded, b);
+                }
+            }
+        }
+        return encoded.toString();
+    }
 
-            matcher.appendTail(buffer);
-            return buffer.toString();
+    private static boolean isUnreserved(char ch, boolean path) {
+        return ch < 0x80 && (UNRESERVED_CHARACTERS[ch] || (path && ch == '/'));
+    }
 
-        } catch (UnsupportedEncodingException ex) {
-            throw new RuntimeException(ex);
-        }
+    private static void appendEncodedByte(StringBuilder destination, int b) {
+        destination.append('%')
+                   .append(HEX_DIGITS[(b >> 4) & 0xF])
+                   .append(HEX_DIGITS[b & 0xF]);
     }
 
     /**
@@ -249,7 +249,7 @@ public class StringUtils {
      * @param ch the character to be tested
      * @return true if the character is white  space, false otherwise.
      */
-    private static boolean isWhiteSpace(final char ch) {
+    public static boolean isWhiteSpace(final char ch) {
         if (ch == CHAR_SPACE) return true;
         if (ch == CHAR_TAB) return true;
         if (ch == CHAR_NEW_LINE) return true;
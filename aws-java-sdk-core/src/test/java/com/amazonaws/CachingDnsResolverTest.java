@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingDnsResolverTest {
+
+    private static final String HOST = "dynamodb.us-east-1.amazonaws.com";
+
+    private InetAddress first;
+    private InetAddress second;
+    private InetAddress third;
+
+    private AtomicInteger lookupCount;
+
+    private volatile InetAddress[] lookupResult;
+
+    private DnsResolver lookup;
+
+    @Before
+    public void setUp() throws Exception {
+        first = InetAddress.getByAddress(HOST, new byte[] { 10, 0, 0, 1 });
+        second = InetAddress.getByAddress(HOST, new byte[] { 10, 0, 0, 2 });
+        third = InetAddress.getByAddress(HOST, new byte[] { 10, 0, 0, 3 });
+        lookupCount = new AtomicInteger();
+        lookupResult = new InetAddress[] { first, second, third };
+        lookup = new DnsResolver() {
+            @Override
+            public InetAddress[] resolve(String host) throws UnknownHostException {
+                lookupCount.incrementAndGet();
+                if (!HOST.equals(host)) {
+                    throw new UnknownHostException(host);
+                }
+                return lookupResult.clone();
+            }
+        };
+    }
+
+    @Test
+    public void addressesAreCachedAndRotated() throws Exception {
+        CachingDnsResolver resolver = new CachingDnsResolver(lookup);
+
+        assertArrayEquals(new InetAddress[] { first, second, third }, resolver.resolve(HOST));
+        assertArrayEquals(new InetAddress[] { second, third, first }, resolver.resolve(HOST));
+        assertArrayEquals(new InetAddress[] { third, first, second }, resolver.resolve(HOST));
+        assertArrayEquals(new InetAddress[] { first, second, third }, resolver.resolve(HOST));
+        assertEquals(1, lookupCount.get());
+    }
+
+    @Test
+    public void failedAddressesAreReturnedLast() throws Exception {
+        CachingDnsResolver resolver = new CachingDnsResolver(lookup);
+        resolver.setFailedAddressTimeout(200, TimeUnit.MILLISECONDS);
+        resolver.reportConnectFailure(first);
+
+        assertArrayEquals(new InetAddress[] { second, third, first }, resolver.resolve(HOST));
+        assertArrayEquals(new InetAddress[] { second, third, first }, resolver.resolve(HOST));
+        assertArrayEquals(new InetAddress[] { third, second, first }, resolver.resolve(HOST));
+
+        Thread.sleep(300);
+        assertArrayEquals(new InetAddress[] { first, second, third }, resolver.resolve(HOST));
+    }
+
+    @Test
+    public void expiredAddressesAreLookedUpAgain() throws Exception {
+        CachingDnsResolver resolver = new CachingDnsResolver(lookup, 100, TimeUnit.MILLISECONDS);
+        resolver.resolve(HOST);
+
+        lookupResult = new InetAddress[] { third };
+        Thread.sleep(200);
+
+        assertArrayEquals(new InetAddress[] { third }, resolver.resolve(HOST));
+        assertEquals(2, lookupCount.get());
+    }
+
+    @Test
+    public void addressesAreRefreshedInTheBackgroundBeforeExpiring() throws Exception {
+        CachingDnsResolver resolver = new CachingDnsResolver(lookup, 400, TimeUnit.MILLISECONDS);
+        resolver.resolve(HOST);
+
+        lookupResult = new InetAddress[] { third };
+        Thread.sleep(330);
+
+        // Still the cached addresses, the new ones are loaded in the background
+        assertEquals(3, resolver.resolve(HOST).length);
+        Thread.sleep(100);
+
+        assertArrayEquals(new InetAddress[] { third }, resolver.resolve(HOST));
+        assertEquals(2, lookupCount.get());
+    }
+
+    @Test
+    public void unknownHostIsCachedUntilItExpires() throws Exception {
+        CachingDnsResolver resolver = new CachingDnsResolver(lookup, 100, TimeUnit.MILLISECONDS);
+        try {
+            resolver.resolve("unknown.example.com");
+            fail("Expected an UnknownHostException");
+        } catch (UnknownHostException expected) {
+        }
+        try {
+            resolver.resolve("unknown.example.com");
+            fail("Expected an UnknownHostException");
+        } catch (UnknownHostException expected) {
+        }
+        assertEquals(1, lookupCount.get());
+
+        Thread.sleep(200);
+        try {
+            resolver.resolve("unknown.example.com");
+            fail("Expected an UnknownHostException");
+        } catch (UnknownHostException expected) {
+        }
+        assertEquals(2, lookupCount.get());
+    }
+}
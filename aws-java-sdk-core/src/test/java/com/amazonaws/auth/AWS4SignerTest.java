@@ -20,6 +20,7 @@ package com.amazonaws.auth;
 
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.Request;
+import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.internal.AWS4SignerUtils;
 
 import org.junit.Assert;
@@ -145,6 +146,44 @@ public class AWS4SignerTest {
         assertEquals(EXPECTED_AMZ_EXPIRES, request.getParameters().get("X-Amz-Expires").get(0));
     }
 
+    /**
+     * Tests that hashing the canonical request as it is built gives the same
+     * signature as building it first, which subclasses that customize the
+     * canonical request get.
+     */
+    @Test
+    public void testCanonicalRequestHashMatchesCanonicalRequest() throws Exception {
+        AWS4Signer customizableSigner = new AWS4Signer() {
+            @Override
+            protected String createCanonicalRequest(SignableRequest<?> request, String contentSha256) {
+                return super.createCanonicalRequest(request, contentSha256);
+            }
+        };
+
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        for (AWS4Signer s : new AWS4Signer[] { signer, customizableSigner }) {
+            s.setOverrideDate(c.getTime());
+            s.setServiceName("demo");
+        }
+
+        AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        Request<?>[] requests = new Request<?>[] { generateBasicRequest(), generateBasicRequest() };
+        for (Request<?> request : requests) {
+            request.setResourcePath("/caf\u00e9/a b/~x*");
+            request.addParameter("prefix", "a/b c\u20ac");
+            request.addParameter("empty", null);
+            request.addHeader("X-Amz-Meta-Unicode", " \ud83d\ude00 \t x\ud83d  ");
+            request.addHeader("Connection", "keep-alive");
+        }
+        signer.sign(requests[0], credentials);
+        customizableSigner.sign(requests[1], credentials);
+
+        assertEquals(requests[1].getHeaders().get("Authorization"),
+                requests[0].getHeaders().get("Authorization"));
+    }
+
     /**
      * Tests that if passed anonymous credentials, signer will not generate a signature
      */
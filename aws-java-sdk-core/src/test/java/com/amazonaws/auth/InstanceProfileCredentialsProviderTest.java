@@ -23,16 +23,22 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.SDKGlobalConfiguration;
+import com.amazonaws.internal.EC2MetadataClient;
 
 /**
  * Unit tests for the InstanceProfileCredentialsProvider.
@@ -243,6 +249,61 @@ public class InstanceProfileCredentialsProviderTest {
         assertNotSame(credentials, newCredentials);
     }
 
+    /**
+     * Tests that a provider refreshing asynchronously keeps serving valid
+     * credentials while the metadata service is unavailable.
+     */
+    @Test
+    public void testAsyncRefresh_MetadataServiceUnavailable() throws Exception {
+        mockServer.setResponseFileName("sessionResponse");
+        mockServer.setAvailableSecurityCredentials("test-credentials");
+
+        CountingMetadataClient metadataClient = new CountingMetadataClient(
+                System.getProperty(SDKGlobalConfiguration.EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY));
+        InstanceProfileCredentialsProvider credentialsProvider =
+                new InstanceProfileCredentialsProvider(true, metadataClient);
+        // The initial background refresh must not run into the stopped service
+        assertTrue("Initial refresh did not complete",
+                metadataClient.succeededRequests.await(10, TimeUnit.SECONDS));
+        AWSCredentials credentials = credentialsProvider.getCredentials();
+        assertEquals("ACCESS_KEY_ID", credentials.getAWSAccessKeyId());
+
+        mockServer.stop();
+        // Still valid, but within the threshold at which a refresh is due
+        credentialsProvider.credentialsExpiration = new Date(System.currentTimeMillis() + (ONE_MINUTE * 5));
+
+        assertSame(credentials, credentialsProvider.getCredentials());
+        assertTrue("No refresh attempt failed",
+                metadataClient.failedRequests.await(10, TimeUnit.SECONDS));
+
+        assertSame(credentials, credentialsProvider.getCredentials());
+        assertEquals("ACCESS_KEY_ID", credentialsProvider.getCredentials().getAWSAccessKeyId());
+    }
+
+    /** Metadata client that counts the requests made to the service. */
+    private static class CountingMetadataClient extends EC2MetadataClient {
+
+        private final CountDownLatch succeededRequests = new CountDownLatch(1);
+
+        private final CountDownLatch failedRequests = new CountDownLatch(1);
+
+        public CountingMetadataClient(String endpointOverride) {
+            super(endpointOverride);
+        }
+
+        @Override
+        public String getDefaultCredentials() throws IOException {
+            try {
+                String response = super.getDefaultCredentials();
+                succeededRequests.countDown();
+                return response;
+            } catch (IOException e) {
+                failedRequests.countDown();
+                throw e;
+            }
+        }
+    }
+
     private class RefreshThread extends Thread{
 
         private InstanceProfileCredentialsProvider provider;
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+
+public class SharedConnectionPoolTest {
+
+    private SharedConnectionPool pool;
+
+    @Before
+    public void setUp() {
+        IdleConnectionReaper.shutdown();
+        pool = new SharedConnectionPool(new ClientConfiguration().withMaxConnections(20));
+    }
+
+    @After
+    public void tearDown() {
+        if (!pool.isShutdown()) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void clientsShareOnePoolRegisteredOnceWithReaper() {
+        AmazonHttpClient first = newClient();
+        AmazonHttpClient second = newClient();
+
+        assertEquals(2, pool.getClientCount());
+        assertEquals(1, IdleConnectionReaper.size());
+
+        first.shutdown();
+        assertEquals(1, pool.getClientCount());
+        assertFalse(pool.isShutdown());
+        assertEquals(1, IdleConnectionReaper.size());
+
+        second.shutdown();
+        assertEquals(0, pool.getClientCount());
+
+        pool.shutdown();
+        assertTrue(pool.isShutdown());
+        assertEquals(0, IdleConnectionReaper.size());
+    }
+
+    @Test
+    public void hostLimits() {
+        URI endpoint = URI.create("https://dynamodb.us-east-1.amazonaws.com");
+        assertEquals(20, pool.getMaxConnections());
+        assertEquals(20, pool.getMaxConnectionsForEndpoint(endpoint));
+
+        pool.setMaxConnectionsPerHost(5);
+        assertEquals(5, pool.getMaxConnectionsForEndpoint(endpoint));
+
+        pool.setMaxConnectionsForEndpoint(endpoint, 10);
+        assertEquals(10, pool.getMaxConnectionsForEndpoint(endpoint));
+        assertEquals(10, pool.getMaxConnectionsForEndpoint(URI.create("https://dynamodb.us-east-1.amazonaws.com:443")));
+        assertEquals(5, pool.getMaxConnectionsForEndpoint(URI.create("http://dynamodb.us-east-1.amazonaws.com")));
+        assertEquals(0, pool.getLeasedConnectionCount(endpoint));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(expected = UnsupportedOperationException.class)
+    public void clientViewCannotChangeLimits() {
+        ConnPoolControl<HttpRoute> view = (ConnPoolControl<HttpRoute>) pool.newClientConnectionManager();
+        assertEquals(20, view.getMaxTotal());
+        try {
+            view.setMaxTotal(100);
+        } finally {
+            assertEquals(20, pool.getMaxConnections());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newClientAfterShutdownFails() {
+        pool.shutdown();
+        newClient();
+    }
+
+    private AmazonHttpClient newClient() {
+        ClientConfiguration config = new ClientConfiguration();
+        config.getApacheHttpClientConfig().setSharedConnectionPool(pool);
+        return new AmazonHttpClient(config);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016. Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.timers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.http.timers.request.HttpRequestAbortTaskTracker;
+import com.amazonaws.http.timers.request.HttpRequestTimer;
+
+public class HashedWheelTimerTest {
+
+    private static final long TICK_MILLIS = 5;
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setup() {
+        // Small wheel so that longer delays need more than one revolution
+        timer = new HashedWheelTimer(TICK_MILLIS, 8, 100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void taskRunsAfterDelay() throws Exception {
+        final long start = System.nanoTime();
+        final AtomicInteger elapsedMillis = new AtomicInteger(-1);
+        ScheduledFuture<?> future = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                elapsedMillis.set((int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+
+        future.get(5, TimeUnit.SECONDS);
+        assertTrue(future.isDone());
+        assertFalse(future.isCancelled());
+        assertTrue("Task ran early: " + elapsedMillis.get(), elapsedMillis.get() >= 100);
+        assertEquals(0, timer.getPendingTimeoutCount());
+    }
+
+    @Test
+    public void canceledTasksNeverRun() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(timer.schedule(task, 50 + i % 100, TimeUnit.MILLISECONDS));
+        }
+        for (ScheduledFuture<?> future : futures) {
+            assertTrue(future.cancel(false));
+            assertTrue(future.isCancelled());
+        }
+        assertEquals(0, timer.getPendingTimeoutCount());
+
+        Thread.sleep(300);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void allTasksRunWhenSpanningSeveralRevolutions() throws Exception {
+        int count = 500;
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            }, i % 200, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, timer.getPendingTimeoutCount());
+    }
+
+    @Test
+    public void workerStopsWhenIdleAndRestartsOnSchedule() throws Exception {
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 10, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+        Thread.sleep(500);
+        assertFalse(timer.isWorkerRunning());
+
+        ScheduledFuture<?> future = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        assertTrue(timer.isWorkerRunning());
+        future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void tasksScheduledWhileWorkerStopsAlwaysRun() throws Exception {
+        // The worker stops as soon as it has nothing to do, so most schedule
+        // calls race with a worker shutting down
+        final HashedWheelTimer idleTimer = new HashedWheelTimer(1, 8, 0, TimeUnit.MILLISECONDS);
+        final Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        final AtomicInteger missed = new AtomicInteger();
+        final int threadCount = 4;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 500; i++) {
+                            // Leaves canceled tasks on the wheel to be cleared on shutdown
+                            ScheduledFuture<?> canceled = idleTimer.schedule(noop, 50, TimeUnit.MILLISECONDS);
+                            ScheduledFuture<?> future = idleTimer.schedule(noop, i % 3, TimeUnit.MILLISECONDS);
+                            if (i % 2 == 0) {
+                                Thread.sleep(2);
+                            }
+                            canceled.cancel(false);
+                            try {
+                                future.get(5, TimeUnit.SECONDS);
+                            } catch (TimeoutException e) {
+                                missed.incrementAndGet();
+                            }
+                        }
+                    } catch (Exception e) {
+                        missed.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(0, missed.get());
+        assertEquals(0, idleTimer.getPendingTimeoutCount());
+    }
+
+    @Test
+    public void requestTimerAbortsRequestOnWheel() throws Exception {
+        HttpRequestTimer requestTimer = new HttpRequestTimer(timer);
+        HttpGet request = new HttpGet("http://localhost");
+        HttpRequestAbortTaskTracker tracker = requestTimer.startTimer(request, 20);
+        Thread.sleep(300);
+        assertTrue(tracker.httpRequestAborted());
+        assertTrue(request.isAborted());
+        // The wheel replaces the executor
+        assertEquals(null, requestTimer.getExecutor());
+    }
+}
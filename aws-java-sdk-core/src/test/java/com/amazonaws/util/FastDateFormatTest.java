@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.junit.Test;
+
+/**
+ * Compares {@link FastDateFormat} with the Joda-Time formatters used by
+ * {@link DateUtils}.
+ */
+public class FastDateFormatTest {
+
+    private static final DateTimeFormatter dateStampFormat =
+            DateTimeFormat.forPattern("yyyyMMdd").withZoneUTC();
+
+    /** 0000-01-01T00:00:00.000Z */
+    private static final long MIN_MILLIS = -62167219200000L;
+
+    /** 9999-12-31T23:59:59.999Z */
+    private static final long MAX_MILLIS = 253402300799999L;
+
+    private static final long[] EDGE_CASES = {
+            0L, -1L, 1L, MIN_MILLIS, MAX_MILLIS,
+            951782400000L, // 2000-02-29
+            -2203891200000L, // 1900-03-01
+            1456790399999L, // 2016-02-29T23:59:59.999
+    };
+
+    @Test
+    public void formatsLikeJodaTime() {
+        for (long millis : testDates()) {
+            assertEquals(DateUtils.iso8601DateFormat.print(millis), FastDateFormat.formatIso8601(millis));
+            assertEquals(DateUtils.rfc822DateFormat.print(millis), FastDateFormat.formatRfc822(millis));
+            assertEquals(DateUtils.compressedIso8601DateFormat.print(millis),
+                    FastDateFormat.formatCompressedIso8601(millis));
+            assertEquals(dateStampFormat.print(millis), FastDateFormat.formatDateStamp(millis));
+        }
+    }
+
+    @Test
+    public void parsesLikeJodaTime() {
+        for (long millis : testDates()) {
+            String iso8601 = DateUtils.iso8601DateFormat.print(millis);
+            assertEquals(iso8601, DateUtils.iso8601DateFormat.parseMillis(iso8601),
+                    FastDateFormat.parseIso8601(iso8601));
+
+            String alternateIso8601 = DateUtils.alternateIso8601DateFormat.print(millis);
+            assertEquals(alternateIso8601, DateUtils.alternateIso8601DateFormat.parseMillis(alternateIso8601),
+                    FastDateFormat.parseIso8601(alternateIso8601));
+
+            String rfc822 = DateUtils.rfc822DateFormat.print(millis);
+            assertEquals(rfc822, DateUtils.rfc822DateFormat.parseMillis(rfc822), FastDateFormat.parseRfc822(rfc822));
+
+            String compressed = DateUtils.compressedIso8601DateFormat.print(millis);
+            assertEquals(compressed, DateUtils.compressedIso8601DateFormat.parseMillis(compressed),
+                    FastDateFormat.parseCompressedIso8601(compressed));
+        }
+    }
+
+    @Test
+    public void parsesShortFractions() {
+        assertEquals(DateUtils.iso8601DateFormat.parseMillis("2016-07-01T10:20:30.5Z"),
+                FastDateFormat.parseIso8601("2016-07-01T10:20:30.5Z"));
+        assertEquals(DateUtils.iso8601DateFormat.parseMillis("2016-07-01T10:20:30.05Z"),
+                FastDateFormat.parseIso8601("2016-07-01T10:20:30.05Z"));
+    }
+
+    @Test
+    public void unusualInputsAreLeftToJodaTime() {
+        String[] inputs = {
+                "2014-03-06T14:28:58.000Z.000Z",
+                "2014-03-06T14:28:58.000+01:00",
+                "2014-03-06T14:28:58.0000Z",
+                "2014-03-06T14:28:58.Z",
+                "2014-02-30T14:28:58.000Z",
+                "2014-03-06T24:00:00.000Z",
+                "292278994-08-17T07:12:55.807Z",
+                "2014-03-06 14:28:58.000Z",
+        };
+        for (String input : inputs) {
+            assertEquals(input, FastDateFormat.UNPARSEABLE, FastDateFormat.parseIso8601(input));
+        }
+        // Day of week doesn't match the date
+        assertEquals(FastDateFormat.UNPARSEABLE, FastDateFormat.parseRfc822("Sat, 16 May 2014 23:56:46 GMT"));
+        assertEquals(FastDateFormat.UNPARSEABLE, FastDateFormat.parseRfc822("Fri, 16 Foo 2014 23:56:46 GMT"));
+        assertEquals(FastDateFormat.UNPARSEABLE, FastDateFormat.parseCompressedIso8601("20140306T142858"));
+
+        assertNull(FastDateFormat.formatIso8601(MIN_MILLIS - 1));
+        assertNull(FastDateFormat.formatRfc822(MAX_MILLIS + 1));
+    }
+
+    @Test
+    public void cachedFormatsChangeEverySecond() {
+        long millis = 1463443006000L;
+        assertEquals("Mon, 16 May 2016 23:56:46 GMT", FastDateFormat.formatRfc822(millis));
+        assertEquals("Mon, 16 May 2016 23:56:46 GMT", FastDateFormat.formatRfc822(millis + 999));
+        assertEquals("Mon, 16 May 2016 23:56:47 GMT", FastDateFormat.formatRfc822(millis + 1000));
+        assertEquals("20160516T235646Z", FastDateFormat.formatCompressedIso8601(millis + 999));
+        assertEquals("20160516T235647Z", FastDateFormat.formatCompressedIso8601(millis + 1000));
+    }
+
+    private static long[] testDates() {
+        Random random = new Random(42);
+        long[] dates = new long[EDGE_CASES.length + 10000];
+        System.arraycopy(EDGE_CASES, 0, dates, 0, EDGE_CASES.length);
+        for (int i = EDGE_CASES.length; i < dates.length; i++) {
+            dates[i] = MIN_MILLIS + (long) (random.nextDouble() * (MAX_MILLIS - MIN_MILLIS));
+        }
+        return dates;
+    }
+}
@@ -18,6 +18,9 @@
  */
 package com.amazonaws.util;
 
+import java.net.URLEncoder;
+import java.util.Random;
+
 import org.junit.*;
 
 public class SdkHttpUtilsTest {
@@ -96,6 +99,42 @@ public class SdkHttpUtilsTest {
                             SdkHttpUtils.urlEncode(test, false));
     }
 
+    @Test
+    public void testEncodingNonAscii() {
+        Assert.assertEquals("caf%C3%A9%20%E2%82%AC%F0%9F%98%80",
+                            SdkHttpUtils.urlEncode("caf\u00e9 \u20ac\ud83d\ude00", false));
+        // Unpaired surrogates
+        Assert.assertEquals("%3Fa%3F",
+                            SdkHttpUtils.urlEncode("\ud83da\ude00", false));
+    }
+
+    @Test
+    public void testEncodingMatchesUrlEncoder() throws Exception {
+        Random random = new Random(42);
+        String alphabet = "aZ09-_.~/ +*%7E2F\u00e9\u20ac\ud83d\ude00";
+        for (int i = 0; i < 10000; i++) {
+            StringBuilder test = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                test.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String value = test.toString();
+            Assert.assertEquals(value, urlEncoderEncode(value, false), SdkHttpUtils.urlEncode(value, false));
+            Assert.assertEquals(value, urlEncoderEncode(value, true), SdkHttpUtils.urlEncode(value, true));
+        }
+    }
+
+    /**
+     * The previous implementation of urlEncode, based on URLEncoder.
+     */
+    private static String urlEncoderEncode(String value, boolean path) throws Exception {
+        String encoded = URLEncoder.encode(value, "UTF-8")
+                .replace("+", "%20")
+                .replace("*", "%2A")
+                .replace("%7E", "~");
+        return path ? encoded.replace("%2F", "/") : encoded;
+    }
+
     @Test
     public void testAppendUriNoPath() {
         String host = "foo.com/";
@@ -0,0 +1,471 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.MAX_ITEMS_PER_BATCH;
+import static com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.applyBatchOperationUserAgent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteRetryStrategy;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
+
+/**
+ * Writes a stream of objects to DynamoDB with BatchWriteItem requests issued
+ * concurrently, for loading or deleting more items than fit in memory at once.
+ * Obtained with {@link DynamoDBMapper#newBulkWriter(DynamoDBBulkWriterConfig)}.
+ * <p>
+ * Objects are converted on the calling thread and grouped into batches of up
+ * to 25 items, which are then written by a pool of threads. Writing blocks
+ * once the configured number of batches are pending, so memory use stays
+ * bounded however many objects are written. Unprocessed items of a batch are
+ * retried on their own, according to the
+ * {@link DynamoDBMapperConfig.BatchWriteRetryStrategy} of the mapper, without
+ * holding up the other batches; so are batches rejected because the
+ * provisioned throughput was exceeded. Optionally, the requests are paced so
+ * that the write capacity they consume stays under a given rate.
+ * <p>
+ * Unlike {@link DynamoDBMapper#batchWrite(Iterable, Iterable)}, the values
+ * auto-generated for the objects saved are set on them as soon as they are
+ * submitted, whether or not they end up being written.
+ * <p>
+ * Instances are thread safe. {@link #close()} must be called once all the
+ * objects have been written, so that the threads of the writer are released.
+ */
+public class DynamoDBBulkWriter {
+    private static final Log log = LogFactory.getLog(DynamoDBBulkWriter.class);
+
+    private final DynamoDBMapper mapper;
+    private final DynamoDBMapperConfig mapperConfig;
+    private final AmazonDynamoDB db;
+    /** Null if the rate of writes is not limited. */
+    private final CapacityRateLimiter rateLimiter;
+    private final ScheduledExecutorService executor;
+    /** Bounds the number of batches pending. */
+    private final Semaphore pendingBatchPermits;
+
+    /** The batch being filled up; guarded by this. */
+    private Map<String, List<WriteRequest>> currentBatch = new HashMap<String, List<WriteRequest>>();
+    private int currentBatchSize;
+    private boolean closed;
+
+    /** The number of batches submitted but not completed; guarded by this. */
+    private int pendingBatches;
+
+    private final List<FailedBatch> failedBatches =
+            Collections.synchronizedList(new ArrayList<FailedBatch>());
+
+    private final AtomicLong itemsSubmitted = new AtomicLong();
+    private final AtomicLong itemsWritten = new AtomicLong();
+    private final AtomicLong itemsFailed = new AtomicLong();
+    private final AtomicLong itemsRetried = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    /** In thousandths of capacity units. */
+    private final AtomicLong consumedWriteCapacity = new AtomicLong();
+
+    DynamoDBBulkWriter(DynamoDBMapper mapper, DynamoDBMapperConfig mapperConfig,
+            AmazonDynamoDB db, DynamoDBBulkWriterConfig writerConfig) {
+        writerConfig.validate();
+        this.mapper = mapper;
+        this.mapperConfig = mapperConfig;
+        this.db = db;
+        this.rateLimiter = writerConfig.getMaxWriteCapacityPerSecond() > 0
+                ? new CapacityRateLimiter(writerConfig.getMaxWriteCapacityPerSecond())
+                : null;
+        this.executor = new ScheduledThreadPoolExecutor(writerConfig.getConcurrency());
+        this.pendingBatchPermits = new Semaphore(writerConfig.getMaxPendingBatches());
+    }
+
+    /**
+     * Saves the given object, blocking if too many batches are pending.
+     */
+    public void save(Object object) {
+        final List<DynamoDBMapper.ValueUpdate> inMemoryUpdates =
+                new LinkedList<DynamoDBMapper.ValueUpdate>();
+        final String tableName = mapper.getTableName(object.getClass(), object, mapperConfig);
+        final WriteRequest request = mapper.newPutWriteRequest(
+                object, tableName, mapperConfig, inMemoryUpdates);
+        for (DynamoDBMapper.ValueUpdate update : inMemoryUpdates) {
+            update.apply();
+        }
+        add(tableName, request);
+    }
+
+    /**
+     * Deletes the given object, blocking if too many batches are pending.
+     */
+    public void delete(Object object) {
+        final String tableName = mapper.getTableName(object.getClass(), object, mapperConfig);
+        add(tableName, mapper.newDeleteWriteRequest(object, mapperConfig));
+    }
+
+    /**
+     * Saves every object returned by the given iterator, which is consumed
+     * only as fast as the objects can be written.
+     */
+    public void saveAll(Iterator<?> objects) {
+        while (objects.hasNext()) {
+            save(objects.next());
+        }
+    }
+
+    /**
+     * Deletes every object returned by the given iterator, which is consumed
+     * only as fast as the objects can be deleted.
+     */
+    public void deleteAll(Iterator<?> objects) {
+        while (objects.hasNext()) {
+            delete(objects.next());
+        }
+    }
+
+    /**
+     * Submits the objects written so far that have been held back to fill up
+     * a batch, without waiting for them to be written.
+     */
+    public void flush() {
+        final Map<String, List<WriteRequest>> batch;
+        synchronized (this) {
+            checkNotClosed();
+            batch = takeCurrentBatch();
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+    }
+
+    /**
+     * Writes the objects held back, waits for every pending batch to complete,
+     * and releases the threads of this writer.
+     *
+     * @return the batches that could not be written, if any, along with the
+     *         reason why
+     */
+    public List<FailedBatch> close() {
+        final Map<String, List<WriteRequest>> batch;
+        synchronized (this) {
+            if (closed) {
+                return getFailedBatches();
+            }
+            closed = true;
+            batch = takeCurrentBatch();
+        }
+        try {
+            if (batch != null) {
+                submit(batch);
+            }
+            synchronized (this) {
+                while (pendingBatches > 0) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return getFailedBatches();
+    }
+
+    /**
+     * Returns the batches that could not be written so far, along with the
+     * reason why.
+     */
+    public List<FailedBatch> getFailedBatches() {
+        synchronized (failedBatches) {
+            return new ArrayList<FailedBatch>(failedBatches);
+        }
+    }
+
+    /** Returns the number of objects saved or deleted with this writer. */
+    public long getItemsSubmitted() {
+        return itemsSubmitted.get();
+    }
+
+    /** Returns the number of items DynamoDB has processed. */
+    public long getItemsWritten() {
+        return itemsWritten.get();
+    }
+
+    /** Returns the number of items in the failed batches. */
+    public long getItemsFailed() {
+        return itemsFailed.get();
+    }
+
+    /**
+     * Returns the number of times items have been retried, as they were left
+     * unprocessed or their request was throttled.
+     */
+    public long getItemsRetried() {
+        return itemsRetried.get();
+    }
+
+    /** Returns the number of BatchWriteItem requests made. */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the write capacity units consumed by the requests made, as
+     * reported by DynamoDB.
+     */
+    public double getConsumedWriteCapacity() {
+        return consumedWriteCapacity.get() / 1000.0;
+    }
+
+    private void add(String tableName, WriteRequest request) {
+        final Map<String, List<WriteRequest>> batch;
+        synchronized (this) {
+            checkNotClosed();
+            List<WriteRequest> requests = currentBatch.get(tableName);
+            if (requests == null) {
+                requests = new ArrayList<WriteRequest>();
+                currentBatch.put(tableName, requests);
+            }
+            requests.add(request);
+            currentBatchSize++;
+            itemsSubmitted.incrementAndGet();
+            batch = currentBatchSize == MAX_ITEMS_PER_BATCH ? takeCurrentBatch() : null;
+        }
+        if (batch != null) {
+            submit(batch);
+        }
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("The bulk writer has been closed");
+        }
+    }
+
+    /**
+     * Returns the batch being filled up, if not empty, and counts it as
+     * pending. Must be called holding the lock of this writer.
+     */
+    private Map<String, List<WriteRequest>> takeCurrentBatch() {
+        if (currentBatchSize == 0) {
+            return null;
+        }
+        final Map<String, List<WriteRequest>> batch = currentBatch;
+        currentBatch = new HashMap<String, List<WriteRequest>>();
+        currentBatchSize = 0;
+        pendingBatches++;
+        return batch;
+    }
+
+    private void submit(Map<String, List<WriteRequest>> batch) {
+        try {
+            pendingBatchPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            final AmazonClientException ace = new AmazonClientException(e.getMessage(), e);
+            fail(batch, ace);
+            batchCompleted(false);
+            throw ace;
+        }
+        executor.execute(new BatchWriteTask(new PendingBatch(), batch, 0));
+    }
+
+    private void batchCompleted(boolean releasePermit) {
+        if (releasePermit) {
+            pendingBatchPermits.release();
+        }
+        synchronized (this) {
+            if (--pendingBatches == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void fail(Map<String, List<WriteRequest>> items, Exception e) {
+        final FailedBatch failedBatch = new FailedBatch();
+        failedBatch.setUnprocessedItems(items);
+        failedBatch.setException(e);
+        failedBatches.add(failedBatch);
+        itemsFailed.addAndGet(count(items));
+    }
+
+    private static int count(Map<String, List<WriteRequest>> items) {
+        int count = 0;
+        for (List<WriteRequest> requests : items.values()) {
+            count += requests.size();
+        }
+        return count;
+    }
+
+    /**
+     * Splits the given items in two halves.
+     */
+    private static List<Map<String, List<WriteRequest>>> split(
+            Map<String, List<WriteRequest>> items) {
+        final int half = count(items) / 2;
+        final Map<String, List<WriteRequest>> first = new HashMap<String, List<WriteRequest>>();
+        final Map<String, List<WriteRequest>> second = new HashMap<String, List<WriteRequest>>();
+        int n = 0;
+        for (Map.Entry<String, List<WriteRequest>> entry : items.entrySet()) {
+            for (WriteRequest request : entry.getValue()) {
+                final Map<String, List<WriteRequest>> target = n++ < half ? first : second;
+                List<WriteRequest> requests = target.get(entry.getKey());
+                if (requests == null) {
+                    requests = new ArrayList<WriteRequest>();
+                    target.put(entry.getKey(), requests);
+                }
+                requests.add(request);
+            }
+        }
+        final List<Map<String, List<WriteRequest>>> halves =
+                new ArrayList<Map<String, List<WriteRequest>>>(2);
+        halves.add(first);
+        halves.add(second);
+        return halves;
+    }
+
+    /**
+     * A batch as submitted, which completes once all the parts it has been
+     * split into are written or have failed.
+     */
+    private final class PendingBatch {
+        private final AtomicInteger parts = new AtomicInteger(1);
+
+        void split() {
+            parts.incrementAndGet();
+        }
+
+        void partCompleted() {
+            if (parts.decrementAndGet() == 0) {
+                batchCompleted(true);
+            }
+        }
+    }
+
+    private final class BatchWriteTask implements Runnable {
+        private final PendingBatch batch;
+        private final Map<String, List<WriteRequest>> items;
+        private final int retries;
+
+        BatchWriteTask(PendingBatch batch, Map<String, List<WriteRequest>> items, int retries) {
+            this.batch = batch;
+            this.items = items;
+            this.retries = retries;
+        }
+
+        @Override
+        public void run() {
+            try {
+                write();
+            } catch (RuntimeException e) {
+                fail(items, e);
+                batch.partCompleted();
+            }
+        }
+
+        private void write() {
+            // One write capacity unit per item until DynamoDB says otherwise
+            final int estimate = count(items);
+            if (rateLimiter != null) {
+                rateLimiter.acquire(estimate);
+            }
+            final BatchWriteItemResult result;
+            try {
+                requestCount.incrementAndGet();
+                result = db.batchWriteItem(applyBatchOperationUserAgent(
+                        new BatchWriteItemRequest()
+                                .withRequestItems(items)
+                                .withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL)));
+            } catch (AmazonServiceException e) {
+                if (rateLimiter != null) {
+                    rateLimiter.adjust(-estimate);
+                }
+                if (RetryUtils.isRequestEntityTooLargeException(e) && estimate > 1) {
+                    log.debug("Splitting a batch of " + estimate + " items too large to be written at once");
+                    batch.split();
+                    for (Map<String, List<WriteRequest>> half : split(items)) {
+                        executor.execute(new BatchWriteTask(batch, half, retries));
+                    }
+                    return;
+                }
+                if (RetryUtils.isThrottlingException(e)) {
+                    retryLater(items, e);
+                    return;
+                }
+                fail(items, e);
+                batch.partCompleted();
+                return;
+            }
+
+            final Map<String, List<WriteRequest>> unprocessedItems = result.getUnprocessedItems();
+            final int unprocessed = unprocessedItems == null ? 0 : count(unprocessedItems);
+            final double consumed = result.getConsumedCapacity() == null
+                    ? estimate - unprocessed
+                    : CapacityRateLimiter.capacityUnits(result.getConsumedCapacity());
+            if (rateLimiter != null) {
+                rateLimiter.adjust(consumed - estimate);
+            }
+            consumedWriteCapacity.addAndGet(Math.round(consumed * 1000));
+            itemsWritten.addAndGet(estimate - unprocessed);
+
+            if (unprocessed == 0) {
+                batch.partCompleted();
+            } else {
+                retryLater(unprocessedItems, null);
+            }
+        }
+
+        /**
+         * Schedules the given items to be written again, as allowed by the
+         * retry strategy of the mapper.
+         */
+        private void retryLater(Map<String, List<WriteRequest>> toRetry, Exception cause) {
+            final BatchWriteRetryStrategy strategy = mapperConfig.getBatchWriteRetryStrategy();
+            final Map<String, List<WriteRequest>> view = Collections.unmodifiableMap(toRetry);
+            final int maxRetries = strategy.getMaxRetryOnUnprocessedItems(view);
+            if (maxRetries >= 0 && retries >= maxRetries) {
+                // Like batchWrite, no exception if the items were left unprocessed
+                fail(toRetry, cause);
+                batch.partCompleted();
+                return;
+            }
+            final long delay = strategy.getDelayBeforeRetryUnprocessedItems(view, retries);
+            itemsRetried.addAndGet(count(toRetry));
+            executor.schedule(new BatchWriteTask(batch, toRetry, retries + 1),
+                    Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+    }
+}
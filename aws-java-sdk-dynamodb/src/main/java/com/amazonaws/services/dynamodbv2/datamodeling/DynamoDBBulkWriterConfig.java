@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+/**
+ * Configuration of a {@link DynamoDBBulkWriter}.
+ */
+public class DynamoDBBulkWriterConfig {
+
+    /**
+     * The maximum number of BatchWriteItem requests in flight.
+     */
+    private int concurrency;
+
+    /** 8 requests */
+    public static final int CONCURRENCY_DEFAULT = 8;
+
+    /**
+     * The maximum number of batches written but not completed yet, including
+     * those waiting to be retried. Writing blocks once it is reached.
+     */
+    private int maxPendingBatches;
+
+    /** 32 batches */
+    public static final int MAX_PENDING_BATCHES_DEFAULT = 32;
+
+    /**
+     * The write capacity units per second the writer aims not to exceed, as
+     * reported by DynamoDB, or zero for no limit.
+     */
+    private double maxWriteCapacityPerSecond;
+
+    /** no limit */
+    public static final double MAX_WRITE_CAPACITY_PER_SECOND_DEFAULT = 0;
+
+    public DynamoDBBulkWriterConfig() {
+        concurrency = CONCURRENCY_DEFAULT;
+        maxPendingBatches = MAX_PENDING_BATCHES_DEFAULT;
+        maxWriteCapacityPerSecond = MAX_WRITE_CAPACITY_PER_SECOND_DEFAULT;
+    }
+
+    /** copy constructor */
+    public DynamoDBBulkWriterConfig(DynamoDBBulkWriterConfig other) {
+        concurrency = other.concurrency;
+        maxPendingBatches = other.maxPendingBatches;
+        maxWriteCapacityPerSecond = other.maxWriteCapacityPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamoDBBulkWriterConfig [concurrency=" + concurrency +
+                ", maxPendingBatches=" + maxPendingBatches +
+                ", maxWriteCapacityPerSecond=" + maxWriteCapacityPerSecond + "]";
+    }
+
+    /**
+     * Checks that the configuration is consistent.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    void validate() {
+        if (concurrency <= 0)
+            throw new IllegalArgumentException("concurrency must be positive");
+        if (maxPendingBatches < concurrency)
+            throw new IllegalArgumentException("maxPendingBatches must not be smaller than concurrency");
+        if (maxWriteCapacityPerSecond < 0 || Double.isNaN(maxWriteCapacityPerSecond))
+            throw new IllegalArgumentException("maxWriteCapacityPerSecond must not be negative");
+    }
+
+    /**
+     * The maximum number of BatchWriteItem requests in flight.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * The maximum number of BatchWriteItem requests in flight.
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * The maximum number of BatchWriteItem requests in flight.
+     */
+    public DynamoDBBulkWriterConfig withConcurrency(int concurrency) {
+        setConcurrency(concurrency);
+        return this;
+    }
+
+    /**
+     * The maximum number of batches written but not completed yet, including
+     * those waiting to be retried. Writing blocks once it is reached.
+     */
+    public int getMaxPendingBatches() {
+        return maxPendingBatches;
+    }
+
+    /**
+     * The maximum number of batches written but not completed yet, including
+     * those waiting to be retried. Writing blocks once it is reached.
+     */
+    public void setMaxPendingBatches(int maxPendingBatches) {
+        this.maxPendingBatches = maxPendingBatches;
+    }
+
+    /**
+     * The maximum number of batches written but not completed yet, including
+     * those waiting to be retried. Writing blocks once it is reached.
+     */
+    public DynamoDBBulkWriterConfig withMaxPendingBatches(int maxPendingBatches) {
+        setMaxPendingBatches(maxPendingBatches);
+        return this;
+    }
+
+    /**
+     * The write capacity units per second the writer aims not to exceed, as
+     * reported by DynamoDB, or zero for no limit.
+     */
+    public double getMaxWriteCapacityPerSecond() {
+        return maxWriteCapacityPerSecond;
+    }
+
+    /**
+     * The write capacity units per second the writer aims not to exceed, as
+     * reported by DynamoDB, or zero for no limit.
+     */
+    public void setMaxWriteCapacityPerSecond(double maxWriteCapacityPerSecond) {
+        this.maxWriteCapacityPerSecond = maxWriteCapacityPerSecond;
+    }
+
+    /**
+     * The write capacity units per second the writer aims not to exceed, as
+     * reported by DynamoDB, or zero for no limit.
+     */
+    public DynamoDBBulkWriterConfig withMaxWriteCapacityPerSecond(double maxWriteCapacityPerSecond) {
+        setMaxWriteCapacityPerSecond(maxWriteCapacityPerSecond);
+        return this;
+    }
+}
@@ -78,6 +78,7 @@ import com.amazonaws.services.dynamodbv2.model.Select;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 import com.amazonaws.services.s3.model.Region;
 import com.amazonaws.util.VersionInfoUtils;
 
@@ -397,6 +398,14 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
             .with(S3ClientCache.class, this.s3cc));
     }
 
+    /**
+     * Returns the model this mapper uses to convert objects of the given class
+     * to and from DynamoDB items, with the mapper's default configuration.
+     */
+    public <T> DynamoDBMapperTableModel<T> getTableModel(Class<T> clazz) {
+        return getTableModel(clazz, config);
+    }
+
     private <T extends Object> DynamoDBMapperTableModel<T> getTableModel(Class<T> clazz, DynamoDBMapperConfig config) {
         return this.models.getModelFactory(config).getTableModel(clazz);
     }
@@ -1153,53 +1162,24 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         List<ValueUpdate> inMemoryUpdates = new LinkedList<ValueUpdate>();
         for ( Object toWrite : objectsToWrite ) {
-            Class<Object> clazz = (Class<Object>)toWrite.getClass();
-            String tableName = getTableName(clazz, toWrite, config);
-
-            Map<String, AttributeValue> attributeValues = new HashMap<String, AttributeValue>();
-
-            // Look at every getter and construct a value object for it
-            final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
-            for ( final DynamoDBMapperFieldModel<Object,Object> field : model.fields() ) {
-                AttributeValue currentValue = null;
-                if ( field.canGenerate(toWrite, config.getSaveBehavior(), model) && !field.versioned() ) {
-                    currentValue = field.generateAndConvert(toWrite);
-                    inMemoryUpdates.add(new ValueUpdate(field, currentValue, toWrite));
-                } else {
-                    currentValue = field.getAndConvert(toWrite);
-                }
-                if ( currentValue != null ) {
-                    attributeValues.put(field.name(), currentValue);
-                }
-            }
+            String tableName = getTableName(toWrite.getClass(), toWrite, config);
 
             if ( !requestItems.containsKey(tableName) ) {
                 requestItems.put(tableName, new LinkedList<WriteRequest>());
             }
 
-            AttributeTransformer.Parameters<?> parameters =
-                toParameters(attributeValues, clazz, tableName, config);
-
             requestItems.get(tableName).add(
-                new WriteRequest().withPutRequest(
-                    new PutRequest().withItem(
-                        transformAttributes(parameters))));
+                newPutWriteRequest(toWrite, tableName, config, inMemoryUpdates));
         }
 
         for ( Object toDelete : objectsToDelete ) {
-            Class<Object> clazz = (Class<Object>)toDelete.getClass();
-
-            String tableName = getTableName(clazz, toDelete, config);
-            final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
-
-            Map<String, AttributeValue> key = model.mapKey(toDelete);
+            String tableName = getTableName(toDelete.getClass(), toDelete, config);
 
             if ( !requestItems.containsKey(tableName) ) {
                 requestItems.put(tableName, new LinkedList<WriteRequest>());
             }
 
-            requestItems.get(tableName).add(
-                    new WriteRequest().withDeleteRequest(new DeleteRequest().withKey(key)));
+            requestItems.get(tableName).add(newDeleteWriteRequest(toDelete, config));
         }
 
         // Break into chunks of 25 items and make service requests to DynamoDB
@@ -1256,6 +1236,51 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         return totalFailedBatches;
     }
 
+    /**
+     * Returns the batch write request saving the given object. The values
+     * generated for the object are added to the given list, to be set on the
+     * object once it is written.
+     */
+    WriteRequest newPutWriteRequest(Object toWrite, String tableName,
+            DynamoDBMapperConfig config, List<ValueUpdate> inMemoryUpdates) {
+        Class<Object> clazz = (Class<Object>)toWrite.getClass();
+
+        Map<String, AttributeValue> attributeValues = new HashMap<String, AttributeValue>();
+
+        // Look at every getter and construct a value object for it
+        final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
+        for ( final DynamoDBMapperFieldModel<Object,Object> field : model.fields() ) {
+            AttributeValue currentValue = null;
+            if ( field.canGenerate(toWrite, config.getSaveBehavior(), model) && !field.versioned() ) {
+                currentValue = field.generateAndConvert(toWrite);
+                inMemoryUpdates.add(new ValueUpdate(field, currentValue, toWrite));
+            } else {
+                currentValue = field.getAndConvert(toWrite);
+            }
+            if ( currentValue != null ) {
+                attributeValues.put(field.name(), currentValue);
+            }
+        }
+
+        AttributeTransformer.Parameters<?> parameters =
+            toParameters(attributeValues, clazz, tableName, config);
+
+        return new WriteRequest().withPutRequest(
+                new PutRequest().withItem(
+                    transformAttributes(parameters)));
+    }
+
+    /**
+     * Returns the batch write request deleting the given object.
+     */
+    WriteRequest newDeleteWriteRequest(Object toDelete, DynamoDBMapperConfig config) {
+        Class<Object> clazz = (Class<Object>)toDelete.getClass();
+        final DynamoDBMapperTableModel<Object> model = getTableModel(clazz, config);
+
+        return new WriteRequest().withDeleteRequest(
+                new DeleteRequest().withKey(model.mapKey(toDelete)));
+    }
+
     /**
      * Process one batch of requests(max 25). It will divide the batch if
      * receives request too large exception(the total size of the request is beyond 1M).
@@ -1532,7 +1557,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         
     }
 
-    private final class ValueUpdate {
+    final class ValueUpdate {
         private final DynamoDBMapperFieldModel<Object,Object> field;
         private final AttributeValue newValue;
         private final Object target;
@@ -1588,8 +1613,9 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         ScanRequest scanRequest = createScanRequestFromExpression(clazz, scanExpression, config);
 
-        ScanResult scanResult = db.scan(applyUserAgent(scanRequest));
-        return new PaginatedScanList<T>(this, clazz, db, scanRequest, scanResult, config.getPaginationLoadingStrategy(), config);
+        ScanResult scanResult = doScan(db, scanRequest, scanExpression.getReadCapacityLimiter());
+        return new PaginatedScanList<T>(this, clazz, db, scanRequest, scanResult, config.getPaginationLoadingStrategy(), config,
+                scanExpression.getReadCapacityLimiter());
     }
 
     @Override
@@ -1608,7 +1634,8 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         // Create hard copies of the original scan request with difference segment number.
         List<ScanRequest> parallelScanRequests = createParallelScanRequestsFromExpression(clazz, scanExpression, totalSegments, config);
-        ParallelScanTask parallelScanTask = new ParallelScanTask(db, parallelScanRequests);
+        ParallelScanTask parallelScanTask = new ParallelScanTask(db, parallelScanRequests,
+                scanExpression.getReadCapacityLimiter());
 
         return new PaginatedParallelScanList<T>(this, clazz, db, parallelScanTask, config.getPaginationLoadingStrategy(), config);
     }
@@ -1621,7 +1648,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         ScanRequest scanRequest = createScanRequestFromExpression(clazz, scanExpression, config);
 
-        ScanResult scanResult = db.scan(applyUserAgent(scanRequest));
+        ScanResult scanResult = doScan(db, scanRequest, scanExpression.getReadCapacityLimiter());
         ScanResultPage<T> result = new ScanResultPage<T>();
         List<AttributeTransformer.Parameters<T>> parameters =
             toParameters(scanResult.getItems(), clazz, scanRequest.getTableName(), config);
@@ -1653,8 +1680,9 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         QueryRequest queryRequest = createQueryRequestFromExpression(clazz, queryExpression, config);
 
-        QueryResult queryResult = db.query(applyUserAgent(queryRequest));
-        return new PaginatedQueryList<T>(this, clazz, db, queryRequest, queryResult, config.getPaginationLoadingStrategy(), config);
+        QueryResult queryResult = doQuery(db, queryRequest, queryExpression.getReadCapacityLimiter());
+        return new PaginatedQueryList<T>(this, clazz, db, queryRequest, queryResult, config.getPaginationLoadingStrategy(), config,
+                queryExpression.getReadCapacityLimiter());
     }
 
     @Override
@@ -1670,7 +1698,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
 
         QueryRequest queryRequest = createQueryRequestFromExpression(clazz, queryExpression, config);
 
-        QueryResult queryResult = db.query(applyUserAgent(queryRequest));
+        QueryResult queryResult = doQuery(db, queryRequest, queryExpression.getReadCapacityLimiter());
         QueryResultPage<T> result = new QueryResultPage<T>();
         List<AttributeTransformer.Parameters<T>> parameters =
             toParameters(queryResult.getItems(), clazz, queryRequest.getTableName(), config);
@@ -1700,7 +1728,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         int count = 0;
         ScanResult scanResult = null;
         do {
-            scanResult = db.scan(applyUserAgent(scanRequest));
+            scanResult = doScan(db, scanRequest, scanExpression.getReadCapacityLimiter());
             count += scanResult.getCount();
             scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
         } while (scanResult.getLastEvaluatedKey() != null);
@@ -1724,7 +1752,7 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         int count = 0;
         QueryResult queryResult = null;
         do {
-            queryResult = db.query(applyUserAgent(queryRequest));
+            queryResult = doQuery(db, queryRequest, queryExpression.getReadCapacityLimiter());
             count += queryResult.getCount();
             queryRequest.setExclusiveStartKey(queryResult.getLastEvaluatedKey());
         } while (queryResult.getLastEvaluatedKey() != null);
@@ -2375,6 +2403,28 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         return request;
     }
 
+    /**
+     * Scans a page, paced by the given limiter if not null.
+     */
+    static ScanResult doScan(AmazonDynamoDB db, ScanRequest scanRequest,
+            CapacityRateLimiter readCapacityLimiter) {
+        applyUserAgent(scanRequest);
+        return readCapacityLimiter == null
+             ? db.scan(scanRequest)
+             : readCapacityLimiter.scan(db, scanRequest);
+    }
+
+    /**
+     * Queries a page, paced by the given limiter if not null.
+     */
+    static QueryResult doQuery(AmazonDynamoDB db, QueryRequest queryRequest,
+            CapacityRateLimiter readCapacityLimiter) {
+        applyUserAgent(queryRequest);
+        return readCapacityLimiter == null
+             ? db.query(queryRequest)
+             : readCapacityLimiter.query(db, queryRequest);
+    }
+
     static <X extends AmazonWebServiceRequest> X applyBatchOperationUserAgent(X request) {
         request.getRequestClientOptions().appendUserAgent(USER_AGENT_BATCH_OPERATION);
         return request;
@@ -2477,4 +2527,25 @@ public class DynamoDBMapper extends AbstractDynamoDBMapper {
         return new DynamoDBTableMapper<T,H,R>(getTableModel(clazz, config), this, this.db);
     }
 
+    /**
+     * Creates a new bulk writer using this mapper to write objects
+     * concurrently, with the default configuration.
+     * @return The bulk writer, which must be closed once done.
+     * @see DynamoDBBulkWriter
+     */
+    public DynamoDBBulkWriter newBulkWriter() {
+        return newBulkWriter(new DynamoDBBulkWriterConfig());
+    }
+
+    /**
+     * Creates a new bulk writer using this mapper to write objects
+     * concurrently.
+     * @param writerConfig The configuration of the writer.
+     * @return The bulk writer, which must be closed once done.
+     * @see DynamoDBBulkWriter
+     */
+    public DynamoDBBulkWriter newBulkWriter(DynamoDBBulkWriterConfig writerConfig) {
+        return new DynamoDBBulkWriter(this, config, this.db, new DynamoDBBulkWriterConfig(writerConfig));
+    }
+
 }
@@ -23,6 +23,7 @@ import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 
 /**
  * A query expression.
@@ -135,6 +136,8 @@ public class DynamoDBQueryExpression <T> {
      */
     private String returnConsumedCapacity;
 
+    private CapacityRateLimiter readCapacityLimiter;
+
     /**
      * Returns whether this query uses consistent reads.
      */
@@ -1320,4 +1323,37 @@ public class DynamoDBQueryExpression <T> {
         this.returnConsumedCapacity = returnConsumedCapacity.toString();
         return this;
     }
+
+    /**
+     * Returns the limiter pacing the pages of this query to a target read
+     * capacity rate; or null if pages are read as fast as possible.
+     */
+    public CapacityRateLimiter getReadCapacityLimiter() {
+        return readCapacityLimiter;
+    }
+
+    /**
+     * Sets the limiter pacing the pages of this query so that the read
+     * capacity they consume stays close to its target rate. The consumed
+     * capacity is then requested from DynamoDB with every page. The same
+     * limiter can be shared by several operations, in
+     * which case the target rate applies to all of them together.
+     *
+     * @see CapacityRateLimiter#forProvisionedReadCapacity(com.amazonaws.services.dynamodbv2.AmazonDynamoDB, String, String, double)
+     */
+    public void setReadCapacityLimiter(CapacityRateLimiter readCapacityLimiter) {
+        this.readCapacityLimiter = readCapacityLimiter;
+    }
+
+    /**
+     * Sets the limiter pacing the pages of this query to a target read
+     * capacity rate and returns a reference to this object for method
+     * chaining.
+     *
+     * @see #setReadCapacityLimiter(CapacityRateLimiter)
+     */
+    public DynamoDBQueryExpression<T> withReadCapacityLimiter(CapacityRateLimiter readCapacityLimiter) {
+        this.readCapacityLimiter = readCapacityLimiter;
+        return this;
+    }
 }
@@ -24,6 +24,7 @@ import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 
 /**
  * Options for filtering results from a scan operation. For example, callers can
@@ -181,6 +182,8 @@ public class DynamoDBScanExpression {
 
     private Boolean consistentRead;
 
+    private CapacityRateLimiter readCapacityLimiter;
+
     /**
      * Returns the name of the index to be used by this scan; or null if there
      * is none.
@@ -1012,4 +1015,38 @@ public class DynamoDBScanExpression {
         this.consistentRead = consistentRead;
         return this;
     }
+
+    /**
+     * Returns the limiter pacing the pages of this scan to a target read
+     * capacity rate; or null if pages are read as fast as possible.
+     */
+    public CapacityRateLimiter getReadCapacityLimiter() {
+        return readCapacityLimiter;
+    }
+
+    /**
+     * Sets the limiter pacing the pages of this scan so that the read
+     * capacity they consume stays close to its target rate. The consumed
+     * capacity is then requested from DynamoDB with every page. The same
+     * limiter can be shared by several operations, including
+     * the segments of a parallel scan, in
+     * which case the target rate applies to all of them together.
+     *
+     * @see CapacityRateLimiter#forProvisionedReadCapacity(com.amazonaws.services.dynamodbv2.AmazonDynamoDB, String, String, double)
+     */
+    public void setReadCapacityLimiter(CapacityRateLimiter readCapacityLimiter) {
+        this.readCapacityLimiter = readCapacityLimiter;
+    }
+
+    /**
+     * Sets the limiter pacing the pages of this scan to a target read
+     * capacity rate and returns a reference to this object for method
+     * chaining.
+     *
+     * @see #setReadCapacityLimiter(CapacityRateLimiter)
+     */
+    public DynamoDBScanExpression withReadCapacityLimiter(CapacityRateLimiter readCapacityLimiter) {
+        this.readCapacityLimiter = readCapacityLimiter;
+        return this;
+    }
 }
@@ -20,6 +20,7 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 
 /**
  * Implementation of the List interface that represents the results from a query
@@ -46,6 +47,9 @@ public class PaginatedQueryList<T> extends PaginatedList<T> {
     /** The current results for the last executed query operation */
     private QueryResult queryResult;
 
+    /** Paces the pages fetched; or null if not limited */
+    private final CapacityRateLimiter readCapacityLimiter;
+
     public PaginatedQueryList(
             DynamoDBMapper mapper,
             Class<T> clazz,
@@ -54,12 +58,26 @@ public class PaginatedQueryList<T> extends PaginatedList<T> {
             QueryResult queryResult,
             PaginationLoadingStrategy paginationLoadingStrategy,
             DynamoDBMapperConfig config
+    ) {
+        this(mapper, clazz, dynamo, queryRequest, queryResult, paginationLoadingStrategy, config, null);
+    }
+
+    PaginatedQueryList(
+            DynamoDBMapper mapper,
+            Class<T> clazz,
+            AmazonDynamoDB dynamo,
+            QueryRequest queryRequest,
+            QueryResult queryResult,
+            PaginationLoadingStrategy paginationLoadingStrategy,
+            DynamoDBMapperConfig config,
+            CapacityRateLimiter readCapacityLimiter
     ) {
         super(mapper, clazz, dynamo, paginationLoadingStrategy);
 
         this.queryRequest = queryRequest;
         this.queryResult  = queryResult;
         this.config = config;
+        this.readCapacityLimiter = readCapacityLimiter;
 
 
         allResults.addAll(mapper.marshallIntoObjects(
@@ -83,7 +101,7 @@ public class PaginatedQueryList<T> extends PaginatedList<T> {
     @Override
     protected synchronized List<T> fetchNextPage() {
         queryRequest.setExclusiveStartKey(queryResult.getLastEvaluatedKey());
-        queryResult = dynamo.query(DynamoDBMapper.applyUserAgent(queryRequest));
+        queryResult = DynamoDBMapper.doQuery(dynamo, queryRequest, readCapacityLimiter);
         return mapper.marshallIntoObjects(mapper.toParameters(
                 queryResult.getItems(),
                 clazz,
@@ -20,6 +20,7 @@ import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 
 /**
  * Implementation of the List interface that represents the results from a scan
@@ -46,6 +47,9 @@ public class PaginatedScanList<T> extends PaginatedList<T> {
     /** The current results for the last executed scan operation */
     private ScanResult scanResult;
 
+    /** Paces the pages fetched; or null if not limited */
+    private final CapacityRateLimiter readCapacityLimiter;
+
     public PaginatedScanList(
             DynamoDBMapper mapper,
             Class<T> clazz,
@@ -54,12 +58,26 @@ public class PaginatedScanList<T> extends PaginatedList<T> {
             ScanResult scanResult,
             PaginationLoadingStrategy paginationLoadingStrategy,
             DynamoDBMapperConfig config
+    ) {
+        this(mapper, clazz, dynamo, scanRequest, scanResult, paginationLoadingStrategy, config, null);
+    }
+
+    PaginatedScanList(
+            DynamoDBMapper mapper,
+            Class<T> clazz,
+            AmazonDynamoDB dynamo,
+            ScanRequest scanRequest,
+            ScanResult scanResult,
+            PaginationLoadingStrategy paginationLoadingStrategy,
+            DynamoDBMapperConfig config,
+            CapacityRateLimiter readCapacityLimiter
     ) {
         super(mapper, clazz, dynamo, paginationLoadingStrategy);
 
         this.scanRequest = scanRequest;
         this.scanResult = scanResult;
         this.config = config;
+        this.readCapacityLimiter = readCapacityLimiter;
 
         allResults.addAll(mapper.marshallIntoObjects(
             mapper.toParameters(
@@ -82,7 +100,7 @@ public class PaginatedScanList<T> extends PaginatedList<T> {
     @Override
     protected synchronized List<T> fetchNextPage() {
         scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
-        scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(scanRequest));
+        scanResult = DynamoDBMapper.doScan(dynamo, scanRequest, readCapacityLimiter);
         return mapper.marshallIntoObjects(mapper.toParameters(
             scanResult.getItems(),
             clazz,
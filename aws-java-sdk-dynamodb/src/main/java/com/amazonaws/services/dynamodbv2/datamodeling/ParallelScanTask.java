@@ -28,6 +28,7 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 
 public class ParallelScanTask {
 
@@ -59,13 +60,22 @@ public class ParallelScanTask {
 
     private final AmazonDynamoDB dynamo;
 
+    /** Paces the pages of all the segments; or null if not limited */
+    private final CapacityRateLimiter readCapacityLimiter;
+
     @Deprecated
     public ParallelScanTask(DynamoDBMapper mapper, AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests) {
         this(dynamo, parallelScanRequests);
     }
 
     ParallelScanTask(AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests) {
+        this(dynamo, parallelScanRequests, null);
+    }
+
+    ParallelScanTask(AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests,
+            CapacityRateLimiter readCapacityLimiter) {
         this.dynamo = dynamo;
+        this.readCapacityLimiter = readCapacityLimiter;
         this.parallelScanRequests = parallelScanRequests;
         this.totalSegments = parallelScanRequests.size();
         executorService = Executors.newCachedThreadPool();
@@ -220,7 +230,7 @@ public class ParallelScanTask {
         } else {
             segmentScanRequest.setExclusiveStartKey(null);
         }
-        ScanResult scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(segmentScanRequest));
+        ScanResult scanResult = DynamoDBMapper.doScan(dynamo, segmentScanRequest, readCapacityLimiter);
 
         /**
          * Cache the scan result in segmentScanResults.
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 
 import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.document.AttributeUpdate;
 import com.amazonaws.services.dynamodbv2.document.Expected;
 import com.amazonaws.services.dynamodbv2.document.IncompatibleTypeException;
@@ -40,6 +41,11 @@ import com.amazonaws.services.dynamodbv2.model.AttributeValueUpdate;
 import com.amazonaws.services.dynamodbv2.model.ComparisonOperator;
 import com.amazonaws.services.dynamodbv2.model.Condition;
 import com.amazonaws.services.dynamodbv2.model.ExpectedAttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 import com.amazonaws.util.VersionInfoUtils;
 
 /**
@@ -423,6 +429,26 @@ public enum InternalUtils {
         }
     }
 
+    /**
+     * Scans a page, paced by the given limiter if not null.
+     */
+    static ScanResult scan(AmazonDynamoDB client, ScanRequest request,
+            CapacityRateLimiter limiter) {
+        return limiter == null
+             ? client.scan(request)
+             : limiter.scan(client, request);
+    }
+
+    /**
+     * Queries a page, paced by the given limiter if not null.
+     */
+    static QueryResult query(AmazonDynamoDB client, QueryRequest request,
+            CapacityRateLimiter limiter) {
+        return limiter == null
+             ? client.query(request)
+             : limiter.query(client, request);
+    }
+
     /**
      * Returns the low level representation of a collection of <code>Expected</code>.
      */
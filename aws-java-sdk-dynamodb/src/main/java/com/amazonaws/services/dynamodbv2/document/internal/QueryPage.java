@@ -91,7 +91,8 @@ class QueryPage extends Page<Item, QueryOutcome> {
             request.setLimit(nextLimit);
         }
         request.setExclusiveStartKey(lastEvaluatedKey);
-        QueryResult result = client.query(request);
+        QueryResult result = InternalUtils.query(client, request,
+                spec.getReadCapacityLimiter());
         final int nextIndex = index + this.size();
         return new QueryPage(client, spec, request, nextIndex,
                 new QueryOutcome(result));
@@ -50,7 +50,8 @@ class ScanCollection extends ItemCollection<ScanOutcome> {
                 spec.getMaxResultSize(),
                 spec.getMaxPageSize()));
 
-        ScanResult result = client.scan(request);
+        ScanResult result = InternalUtils.scan(client, request,
+                spec.getReadCapacityLimiter());
         ScanOutcome outcome = new ScanOutcome(result);
         setLastLowLevelResult(outcome);
         return new ScanPage(client, spec, request, 0, outcome);
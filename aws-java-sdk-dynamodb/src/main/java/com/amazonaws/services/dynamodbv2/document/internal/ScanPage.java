@@ -93,7 +93,8 @@ class ScanPage extends Page<Item, ScanOutcome> {
         }
         request.setExclusiveStartKey(lastEvaluatedKey);
         // fire off request to the server side
-        ScanResult result = client.scan(request);
+        ScanResult result = InternalUtils.scan(client, request,
+                spec.getReadCapacityLimiter());
         final int nextIndex = index + this.size();
         return new ScanPage(client, spec, request, nextIndex, 
                 new ScanOutcome(result));
@@ -34,6 +34,7 @@ import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.QueryRequest;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 import com.amazonaws.services.dynamodbv2.xspec.QueryExpressionSpec;
 
 /**
@@ -48,6 +49,8 @@ public class QuerySpec extends AbstractCollectionSpec<QueryRequest> {
 
     private Collection<KeyAttribute> exclusiveStartKey;
 
+    private CapacityRateLimiter readCapacityLimiter;
+
     public QuerySpec() {
         super(new QueryRequest());
     }
@@ -229,6 +232,26 @@ public class QuerySpec extends AbstractCollectionSpec<QueryRequest> {
         return getRequest().getSelect();
     }
 
+    /**
+     * Returns the limiter pacing the pages of this query; or null if pages are
+     * read as fast as possible.
+     */
+    public CapacityRateLimiter getReadCapacityLimiter() {
+        return readCapacityLimiter;
+    }
+
+    /**
+     * Paces the pages of this query so that the read capacity they consume
+     * stays close to the target rate of the given limiter. The consumed
+     * capacity is then requested with every page.
+     *
+     * @see CapacityRateLimiter#forProvisionedReadCapacity(com.amazonaws.services.dynamodbv2.AmazonDynamoDB, String, String, double)
+     */
+    public QuerySpec withReadCapacityLimiter(CapacityRateLimiter readCapacityLimiter) {
+        this.readCapacityLimiter = readCapacityLimiter;
+        return this;
+    }
+
     // Exclusive start key
 
     public Collection<KeyAttribute> getExclusiveStartKey() {
@@ -33,6 +33,7 @@ import com.amazonaws.services.dynamodbv2.model.ConditionalOperator;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.Select;
+import com.amazonaws.services.dynamodbv2.util.CapacityRateLimiter;
 import com.amazonaws.services.dynamodbv2.xspec.ScanExpressionSpec;
 
 /**
@@ -45,6 +46,8 @@ public class ScanSpec extends AbstractCollectionSpec<ScanRequest> {
 
     private Collection<KeyAttribute> exclusiveStartKey;
 
+    private CapacityRateLimiter readCapacityLimiter;
+
     public ScanSpec() {
         super(new ScanRequest());
     }
@@ -267,6 +270,27 @@ public class ScanSpec extends AbstractCollectionSpec<ScanRequest> {
         return this;
     }
 
+    /**
+     * Returns the limiter pacing the pages of this scan; or null if pages are
+     * read as fast as possible.
+     */
+    public CapacityRateLimiter getReadCapacityLimiter() {
+        return readCapacityLimiter;
+    }
+
+    /**
+     * Paces the pages of this scan so that the read capacity they consume
+     * stays close to the target rate of the given limiter. The consumed
+     * capacity is then requested with every page. The same limiter can be shared by the segments of a
+     * parallel scan.
+     *
+     * @see CapacityRateLimiter#forProvisionedReadCapacity(com.amazonaws.services.dynamodbv2.AmazonDynamoDB, String, String, double)
+     */
+    public ScanSpec withReadCapacityLimiter(CapacityRateLimiter readCapacityLimiter) {
+        this.readCapacityLimiter = readCapacityLimiter;
+        return this;
+    }
+
     // Exclusive start key
 
     /**
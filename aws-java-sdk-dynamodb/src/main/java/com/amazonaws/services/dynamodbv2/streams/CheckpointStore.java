@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+/**
+ * Stores, for each shard of a stream, the sequence number of the last record
+ * processed by a {@link DynamoDBStreamsReader}, so that processing resumes
+ * after it on restart.
+ *
+ * @see InMemoryCheckpointStore
+ * @see FileCheckpointStore
+ */
+public interface CheckpointStore {
+
+    /**
+     * The checkpoint of a shard whose records have all been processed.
+     */
+    String SHARD_END = "SHARD_END";
+
+    /**
+     * Returns the checkpoint of the given shard, or null if there is none.
+     */
+    String getCheckpoint(String shardId);
+
+    /**
+     * Sets the checkpoint of the given shard: either a sequence number or
+     * {@link #SHARD_END}.
+     */
+    void setCheckpoint(String shardId, String checkpoint);
+}
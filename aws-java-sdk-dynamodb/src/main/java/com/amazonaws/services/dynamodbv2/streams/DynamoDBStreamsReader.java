@@ -0,0 +1,507 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBStreams;
+import com.amazonaws.internal.DaemonThreadFactory;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.ExpiredIteratorException;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.LimitExceededException;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.TrimmedDataAccessException;
+
+/**
+ * Reads all the shards of a DynamoDB stream concurrently, and hands their
+ * records, with the items converted to objects of the table's mapped class,
+ * to a {@link StreamRecordProcessor}, checkpointing the progress of each shard
+ * in a {@link CheckpointStore}.
+ * <p>
+ * The shards of a DynamoDB stream are closed every few hours and replaced by
+ * child shards, so the reader lists the shards of the stream periodically. A
+ * shard is only read once its parent shard has been fully processed, so that
+ * the changes to an item are processed in order across shards. A parent shard
+ * that is no longer listed, its records having expired, is considered
+ * processed.
+ * <p>
+ * Each shard has a fetcher that keeps up to
+ * {@link DynamoDBStreamsReaderConfig#getMaxPrefetchedBatches()} GetRecords
+ * results ahead of processing, so that reading from the network overlaps with
+ * processing. Fetchers and processing share two small thread pools rather than
+ * using threads of their own, so many shards can be read with few threads.
+ * <p>
+ * This reader is meant for a single process reading the whole stream; it does
+ * not balance shards across workers. It works with any
+ * {@link AmazonDynamoDBStreams} client, including one pointed at a local stub
+ * of the service.
+ *
+ * @param <T>
+ *            the type of the items of the table
+ */
+public class DynamoDBStreamsReader<T> {
+    private static final Log log = LogFactory.getLog(DynamoDBStreamsReader.class);
+
+    private final AmazonDynamoDBStreams streams;
+    private final String streamArn;
+    private final DynamoDBMapperTableModel<T> model;
+    private final StreamRecordProcessor<T> processor;
+    private final CheckpointStore checkpoints;
+    private final DynamoDBStreamsReaderConfig config;
+
+    /** Runs the fetchers and the shard discovery. */
+    private final ScheduledThreadPoolExecutor fetchers;
+    /** Calls the record processor. */
+    private final ExecutorService processors;
+
+    private final ConcurrentMap<String, ShardReader> shardReaders = new ConcurrentHashMap<String, ShardReader>();
+    /** The shards that have been fully processed. */
+    private final Set<String> endedShards = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private ScheduledFuture<?> discovery;
+    /** Whether the shards have been listed once; guarded by this. */
+    private boolean discovered;
+    private volatile boolean stopped;
+
+    /**
+     * @param mapper
+     *            the mapper whose table model converts the items of the
+     *            stream's table to objects of the given class
+     */
+    public DynamoDBStreamsReader(AmazonDynamoDBStreams streams, String streamArn,
+            DynamoDBMapper mapper, Class<T> clazz, StreamRecordProcessor<T> processor,
+            CheckpointStore checkpoints) {
+        this(streams, streamArn, mapper.getTableModel(clazz), processor, checkpoints,
+                new DynamoDBStreamsReaderConfig());
+    }
+
+    /**
+     * @param model
+     *            converts the items of the stream's table to objects; see
+     *            {@link DynamoDBMapper#getTableModel(Class)}
+     * @throws IllegalArgumentException
+     *             if the configuration is not valid
+     */
+    public DynamoDBStreamsReader(AmazonDynamoDBStreams streams, String streamArn,
+            DynamoDBMapperTableModel<T> model, StreamRecordProcessor<T> processor,
+            CheckpointStore checkpoints, DynamoDBStreamsReaderConfig config) {
+        this.config = new DynamoDBStreamsReaderConfig(config);
+        this.config.validate();
+        this.streams = streams;
+        this.streamArn = streamArn;
+        this.model = model;
+        this.processor = processor;
+        this.checkpoints = checkpoints;
+        this.fetchers = new ScheduledThreadPoolExecutor(this.config.getFetcherThreads(),
+                new DaemonThreadFactory("DynamoDBStreamsReaderFetcherThread-"));
+        this.fetchers.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.fetchers.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        this.processors = Executors.newFixedThreadPool(this.config.getProcessorThreads(),
+                new DaemonThreadFactory("DynamoDBStreamsReaderProcessorThread-"));
+    }
+
+    /**
+     * Starts discovering and reading the shards of the stream, and returns
+     * immediately.
+     *
+     * @throws IllegalStateException
+     *             if the reader has already been started
+     */
+    public synchronized void start() {
+        if (discovery != null)
+            throw new IllegalStateException("The reader has already been started");
+        discovery = fetchers.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                discoverShards();
+            }
+        }, 0, config.getShardDiscoveryIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading the stream, waits for the calls to the record processor in
+     * progress to return, and checkpoints the records processed so far.
+     * Records fetched but not yet processed are dropped, and will be read
+     * again on restart.
+     */
+    public void shutdown() {
+        stopped = true;
+        synchronized (this) {
+            if (discovery != null)
+                discovery.cancel(false);
+        }
+        fetchers.shutdown();
+        processors.shutdown();
+        try {
+            fetchers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            processors.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException(e);
+        }
+        for (ShardReader shardReader : shardReaders.values())
+            shardReader.checkpoint(true);
+    }
+
+    /**
+     * Returns the ids of the shards being read.
+     */
+    public Set<String> getShardsBeingRead() {
+        return Collections.unmodifiableSet(new HashSet<String>(shardReaders.keySet()));
+    }
+
+    /**
+     * Lists the shards of the stream, and starts reading the shards that are
+     * not being read, have not ended, and whose parent has ended.
+     */
+    private synchronized void discoverShards() {
+        if (stopped)
+            return;
+        final List<Shard> shards;
+        try {
+            shards = listShards();
+        } catch (RuntimeException e) {
+            log.warn("Unable to list the shards of stream " + streamArn, e);
+            return;
+        }
+        final Set<String> listed = new HashSet<String>();
+        for (Shard shard : shards)
+            listed.add(shard.getShardId());
+        for (Shard shard : shards) {
+            final String shardId = shard.getShardId();
+            if (shardReaders.containsKey(shardId) || endedShards.contains(shardId))
+                continue;
+            final String checkpoint = checkpoints.getCheckpoint(shardId);
+            if (CheckpointStore.SHARD_END.equals(checkpoint)) {
+                endedShards.add(shardId);
+                continue;
+            }
+            final String parent = shard.getParentShardId();
+            if (parent != null && listed.contains(parent) && !endedShards.contains(parent))
+                continue;
+            // A shard created after the reader started is read from its start
+            final boolean fromStart = discovered || (parent != null && listed.contains(parent));
+            final boolean closed = shard.getSequenceNumberRange() != null
+                    && shard.getSequenceNumberRange().getEndingSequenceNumber() != null;
+            final ShardReader shardReader = new ShardReader(shardId, checkpoint, fromStart, closed);
+            shardReaders.put(shardId, shardReader);
+            if (log.isDebugEnabled())
+                log.debug("Start reading shard " + shardId + " of stream " + streamArn);
+            shardReader.scheduleFetch(0);
+        }
+        discovered = true;
+    }
+
+    /**
+     * Returns all the shards of the stream, in the order DescribeStream
+     * returns them, in which parents come before their children.
+     */
+    private List<Shard> listShards() {
+        final List<Shard> shards = new ArrayList<Shard>();
+        String exclusiveStartShardId = null;
+        do {
+            final StreamDescription description = streams.describeStream(new DescribeStreamRequest()
+                    .withStreamArn(streamArn)
+                    .withExclusiveStartShardId(exclusiveStartShardId))
+                    .getStreamDescription();
+            shards.addAll(description.getShards());
+            exclusiveStartShardId = description.getLastEvaluatedShardId();
+        } while (exclusiveStartShardId != null);
+        return shards;
+    }
+
+    /**
+     * The GetRecords results of a shard, waiting to be processed.
+     */
+    private final class Batch {
+        final List<MappedStreamRecord<T>> records;
+        /** Whether these are the last records of the shard. */
+        final boolean shardEnd;
+
+        Batch(List<MappedStreamRecord<T>> records, boolean shardEnd) {
+            this.records = records;
+            this.shardEnd = shardEnd;
+        }
+    }
+
+    /**
+     * Fetches and processes the records of a shard. Fetching runs on the
+     * fetcher pool, one GetRecords call at a time; processing runs on the
+     * processor pool, one batch at a time, so that shards take turns.
+     */
+    private final class ShardReader {
+        final String shardId;
+        /** The checkpoint the shard was read from, or null. */
+        private final String startingCheckpoint;
+        /** Whether the shard must be read from its start if not checkpointed. */
+        private final boolean fromStart;
+        /** Whether the shard was closed when listed, so its end is near. */
+        private final boolean closed;
+
+        private final Runnable fetchTask = new Runnable() {
+            @Override
+            public void run() {
+                fetch();
+            }
+        };
+        private final Runnable processTask = new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        };
+
+        private final LinkedList<Batch> queue = new LinkedList<Batch>();
+        /** Whether a process task is submitted or running; guarded by queue. */
+        private boolean processing;
+        /** Whether fetching is waiting for the queue to drain; guarded by queue. */
+        private boolean fetchPaused;
+
+        // Only accessed by the fetch task, which never runs concurrently
+        private String shardIterator;
+        private String lastFetchedSequenceNumber;
+
+        // Only accessed by the process task, which never runs concurrently,
+        // and on shutdown once the process tasks have completed
+        private String lastProcessedSequenceNumber;
+        private String lastCheckpoint;
+        private long lastCheckpointNanos = System.nanoTime();
+
+        ShardReader(String shardId, String checkpoint, boolean fromStart, boolean closed) {
+            this.shardId = shardId;
+            this.startingCheckpoint = checkpoint;
+            this.fromStart = fromStart;
+            this.closed = closed;
+            this.lastProcessedSequenceNumber = checkpoint;
+            this.lastCheckpoint = checkpoint;
+        }
+
+        void scheduleFetch(long delayMs) {
+            if (stopped)
+                return;
+            try {
+                fetchers.schedule(fetchTask, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+
+        private void fetch() {
+            if (stopped)
+                return;
+            synchronized (queue) {
+                if (queue.size() >= config.getMaxPrefetchedBatches()) {
+                    fetchPaused = true;
+                    return;
+                }
+            }
+            final long startNanos = System.nanoTime();
+            final GetRecordsResult result;
+            try {
+                if (shardIterator == null)
+                    shardIterator = getShardIterator();
+                result = streams.getRecords(new GetRecordsRequest()
+                        .withShardIterator(shardIterator)
+                        .withLimit(config.getMaxRecordsPerFetch()));
+            } catch (ExpiredIteratorException e) {
+                shardIterator = null;
+                scheduleFetch(0);
+                return;
+            } catch (LimitExceededException e) {
+                scheduleFetch(config.getFetchBackoffMs());
+                return;
+            } catch (RuntimeException e) {
+                if (!stopped)
+                    log.warn("Unable to get records from shard " + shardId + " of stream " + streamArn, e);
+                scheduleFetch(config.getFetchBackoffMs());
+                return;
+            }
+            shardIterator = result.getNextShardIterator();
+            final List<Record> records = result.getRecords();
+            final List<MappedStreamRecord<T>> mapped = new ArrayList<MappedStreamRecord<T>>(records.size());
+            for (Record record : records)
+                mapped.add(new MappedStreamRecord<T>(record, model));
+            if (!records.isEmpty())
+                lastFetchedSequenceNumber = mapped.get(mapped.size() - 1).getSequenceNumber();
+            if (!records.isEmpty() || shardIterator == null)
+                enqueue(new Batch(mapped, shardIterator == null));
+            if (shardIterator == null)
+                return; // the shard has ended
+            final long intervalMs = !records.isEmpty() || closed
+                    ? config.getMinFetchIntervalMs()
+                    : config.getIdleFetchIntervalMs();
+            final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            scheduleFetch(Math.max(0, intervalMs - elapsedMs));
+        }
+
+        private String getShardIterator() {
+            final GetShardIteratorRequest request = new GetShardIteratorRequest()
+                    .withStreamArn(streamArn)
+                    .withShardId(shardId);
+            final String after = lastFetchedSequenceNumber != null
+                    ? lastFetchedSequenceNumber
+                    : startingCheckpoint;
+            if (after != null) {
+                request.withShardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER)
+                       .withSequenceNumber(after);
+                try {
+                    return streams.getShardIterator(request).getShardIterator();
+                } catch (TrimmedDataAccessException e) {
+                    log.warn("Records after " + after + " in shard " + shardId + " of stream " + streamArn
+                            + " have expired; reading from the oldest record instead");
+                    request.withShardIteratorType(ShardIteratorType.TRIM_HORIZON)
+                           .withSequenceNumber(null);
+                }
+            } else {
+                request.withShardIteratorType(fromStart
+                        ? ShardIteratorType.TRIM_HORIZON
+                        : config.getInitialPosition());
+            }
+            return streams.getShardIterator(request).getShardIterator();
+        }
+
+        private void enqueue(Batch batch) {
+            synchronized (queue) {
+                queue.add(batch);
+                if (processing)
+                    return;
+                processing = true;
+            }
+            submitProcess();
+        }
+
+        private void submitProcess() {
+            try {
+                processors.execute(processTask);
+            } catch (RejectedExecutionException e) {
+                synchronized (queue) {
+                    processing = false;
+                }
+            }
+        }
+
+        private void process() {
+            final Batch batch;
+            boolean resumeFetch = false;
+            synchronized (queue) {
+                if (stopped || queue.isEmpty()) {
+                    processing = false;
+                    return;
+                }
+                batch = queue.removeFirst();
+                if (fetchPaused) {
+                    fetchPaused = false;
+                    resumeFetch = true;
+                }
+            }
+            if (resumeFetch)
+                scheduleFetch(0);
+            if (!batch.records.isEmpty()) {
+                try {
+                    processor.processRecords(shardId, batch.records);
+                } catch (RuntimeException e) {
+                    log.warn("Unable to process records from shard " + shardId + " of stream " + streamArn, e);
+                }
+                lastProcessedSequenceNumber = batch.records.get(batch.records.size() - 1).getSequenceNumber();
+            }
+            if (batch.shardEnd) {
+                endShard();
+                return;
+            }
+            checkpoint(false);
+            synchronized (queue) {
+                if (stopped || queue.isEmpty()) {
+                    processing = false;
+                    return;
+                }
+            }
+            // let the other shards have a turn
+            submitProcess();
+        }
+
+        private void endShard() {
+            try {
+                processor.shardEnded(shardId);
+            } catch (RuntimeException e) {
+                log.warn("Failure ending shard " + shardId + " of stream " + streamArn, e);
+            }
+            try {
+                checkpoints.setCheckpoint(shardId, CheckpointStore.SHARD_END);
+            } catch (RuntimeException e) {
+                log.warn("Unable to checkpoint the end of shard " + shardId + " of stream " + streamArn, e);
+            }
+            lastCheckpoint = lastProcessedSequenceNumber;
+            endedShards.add(shardId);
+            shardReaders.remove(shardId);
+            // start reading the child shards
+            try {
+                fetchers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        discoverShards();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+
+        /**
+         * Checkpoints the last record processed, if the checkpoint interval
+         * has elapsed or if forced.
+         */
+        void checkpoint(boolean force) {
+            final String sequenceNumber = lastProcessedSequenceNumber;
+            if (sequenceNumber == null || sequenceNumber.equals(lastCheckpoint))
+                return;
+            final long nowNanos = System.nanoTime();
+            if (!force && TimeUnit.NANOSECONDS.toMillis(nowNanos - lastCheckpointNanos)
+                    < config.getCheckpointIntervalMs())
+                return;
+            try {
+                checkpoints.setCheckpoint(shardId, sequenceNumber);
+                lastCheckpoint = sequenceNumber;
+                lastCheckpointNanos = nowNanos;
+            } catch (RuntimeException e) {
+                log.warn("Unable to checkpoint shard " + shardId + " of stream " + streamArn, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+
+/**
+ * Configuration of a {@link DynamoDBStreamsReader}.
+ */
+public class DynamoDBStreamsReaderConfig {
+
+    /** Maximum number of records returned by a GetRecords call. */
+    public static final int SERVICE_MAX_RECORDS_PER_FETCH = 1000;
+
+    /**
+     * Where to start reading the shards found when the reader starts that have
+     * no checkpoint and no parent shard: TRIM_HORIZON or LATEST. Shards
+     * created afterwards are always read from their start.
+     */
+    private ShardIteratorType initialPosition;
+
+    /** TRIM_HORIZON */
+    public static final ShardIteratorType INITIAL_POSITION_DEFAULT = ShardIteratorType.TRIM_HORIZON;
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    private int maxRecordsPerFetch;
+
+    /** 1,000 records, the service limit */
+    public static final int MAX_RECORDS_PER_FETCH_DEFAULT = SERVICE_MAX_RECORDS_PER_FETCH;
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    private int maxPrefetchedBatches;
+
+    /** 3 batches */
+    public static final int MAX_PREFETCHED_BATCHES_DEFAULT = 3;
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the calls return records.
+     */
+    private long minFetchIntervalMs;
+
+    /** 200 milliseconds */
+    public static final long MIN_FETCH_INTERVAL_MS_DEFAULT = 200;
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once a call has returned no records.
+     */
+    private long idleFetchIntervalMs;
+
+    /** 1 second */
+    public static final long IDLE_FETCH_INTERVAL_MS_DEFAULT = 1000;
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    private long fetchBackoffMs;
+
+    /** 1 second */
+    public static final long FETCH_BACKOFF_MS_DEFAULT = 1000;
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    private long shardDiscoveryIntervalMs;
+
+    /** 10 seconds */
+    public static final long SHARD_DISCOVERY_INTERVAL_MS_DEFAULT = 10000;
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    private long checkpointIntervalMs;
+
+    /** 5 seconds */
+    public static final long CHECKPOINT_INTERVAL_MS_DEFAULT = 5000;
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    private int fetcherThreads;
+
+    /** the number of processors, and at least 2 */
+    public static final int FETCHER_THREADS_DEFAULT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    private int processorThreads;
+
+    /** the number of processors */
+    public static final int PROCESSOR_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+
+    public DynamoDBStreamsReaderConfig() {
+        initialPosition = INITIAL_POSITION_DEFAULT;
+        maxRecordsPerFetch = MAX_RECORDS_PER_FETCH_DEFAULT;
+        maxPrefetchedBatches = MAX_PREFETCHED_BATCHES_DEFAULT;
+        minFetchIntervalMs = MIN_FETCH_INTERVAL_MS_DEFAULT;
+        idleFetchIntervalMs = IDLE_FETCH_INTERVAL_MS_DEFAULT;
+        fetchBackoffMs = FETCH_BACKOFF_MS_DEFAULT;
+        shardDiscoveryIntervalMs = SHARD_DISCOVERY_INTERVAL_MS_DEFAULT;
+        checkpointIntervalMs = CHECKPOINT_INTERVAL_MS_DEFAULT;
+        fetcherThreads = FETCHER_THREADS_DEFAULT;
+        processorThreads = PROCESSOR_THREADS_DEFAULT;
+    }
+
+    /** copy constructor */
+    public DynamoDBStreamsReaderConfig(DynamoDBStreamsReaderConfig other) {
+        initialPosition = other.initialPosition;
+        maxRecordsPerFetch = other.maxRecordsPerFetch;
+        maxPrefetchedBatches = other.maxPrefetchedBatches;
+        minFetchIntervalMs = other.minFetchIntervalMs;
+        idleFetchIntervalMs = other.idleFetchIntervalMs;
+        fetchBackoffMs = other.fetchBackoffMs;
+        shardDiscoveryIntervalMs = other.shardDiscoveryIntervalMs;
+        checkpointIntervalMs = other.checkpointIntervalMs;
+        fetcherThreads = other.fetcherThreads;
+        processorThreads = other.processorThreads;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamoDBStreamsReaderConfig [initialPosition=" + initialPosition +
+                ", maxRecordsPerFetch=" + maxRecordsPerFetch +
+                ", maxPrefetchedBatches=" + maxPrefetchedBatches +
+                ", minFetchIntervalMs=" + minFetchIntervalMs +
+                ", idleFetchIntervalMs=" + idleFetchIntervalMs + ", fetchBackoffMs=" + fetchBackoffMs +
+                ", shardDiscoveryIntervalMs=" + shardDiscoveryIntervalMs +
+                ", checkpointIntervalMs=" + checkpointIntervalMs + ", fetcherThreads=" + fetcherThreads +
+                ", processorThreads=" + processorThreads + "]";
+    }
+
+    /**
+     * Checks that the configuration is consistent.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    void validate() {
+        if (initialPosition != ShardIteratorType.TRIM_HORIZON && initialPosition != ShardIteratorType.LATEST)
+            throw new IllegalArgumentException("initialPosition must be TRIM_HORIZON or LATEST");
+        if (maxRecordsPerFetch <= 0 || maxRecordsPerFetch > SERVICE_MAX_RECORDS_PER_FETCH)
+            throw new IllegalArgumentException("maxRecordsPerFetch must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_FETCH);
+        if (maxPrefetchedBatches <= 0)
+            throw new IllegalArgumentException("maxPrefetchedBatches must be positive");
+        if (minFetchIntervalMs < 0 || idleFetchIntervalMs < minFetchIntervalMs)
+            throw new IllegalArgumentException(
+                    "minFetchIntervalMs must not be negative, nor larger than idleFetchIntervalMs");
+        if (fetchBackoffMs <= 0)
+            throw new IllegalArgumentException("fetchBackoffMs must be positive");
+        if (shardDiscoveryIntervalMs <= 0)
+            throw new IllegalArgumentException("shardDiscoveryIntervalMs must be positive");
+        if (checkpointIntervalMs < 0)
+            throw new IllegalArgumentException("checkpointIntervalMs must not be negative");
+        if (fetcherThreads <= 0 || processorThreads <= 0)
+            throw new IllegalArgumentException("fetcherThreads and processorThreads must be positive");
+    }
+
+    /**
+     * Where to start reading the shards found when the reader starts that have
+     * no checkpoint and no parent shard: TRIM_HORIZON or LATEST. Shards
+     * created afterwards are always read from their start.
+     */
+    public ShardIteratorType getInitialPosition() {
+        return initialPosition;
+    }
+
+    /**
+     * Where to start reading the shards found when the reader starts that have
+     * no checkpoint and no parent shard: TRIM_HORIZON or LATEST. Shards
+     * created afterwards are always read from their start.
+     */
+    public void setInitialPosition(ShardIteratorType initialPosition) {
+        this.initialPosition = initialPosition;
+    }
+
+    /**
+     * Where to start reading the shards found when the reader starts that have
+     * no checkpoint and no parent shard: TRIM_HORIZON or LATEST. Shards
+     * created afterwards are always read from their start.
+     */
+    public DynamoDBStreamsReaderConfig withInitialPosition(ShardIteratorType initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    public int getMaxRecordsPerFetch() {
+        return maxRecordsPerFetch;
+    }
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    public void setMaxRecordsPerFetch(int maxRecordsPerFetch) {
+        this.maxRecordsPerFetch = maxRecordsPerFetch;
+    }
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    public DynamoDBStreamsReaderConfig withMaxRecordsPerFetch(int maxRecordsPerFetch) {
+        setMaxRecordsPerFetch(maxRecordsPerFetch);
+        return this;
+    }
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    public int getMaxPrefetchedBatches() {
+        return maxPrefetchedBatches;
+    }
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    public void setMaxPrefetchedBatches(int maxPrefetchedBatches) {
+        this.maxPrefetchedBatches = maxPrefetchedBatches;
+    }
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    public DynamoDBStreamsReaderConfig withMaxPrefetchedBatches(int maxPrefetchedBatches) {
+        setMaxPrefetchedBatches(maxPrefetchedBatches);
+        return this;
+    }
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the calls return records.
+     */
+    public long getMinFetchIntervalMs() {
+        return minFetchIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the calls return records.
+     */
+    public void setMinFetchIntervalMs(long minFetchIntervalMs) {
+        this.minFetchIntervalMs = minFetchIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the calls return records.
+     */
+    public DynamoDBStreamsReaderConfig withMinFetchIntervalMs(long minFetchIntervalMs) {
+        setMinFetchIntervalMs(minFetchIntervalMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once a call has returned no records.
+     */
+    public long getIdleFetchIntervalMs() {
+        return idleFetchIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once a call has returned no records.
+     */
+    public void setIdleFetchIntervalMs(long idleFetchIntervalMs) {
+        this.idleFetchIntervalMs = idleFetchIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once a call has returned no records.
+     */
+    public DynamoDBStreamsReaderConfig withIdleFetchIntervalMs(long idleFetchIntervalMs) {
+        setIdleFetchIntervalMs(idleFetchIntervalMs);
+        return this;
+    }
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    public long getFetchBackoffMs() {
+        return fetchBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    public void setFetchBackoffMs(long fetchBackoffMs) {
+        this.fetchBackoffMs = fetchBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    public DynamoDBStreamsReaderConfig withFetchBackoffMs(long fetchBackoffMs) {
+        setFetchBackoffMs(fetchBackoffMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    public long getShardDiscoveryIntervalMs() {
+        return shardDiscoveryIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    public void setShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        this.shardDiscoveryIntervalMs = shardDiscoveryIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    public DynamoDBStreamsReaderConfig withShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        setShardDiscoveryIntervalMs(shardDiscoveryIntervalMs);
+        return this;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    public long getCheckpointIntervalMs() {
+        return checkpointIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    public void setCheckpointIntervalMs(long checkpointIntervalMs) {
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    public DynamoDBStreamsReaderConfig withCheckpointIntervalMs(long checkpointIntervalMs) {
+        setCheckpointIntervalMs(checkpointIntervalMs);
+        return this;
+    }
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    public int getFetcherThreads() {
+        return fetcherThreads;
+    }
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    public void setFetcherThreads(int fetcherThreads) {
+        this.fetcherThreads = fetcherThreads;
+    }
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    public DynamoDBStreamsReaderConfig withFetcherThreads(int fetcherThreads) {
+        setFetcherThreads(fetcherThreads);
+        return this;
+    }
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    public int getProcessorThreads() {
+        return processorThreads;
+    }
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    public void setProcessorThreads(int processorThreads) {
+        this.processorThreads = processorThreads;
+    }
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    public DynamoDBStreamsReaderConfig withProcessorThreads(int processorThreads) {
+        setProcessorThreads(processorThreads);
+        return this;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import java.util.Map;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+
+/**
+ * A stream record whose keys and images are converted to objects of the
+ * table's mapped class. Each image is converted when first requested, so the
+ * records a processor skips, such as those of an event it is not interested
+ * in, cost nothing to convert.
+ * <p>
+ * Instances are meant to be used by the thread processing the record.
+ *
+ * @param <T>
+ *            the type of the items of the table
+ */
+public class MappedStreamRecord<T> {
+    private final Record record;
+    private final DynamoDBMapperTableModel<T> model;
+
+    private T keys;
+    private T oldImage;
+    private T newImage;
+
+    public MappedStreamRecord(Record record, DynamoDBMapperTableModel<T> model) {
+        this.record = record;
+        this.model = model;
+    }
+
+    /**
+     * Returns the record as read from the stream.
+     */
+    public Record getRecord() {
+        return record;
+    }
+
+    /**
+     * Returns the type of change: INSERT, MODIFY or REMOVE.
+     */
+    public OperationType getEventName() {
+        return OperationType.fromValue(record.getEventName());
+    }
+
+    public String getSequenceNumber() {
+        return record.getDynamodb().getSequenceNumber();
+    }
+
+    /**
+     * Returns an object with only the key attributes of the modified item set.
+     */
+    public T getKeys() {
+        if (keys == null)
+            keys = unconvert(record.getDynamodb().getKeys());
+        return keys;
+    }
+
+    /**
+     * Returns the item as it was before the change, or null if it did not
+     * exist or the stream does not include old images.
+     */
+    public T getOldImage() {
+        if (oldImage == null)
+            oldImage = unconvert(record.getDynamodb().getOldImage());
+        return oldImage;
+    }
+
+    /**
+     * Returns the item as it is after the change, or null if it was deleted
+     * or the stream does not include new images.
+     */
+    public T getNewImage() {
+        if (newImage == null)
+            newImage = unconvert(record.getDynamodb().getNewImage());
+        return newImage;
+    }
+
+    private T unconvert(Map<String, AttributeValue> image) {
+        return image == null ? null : model.unconvert(image);
+    }
+
+    @Override
+    public String toString() {
+        return record.toString();
+    }
+}
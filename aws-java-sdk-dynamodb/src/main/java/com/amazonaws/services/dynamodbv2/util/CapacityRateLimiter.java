@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+/**
+ * Paces requests so that the capacity units they consume stay close to a
+ * target rate, leaving the rest of the provisioned throughput of a table to
+ * other traffic. The capacity a request consumes is only known once it
+ * completes, so a request first acquires an estimate, possibly zero, and the
+ * difference with what it actually consumed is settled afterwards; a request
+ * that consumed more than estimated delays the ones that follow.
+ * <p>
+ * Capacity left unused for up to a second can be consumed in a burst, much
+ * like DynamoDB itself allows.
+ * <p>
+ * Instances are thread safe, and the same limiter can be shared by any number
+ * of requests made concurrently, such as the segments of a parallel scan.
+ *
+ * <pre class="brush: java">
+ * // Use at most a quarter of the read capacity of the table
+ * CapacityRateLimiter limiter =
+ *     CapacityRateLimiter.forProvisionedReadCapacity(dynamoDB, myTableName(), null, 0.25);
+ * ScanRequest request = new ScanRequest(myTableName());
+ * ScanResult result;
+ * do {
+ *     result = limiter.scan(dynamoDB, request);
+ *     // ... process result.getItems() ...
+ *     request.setExclusiveStartKey(result.getLastEvaluatedKey());
+ * } while (result.getLastEvaluatedKey() != null);
+ * </pre>
+ */
+public class CapacityRateLimiter {
+    private static final long MAX_BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double unitsPerSecond;
+    private final double nanosPerUnit;
+    /** When the capacity acquired so far has been paid for. */
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param unitsPerSecond
+     *            the target rate in capacity units per second, which must be
+     *            positive
+     */
+    public CapacityRateLimiter(double unitsPerSecond) {
+        if (!(unitsPerSecond > 0))
+            throw new IllegalArgumentException("unitsPerSecond must be positive");
+        this.unitsPerSecond = unitsPerSecond;
+        this.nanosPerUnit = TimeUnit.SECONDS.toNanos(1) / unitsPerSecond;
+    }
+
+    /**
+     * Returns a limiter targeting the given fraction of the read capacity
+     * provisioned for a table or one of its global secondary indexes, as
+     * returned by DescribeTable.
+     *
+     * @param dynamo
+     *            the client used to describe the table
+     * @param tableName
+     *            the name of the table
+     * @param indexName
+     *            the name of a global secondary index of the table, or null
+     *            for the table itself and its local secondary indexes
+     * @param fraction
+     *            the fraction of the provisioned read capacity to target,
+     *            greater than zero and at most one
+     */
+    public static CapacityRateLimiter forProvisionedReadCapacity(
+            AmazonDynamoDB dynamo, String tableName, String indexName,
+            double fraction) {
+        if (!(fraction > 0 && fraction <= 1))
+            throw new IllegalArgumentException("fraction must be greater than zero and at most one");
+        final TableDescription table = dynamo.describeTable(
+                new DescribeTableRequest(tableName)).getTable();
+        ProvisionedThroughputDescription throughput = null;
+        if (indexName == null) {
+            throughput = table.getProvisionedThroughput();
+        } else if (table.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndexDescription index : table.getGlobalSecondaryIndexes()) {
+                if (indexName.equals(index.getIndexName())) {
+                    throughput = index.getProvisionedThroughput();
+                    break;
+                }
+            }
+        }
+        if (throughput == null) {
+            // A local secondary index shares the throughput of its table
+            throughput = table.getProvisionedThroughput();
+        }
+        if (throughput == null || throughput.getReadCapacityUnits() == null) {
+            throw new AmazonClientException(
+                    "No provisioned read capacity found for table " + tableName);
+        }
+        return new CapacityRateLimiter(throughput.getReadCapacityUnits() * fraction);
+    }
+
+    /**
+     * Returns the target rate in capacity units per second.
+     */
+    public double getUnitsPerSecond() {
+        return unitsPerSecond;
+    }
+
+    /**
+     * Waits until the given number of capacity units can be consumed without
+     * exceeding the target rate, and accounts for them.
+     *
+     * @throws AmazonClientException
+     *             if the current thread is interrupted while waiting
+     */
+    public void acquire(double units) {
+        final long waitNanos = reserve(units);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AmazonClientException(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Accounts for capacity units consumed in addition to those acquired, or,
+     * if negative, gives back units acquired but not consumed.
+     */
+    public synchronized void adjust(double units) {
+        nextFreeNanos += (long) (units * nanosPerUnit);
+    }
+
+    /**
+     * Scans a page once the capacity consumed by previous requests allows it,
+     * and accounts for the capacity the scan consumed. The consumed capacity
+     * is requested from DynamoDB if the request does not ask for it already.
+     */
+    public ScanResult scan(AmazonDynamoDB dynamo, ScanRequest request) {
+        if (!returnsConsumedCapacity(request.getReturnConsumedCapacity()))
+            request.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        acquire(0);
+        final ScanResult result = dynamo.scan(request);
+        adjust(capacityUnits(result.getConsumedCapacity()));
+        return result;
+    }
+
+    /**
+     * Queries a page once the capacity consumed by previous requests allows
+     * it, and accounts for the capacity the query consumed. The consumed
+     * capacity is requested from DynamoDB if the request does not ask for it
+     * already.
+     */
+    public QueryResult query(AmazonDynamoDB dynamo, QueryRequest request) {
+        if (!returnsConsumedCapacity(request.getReturnConsumedCapacity()))
+            request.setReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        acquire(0);
+        final QueryResult result = dynamo.query(request);
+        adjust(capacityUnits(result.getConsumedCapacity()));
+        return result;
+    }
+
+    private static boolean returnsConsumedCapacity(String returnConsumedCapacity) {
+        return returnConsumedCapacity != null
+            && !ReturnConsumedCapacity.NONE.toString().equals(returnConsumedCapacity);
+    }
+
+    private static double capacityUnits(ConsumedCapacity consumedCapacity) {
+        return consumedCapacity == null || consumedCapacity.getCapacityUnits() == null
+             ? 0
+             : consumedCapacity.getCapacityUnits();
+    }
+
+    /**
+     * Returns the total capacity units of the given consumed capacities, as
+     * returned by batch operations.
+     */
+    public static double capacityUnits(List<ConsumedCapacity> consumedCapacities) {
+        double units = 0;
+        if (consumedCapacities != null) {
+            for (ConsumedCapacity consumedCapacity : consumedCapacities)
+                units += capacityUnits(consumedCapacity);
+        }
+        return units;
+    }
+
+    private synchronized long reserve(double units) {
+        final long now = System.nanoTime();
+        if (now - nextFreeNanos > MAX_BURST_NANOS)
+            nextFreeNanos = now - MAX_BURST_NANOS;
+        final long waitNanos = nextFreeNanos - now;
+        nextFreeNanos += (long) (units * nanosPerUnit);
+        return waitNanos;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.BatchWriteRetryStrategy;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+public class DynamoDBBulkWriterTest {
+
+    private static final String TABLE_NAME = "tableName";
+
+    @Test
+    public void testAllItemsWrittenDespiteUnprocessedItems() {
+        final FakeDynamoDB db = new FakeDynamoDB();
+        db.unprocessedEvery = 3;
+        final DynamoDBBulkWriter writer = newMapper(db, 10)
+                .newBulkWriter(new DynamoDBBulkWriterConfig()
+                        .withConcurrency(4)
+                        .withMaxPendingBatches(4));
+
+        writer.saveAll(items(0, 1000));
+        final List<FailedBatch> failedBatches = writer.close();
+
+        assertEquals(0, failedBatches.size());
+        assertEquals(1000, db.written.size());
+        assertEquals(1000, writer.getItemsSubmitted());
+        assertEquals(1000, writer.getItemsWritten());
+        assertTrue(writer.getItemsRetried() > 0);
+        assertEquals(1000.0, writer.getConsumedWriteCapacity(), 0.001);
+        assertTrue(db.maxConcurrentRequests.get() <= 4);
+    }
+
+    @Test
+    public void testPartialBatchWrittenOnClose() {
+        final FakeDynamoDB db = new FakeDynamoDB();
+        final DynamoDBBulkWriter writer = newMapper(db, 10).newBulkWriter();
+
+        writer.saveAll(items(0, 30));
+        writer.delete(new Item("0"));
+        writer.close();
+
+        assertEquals(2, db.requests.get());
+        assertEquals(30, db.written.size());
+        assertEquals(1, db.deleted.size());
+    }
+
+    @Test
+    public void testUnprocessedItemsFailAfterMaxRetries() {
+        final FakeDynamoDB db = new FakeDynamoDB();
+        db.unprocessedEvery = 1;
+        final DynamoDBBulkWriter writer = newMapper(db, 2).newBulkWriter();
+
+        writer.save(new Item("foo"));
+        final List<FailedBatch> failedBatches = writer.close();
+
+        assertEquals(3, db.requests.get());
+        assertEquals(1, failedBatches.size());
+        assertNull(failedBatches.get(0).getException());
+        assertEquals(1, writer.getItemsFailed());
+    }
+
+    @Test
+    public void testExceptionFailsBatch() {
+        final FakeDynamoDB db = new FakeDynamoDB();
+        db.exception = new AmazonServiceException("BOOM");
+        final DynamoDBBulkWriter writer = newMapper(db, 10).newBulkWriter();
+
+        writer.saveAll(items(0, 10));
+        final List<FailedBatch> failedBatches = writer.close();
+
+        assertEquals(1, db.requests.get());
+        assertEquals(1, failedBatches.size());
+        assertSame(db.exception, failedBatches.get(0).getException());
+        assertEquals(10, writer.getItemsFailed());
+    }
+
+    @Test
+    public void testWriteCapacityRate() {
+        final FakeDynamoDB db = new FakeDynamoDB();
+        final DynamoDBBulkWriter writer = newMapper(db, 10)
+                .newBulkWriter(new DynamoDBBulkWriterConfig()
+                        .withMaxWriteCapacityPerSecond(250));
+
+        final long start = System.nanoTime();
+        writer.saveAll(items(0, 500));
+        writer.close();
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // A second worth of capacity can be consumed in a burst
+        assertEquals(500, db.written.size());
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 900);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testWriteAfterClose() {
+        final DynamoDBBulkWriter writer = newMapper(new FakeDynamoDB(), 10).newBulkWriter();
+        writer.close();
+        writer.save(new Item("foo"));
+    }
+
+    private static DynamoDBMapper newMapper(FakeDynamoDB db, int maxRetry) {
+        return new DynamoDBMapper(db, new DynamoDBMapperConfig.Builder()
+                .withBatchWriteRetryStrategy(new BatchWriteRetryStrategyWithNoDelay(maxRetry))
+                .build());
+    }
+
+    private static Iterator<Item> items(int from, int to) {
+        final List<Item> items = new ArrayList<Item>();
+        for (int i = from; i < to; i++) {
+            items.add(new Item(String.valueOf(i)));
+        }
+        return items.iterator();
+    }
+
+    private static class FakeDynamoDB extends AbstractAmazonDynamoDB {
+        final Set<String> written = Collections.synchronizedSet(new HashSet<String>());
+        final Set<String> deleted = Collections.synchronizedSet(new HashSet<String>());
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger concurrentRequests = new AtomicInteger();
+        final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+        /** Leaves the last item of every n-th request unprocessed. */
+        volatile int unprocessedEvery;
+        volatile AmazonServiceException exception;
+
+        @Override
+        public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+            final int n = requests.incrementAndGet();
+            final int concurrent = concurrentRequests.incrementAndGet();
+            try {
+                int max;
+                while ((max = maxConcurrentRequests.get()) < concurrent
+                        && !maxConcurrentRequests.compareAndSet(max, concurrent)) {
+                }
+                if (exception != null) {
+                    throw exception;
+                }
+                final List<WriteRequest> requests = request.getRequestItems().get(TABLE_NAME);
+                final Map<String, List<WriteRequest>> unprocessed =
+                        new HashMap<String, List<WriteRequest>>();
+                int processed = requests.size();
+                if (unprocessedEvery > 0 && n % unprocessedEvery == 0) {
+                    processed--;
+                    unprocessed.put(TABLE_NAME, Collections.singletonList(requests.get(processed)));
+                }
+                for (WriteRequest write : requests.subList(0, processed)) {
+                    if (write.getPutRequest() != null) {
+                        written.add(write.getPutRequest().getItem().get("hash").getS());
+                    } else {
+                        deleted.add(write.getDeleteRequest().getKey().get("hash").getS());
+                    }
+                }
+                return new BatchWriteItemResult()
+                        .withUnprocessedItems(unprocessed)
+                        .withConsumedCapacity(new ConsumedCapacity()
+                                .withTableName(TABLE_NAME)
+                                .withCapacityUnits((double) processed));
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+        }
+    }
+
+    private static class BatchWriteRetryStrategyWithNoDelay implements
+            BatchWriteRetryStrategy {
+
+        private final int maxRetry;
+
+        public BatchWriteRetryStrategyWithNoDelay(int maxRetry) {
+            this.maxRetry = maxRetry;
+        }
+
+        @Override
+        public int getMaxRetryOnUnprocessedItems(
+                Map<String, List<WriteRequest>> batchWriteItemInput) {
+            return maxRetry;
+        }
+
+        @Override
+        public long getDelayBeforeRetryUnprocessedItems(
+                Map<String, List<WriteRequest>> unprocessedItems,
+                int retriesAttempted) {
+            return 0;
+        }
+    }
+
+    @DynamoDBTable(tableName = TABLE_NAME)
+    public static class Item {
+
+        private String hash;
+
+        public Item() {
+        }
+
+        public Item(String hash) {
+            this.hash = hash;
+        }
+
+        @DynamoDBHashKey(attributeName = "hash")
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+}
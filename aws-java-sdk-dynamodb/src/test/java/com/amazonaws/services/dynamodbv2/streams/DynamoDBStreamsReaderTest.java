@@ -0,0 +1,328 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDBStreams;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeStreamResult;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsRequest;
+import com.amazonaws.services.dynamodbv2.model.GetRecordsResult;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorRequest;
+import com.amazonaws.services.dynamodbv2.model.GetShardIteratorResult;
+import com.amazonaws.services.dynamodbv2.model.OperationType;
+import com.amazonaws.services.dynamodbv2.model.Record;
+import com.amazonaws.services.dynamodbv2.model.SequenceNumberRange;
+import com.amazonaws.services.dynamodbv2.model.Shard;
+import com.amazonaws.services.dynamodbv2.model.ShardIteratorType;
+import com.amazonaws.services.dynamodbv2.model.StreamDescription;
+import com.amazonaws.services.dynamodbv2.model.StreamRecord;
+
+public class DynamoDBStreamsReaderTest {
+
+    private static final String STREAM_ARN = "arn:aws:dynamodb:us-east-1:123456789012:table/Items/stream/label";
+
+    private FakeStreams streams;
+    private InMemoryCheckpointStore checkpoints;
+    private DynamoDBMapper mapper;
+
+    @Before
+    public void setup() {
+        streams = new FakeStreams();
+        checkpoints = new InMemoryCheckpointStore();
+        mapper = new DynamoDBMapper(new AbstractAmazonDynamoDB() {});
+    }
+
+    @Test
+    public void testChildShardsAreReadAfterTheirParent() throws Exception {
+        streams.addShard("parent", null, true, 0, 50);
+        streams.addShard("childA", "parent", true, 50, 20);
+        streams.addShard("childB", "childA", false, 70, 10);
+        streams.addShard("other", null, false, 100, 30);
+
+        final RecordingProcessor processor = new RecordingProcessor(110);
+        final DynamoDBStreamsReader<Item> reader = newReader(processor);
+        reader.start();
+        try {
+            assertTrue(processor.await());
+        } finally {
+            reader.shutdown();
+        }
+
+        assertEquals(ordered(0, 50), processor.ids("parent"));
+        assertEquals(ordered(50, 20), processor.ids("childA"));
+        assertEquals(ordered(70, 10), processor.ids("childB"));
+        assertEquals(ordered(100, 30), processor.ids("other"));
+        assertTrue(processor.endedBefore("parent", "childA"));
+        assertTrue(processor.endedBefore("childA", "childB"));
+        assertEquals(CheckpointStore.SHARD_END, checkpoints.getCheckpoint("parent"));
+        assertEquals(CheckpointStore.SHARD_END, checkpoints.getCheckpoint("childA"));
+        assertEquals(sequenceNumber(79), checkpoints.getCheckpoint("childB"));
+        assertEquals(sequenceNumber(129), checkpoints.getCheckpoint("other"));
+    }
+
+    @Test
+    public void testImagesAreConvertedToObjects() throws Exception {
+        streams.addShard("shard", null, false, 0, 3);
+
+        final RecordingProcessor processor = new RecordingProcessor(3);
+        final DynamoDBStreamsReader<Item> reader = newReader(processor);
+        reader.start();
+        try {
+            assertTrue(processor.await());
+        } finally {
+            reader.shutdown();
+        }
+
+        final List<MappedStreamRecord<Item>> records = processor.records.get("shard");
+        final MappedStreamRecord<Item> insert = records.get(0);
+        assertEquals(OperationType.INSERT, insert.getEventName());
+        assertEquals("item0", insert.getKeys().getId());
+        assertNull(insert.getKeys().getValue());
+        assertNull(insert.getOldImage());
+        assertEquals("value0", insert.getNewImage().getValue());
+        final MappedStreamRecord<Item> modify = records.get(1);
+        assertEquals(OperationType.MODIFY, modify.getEventName());
+        assertEquals("old1", modify.getOldImage().getValue());
+        assertEquals("value1", modify.getNewImage().getValue());
+    }
+
+    @Test
+    public void testReadingResumesAfterTheCheckpoint() throws Exception {
+        streams.addShard("parent", null, true, 0, 10);
+        streams.addShard("child", "parent", false, 10, 10);
+        checkpoints.setCheckpoint("parent", CheckpointStore.SHARD_END);
+        checkpoints.setCheckpoint("child", sequenceNumber(14));
+
+        final RecordingProcessor processor = new RecordingProcessor(5);
+        final DynamoDBStreamsReader<Item> reader = newReader(processor);
+        reader.start();
+        try {
+            assertTrue(processor.await());
+        } finally {
+            reader.shutdown();
+        }
+
+        assertEquals(Collections.emptyList(), processor.ids("parent"));
+        assertEquals(ordered(15, 5), processor.ids("child"));
+        assertEquals(sequenceNumber(19), checkpoints.getCheckpoint("child"));
+    }
+
+    private DynamoDBStreamsReader<Item> newReader(RecordingProcessor processor) {
+        final DynamoDBStreamsReaderConfig config = new DynamoDBStreamsReaderConfig()
+                .withMaxRecordsPerFetch(7)
+                .withMinFetchIntervalMs(0)
+                .withIdleFetchIntervalMs(10)
+                .withShardDiscoveryIntervalMs(50)
+                .withCheckpointIntervalMs(0);
+        return new DynamoDBStreamsReader<Item>(streams, STREAM_ARN,
+                mapper.getTableModel(Item.class), processor, checkpoints, config);
+    }
+
+    private static List<String> ordered(int first, int count) {
+        final List<String> ids = new ArrayList<String>();
+        for (int i = first; i < first + count; i++)
+            ids.add("item" + i);
+        return ids;
+    }
+
+    private static String sequenceNumber(int index) {
+        return String.valueOf(1000000 + index);
+    }
+
+    @DynamoDBTable(tableName = "Items")
+    public static class Item {
+        private String id;
+        private String value;
+
+        @DynamoDBHashKey
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        @DynamoDBAttribute
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+
+    private static final class RecordingProcessor implements StreamRecordProcessor<Item> {
+        final Map<String, List<MappedStreamRecord<Item>>> records =
+                new HashMap<String, List<MappedStreamRecord<Item>>>();
+        final List<String> events = new ArrayList<String>();
+        private final CountDownLatch remaining;
+
+        RecordingProcessor(int expected) {
+            remaining = new CountDownLatch(expected);
+        }
+
+        @Override
+        public synchronized void processRecords(String shardId, List<MappedStreamRecord<Item>> batch) {
+            List<MappedStreamRecord<Item>> list = records.get(shardId);
+            if (list == null) {
+                list = new ArrayList<MappedStreamRecord<Item>>();
+                records.put(shardId, list);
+                events.add("start " + shardId);
+            }
+            list.addAll(batch);
+            for (int i = 0; i < batch.size(); i++)
+                remaining.countDown();
+        }
+
+        @Override
+        public synchronized void shardEnded(String shardId) {
+            events.add("end " + shardId);
+        }
+
+        boolean await() throws InterruptedException {
+            return remaining.await(10, TimeUnit.SECONDS);
+        }
+
+        synchronized List<String> ids(String shardId) {
+            final List<String> ids = new ArrayList<String>();
+            final List<MappedStreamRecord<Item>> list = records.get(shardId);
+            if (list != null) {
+                for (MappedStreamRecord<Item> record : list)
+                    ids.add(record.getKeys().getId());
+            }
+            return ids;
+        }
+
+        synchronized boolean endedBefore(String parent, String child) {
+            final int end = events.indexOf("end " + parent);
+            return end >= 0 && end < events.indexOf("start " + child);
+        }
+    }
+
+    /**
+     * A stream whose shard iterators are the shard id and the position of the
+     * next record to return.
+     */
+    private static final class FakeStreams extends AbstractAmazonDynamoDBStreams {
+        private final Map<String, Shard> shards = new LinkedHashMap<String, Shard>();
+        private final Map<String, List<Record>> records = new HashMap<String, List<Record>>();
+
+        void addShard(String shardId, String parentShardId, boolean closed, int first, int count) {
+            final List<Record> list = new ArrayList<Record>();
+            for (int i = first; i < first + count; i++)
+                list.add(newRecord(i));
+            final SequenceNumberRange range = new SequenceNumberRange()
+                    .withStartingSequenceNumber(sequenceNumber(first));
+            if (closed)
+                range.setEndingSequenceNumber(sequenceNumber(first + count - 1));
+            shards.put(shardId, new Shard()
+                    .withShardId(shardId)
+                    .withParentShardId(parentShardId)
+                    .withSequenceNumberRange(range));
+            records.put(shardId, list);
+        }
+
+        private static Record newRecord(int index) {
+            final Map<String, AttributeValue> keys = Collections.singletonMap("id",
+                    new AttributeValue("item" + index));
+            final Map<String, AttributeValue> newImage = new HashMap<String, AttributeValue>(keys);
+            newImage.put("value", new AttributeValue("value" + index));
+            final StreamRecord streamRecord = new StreamRecord()
+                    .withSequenceNumber(sequenceNumber(index))
+                    .withKeys(keys)
+                    .withNewImage(newImage);
+            if (index % 3 == 1) {
+                final Map<String, AttributeValue> oldImage = new HashMap<String, AttributeValue>(keys);
+                oldImage.put("value", new AttributeValue("old" + index));
+                streamRecord.setOldImage(oldImage);
+            }
+            return new Record()
+                    .withEventName(index % 3 == 1 ? OperationType.MODIFY : OperationType.INSERT)
+                    .withDynamodb(streamRecord);
+        }
+
+        @Override
+        public DescribeStreamResult describeStream(DescribeStreamRequest request) {
+            // two shards per page
+            final List<Shard> all = new ArrayList<Shard>(shards.values());
+            int start = 0;
+            if (request.getExclusiveStartShardId() != null)
+                start = all.indexOf(shards.get(request.getExclusiveStartShardId())) + 1;
+            final int end = Math.min(all.size(), start + 2);
+            return new DescribeStreamResult().withStreamDescription(new StreamDescription()
+                    .withStreamArn(request.getStreamArn())
+                    .withShards(all.subList(start, end))
+                    .withLastEvaluatedShardId(end < all.size() ? all.get(end - 1).getShardId() : null));
+        }
+
+        @Override
+        public GetShardIteratorResult getShardIterator(GetShardIteratorRequest request) {
+            final List<Record> list = records.get(request.getShardId());
+            int position;
+            switch (ShardIteratorType.fromValue(request.getShardIteratorType())) {
+            case TRIM_HORIZON:
+                position = 0;
+                break;
+            case LATEST:
+                position = list.size();
+                break;
+            default:
+                position = 0;
+                while (!list.get(position).getDynamodb().getSequenceNumber().equals(request.getSequenceNumber()))
+                    position++;
+                if (request.getShardIteratorType().equals(ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString()))
+                    position++;
+            }
+            return new GetShardIteratorResult().withShardIterator(request.getShardId() + "/" + position);
+        }
+
+        @Override
+        public GetRecordsResult getRecords(GetRecordsRequest request) {
+            final String[] iterator = request.getShardIterator().split("/");
+            final String shardId = iterator[0];
+            final int position = Integer.parseInt(iterator[1]);
+            final List<Record> list = records.get(shardId);
+            final int end = Math.min(list.size(), position + request.getLimit());
+            final boolean closed = shards.get(shardId).getSequenceNumberRange().getEndingSequenceNumber() != null;
+            return new GetRecordsResult()
+                    .withRecords(new ArrayList<Record>(list.subList(position, end)))
+                    .withNextShardIterator(closed && end == list.size() ? null : shardId + "/" + end);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBScanExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableRequest;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndexDescription;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputDescription;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+
+public class CapacityRateLimiterTest {
+
+    private static final String TABLE_NAME = "tableName";
+
+    @Test
+    public void testScanRequestsConsumedCapacity() {
+        final FakeDynamoDB db = new FakeDynamoDB(1, 10.0);
+        final CapacityRateLimiter limiter = new CapacityRateLimiter(100);
+        final ScanRequest request = new ScanRequest(TABLE_NAME);
+
+        limiter.scan(db, request);
+
+        assertEquals(ReturnConsumedCapacity.TOTAL.toString(), request.getReturnConsumedCapacity());
+    }
+
+    @Test
+    public void testScanPagesArePaced() {
+        final FakeDynamoDB db = new FakeDynamoDB(20, 10.0);
+        final CapacityRateLimiter limiter = new CapacityRateLimiter(200);
+        final ScanRequest request = new ScanRequest(TABLE_NAME);
+
+        final long start = System.nanoTime();
+        ScanResult result;
+        do {
+            result = limiter.scan(db, request);
+            request.setExclusiveStartKey(result.getLastEvaluatedKey());
+        } while (result.getLastEvaluatedKey() != null);
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        // 200 units at 200 units per second, the first page being free
+        assertEquals(20, db.scans.get());
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 800);
+    }
+
+    @Test
+    public void testParallelScanSegmentsShareLimiter() {
+        final FakeDynamoDB db = new FakeDynamoDB(10, 10.0);
+        final DynamoDBMapper mapper = new DynamoDBMapper(db);
+        final DynamoDBScanExpression expression = new DynamoDBScanExpression()
+                .withReadCapacityLimiter(new CapacityRateLimiter(200));
+
+        final long start = System.nanoTime();
+        mapper.parallelScan(Item.class, expression, 2).size();
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(20, db.scans.get());
+        assertTrue("elapsed " + elapsedMillis, elapsedMillis >= 800);
+    }
+
+    @Test
+    public void testForProvisionedReadCapacity() {
+        final FakeDynamoDB db = new FakeDynamoDB(1, 0.0);
+
+        assertEquals(50.0, CapacityRateLimiter.forProvisionedReadCapacity(
+                db, TABLE_NAME, null, 0.5).getUnitsPerSecond(), 0.001);
+        assertEquals(10.0, CapacityRateLimiter.forProvisionedReadCapacity(
+                db, TABLE_NAME, "gsi", 0.5).getUnitsPerSecond(), 0.001);
+        assertEquals(100.0, CapacityRateLimiter.forProvisionedReadCapacity(
+                db, TABLE_NAME, "lsi", 1).getUnitsPerSecond(), 0.001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFraction() {
+        CapacityRateLimiter.forProvisionedReadCapacity(new FakeDynamoDB(1, 0.0), TABLE_NAME, null, 2);
+    }
+
+    private static class FakeDynamoDB extends AbstractAmazonDynamoDB {
+        final AtomicInteger scans = new AtomicInteger();
+        private final int pagesPerSegment;
+        private final double unitsPerPage;
+
+        FakeDynamoDB(int pagesPerSegment, double unitsPerPage) {
+            this.pagesPerSegment = pagesPerSegment;
+            this.unitsPerPage = unitsPerPage;
+        }
+
+        @Override
+        public ScanResult scan(ScanRequest request) {
+            scans.incrementAndGet();
+            final int page = request.getExclusiveStartKey() == null
+                    ? 0
+                    : Integer.parseInt(request.getExclusiveStartKey().get("hash").getN());
+            final Map<String, AttributeValue> lastEvaluatedKey = page + 1 < pagesPerSegment
+                    ? Collections.singletonMap("hash", new AttributeValue().withN(String.valueOf(page + 1)))
+                    : null;
+            final ConsumedCapacity consumedCapacity =
+                    ReturnConsumedCapacity.TOTAL.toString().equals(request.getReturnConsumedCapacity())
+                    ? new ConsumedCapacity().withTableName(TABLE_NAME).withCapacityUnits(unitsPerPage)
+                    : null;
+            return new ScanResult()
+                    .withItems(Collections.<Map<String, AttributeValue>>emptyList())
+                    .withLastEvaluatedKey(lastEvaluatedKey)
+                    .withConsumedCapacity(consumedCapacity);
+        }
+
+        @Override
+        public DescribeTableResult describeTable(DescribeTableRequest request) {
+            return new DescribeTableResult().withTable(new TableDescription()
+                    .withTableName(request.getTableName())
+                    .withProvisionedThroughput(new ProvisionedThroughputDescription()
+                            .withReadCapacityUnits(100L))
+                    .withGlobalSecondaryIndexes(new GlobalSecondaryIndexDescription()
+                            .withIndexName("gsi")
+                            .withProvisionedThroughput(new ProvisionedThroughputDescription()
+                                    .withReadCapacityUnits(20L))));
+        }
+    }
+
+    @DynamoDBTable(tableName = TABLE_NAME)
+    public static class Item {
+
+        private String hash;
+
+        @DynamoDBHashKey(attributeName = "hash")
+        public String getHash() {
+            return hash;
+        }
+
+        public void setHash(String hash) {
+            this.hash = hash;
+        }
+    }
+}
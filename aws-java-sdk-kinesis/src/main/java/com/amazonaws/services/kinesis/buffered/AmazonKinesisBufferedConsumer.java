@@ -0,0 +1,519 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.internal.DaemonThreadFactory;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+
+/**
+ * Reads all the shards of a Kinesis stream concurrently, and hands their
+ * records to a {@link RecordProcessor}, checkpointing the progress of each
+ * shard in a {@link CheckpointStore}.
+ * <p>
+ * Each shard has a fetcher that keeps up to
+ * {@link StreamConsumerConfig#getMaxPrefetchedBatches()} GetRecords results
+ * ahead of processing, so that reading from the network overlaps with
+ * processing. A shard that is behind its tip, according to MillisBehindLatest,
+ * is read as fast as the per-shard limit allows; a shard that has caught up is
+ * polled less often. Fetchers and processing share two small thread pools
+ * rather than using threads of their own, so many shards can be consumed with
+ * few threads.
+ * <p>
+ * Shards are discovered periodically. A shard created by a split or merge is
+ * only read once its parent shards have been fully processed, so that the
+ * records of a partition key are processed in order across resharding.
+ * <p>
+ * This consumer is meant for a single process reading the whole stream; it
+ * does not balance shards across workers. It works with any
+ * {@link AmazonKinesis} client, including one pointed at a local stub of the
+ * service.
+ */
+public class AmazonKinesisBufferedConsumer {
+    private static final Log log = LogFactory.getLog(AmazonKinesisBufferedConsumer.class);
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+    private final RecordProcessor processor;
+    private final CheckpointStore checkpoints;
+    private final StreamConsumerConfig config;
+
+    /** Runs the fetchers and the shard discovery. */
+    private final ScheduledThreadPoolExecutor fetchers;
+    /** Calls the record processor. */
+    private final ExecutorService processors;
+
+    private final ConcurrentMap<String, ShardConsumer> shardConsumers = new ConcurrentHashMap<String, ShardConsumer>();
+    /** The shards that have been fully processed. */
+    private final Set<String> endedShards = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private ScheduledFuture<?> discovery;
+    private volatile boolean stopped;
+
+    public AmazonKinesisBufferedConsumer(AmazonKinesis kinesis, String streamName,
+            RecordProcessor processor, CheckpointStore checkpoints) {
+        this(kinesis, streamName, processor, checkpoints, new StreamConsumerConfig());
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the configuration is not valid
+     */
+    public AmazonKinesisBufferedConsumer(AmazonKinesis kinesis, String streamName,
+            RecordProcessor processor, CheckpointStore checkpoints,
+            StreamConsumerConfig config) {
+        this.config = new StreamConsumerConfig(config);
+        this.config.validate();
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.processor = processor;
+        this.checkpoints = checkpoints;
+        this.fetchers = new ScheduledThreadPoolExecutor(this.config.getFetcherThreads(),
+                new DaemonThreadFactory("KinesisBufferedConsumerFetcherThread-"));
+        this.fetchers.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.fetchers.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        this.processors = Executors.newFixedThreadPool(this.config.getProcessorThreads(),
+                new DaemonThreadFactory("KinesisBufferedConsumerProcessorThread-"));
+    }
+
+    /**
+     * Starts discovering and reading the shards of the stream, and returns
+     * immediately.
+     *
+     * @throws IllegalStateException
+     *             if the consumer has already been started
+     */
+    public synchronized void start() {
+        if (discovery != null)
+            throw new IllegalStateException("The consumer has already been started");
+        discovery = fetchers.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                discoverShards();
+            }
+        }, 0, config.getShardDiscoveryIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reading the stream, waits for the calls to the record processor in
+     * progress to return, and checkpoints the records processed so far.
+     * Records fetched but not yet processed are dropped, and will be read
+     * again on restart.
+     */
+    public void shutdown() {
+        stopped = true;
+        synchronized (this) {
+            if (discovery != null)
+                discovery.cancel(false);
+        }
+        fetchers.shutdown();
+        processors.shutdown();
+        try {
+            fetchers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            processors.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException(e);
+        }
+        for (ShardConsumer shardConsumer : shardConsumers.values())
+            shardConsumer.checkpoint(true);
+    }
+
+    /**
+     * Returns, for each shard being read, how far its last fetched record is
+     * behind the tip of the shard, in milliseconds.
+     */
+    public Map<String, Long> getMillisBehindLatest() {
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (ShardConsumer shardConsumer : shardConsumers.values()) {
+            final long millisBehindLatest = shardConsumer.millisBehindLatest;
+            if (millisBehindLatest >= 0)
+                result.put(shardConsumer.shardId, millisBehindLatest);
+        }
+        return result;
+    }
+
+    /**
+     * Lists the shards of the stream, and starts reading the shards that are
+     * not being read, have not ended, and whose parents have ended.
+     */
+    private synchronized void discoverShards() {
+        if (stopped)
+            return;
+        final List<Shard> shards;
+        try {
+            shards = ShardMap.listShards(kinesis, streamName);
+        } catch (RuntimeException e) {
+            log.warn("Unable to list the shards of stream " + streamName, e);
+            return;
+        }
+        final Set<String> listed = new HashSet<String>();
+        final List<Shard> candidates = new ArrayList<Shard>();
+        final Map<String, String> startingCheckpoints = new TreeMap<String, String>();
+        for (Shard shard : shards) {
+            final String shardId = shard.getShardId();
+            listed.add(shardId);
+            if (shardConsumers.containsKey(shardId) || endedShards.contains(shardId))
+                continue;
+            final String checkpoint = checkpoints.getCheckpoint(shardId);
+            if (CheckpointStore.SHARD_END.equals(checkpoint)) {
+                endedShards.add(shardId);
+            } else {
+                candidates.add(shard);
+                startingCheckpoints.put(shardId, checkpoint);
+            }
+        }
+        for (Shard shard : candidates) {
+            final String parent = shard.getParentShardId();
+            final String adjacentParent = shard.getAdjacentParentShardId();
+            if (!hasEnded(parent, listed) || !hasEnded(adjacentParent, listed))
+                continue;
+            final boolean isChild = listed.contains(parent) || listed.contains(adjacentParent);
+            final ShardConsumer shardConsumer = new ShardConsumer(shard.getShardId(),
+                    startingCheckpoints.get(shard.getShardId()), isChild);
+            shardConsumers.put(shardConsumer.shardId, shardConsumer);
+            if (log.isDebugEnabled())
+                log.debug("Start reading shard " + shardConsumer.shardId + " of stream " + streamName);
+            shardConsumer.scheduleFetch(0);
+        }
+    }
+
+    /**
+     * Returns true if the given parent shard, if any, has been fully
+     * processed, or is no longer listed because its records have expired.
+     */
+    private boolean hasEnded(String parentShardId, Set<String> listed) {
+        return parentShardId == null
+                || endedShards.contains(parentShardId)
+                || !listed.contains(parentShardId);
+    }
+
+    /**
+     * The GetRecords results of a shard, waiting to be processed.
+     */
+    private static final class Batch {
+        final List<Record> records;
+        final long millisBehindLatest;
+        /** Whether these are the last records of the shard. */
+        final boolean shardEnd;
+
+        Batch(List<Record> records, long millisBehindLatest, boolean shardEnd) {
+            this.records = records;
+            this.millisBehindLatest = millisBehindLatest;
+            this.shardEnd = shardEnd;
+        }
+    }
+
+    /**
+     * Fetches and processes the records of a shard. Fetching runs on the
+     * fetcher pool, one GetRecords call at a time; processing runs on the
+     * processor pool, one batch at a time, so that shards take turns.
+     */
+    private final class ShardConsumer {
+        final String shardId;
+        /** The checkpoint the shard was read from, or null. */
+        private final String startingCheckpoint;
+        /** Whether the shard has parents, and must be read from its start. */
+        private final boolean isChild;
+
+        private final Runnable fetchTask = new Runnable() {
+            @Override
+            public void run() {
+                fetch();
+            }
+        };
+        private final Runnable processTask = new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        };
+
+        private final LinkedList<Batch> queue = new LinkedList<Batch>();
+        /** Whether a process task is submitted or running; guarded by queue. */
+        private boolean processing;
+        /** Whether fetching is waiting for the queue to drain; guarded by queue. */
+        private boolean fetchPaused;
+
+        // Only accessed by the fetch task, which never runs concurrently
+        private String shardIterator;
+        private String lastFetchedSequenceNumber;
+
+        // Only accessed by the process task, which never runs concurrently,
+        // and on shutdown once the process tasks have completed
+        private String lastProcessedSequenceNumber;
+        private String lastCheckpoint;
+        private long lastCheckpointNanos = System.nanoTime();
+
+        volatile long millisBehindLatest = -1;
+
+        ShardConsumer(String shardId, String checkpoint, boolean isChild) {
+            this.shardId = shardId;
+            this.startingCheckpoint = checkpoint;
+            this.isChild = isChild;
+            this.lastProcessedSequenceNumber = checkpoint;
+            this.lastCheckpoint = checkpoint;
+        }
+
+        void scheduleFetch(long delayMs) {
+            if (stopped)
+                return;
+            try {
+                fetchers.schedule(fetchTask, delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+
+        private void fetch() {
+            if (stopped)
+                return;
+            synchronized (queue) {
+                if (queue.size() >= config.getMaxPrefetchedBatches()) {
+                    fetchPaused = true;
+                    return;
+                }
+            }
+            final long startNanos = System.nanoTime();
+            final GetRecordsResult result;
+            try {
+                if (shardIterator == null)
+                    shardIterator = getShardIterator();
+                result = kinesis.getRecords(new GetRecordsRequest()
+                        .withShardIterator(shardIterator)
+                        .withLimit(config.getMaxRecordsPerFetch()));
+            } catch (ExpiredIteratorException e) {
+                shardIterator = null;
+                scheduleFetch(0);
+                return;
+            } catch (ProvisionedThroughputExceededException e) {
+                scheduleFetch(config.getFetchBackoffMs());
+                return;
+            } catch (RuntimeException e) {
+                if (!stopped)
+                    log.warn("Unable to get records from shard " + shardId + " of stream " + streamName, e);
+                scheduleFetch(config.getFetchBackoffMs());
+                return;
+            }
+            shardIterator = result.getNextShardIterator();
+            final List<Record> records = result.getRecords();
+            if (!records.isEmpty())
+                lastFetchedSequenceNumber = records.get(records.size() - 1).getSequenceNumber();
+            final long behind = result.getMillisBehindLatest() == null ? 0 : result.getMillisBehindLatest();
+            millisBehindLatest = behind;
+            if (!records.isEmpty() || shardIterator == null)
+                enqueue(new Batch(records, behind, shardIterator == null));
+            if (shardIterator == null)
+                return; // the shard has ended
+            final long intervalMs = behind > 0
+                    ? config.getMinFetchIntervalMs()
+                    : config.getIdleFetchIntervalMs();
+            final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            scheduleFetch(Math.max(0, intervalMs - elapsedMs));
+        }
+
+        private String getShardIterator() {
+            final GetShardIteratorRequest request = new GetShardIteratorRequest()
+                    .withStreamName(streamName)
+                    .withShardId(shardId);
+            final String after = lastFetchedSequenceNumber != null
+                    ? lastFetchedSequenceNumber
+                    : startingCheckpoint;
+            if (after != null) {
+                request.withShardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER)
+                       .withStartingSequenceNumber(after);
+            } else if (isChild) {
+                request.withShardIteratorType(ShardIteratorType.TRIM_HORIZON);
+            } else {
+                request.withShardIteratorType(config.getInitialPosition());
+                if (config.getInitialPosition() == ShardIteratorType.AT_TIMESTAMP)
+                    request.withTimestamp(config.getInitialTimestamp());
+            }
+            return kinesis.getShardIterator(request).getShardIterator();
+        }
+
+        private void enqueue(Batch batch) {
+            synchronized (queue) {
+                queue.add(batch);
+                if (processing)
+                    return;
+                processing = true;
+            }
+            submitProcess();
+        }
+
+        private void submitProcess() {
+            try {
+                processors.execute(processTask);
+            } catch (RejectedExecutionException e) {
+                synchronized (queue) {
+                    processing = false;
+                }
+            }
+        }
+
+        private void process() {
+            final Batch batch;
+            boolean resumeFetch = false;
+            synchronized (queue) {
+                if (stopped || queue.isEmpty()) {
+                    processing = false;
+                    return;
+                }
+                batch = queue.removeFirst();
+                if (fetchPaused) {
+                    fetchPaused = false;
+                    resumeFetch = true;
+                }
+            }
+            if (resumeFetch)
+                scheduleFetch(0);
+            if (!batch.records.isEmpty()) {
+                try {
+                    processor.processRecords(shardId, deaggregate(batch.records), batch.millisBehindLatest);
+                } catch (RuntimeException e) {
+                    if (!stopped)
+                        log.warn("Unable to process records from shard " + shardId + " of stream " + streamName
+                                + ", retrying in " + config.getProcessBackoffMs() + "ms", e);
+                    retryProcess(batch);
+                    return;
+                }
+                lastProcessedSequenceNumber = batch.records.get(batch.records.size() - 1).getSequenceNumber();
+            }
+            if (batch.shardEnd) {
+                endShard();
+                return;
+            }
+            checkpoint(false);
+            synchronized (queue) {
+                if (stopped || queue.isEmpty()) {
+                    processing = false;
+                    return;
+                }
+            }
+            // let the other shards have a turn
+            submitProcess();
+        }
+
+        /**
+         * Puts back a batch the record processor failed on at the head of the
+         * queue, and delivers it again after the backoff. The shard is not
+         * checkpointed past it until it has been processed.
+         */
+        private void retryProcess(Batch batch) {
+            synchronized (queue) {
+                queue.addFirst(batch);
+            }
+            try {
+                fetchers.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        submitProcess();
+                    }
+                }, config.getProcessBackoffMs(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                synchronized (queue) {
+                    processing = false;
+                }
+            }
+        }
+
+        private List<Record> deaggregate(List<Record> records) {
+            if (!config.isDeaggregationEnabled())
+                return records;
+            final List<Record> userRecords = new ArrayList<Record>(records.size());
+            for (Record record : records)
+                userRecords.addAll(RecordAggregator.deaggregate(record));
+            return userRecords;
+        }
+
+        private void endShard() {
+            try {
+                processor.shardEnded(shardId);
+            } catch (RuntimeException e) {
+                log.warn("Failure ending shard " + shardId + " of stream " + streamName, e);
+            }
+            try {
+                checkpoints.setCheckpoint(shardId, CheckpointStore.SHARD_END);
+            } catch (RuntimeException e) {
+                log.warn("Unable to checkpoint the end of shard " + shardId + " of stream " + streamName, e);
+            }
+            lastCheckpoint = lastProcessedSequenceNumber;
+            endedShards.add(shardId);
+            shardConsumers.remove(shardId);
+            // start reading the child shards
+            try {
+                fetchers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        discoverShards();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // shutting down
+            }
+        }
+
+        /**
+         * Checkpoints the last record processed, if the checkpoint interval
+         * has elapsed or if forced.
+         */
+        void checkpoint(boolean force) {
+            final String sequenceNumber = lastProcessedSequenceNumber;
+            if (sequenceNumber == null || sequenceNumber.equals(lastCheckpoint))
+                return;
+            final long nowNanos = System.nanoTime();
+            if (!force && TimeUnit.NANOSECONDS.toMillis(nowNanos - lastCheckpointNanos)
+                    < config.getCheckpointIntervalMs())
+                return;
+            try {
+                checkpoints.setCheckpoint(shardId, sequenceNumber);
+                lastCheckpoint = sequenceNumber;
+                lastCheckpointNanos = nowNanos;
+            } catch (RuntimeException e) {
+                log.warn("Unable to checkpoint shard " + shardId + " of stream " + streamName, e);
+            }
+        }
+    }
+}
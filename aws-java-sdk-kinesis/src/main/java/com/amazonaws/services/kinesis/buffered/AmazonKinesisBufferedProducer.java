@@ -0,0 +1,559 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.internal.DaemonThreadFactory;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+
+/**
+ * Puts records in a Kinesis stream asynchronously, in PutRecords requests
+ * that each carry as many records as the service limits and the configured
+ * buffering time allow.
+ * <p>
+ * The shard each user record goes to is predicted from the hash key ranges of
+ * the open shards of the stream, which are listed in the background with
+ * DescribeStream. When aggregation is enabled, small user records predicted to
+ * go to the same shard are aggregated into a single Kinesis record, in the
+ * format of the Kinesis Producer Library, to make better use of the per-shard
+ * records per second limit. The Kinesis Client Library de-aggregates such
+ * records transparently.
+ * <p>
+ * A PutRecords request is sent as soon as enough Kinesis records are ready to
+ * fill it, or when the oldest buffered user record has waited for
+ * {@link StreamBufferConfig#getMaxBufferTimeMs()}. Only the entries Kinesis
+ * rejected with a retryable error, such as a throttled shard, are retried,
+ * with exponential backoff.
+ * <p>
+ * The producer works with any {@link AmazonKinesis} client, including one
+ * whose endpoint is set to a local stub of the service for testing. It is
+ * thread safe, and uses daemon threads; call {@link #flushSync()} or
+ * {@link #shutdown()} before exiting to make sure the buffered records are
+ * put.
+ */
+public class AmazonKinesisBufferedProducer {
+    private static final Log log = LogFactory.getLog(AmazonKinesisBufferedProducer.class);
+
+    private static final String THROTTLED = "ProvisionedThroughputExceededException";
+    private static final String INTERNAL_FAILURE = "InternalFailure";
+
+    private static final int MAX_PARTITION_KEY_LENGTH = 256;
+    private static final BigInteger MAX_HASH_KEY = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+    private final StreamBufferConfig config;
+    private final long maxBufferTimeNanos;
+    private final ShardMap shardMap;
+
+    /** Times the buffering, and delays the retries. */
+    private final ScheduledExecutorService scheduler;
+    /** Sends the PutRecords requests, and lists the shards. */
+    private final ExecutorService senders;
+    private final Semaphore outstandingPermits;
+
+    private final ConcurrentMap<String, ShardCounters> counters = new ConcurrentHashMap<String, ShardCounters>();
+
+    private final Object lock = new Object();
+    /** The Kinesis records being aggregated, by predicted shard. */
+    private final Map<String, RecordAggregator> aggregators = new HashMap<String, RecordAggregator>();
+    /** The Kinesis records waiting to be sent. */
+    private final LinkedList<RecordAggregator> ready = new LinkedList<RecordAggregator>();
+    private long readyBytes;
+    private int inflightRequests;
+    private int outstandingRecords;
+    /** Whether buffered records are sent regardless of the buffering time. */
+    private boolean flushing;
+    private boolean shutdown;
+
+    public AmazonKinesisBufferedProducer(AmazonKinesis kinesis, String streamName) {
+        this(kinesis, streamName, new StreamBufferConfig());
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the configuration is not valid
+     */
+    public AmazonKinesisBufferedProducer(AmazonKinesis kinesis, String streamName,
+            StreamBufferConfig config) {
+        this.config = new StreamBufferConfig(config);
+        this.config.validate();
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.maxBufferTimeNanos = TimeUnit.MILLISECONDS.toNanos(this.config.getMaxBufferTimeMs());
+        this.shardMap = new ShardMap(kinesis, streamName, this.config.getShardMapRefreshMs());
+        this.outstandingPermits = new Semaphore(this.config.getMaxOutstandingRecords());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("KinesisBufferedProducerTimerThread-"));
+        // one more thread than requests in flight, for listing the shards
+        this.senders = Executors.newFixedThreadPool(this.config.getMaxInflightRequests() + 1,
+                new DaemonThreadFactory("KinesisBufferedProducerWorkerThread-"));
+
+        final long tickMs = Math.max(1, this.config.getMaxBufferTimeMs() / 4);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    onTick();
+                } catch (RuntimeException e) {
+                    log.warn("Unexpected failure while buffering records for stream " + streamName, e);
+                }
+            }
+        }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        refreshShardMapIfNeeded();
+    }
+
+    /**
+     * Adds a user record to be put in the stream; the shard is determined by
+     * the MD5 hash of the partition key.
+     *
+     * @see #addUserRecord(String, String, ByteBuffer)
+     */
+    public Future<UserRecordResult> addUserRecord(String partitionKey, ByteBuffer data) {
+        return addUserRecord(partitionKey, null, data);
+    }
+
+    /**
+     * Adds a user record to be put in the stream. The remaining bytes of the
+     * data are copied, so the buffer can be reused as soon as this method
+     * returns. Blocks while the number of outstanding user records is at
+     * {@link StreamBufferConfig#getMaxOutstandingRecords()}.
+     *
+     * @param partitionKey
+     *            the partition key of the record, between 1 and 256 characters
+     * @param explicitHashKey
+     *            the decimal hash key that determines the shard instead of the
+     *            partition key, or null
+     * @param data
+     *            the data of the record
+     * @return a future for the outcome of putting the record, which fails
+     *         with a {@link UserRecordFailedException} if it could not be put
+     * @throws IllegalArgumentException
+     *             if the record is not valid
+     * @throws IllegalStateException
+     *             if the producer has been shut down
+     */
+    public Future<UserRecordResult> addUserRecord(String partitionKey,
+            String explicitHashKey, ByteBuffer data) {
+        if (partitionKey == null || partitionKey.length() == 0
+        ||  partitionKey.length() > MAX_PARTITION_KEY_LENGTH) {
+            throw new IllegalArgumentException("The partition key must be between 1 and "
+                    + MAX_PARTITION_KEY_LENGTH + " characters");
+        }
+        if (explicitHashKey != null && !isValidHashKey(explicitHashKey)) {
+            throw new IllegalArgumentException("The explicit hash key must be a decimal number between 0 and "
+                    + MAX_HASH_KEY + ": " + explicitHashKey);
+        }
+        final byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        final UserRecord record = new UserRecord(partitionKey, explicitHashKey, bytes);
+        if (record.partitionKeyBytes.length + bytes.length > StreamBufferConfig.SERVICE_MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("The data and partition key of a record must not exceed "
+                    + StreamBufferConfig.SERVICE_MAX_RECORD_BYTES + " bytes");
+        }
+        try {
+            outstandingPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException(e);
+        }
+        synchronized (lock) {
+            if (shutdown) {
+                outstandingPermits.release();
+                throw new IllegalStateException("The producer has been shut down");
+            }
+            outstandingRecords++;
+            buffer(record);
+            sendReady();
+        }
+        return record.future;
+    }
+
+    /**
+     * Sends all the buffered records without waiting for the buffering time
+     * to elapse, and returns without waiting for them to be put.
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushing = true;
+            sendReady();
+        }
+    }
+
+    /**
+     * Sends all the buffered records, and blocks until every outstanding user
+     * record has been put or has failed.
+     */
+    public void flushSync() {
+        flush();
+        synchronized (lock) {
+            while (outstandingRecords > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AbortedException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting user records, blocks until the outstanding ones have
+     * been put or have failed, and releases the threads of the producer. The
+     * Kinesis client is not shut down.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+        }
+        flushSync();
+        scheduler.shutdownNow();
+        senders.shutdown();
+    }
+
+    /**
+     * Returns the number of user records added but not yet put or failed.
+     */
+    public int getOutstandingRecordsCount() {
+        synchronized (lock) {
+            return outstandingRecords;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the metrics of every shard records have been put
+     * in, or predicted to go to, by shard id.
+     */
+    public Map<String, ShardMetrics> getShardMetrics() {
+        final Map<String, ShardMetrics> metrics = new TreeMap<String, ShardMetrics>();
+        for (Map.Entry<String, ShardCounters> e : counters.entrySet())
+            metrics.put(e.getKey(), e.getValue().snapshot(e.getKey()));
+        return metrics;
+    }
+
+    private static boolean isValidHashKey(String hashKey) {
+        if (hashKey.length() == 0)
+            return false;
+        for (int i = 0; i < hashKey.length(); i++) {
+            final char c = hashKey.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return new BigInteger(hashKey).compareTo(MAX_HASH_KEY) <= 0;
+    }
+
+    /**
+     * Adds the user record to the Kinesis record being aggregated for its
+     * predicted shard, or to a Kinesis record of its own if it cannot be
+     * aggregated. Must be called with the lock held.
+     */
+    private void buffer(UserRecord record) {
+        final String shardId = shardMap.shardIdFor(record.hashKey);
+        if (!config.isAggregationEnabled() || shardId == null) {
+            final RecordAggregator single = new RecordAggregator(shardId, System.nanoTime() + maxBufferTimeNanos);
+            single.add(record);
+            enqueue(single);
+            return;
+        }
+        RecordAggregator aggregator = aggregators.get(shardId);
+        if (aggregator != null && aggregator.sizeWith(record) > config.getMaxAggregatedRecordBytes()) {
+            aggregators.remove(shardId);
+            enqueue(aggregator);
+            aggregator = null;
+        }
+        if (aggregator == null) {
+            aggregator = new RecordAggregator(shardId, System.nanoTime() + maxBufferTimeNanos);
+            aggregators.put(shardId, aggregator);
+        }
+        aggregator.add(record);
+    }
+
+    /** Must be called with the lock held. */
+    private void enqueue(RecordAggregator record) {
+        ready.add(record);
+        readyBytes += record.size();
+    }
+
+    /**
+     * Sends as many PutRecords requests as the ready records and the limit of
+     * requests in flight allow, leaving the records that can still wait for
+     * more to batch with. Must be called with the lock held.
+     */
+    private void sendReady() {
+        if (flushing) {
+            for (RecordAggregator aggregator : aggregators.values())
+                enqueue(aggregator);
+            aggregators.clear();
+        }
+        final int maxRecords = config.getMaxRecordsPerRequest();
+        final long maxBytes = config.getMaxRequestBytes();
+        while (inflightRequests < config.getMaxInflightRequests() && !ready.isEmpty()) {
+            if (!flushing && ready.size() < maxRecords && readyBytes < maxBytes
+            &&  ready.getFirst().deadlineNanos - System.nanoTime() > 0)
+                break;
+            final List<RecordAggregator> batch = new ArrayList<RecordAggregator>();
+            long batchBytes = 0;
+            while (!ready.isEmpty() && batch.size() < maxRecords) {
+                final RecordAggregator next = ready.getFirst();
+                final int size = next.size();
+                if (batchBytes + size > maxBytes)
+                    break;
+                ready.removeFirst();
+                readyBytes -= size;
+                batchBytes += size;
+                batch.add(next);
+            }
+            inflightRequests++;
+            senders.execute(new PutRecordsTask(batch));
+        }
+        if (ready.isEmpty())
+            flushing = false;
+    }
+
+    private void onTick() {
+        synchronized (lock) {
+            final long now = System.nanoTime();
+            for (Iterator<RecordAggregator> it = aggregators.values().iterator(); it.hasNext();) {
+                final RecordAggregator aggregator = it.next();
+                if (aggregator.deadlineNanos - now <= 0) {
+                    it.remove();
+                    enqueue(aggregator);
+                }
+            }
+            sendReady();
+            if (shutdown)
+                return;
+        }
+        refreshShardMapIfNeeded();
+    }
+
+    private void refreshShardMapIfNeeded() {
+        if (!shardMap.needsRefresh())
+            return;
+        try {
+            senders.execute(new Runnable() {
+                @Override
+                public void run() {
+                    shardMap.refresh();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+        }
+    }
+
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof AmazonServiceException) {
+            final AmazonServiceException ase = (AmazonServiceException) e;
+            return RetryUtils.isThrottlingException(ase)
+                    || RetryUtils.isRetryableServiceException(ase);
+        }
+        return e instanceof AmazonClientException
+                && ((AmazonClientException) e).isRetryable();
+    }
+
+    /**
+     * Returns the shard the record was predicted to go to, or is predicted to
+     * go to now if the shard map was not known when it was buffered.
+     */
+    private String predictedShardIdOf(RecordAggregator record) {
+        return record.predictedShardId != null
+                ? record.predictedShardId
+                : shardMap.shardIdFor(record.getUserRecords().get(0).hashKey);
+    }
+
+    private ShardCounters countersOf(String shardId) {
+        ShardCounters c = counters.get(shardId);
+        if (c == null) {
+            final ShardCounters created = new ShardCounters();
+            c = counters.putIfAbsent(shardId, created);
+            if (c == null)
+                c = created;
+        }
+        return c;
+    }
+
+    /**
+     * Sends a batch of Kinesis records in a PutRecords request, then completes
+     * the user records that were put or cannot be retried, and schedules the
+     * retry of the others.
+     */
+    private class PutRecordsTask implements Runnable {
+        private final List<RecordAggregator> batch;
+
+        PutRecordsTask(List<RecordAggregator> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            final List<PutRecordsRequestEntry> entries = new ArrayList<PutRecordsRequestEntry>(batch.size());
+            for (RecordAggregator record : batch) {
+                record.attempts++;
+                entries.add(record.toRequestEntry());
+            }
+            final List<RecordAggregator> retries = new ArrayList<RecordAggregator>();
+            int completed = 0;
+            List<PutRecordsResultEntry> results = null;
+            try {
+                final PutRecordsResult result = kinesis.putRecords(new PutRecordsRequest()
+                        .withStreamName(streamName)
+                        .withRecords(entries));
+                results = result.getRecords();
+                if (results.size() != batch.size()) {
+                    throw new AmazonClientException("Expected " + batch.size()
+                            + " records in the PutRecords result, but got " + results.size());
+                }
+            } catch (RuntimeException e) {
+                final boolean retryable = isRetryable(e);
+                for (RecordAggregator record : batch) {
+                    if (retryable && record.attempts <= config.getMaxRetries()) {
+                        retries.add(record);
+                    } else {
+                        completed += fail(record, new UserRecordFailedException(
+                                "Unable to put record in stream " + streamName, e,
+                                record.attempts));
+                    }
+                }
+                if (retryable && log.isDebugEnabled())
+                    log.debug("Retrying PutRecords request to stream " + streamName, e);
+                results = null;
+            }
+            for (int i = 0; results != null && i < batch.size(); i++) {
+                final RecordAggregator record = batch.get(i);
+                final PutRecordsResultEntry entry = results.get(i);
+                final String errorCode = entry.getErrorCode();
+                if (errorCode == null) {
+                    completed += succeed(record, entry);
+                    continue;
+                }
+                final String shardId = predictedShardIdOf(record);
+                if (THROTTLED.equals(errorCode) && shardId != null)
+                    countersOf(shardId).throttledRecords.incrementAndGet();
+                if ((THROTTLED.equals(errorCode) || INTERNAL_FAILURE.equals(errorCode))
+                &&  record.attempts <= config.getMaxRetries()) {
+                    retries.add(record);
+                } else {
+                    completed += fail(record, new UserRecordFailedException(
+                            "Unable to put record in stream " + streamName + ": "
+                                    + entry.getErrorMessage(),
+                            errorCode, record.attempts));
+                }
+            }
+            for (RecordAggregator record : retries)
+                scheduleRetry(record);
+            synchronized (lock) {
+                inflightRequests--;
+                outstandingRecords -= completed;
+                if (outstandingRecords == 0)
+                    lock.notifyAll();
+                sendReady();
+            }
+            outstandingPermits.release(completed);
+        }
+
+        /** Returns the number of user records completed. */
+        private int succeed(RecordAggregator record, PutRecordsResultEntry entry) {
+            final List<UserRecord> userRecords = record.getUserRecords();
+            for (int i = 0; i < userRecords.size(); i++) {
+                userRecords.get(i).future.setSuccess(new UserRecordResult(
+                        entry.getShardId(), entry.getSequenceNumber(),
+                        record.isAggregated() ? i : 0, record.attempts));
+            }
+            final ShardCounters c = countersOf(entry.getShardId());
+            c.userRecordsPut.addAndGet(userRecords.size());
+            c.kinesisRecordsPut.incrementAndGet();
+            c.bytesPut.addAndGet(record.size());
+            if (record.predictedShardId != null
+            &&  !record.predictedShardId.equals(entry.getShardId())) {
+                // The shards have changed
+                shardMap.invalidate();
+            }
+            return userRecords.size();
+        }
+
+        /** Returns the number of user records completed. */
+        private int fail(RecordAggregator record, Exception e) {
+            final List<UserRecord> userRecords = record.getUserRecords();
+            for (UserRecord userRecord : userRecords)
+                userRecord.future.setFailure(e);
+            final String shardId = predictedShardIdOf(record);
+            if (shardId != null)
+                countersOf(shardId).userRecordsFailed.addAndGet(userRecords.size());
+            return userRecords.size();
+        }
+    }
+
+    private void scheduleRetry(final RecordAggregator record) {
+        final long backoffMs = Math.min(config.getMaxRetryBackoffMs(),
+                config.getRetryBackoffMs() << Math.min(record.attempts - 1, 20));
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    // ahead of the records that have not been tried yet
+                    ready.addFirst(record);
+                    readyBytes += record.size();
+                    sendReady();
+                }
+            }
+        }, backoffMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class ShardCounters {
+        final AtomicLong userRecordsPut = new AtomicLong();
+        final AtomicLong kinesisRecordsPut = new AtomicLong();
+        final AtomicLong bytesPut = new AtomicLong();
+        final AtomicLong throttledRecords = new AtomicLong();
+        final AtomicLong userRecordsFailed = new AtomicLong();
+
+        ShardMetrics snapshot(String shardId) {
+            return new ShardMetrics(shardId, userRecordsPut.get(),
+                    kinesisRecordsPut.get(), bytesPut.get(),
+                    throttledRecords.get(), userRecordsFailed.get());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.io.File;
+
+import com.amazonaws.internal.CheckpointFile;
+
+/**
+ * A checkpoint store backed by a properties file, mapping shard ids to
+ * checkpoints. The whole file is rewritten on every update, to a temporary
+ * file that then replaces it, so it is only suitable for a single consumer
+ * process and a modest number of shards.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    private final CheckpointFile file;
+
+    /**
+     * @param file
+     *            the file holding the checkpoints, which is loaded if it
+     *            exists, and created otherwise
+     */
+    public FileCheckpointStore(File file) {
+        this.file = new CheckpointFile(file);
+    }
+
+    @Override
+    public String getCheckpoint(String shardId) {
+        return file.getCheckpoint(shardId);
+    }
+
+    @Override
+    public void setCheckpoint(String shardId, String checkpoint) {
+        file.setCheckpoint(shardId, checkpoint);
+    }
+}
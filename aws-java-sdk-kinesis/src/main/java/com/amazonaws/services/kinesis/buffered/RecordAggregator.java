@@ -0,0 +1,355 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * A Kinesis record being built out of one or more user records predicted to go
+ * to the same shard.
+ * <p>
+ * A single user record is sent as is. Several user records are aggregated in
+ * the format of the Kinesis Producer Library, which the Kinesis Client Library
+ * de-aggregates: a 4 byte magic number, the AggregatedRecord protobuf message,
+ * and the MD5 digest of that message.
+ *
+ * <pre>
+ * message AggregatedRecord {
+ *   repeated string partition_key_table     = 1;
+ *   repeated string explicit_hash_key_table = 2;
+ *   repeated Record records                 = 3;
+ * }
+ * message Record {
+ *   required uint64 partition_key_index     = 1;
+ *   optional uint64 explicit_hash_key_index = 2;
+ *   required bytes  data                    = 3;
+ * }
+ * </pre>
+ *
+ * The aggregated Kinesis record takes the partition key of the first user
+ * record, and its hash key as explicit hash key so that it lands in the shard
+ * all of the user records were predicted to go to.
+ * <p>
+ * Sizes are tracked as records are added, so that the record is only
+ * serialized once it is sent. This class is not thread safe.
+ *
+ * @see #deaggregate(Record)
+ */
+class RecordAggregator {
+    static final byte[] MAGIC = { (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2 };
+    private static final int DIGEST_LENGTH = 16;
+
+    private static final int PARTITION_KEY_TABLE_TAG = (1 << 3) | 2;
+    private static final int EXPLICIT_HASH_KEY_TABLE_TAG = (2 << 3) | 2;
+    private static final int RECORDS_TAG = (3 << 3) | 2;
+    private static final int PARTITION_KEY_INDEX_TAG = 1 << 3;
+    private static final int EXPLICIT_HASH_KEY_INDEX_TAG = 2 << 3;
+    private static final int DATA_TAG = (3 << 3) | 2;
+
+    /** The shard the user records were predicted to go to, or null. */
+    final String predictedShardId;
+    /** When the record must be sent, in {@link System#nanoTime()} terms. */
+    final long deadlineNanos;
+    /** The number of PutRecords requests this record has been part of. */
+    int attempts;
+
+    private final List<UserRecord> userRecords = new ArrayList<UserRecord>();
+    private final Map<String, Integer> partitionKeyIndexes = new HashMap<String, Integer>();
+    private final Map<String, Integer> explicitHashKeyIndexes = new HashMap<String, Integer>();
+    /** The size of the AggregatedRecord message holding all the user records. */
+    private int messageSize;
+    private byte[] aggregated;
+
+    RecordAggregator(String predictedShardId, long deadlineNanos) {
+        this.predictedShardId = predictedShardId;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    List<UserRecord> getUserRecords() {
+        return userRecords;
+    }
+
+    boolean isAggregated() {
+        return userRecords.size() > 1;
+    }
+
+    /**
+     * Returns the size of the Kinesis record, including its partition key, as
+     * accounted for by the service limits.
+     */
+    int size() {
+        if (userRecords.isEmpty())
+            return 0;
+        final UserRecord first = userRecords.get(0);
+        if (userRecords.size() == 1)
+            return first.partitionKeyBytes.length + first.data.length;
+        return first.partitionKeyBytes.length + MAGIC.length + messageSize + DIGEST_LENGTH;
+    }
+
+    /**
+     * Returns the size the Kinesis record would have after adding the given
+     * user record.
+     */
+    int sizeWith(UserRecord record) {
+        if (userRecords.isEmpty())
+            return record.partitionKeyBytes.length + record.data.length;
+        return userRecords.get(0).partitionKeyBytes.length + MAGIC.length
+                + messageSize + growth(record) + DIGEST_LENGTH;
+    }
+
+    void add(UserRecord record) {
+        userRecords.add(record);
+        aggregated = null;
+        account(record);
+    }
+
+    /**
+     * Returns a new entry for a PutRecords request.
+     */
+    PutRecordsRequestEntry toRequestEntry() {
+        final UserRecord first = userRecords.get(0);
+        if (userRecords.size() == 1) {
+            return new PutRecordsRequestEntry()
+                    .withPartitionKey(first.partitionKey)
+                    .withExplicitHashKey(first.explicitHashKey)
+                    .withData(ByteBuffer.wrap(first.data));
+        }
+        if (aggregated == null)
+            aggregated = serialize();
+        return new PutRecordsRequestEntry()
+                .withPartitionKey(first.partitionKey)
+                .withExplicitHashKey(first.hashKey.toString())
+                .withData(ByteBuffer.wrap(aggregated));
+    }
+
+    /**
+     * Returns how much the AggregatedRecord message grows by adding the given
+     * user record, given the current key tables.
+     */
+    private int growth(UserRecord record) {
+        int growth = 0;
+        Integer pkIndex = partitionKeyIndexes.get(record.partitionKey);
+        if (pkIndex == null) {
+            pkIndex = partitionKeyIndexes.size();
+            growth += fieldSize(record.partitionKeyBytes.length);
+        }
+        int recordSize = 1 + varintSize(pkIndex) + fieldSize(record.data.length);
+        if (record.explicitHashKey != null) {
+            Integer ehkIndex = explicitHashKeyIndexes.get(record.explicitHashKey);
+            if (ehkIndex == null) {
+                ehkIndex = explicitHashKeyIndexes.size();
+                // explicit hash keys are decimal digits, so one byte per char
+                growth += fieldSize(record.explicitHashKey.length());
+            }
+            recordSize += 1 + varintSize(ehkIndex);
+        }
+        return growth + fieldSize(recordSize);
+    }
+
+    private void account(UserRecord record) {
+        messageSize += growth(record);
+        if (!partitionKeyIndexes.containsKey(record.partitionKey))
+            partitionKeyIndexes.put(record.partitionKey, partitionKeyIndexes.size());
+        if (record.explicitHashKey != null
+        &&  !explicitHashKeyIndexes.containsKey(record.explicitHashKey))
+            explicitHashKeyIndexes.put(record.explicitHashKey, explicitHashKeyIndexes.size());
+    }
+
+    private byte[] serialize() {
+        final String[] partitionKeys = new String[partitionKeyIndexes.size()];
+        for (Map.Entry<String, Integer> e : partitionKeyIndexes.entrySet())
+            partitionKeys[e.getValue()] = e.getKey();
+        final String[] explicitHashKeys = new String[explicitHashKeyIndexes.size()];
+        for (Map.Entry<String, Integer> e : explicitHashKeyIndexes.entrySet())
+            explicitHashKeys[e.getValue()] = e.getKey();
+
+        final ByteBuffer message = ByteBuffer.allocate(messageSize);
+        for (String key : partitionKeys) {
+            writeVarint(message, PARTITION_KEY_TABLE_TAG);
+            writeBytes(message, key.getBytes(StringUtils.UTF8));
+        }
+        for (String key : explicitHashKeys) {
+            writeVarint(message, EXPLICIT_HASH_KEY_TABLE_TAG);
+            writeBytes(message, key.getBytes(StringUtils.UTF8));
+        }
+        for (UserRecord record : userRecords) {
+            final int pkIndex = partitionKeyIndexes.get(record.partitionKey);
+            int recordSize = 1 + varintSize(pkIndex) + fieldSize(record.data.length);
+            int ehkIndex = -1;
+            if (record.explicitHashKey != null) {
+                ehkIndex = explicitHashKeyIndexes.get(record.explicitHashKey);
+                recordSize += 1 + varintSize(ehkIndex);
+            }
+            writeVarint(message, RECORDS_TAG);
+            writeVarint(message, recordSize);
+            writeVarint(message, PARTITION_KEY_INDEX_TAG);
+            writeVarint(message, pkIndex);
+            if (ehkIndex >= 0) {
+                writeVarint(message, EXPLICIT_HASH_KEY_INDEX_TAG);
+                writeVarint(message, ehkIndex);
+            }
+            writeVarint(message, DATA_TAG);
+            writeBytes(message, record.data);
+        }
+        final byte[] messageBytes = message.array();
+        final byte[] digest = Md5Utils.computeMD5Hash(messageBytes);
+        final byte[] result = new byte[MAGIC.length + messageBytes.length + digest.length];
+        System.arraycopy(MAGIC, 0, result, 0, MAGIC.length);
+        System.arraycopy(messageBytes, 0, result, MAGIC.length, messageBytes.length);
+        System.arraycopy(digest, 0, result, MAGIC.length + messageBytes.length, digest.length);
+        return result;
+    }
+
+    /**
+     * Returns the user records held by a Kinesis record, which all share its
+     * sequence number and arrival time; or the Kinesis record itself if it is
+     * not aggregated, or not well formed.
+     */
+    static List<Record> deaggregate(Record record) {
+        final ByteBuffer data = record.getData();
+        final byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        if (bytes.length < MAGIC.length + DIGEST_LENGTH
+        ||  !Arrays.equals(MAGIC, Arrays.copyOf(bytes, MAGIC.length)))
+            return Collections.singletonList(record);
+        final int messageEnd = bytes.length - DIGEST_LENGTH;
+        final byte[] message = Arrays.copyOfRange(bytes, MAGIC.length, messageEnd);
+        if (!Arrays.equals(Md5Utils.computeMD5Hash(message),
+                Arrays.copyOfRange(bytes, messageEnd, bytes.length)))
+            return Collections.singletonList(record);
+        try {
+            return parse(ByteBuffer.wrap(message), record);
+        } catch (RuntimeException e) {
+            // not in the aggregated format after all
+            return Collections.singletonList(record);
+        }
+    }
+
+    private static List<Record> parse(ByteBuffer message, Record record) {
+        final List<String> partitionKeys = new ArrayList<String>();
+        final List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+        while (message.hasRemaining()) {
+            final int tag = readVarint(message);
+            if (tag == PARTITION_KEY_TABLE_TAG)
+                partitionKeys.add(new String(readBytes(message), StringUtils.UTF8));
+            else if (tag == RECORDS_TAG)
+                records.add(ByteBuffer.wrap(readBytes(message)));
+            else
+                skipField(message, tag);
+        }
+        final List<Record> userRecords = new ArrayList<Record>(records.size());
+        for (ByteBuffer r : records) {
+            int partitionKeyIndex = -1;
+            byte[] data = null;
+            while (r.hasRemaining()) {
+                final int tag = readVarint(r);
+                if (tag == PARTITION_KEY_INDEX_TAG)
+                    partitionKeyIndex = readVarint(r);
+                else if (tag == DATA_TAG)
+                    data = readBytes(r);
+                else
+                    skipField(r, tag);
+            }
+            if (data == null)
+                throw new IllegalArgumentException("Missing data");
+            userRecords.add(new Record()
+                    .withSequenceNumber(record.getSequenceNumber())
+                    .withApproximateArrivalTimestamp(record.getApproximateArrivalTimestamp())
+                    .withPartitionKey(partitionKeys.get(partitionKeyIndex))
+                    .withData(ByteBuffer.wrap(data)));
+        }
+        return userRecords;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0 || value > Integer.MAX_VALUE)
+                    throw new IllegalArgumentException("Value out of range");
+                return (int) value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        final byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    private static void skipField(ByteBuffer in, int tag) {
+        switch (tag & 7) {
+        case 0:
+            readVarint(in);
+            break;
+        case 1:
+            in.position(in.position() + 8);
+            break;
+        case 2:
+            final int length = readVarint(in);
+            in.position(in.position() + length);
+            break;
+        case 5:
+            in.position(in.position() + 4);
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported wire type " + (tag & 7));
+        }
+    }
+
+    /**
+     * Returns the size of a length-delimited field, including its tag.
+     */
+    private static int fieldSize(int length) {
+        return 1 + varintSize(length) + length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static void writeBytes(ByteBuffer out, byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.put(bytes);
+    }
+}
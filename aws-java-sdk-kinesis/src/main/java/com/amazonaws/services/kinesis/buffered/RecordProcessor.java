@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.List;
+
+import com.amazonaws.services.kinesis.model.Record;
+
+/**
+ * Processes the records an {@link AmazonKinesisBufferedConsumer} reads from
+ * the shards of a stream. Shards are processed concurrently, but the records
+ * of a given shard are delivered in order, by one thread at a time.
+ * Implementations must therefore be thread safe across shards.
+ */
+public interface RecordProcessor {
+
+    /**
+     * Processes the next records of a shard. Once this method returns, the
+     * records may be checkpointed, and will not be delivered again after a
+     * restart. If it throws an exception, the exception is logged and the
+     * same records are delivered again after
+     * {@link StreamConsumerConfig#getProcessBackoffMs()}; the shard makes no
+     * progress until they have been processed.
+     *
+     * @param shardId
+     *            the shard the records were read from
+     * @param records
+     *            the records, never empty
+     * @param millisBehindLatest
+     *            how far the last record is behind the tip of the shard
+     */
+    void processRecords(String shardId, List<Record> records, long millisBehindLatest);
+
+    /**
+     * Called once all the records of a shard closed by a split or merge have
+     * been processed, before the records of its child shards are delivered.
+     */
+    void shardEnded(String shardId);
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+import com.amazonaws.util.Md5Utils;
+
+/**
+ * Predicts the shard a record goes to, from the hash key ranges of the open
+ * shards of the stream. The shards are listed with (paginated) DescribeStream
+ * calls; until the first listing completes, no prediction is made.
+ * <p>
+ * This class is thread safe: a listing replaces the whole map at once.
+ */
+class ShardMap {
+    private static final Log log = LogFactory.getLog(ShardMap.class);
+
+    /** Minimum delay between two listings after a failure. */
+    private static final long FAILURE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Comparator<Shard> BY_STARTING_HASH_KEY = new Comparator<Shard>() {
+        @Override
+        public int compare(Shard a, Shard b) {
+            return new BigInteger(a.getHashKeyRange().getStartingHashKey())
+                    .compareTo(new BigInteger(b.getHashKeyRange().getStartingHashKey()));
+        }
+    };
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+    private final long refreshNanos;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile Ranges ranges;
+    private volatile long nextRefreshNanos = System.nanoTime();
+
+    ShardMap(AmazonKinesis kinesis, String streamName, long refreshMs) {
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMs);
+    }
+
+    /**
+     * Returns the hash key Kinesis derives from a partition key: the MD5
+     * digest of its UTF-8 encoding, as an unsigned 128 bit integer.
+     */
+    static BigInteger hashKeyOf(byte[] partitionKeyBytes) {
+        return new BigInteger(1, Md5Utils.computeMD5Hash(partitionKeyBytes));
+    }
+
+    /**
+     * Returns all the shards of the stream, open or closed, listing them with
+     * as many DescribeStream calls as needed.
+     */
+    static List<Shard> listShards(AmazonKinesis kinesis, String streamName) {
+        final List<Shard> shards = new ArrayList<Shard>();
+        String exclusiveStartShardId = null;
+        StreamDescription description;
+        do {
+            description = kinesis.describeStream(new DescribeStreamRequest()
+                    .withStreamName(streamName)
+                    .withExclusiveStartShardId(exclusiveStartShardId))
+                    .getStreamDescription();
+            for (Shard shard : description.getShards()) {
+                shards.add(shard);
+                exclusiveStartShardId = shard.getShardId();
+            }
+        } while (Boolean.TRUE.equals(description.getHasMoreShards())
+                && !description.getShards().isEmpty());
+        return shards;
+    }
+
+    /**
+     * Returns the id of the open shard whose range includes the given hash
+     * key, or null if unknown.
+     */
+    String shardIdFor(BigInteger hashKey) {
+        final Ranges r = ranges;
+        if (r == null)
+            return null;
+        int low = 0, high = r.shardIds.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (r.endingHashKeys[mid].compareTo(hashKey) < 0)
+                low = mid + 1;
+            else if (r.startingHashKeys[mid].compareTo(hashKey) > 0)
+                high = mid - 1;
+            else
+                return r.shardIds[mid];
+        }
+        return null;
+    }
+
+    /**
+     * Makes the next call to {@link #needsRefresh()} return true, for example
+     * because a record did not end up in the predicted shard.
+     */
+    void invalidate() {
+        nextRefreshNanos = System.nanoTime();
+    }
+
+    boolean needsRefresh() {
+        return System.nanoTime() - nextRefreshNanos >= 0 && !refreshing.get();
+    }
+
+    /**
+     * Lists the open shards of the stream and replaces the map, unless
+     * another thread is already doing so. Failures are logged, and the
+     * previous map, if any, kept.
+     */
+    void refresh() {
+        if (!refreshing.compareAndSet(false, true))
+            return;
+        try {
+            final List<Shard> open = new ArrayList<Shard>();
+            for (Shard shard : listShards(kinesis, streamName)) {
+                if (shard.getSequenceNumberRange() == null
+                ||  shard.getSequenceNumberRange().getEndingSequenceNumber() == null)
+                    open.add(shard);
+            }
+            Collections.sort(open, BY_STARTING_HASH_KEY);
+            ranges = new Ranges(open);
+            nextRefreshNanos = System.nanoTime() + refreshNanos;
+            if (log.isDebugEnabled())
+                log.debug("Found " + open.size() + " open shards in stream " + streamName);
+        } catch (RuntimeException e) {
+            log.warn("Unable to list the shards of stream " + streamName, e);
+            nextRefreshNanos = System.nanoTime() + FAILURE_BACKOFF_NANOS;
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private static final class Ranges {
+        final BigInteger[] startingHashKeys;
+        final BigInteger[] endingHashKeys;
+        final String[] shardIds;
+
+        Ranges(List<Shard> shards) {
+            final int n = shards.size();
+            startingHashKeys = new BigInteger[n];
+            endingHashKeys = new BigInteger[n];
+            shardIds = new String[n];
+            for (int i = 0; i < n; i++) {
+                final Shard shard = shards.get(i);
+                startingHashKeys[i] = new BigInteger(shard.getHashKeyRange().getStartingHashKey());
+                endingHashKeys[i] = new BigInteger(shard.getHashKeyRange().getEndingHashKey());
+                shardIds[i] = shard.getShardId();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+/**
+ * A snapshot of the counters an {@link AmazonKinesisBufferedProducer} keeps
+ * for a shard since it was created.
+ */
+public class ShardMetrics {
+    private final String shardId;
+    private final long userRecordsPut;
+    private final long kinesisRecordsPut;
+    private final long bytesPut;
+    private final long throttledRecords;
+    private final long userRecordsFailed;
+
+    ShardMetrics(String shardId, long userRecordsPut, long kinesisRecordsPut,
+            long bytesPut, long throttledRecords, long userRecordsFailed) {
+        this.shardId = shardId;
+        this.userRecordsPut = userRecordsPut;
+        this.kinesisRecordsPut = kinesisRecordsPut;
+        this.bytesPut = bytesPut;
+        this.throttledRecords = throttledRecords;
+        this.userRecordsFailed = userRecordsFailed;
+    }
+
+    public String getShardId() {
+        return shardId;
+    }
+
+    /**
+     * Returns the number of user records successfully put in the shard.
+     */
+    public long getUserRecordsPut() {
+        return userRecordsPut;
+    }
+
+    /**
+     * Returns the number of Kinesis records, aggregated or not, successfully
+     * put in the shard.
+     */
+    public long getKinesisRecordsPut() {
+        return kinesisRecordsPut;
+    }
+
+    /**
+     * Returns the number of bytes, data and partition keys, successfully put
+     * in the shard.
+     */
+    public long getBytesPut() {
+        return bytesPut;
+    }
+
+    /**
+     * Returns the number of times a Kinesis record predicted to go to the shard
+     * was rejected with ProvisionedThroughputExceededException.
+     */
+    public long getThrottledRecords() {
+        return throttledRecords;
+    }
+
+    /**
+     * Returns the number of user records predicted to go to the shard that
+     * could not be put.
+     */
+    public long getUserRecordsFailed() {
+        return userRecordsFailed;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardMetrics [shardId=" + shardId + ", userRecordsPut="
+                + userRecordsPut + ", kinesisRecordsPut=" + kinesisRecordsPut
+                + ", bytesPut=" + bytesPut + ", throttledRecords="
+                + throttledRecords + ", userRecordsFailed=" + userRecordsFailed
+                + "]";
+    }
+}
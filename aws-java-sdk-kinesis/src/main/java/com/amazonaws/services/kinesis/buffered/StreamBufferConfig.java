@@ -0,0 +1,470 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+/**
+ * Configuration of an {@link AmazonKinesisBufferedProducer}.
+ */
+public class StreamBufferConfig {
+
+    /** Maximum number of records in a PutRecords request. */
+    public static final int SERVICE_MAX_RECORDS_PER_REQUEST = 500;
+
+    /** Maximum size of a PutRecords request, including partition keys. */
+    public static final long SERVICE_MAX_REQUEST_BYTES = 5L * 1024 * 1024;
+
+    /** Maximum size of a Kinesis record, including its partition key. */
+    public static final int SERVICE_MAX_RECORD_BYTES = 1024 * 1024;
+
+    /**
+     * The maximum time (milliseconds) a user record is buffered before it is
+     * sent. The longer this time, the more user records can be aggregated and
+     * batched together, at the expense of latency.
+     */
+    private long maxBufferTimeMs;
+
+    /** 100 milliseconds */
+    public static final long MAX_BUFFER_TIME_MS_DEFAULT = 100;
+
+    /** The maximum number of records in a PutRecords request. */
+    private int maxRecordsPerRequest;
+
+    public static final int MAX_RECORDS_PER_REQUEST_DEFAULT = SERVICE_MAX_RECORDS_PER_REQUEST;
+
+    /** The maximum size (bytes) of a PutRecords request. */
+    private long maxRequestBytes;
+
+    public static final long MAX_REQUEST_BYTES_DEFAULT = SERVICE_MAX_REQUEST_BYTES;
+
+    /**
+     * Whether user records predicted to go to the same shard are aggregated
+     * into a single Kinesis record. Aggregated records use the format of the
+     * Kinesis Producer Library, and are de-aggregated by the Kinesis Client
+     * Library.
+     */
+    private boolean aggregationEnabled;
+
+    /** true */
+    public static final boolean AGGREGATION_ENABLED_DEFAULT = true;
+
+    /**
+     * The maximum size (bytes) of an aggregated Kinesis record. Larger values
+     * make better use of the shard throughput for small user records.
+     */
+    private int maxAggregatedRecordBytes;
+
+    /** 50 KiB */
+    public static final int MAX_AGGREGATED_RECORD_BYTES_DEFAULT = 50 * 1024;
+
+    /** The maximum number of concurrent PutRecords requests. */
+    private int maxInflightRequests;
+
+    /** 10 requests */
+    public static final int MAX_INFLIGHT_REQUESTS_DEFAULT = 10;
+
+    /**
+     * The maximum number of user records that can be outstanding, ie added but
+     * not yet successfully put or failed. Adding more user records blocks until
+     * some are done.
+     */
+    private int maxOutstandingRecords;
+
+    /** 100,000 records */
+    public static final int MAX_OUTSTANDING_RECORDS_DEFAULT = 100000;
+
+    /**
+     * The number of times a Kinesis record that failed with a retryable error,
+     * such as when a shard is throttled, is retried before its user records
+     * are failed.
+     */
+    private int maxRetries;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry.
+     */
+    private long retryBackoffMs;
+
+    /** 100 milliseconds */
+    public static final long RETRY_BACKOFF_MS_DEFAULT = 100;
+
+    /** The maximum delay (milliseconds) between retries of a failed record. */
+    private long maxRetryBackoffMs;
+
+    /** 5 seconds */
+    public static final long MAX_RETRY_BACKOFF_MS_DEFAULT = 5000;
+
+    /**
+     * The time (milliseconds) after which the shard map of the stream is
+     * refreshed. The shard map is also refreshed as soon as a record ends up
+     * in a shard other than the predicted one.
+     */
+    private long shardMapRefreshMs;
+
+    /** 1 minute */
+    public static final long SHARD_MAP_REFRESH_MS_DEFAULT = 60000;
+
+    public StreamBufferConfig() {
+        maxBufferTimeMs = MAX_BUFFER_TIME_MS_DEFAULT;
+        maxRecordsPerRequest = MAX_RECORDS_PER_REQUEST_DEFAULT;
+        maxRequestBytes = MAX_REQUEST_BYTES_DEFAULT;
+        aggregationEnabled = AGGREGATION_ENABLED_DEFAULT;
+        maxAggregatedRecordBytes = MAX_AGGREGATED_RECORD_BYTES_DEFAULT;
+        maxInflightRequests = MAX_INFLIGHT_REQUESTS_DEFAULT;
+        maxOutstandingRecords = MAX_OUTSTANDING_RECORDS_DEFAULT;
+        maxRetries = MAX_RETRIES_DEFAULT;
+        retryBackoffMs = RETRY_BACKOFF_MS_DEFAULT;
+        maxRetryBackoffMs = MAX_RETRY_BACKOFF_MS_DEFAULT;
+        shardMapRefreshMs = SHARD_MAP_REFRESH_MS_DEFAULT;
+    }
+
+    /** copy constructor */
+    public StreamBufferConfig(StreamBufferConfig other) {
+        maxBufferTimeMs = other.maxBufferTimeMs;
+        maxRecordsPerRequest = other.maxRecordsPerRequest;
+        maxRequestBytes = other.maxRequestBytes;
+        aggregationEnabled = other.aggregationEnabled;
+        maxAggregatedRecordBytes = other.maxAggregatedRecordBytes;
+        maxInflightRequests = other.maxInflightRequests;
+        maxOutstandingRecords = other.maxOutstandingRecords;
+        maxRetries = other.maxRetries;
+        retryBackoffMs = other.retryBackoffMs;
+        maxRetryBackoffMs = other.maxRetryBackoffMs;
+        shardMapRefreshMs = other.shardMapRefreshMs;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamBufferConfig [maxBufferTimeMs=" + maxBufferTimeMs + ", maxRecordsPerRequest="
+                + maxRecordsPerRequest + ", maxRequestBytes=" + maxRequestBytes + ", aggregationEnabled="
+                + aggregationEnabled + ", maxAggregatedRecordBytes=" + maxAggregatedRecordBytes
+                + ", maxInflightRequests=" + maxInflightRequests + ", maxOutstandingRecords="
+                + maxOutstandingRecords + ", maxRetries=" + maxRetries + ", retryBackoffMs=" + retryBackoffMs
+                + ", maxRetryBackoffMs=" + maxRetryBackoffMs + ", shardMapRefreshMs=" + shardMapRefreshMs + "]";
+    }
+
+    /**
+     * Checks that the configuration is consistent.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    void validate() {
+        if (maxBufferTimeMs <= 0)
+            throw new IllegalArgumentException("maxBufferTimeMs must be positive");
+        if (maxRecordsPerRequest <= 0 || maxRecordsPerRequest > SERVICE_MAX_RECORDS_PER_REQUEST)
+            throw new IllegalArgumentException("maxRecordsPerRequest must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_REQUEST);
+        if (maxRequestBytes < SERVICE_MAX_RECORD_BYTES || maxRequestBytes > SERVICE_MAX_REQUEST_BYTES)
+            throw new IllegalArgumentException("maxRequestBytes must be between " + SERVICE_MAX_RECORD_BYTES
+                    + " and " + SERVICE_MAX_REQUEST_BYTES);
+        if (maxAggregatedRecordBytes <= 0 || maxAggregatedRecordBytes > SERVICE_MAX_RECORD_BYTES)
+            throw new IllegalArgumentException("maxAggregatedRecordBytes must be between 1 and "
+                    + SERVICE_MAX_RECORD_BYTES);
+        if (maxInflightRequests <= 0)
+            throw new IllegalArgumentException("maxInflightRequests must be positive");
+        if (maxOutstandingRecords <= 0)
+            throw new IllegalArgumentException("maxOutstandingRecords must be positive");
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        if (retryBackoffMs <= 0 || maxRetryBackoffMs < retryBackoffMs)
+            throw new IllegalArgumentException(
+                    "retryBackoffMs must be positive and no larger than maxRetryBackoffMs");
+        if (shardMapRefreshMs <= 0)
+            throw new IllegalArgumentException("shardMapRefreshMs must be positive");
+    }
+
+    /**
+     * The maximum time (milliseconds) a user record is buffered before it is
+     * sent. The longer this time, the more user records can be aggregated and
+     * batched together, at the expense of latency.
+     */
+    public long getMaxBufferTimeMs() {
+        return maxBufferTimeMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) a user record is buffered before it is
+     * sent. The longer this time, the more user records can be aggregated and
+     * batched together, at the expense of latency.
+     */
+    public void setMaxBufferTimeMs(long maxBufferTimeMs) {
+        this.maxBufferTimeMs = maxBufferTimeMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) a user record is buffered before it is
+     * sent. The longer this time, the more user records can be aggregated and
+     * batched together, at the expense of latency.
+     */
+    public StreamBufferConfig withMaxBufferTimeMs(long maxBufferTimeMs) {
+        setMaxBufferTimeMs(maxBufferTimeMs);
+        return this;
+    }
+
+    /**
+     * The maximum number of records in a PutRecords request; no more than
+     * {@value #SERVICE_MAX_RECORDS_PER_REQUEST}.
+     */
+    public int getMaxRecordsPerRequest() {
+        return maxRecordsPerRequest;
+    }
+
+    /**
+     * The maximum number of records in a PutRecords request; no more than
+     * {@value #SERVICE_MAX_RECORDS_PER_REQUEST}.
+     */
+    public void setMaxRecordsPerRequest(int maxRecordsPerRequest) {
+        this.maxRecordsPerRequest = maxRecordsPerRequest;
+    }
+
+    /**
+     * The maximum number of records in a PutRecords request; no more than
+     * {@value #SERVICE_MAX_RECORDS_PER_REQUEST}.
+     */
+    public StreamBufferConfig withMaxRecordsPerRequest(int maxRecordsPerRequest) {
+        setMaxRecordsPerRequest(maxRecordsPerRequest);
+        return this;
+    }
+
+    /**
+     * The maximum size (bytes) of a PutRecords request, including the
+     * partition keys; no more than {@value #SERVICE_MAX_REQUEST_BYTES}.
+     */
+    public long getMaxRequestBytes() {
+        return maxRequestBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of a PutRecords request, including the
+     * partition keys; no more than {@value #SERVICE_MAX_REQUEST_BYTES}.
+     */
+    public void setMaxRequestBytes(long maxRequestBytes) {
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of a PutRecords request, including the
+     * partition keys; no more than {@value #SERVICE_MAX_REQUEST_BYTES}.
+     */
+    public StreamBufferConfig withMaxRequestBytes(long maxRequestBytes) {
+        setMaxRequestBytes(maxRequestBytes);
+        return this;
+    }
+
+    /**
+     * @return true if user records predicted to go to the same shard are
+     *         aggregated into a single Kinesis record, in the format of the
+     *         Kinesis Producer Library.
+     */
+    public boolean isAggregationEnabled() {
+        return aggregationEnabled;
+    }
+
+    /**
+     * Specify "true" to aggregate user records predicted to go to the same
+     * shard into a single Kinesis record, in the format of the Kinesis Producer
+     * Library. Consumers must then de-aggregate the records, which the Kinesis
+     * Client Library does.
+     */
+    public void setAggregationEnabled(boolean aggregationEnabled) {
+        this.aggregationEnabled = aggregationEnabled;
+    }
+
+    /**
+     * Specify "true" to aggregate user records predicted to go to the same
+     * shard into a single Kinesis record, in the format of the Kinesis Producer
+     * Library. Consumers must then de-aggregate the records, which the Kinesis
+     * Client Library does.
+     */
+    public StreamBufferConfig withAggregationEnabled(boolean aggregationEnabled) {
+        setAggregationEnabled(aggregationEnabled);
+        return this;
+    }
+
+    /**
+     * The maximum size (bytes) of an aggregated Kinesis record.
+     */
+    public int getMaxAggregatedRecordBytes() {
+        return maxAggregatedRecordBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of an aggregated Kinesis record.
+     */
+    public void setMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        this.maxAggregatedRecordBytes = maxAggregatedRecordBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of an aggregated Kinesis record.
+     */
+    public StreamBufferConfig withMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        setMaxAggregatedRecordBytes(maxAggregatedRecordBytes);
+        return this;
+    }
+
+    /**
+     * The maximum number of concurrent PutRecords requests.
+     */
+    public int getMaxInflightRequests() {
+        return maxInflightRequests;
+    }
+
+    /**
+     * The maximum number of concurrent PutRecords requests.
+     */
+    public void setMaxInflightRequests(int maxInflightRequests) {
+        this.maxInflightRequests = maxInflightRequests;
+    }
+
+    /**
+     * The maximum number of concurrent PutRecords requests.
+     */
+    public StreamBufferConfig withMaxInflightRequests(int maxInflightRequests) {
+        setMaxInflightRequests(maxInflightRequests);
+        return this;
+    }
+
+    /**
+     * The maximum number of user records that can be outstanding, ie added but
+     * not yet successfully put or failed. Adding more user records blocks until
+     * some are done.
+     */
+    public int getMaxOutstandingRecords() {
+        return maxOutstandingRecords;
+    }
+
+    /**
+     * The maximum number of user records that can be outstanding, ie added but
+     * not yet successfully put or failed. Adding more user records blocks until
+     * some are done.
+     */
+    public void setMaxOutstandingRecords(int maxOutstandingRecords) {
+        this.maxOutstandingRecords = maxOutstandingRecords;
+    }
+
+    /**
+     * The maximum number of user records that can be outstanding, ie added but
+     * not yet successfully put or failed. Adding more user records blocks until
+     * some are done.
+     */
+    public StreamBufferConfig withMaxOutstandingRecords(int maxOutstandingRecords) {
+        setMaxOutstandingRecords(maxOutstandingRecords);
+        return this;
+    }
+
+    /**
+     * The number of times a Kinesis record that failed with a retryable error
+     * is retried before its user records are failed.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * The number of times a Kinesis record that failed with a retryable error
+     * is retried before its user records are failed.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * The number of times a Kinesis record that failed with a retryable error
+     * is retried before its user records are failed.
+     */
+    public StreamBufferConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry up to {@link #getMaxRetryBackoffMs()}.
+     */
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry up to {@link #getMaxRetryBackoffMs()}.
+     */
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry up to {@link #getMaxRetryBackoffMs()}.
+     */
+    public StreamBufferConfig withRetryBackoffMs(long retryBackoffMs) {
+        setRetryBackoffMs(retryBackoffMs);
+        return this;
+    }
+
+    /**
+     * The maximum delay (milliseconds) between retries of a failed record.
+     */
+    public long getMaxRetryBackoffMs() {
+        return maxRetryBackoffMs;
+    }
+
+    /**
+     * The maximum delay (milliseconds) between retries of a failed record.
+     */
+    public void setMaxRetryBackoffMs(long maxRetryBackoffMs) {
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+    }
+
+    /**
+     * The maximum delay (milliseconds) between retries of a failed record.
+     */
+    public StreamBufferConfig withMaxRetryBackoffMs(long maxRetryBackoffMs) {
+        setMaxRetryBackoffMs(maxRetryBackoffMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) after which the shard map of the stream is
+     * refreshed. The shard map is also refreshed as soon as a record ends up
+     * in a shard other than the predicted one, such as after a reshard.
+     */
+    public long getShardMapRefreshMs() {
+        return shardMapRefreshMs;
+    }
+
+    /**
+     * The time (milliseconds) after which the shard map of the stream is
+     * refreshed. The shard map is also refreshed as soon as a record ends up
+     * in a shard other than the predicted one, such as after a reshard.
+     */
+    public void setShardMapRefreshMs(long shardMapRefreshMs) {
+        this.shardMapRefreshMs = shardMapRefreshMs;
+    }
+
+    /**
+     * The time (milliseconds) after which the shard map of the stream is
+     * refreshed. The shard map is also refreshed as soon as a record ends up
+     * in a shard other than the predicted one, such as after a reshard.
+     */
+    public StreamBufferConfig withShardMapRefreshMs(long shardMapRefreshMs) {
+        setShardMapRefreshMs(shardMapRefreshMs);
+        return this;
+    }
+}
@@ -0,0 +1,547 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.Date;
+
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+
+/**
+ * Configuration of an {@link AmazonKinesisBufferedConsumer}.
+ */
+public class StreamConsumerConfig {
+
+    /** Maximum number of records returned by a GetRecords call. */
+    public static final int SERVICE_MAX_RECORDS_PER_FETCH = 10000;
+
+    /**
+     * Where to start reading a shard that has no checkpoint and no parent
+     * shard: TRIM_HORIZON, LATEST or AT_TIMESTAMP. Child shards are always
+     * read from their start.
+     */
+    private ShardIteratorType initialPosition;
+
+    /** TRIM_HORIZON */
+    public static final ShardIteratorType INITIAL_POSITION_DEFAULT = ShardIteratorType.TRIM_HORIZON;
+
+    /**
+     * The time to start reading at when the initial position is AT_TIMESTAMP.
+     */
+    private Date initialTimestamp;
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    private int maxRecordsPerFetch;
+
+    /** 10,000 records, the service limit */
+    public static final int MAX_RECORDS_PER_FETCH_DEFAULT = SERVICE_MAX_RECORDS_PER_FETCH;
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    private int maxPrefetchedBatches;
+
+    /** 3 batches */
+    public static final int MAX_PREFETCHED_BATCHES_DEFAULT = 3;
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the shard is behind its tip.
+     */
+    private long minFetchIntervalMs;
+
+    /** 200 milliseconds, ie five calls per second, the per-shard limit */
+    public static final long MIN_FETCH_INTERVAL_MS_DEFAULT = 200;
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once it has caught up with its tip, as reported by
+     * MillisBehindLatest.
+     */
+    private long idleFetchIntervalMs;
+
+    /** 1 second */
+    public static final long IDLE_FETCH_INTERVAL_MS_DEFAULT = 1000;
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    private long fetchBackoffMs;
+
+    /** 1 second */
+    public static final long FETCH_BACKOFF_MS_DEFAULT = 1000;
+
+    /**
+     * The delay (milliseconds) before delivering the same records of a shard
+     * again after the record processor threw an exception.
+     */
+    private long processBackoffMs;
+
+    /** 1 second */
+    public static final long PROCESS_BACKOFF_MS_DEFAULT = 1000;
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    private long shardDiscoveryIntervalMs;
+
+    /** 10 seconds */
+    public static final long SHARD_DISCOVERY_INTERVAL_MS_DEFAULT = 10000;
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    private long checkpointIntervalMs;
+
+    /** 5 seconds */
+    public static final long CHECKPOINT_INTERVAL_MS_DEFAULT = 5000;
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    private int fetcherThreads;
+
+    /** the number of processors, and at least 2 */
+    public static final int FETCHER_THREADS_DEFAULT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    private int processorThreads;
+
+    /** the number of processors */
+    public static final int PROCESSOR_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Whether records aggregated in the format of the Kinesis Producer
+     * Library, as done by {@link AmazonKinesisBufferedProducer}, are split
+     * back into user records before being processed.
+     */
+    private boolean deaggregationEnabled;
+
+    /** true */
+    public static final boolean DEAGGREGATION_ENABLED_DEFAULT = true;
+
+    public StreamConsumerConfig() {
+        initialPosition = INITIAL_POSITION_DEFAULT;
+        maxRecordsPerFetch = MAX_RECORDS_PER_FETCH_DEFAULT;
+        maxPrefetchedBatches = MAX_PREFETCHED_BATCHES_DEFAULT;
+        minFetchIntervalMs = MIN_FETCH_INTERVAL_MS_DEFAULT;
+        idleFetchIntervalMs = IDLE_FETCH_INTERVAL_MS_DEFAULT;
+        fetchBackoffMs = FETCH_BACKOFF_MS_DEFAULT;
+        processBackoffMs = PROCESS_BACKOFF_MS_DEFAULT;
+        shardDiscoveryIntervalMs = SHARD_DISCOVERY_INTERVAL_MS_DEFAULT;
+        checkpointIntervalMs = CHECKPOINT_INTERVAL_MS_DEFAULT;
+        fetcherThreads = FETCHER_THREADS_DEFAULT;
+        processorThreads = PROCESSOR_THREADS_DEFAULT;
+        deaggregationEnabled = DEAGGREGATION_ENABLED_DEFAULT;
+    }
+
+    /** copy constructor */
+    public StreamConsumerConfig(StreamConsumerConfig other) {
+        initialPosition = other.initialPosition;
+        initialTimestamp = other.initialTimestamp;
+        maxRecordsPerFetch = other.maxRecordsPerFetch;
+        maxPrefetchedBatches = other.maxPrefetchedBatches;
+        minFetchIntervalMs = other.minFetchIntervalMs;
+        idleFetchIntervalMs = other.idleFetchIntervalMs;
+        fetchBackoffMs = other.fetchBackoffMs;
+        processBackoffMs = other.processBackoffMs;
+        shardDiscoveryIntervalMs = other.shardDiscoveryIntervalMs;
+        checkpointIntervalMs = other.checkpointIntervalMs;
+        fetcherThreads = other.fetcherThreads;
+        processorThreads = other.processorThreads;
+        deaggregationEnabled = other.deaggregationEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamConsumerConfig [initialPosition=" + initialPosition + ", initialTimestamp=" +
+                initialTimestamp + ", maxRecordsPerFetch=" + maxRecordsPerFetch + ", maxPrefetchedBatches=" +
+                maxPrefetchedBatches + ", minFetchIntervalMs=" + minFetchIntervalMs +
+                ", idleFetchIntervalMs=" + idleFetchIntervalMs + ", fetchBackoffMs=" + fetchBackoffMs +
+                ", processBackoffMs=" + processBackoffMs + ", shardDiscoveryIntervalMs=" +
+                shardDiscoveryIntervalMs + ", checkpointIntervalMs=" + checkpointIntervalMs +
+                ", fetcherThreads=" + fetcherThreads + ", processorThreads=" + processorThreads +
+                ", deaggregationEnabled=" + deaggregationEnabled + "]";
+    }
+
+    /**
+     * Checks that the configuration is consistent.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    void validate() {
+        if (initialPosition != ShardIteratorType.TRIM_HORIZON
+        &&  initialPosition != ShardIteratorType.LATEST
+        &&  initialPosition != ShardIteratorType.AT_TIMESTAMP)
+            throw new IllegalArgumentException("initialPosition must be TRIM_HORIZON, LATEST or AT_TIMESTAMP");
+        if (initialPosition == ShardIteratorType.AT_TIMESTAMP && initialTimestamp == null)
+            throw new IllegalArgumentException("initialTimestamp must be set for AT_TIMESTAMP");
+        if (maxRecordsPerFetch <= 0 || maxRecordsPerFetch > SERVICE_MAX_RECORDS_PER_FETCH)
+            throw new IllegalArgumentException("maxRecordsPerFetch must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_FETCH);
+        if (maxPrefetchedBatches <= 0)
+            throw new IllegalArgumentException("maxPrefetchedBatches must be positive");
+        if (minFetchIntervalMs < 0 || idleFetchIntervalMs < minFetchIntervalMs)
+            throw new IllegalArgumentException(
+                    "minFetchIntervalMs must not be negative, nor larger than idleFetchIntervalMs");
+        if (fetchBackoffMs <= 0)
+            throw new IllegalArgumentException("fetchBackoffMs must be positive");
+        if (processBackoffMs <= 0)
+            throw new IllegalArgumentException("processBackoffMs must be positive");
+        if (shardDiscoveryIntervalMs <= 0)
+            throw new IllegalArgumentException("shardDiscoveryIntervalMs must be positive");
+        if (checkpointIntervalMs < 0)
+            throw new IllegalArgumentException("checkpointIntervalMs must not be negative");
+        if (fetcherThreads <= 0 || processorThreads <= 0)
+            throw new IllegalArgumentException("fetcherThreads and processorThreads must be positive");
+    }
+
+    /**
+     * Where to start reading a shard that has no checkpoint and no parent
+     * shard: TRIM_HORIZON, LATEST or AT_TIMESTAMP. Child shards are always
+     * read from their start.
+     */
+    public ShardIteratorType getInitialPosition() {
+        return initialPosition;
+    }
+
+    /**
+     * Where to start reading a shard that has no checkpoint and no parent
+     * shard: TRIM_HORIZON, LATEST or AT_TIMESTAMP. Child shards are always
+     * read from their start.
+     */
+    public void setInitialPosition(ShardIteratorType initialPosition) {
+        this.initialPosition = initialPosition;
+    }
+
+    /**
+     * Where to start reading a shard that has no checkpoint and no parent
+     * shard: TRIM_HORIZON, LATEST or AT_TIMESTAMP. Child shards are always
+     * read from their start.
+     */
+    public StreamConsumerConfig withInitialPosition(ShardIteratorType initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    /**
+     * The time to start reading at when the initial position is AT_TIMESTAMP.
+     */
+    public Date getInitialTimestamp() {
+        return initialTimestamp;
+    }
+
+    /**
+     * The time to start reading at when the initial position is AT_TIMESTAMP.
+     */
+    public void setInitialTimestamp(Date initialTimestamp) {
+        this.initialTimestamp = initialTimestamp;
+    }
+
+    /**
+     * The time to start reading at when the initial position is AT_TIMESTAMP.
+     */
+    public StreamConsumerConfig withInitialTimestamp(Date initialTimestamp) {
+        setInitialTimestamp(initialTimestamp);
+        return this;
+    }
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    public int getMaxRecordsPerFetch() {
+        return maxRecordsPerFetch;
+    }
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    public void setMaxRecordsPerFetch(int maxRecordsPerFetch) {
+        this.maxRecordsPerFetch = maxRecordsPerFetch;
+    }
+
+    /**
+     * The maximum number of records returned by a GetRecords call.
+     */
+    public StreamConsumerConfig withMaxRecordsPerFetch(int maxRecordsPerFetch) {
+        setMaxRecordsPerFetch(maxRecordsPerFetch);
+        return this;
+    }
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    public int getMaxPrefetchedBatches() {
+        return maxPrefetchedBatches;
+    }
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    public void setMaxPrefetchedBatches(int maxPrefetchedBatches) {
+        this.maxPrefetchedBatches = maxPrefetchedBatches;
+    }
+
+    /**
+     * The maximum number of GetRecords results fetched ahead of processing for
+     * each shard. Fetching stops while a shard has that many batches waiting
+     * to be processed.
+     */
+    public StreamConsumerConfig withMaxPrefetchedBatches(int maxPrefetchedBatches) {
+        setMaxPrefetchedBatches(maxPrefetchedBatches);
+        return this;
+    }
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the shard is behind its tip.
+     */
+    public long getMinFetchIntervalMs() {
+        return minFetchIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the shard is behind its tip.
+     */
+    public void setMinFetchIntervalMs(long minFetchIntervalMs) {
+        this.minFetchIntervalMs = minFetchIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between the starts of two GetRecords
+     * calls on a shard, used while the shard is behind its tip.
+     */
+    public StreamConsumerConfig withMinFetchIntervalMs(long minFetchIntervalMs) {
+        setMinFetchIntervalMs(minFetchIntervalMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once it has caught up with its tip, as reported by
+     * MillisBehindLatest.
+     */
+    public long getIdleFetchIntervalMs() {
+        return idleFetchIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once it has caught up with its tip, as reported by
+     * MillisBehindLatest.
+     */
+    public void setIdleFetchIntervalMs(long idleFetchIntervalMs) {
+        this.idleFetchIntervalMs = idleFetchIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between the starts of two GetRecords calls on a
+     * shard once it has caught up with its tip, as reported by
+     * MillisBehindLatest.
+     */
+    public StreamConsumerConfig withIdleFetchIntervalMs(long idleFetchIntervalMs) {
+        setIdleFetchIntervalMs(idleFetchIntervalMs);
+        return this;
+    }
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    public long getFetchBackoffMs() {
+        return fetchBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    public void setFetchBackoffMs(long fetchBackoffMs) {
+        this.fetchBackoffMs = fetchBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before fetching again from a shard after a
+     * GetRecords call failed or was throttled.
+     */
+    public StreamConsumerConfig withFetchBackoffMs(long fetchBackoffMs) {
+        setFetchBackoffMs(fetchBackoffMs);
+        return this;
+    }
+
+    /**
+     * The delay (milliseconds) before delivering the same records of a shard
+     * again after the record processor threw an exception.
+     */
+    public long getProcessBackoffMs() {
+        return processBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before delivering the same records of a shard
+     * again after the record processor threw an exception.
+     */
+    public void setProcessBackoffMs(long processBackoffMs) {
+        this.processBackoffMs = processBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before delivering the same records of a shard
+     * again after the record processor threw an exception.
+     */
+    public StreamConsumerConfig withProcessBackoffMs(long processBackoffMs) {
+        setProcessBackoffMs(processBackoffMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    public long getShardDiscoveryIntervalMs() {
+        return shardDiscoveryIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    public void setShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        this.shardDiscoveryIntervalMs = shardDiscoveryIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) between two listings of the shards of the
+     * stream.
+     */
+    public StreamConsumerConfig withShardDiscoveryIntervalMs(long shardDiscoveryIntervalMs) {
+        setShardDiscoveryIntervalMs(shardDiscoveryIntervalMs);
+        return this;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    public long getCheckpointIntervalMs() {
+        return checkpointIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    public void setCheckpointIntervalMs(long checkpointIntervalMs) {
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two checkpoints of a shard.
+     * Shards are also checkpointed when they end and on shutdown.
+     */
+    public StreamConsumerConfig withCheckpointIntervalMs(long checkpointIntervalMs) {
+        setCheckpointIntervalMs(checkpointIntervalMs);
+        return this;
+    }
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    public int getFetcherThreads() {
+        return fetcherThreads;
+    }
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    public void setFetcherThreads(int fetcherThreads) {
+        this.fetcherThreads = fetcherThreads;
+    }
+
+    /**
+     * The number of threads making GetRecords calls, shared by all the shards.
+     */
+    public StreamConsumerConfig withFetcherThreads(int fetcherThreads) {
+        setFetcherThreads(fetcherThreads);
+        return this;
+    }
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    public int getProcessorThreads() {
+        return processorThreads;
+    }
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    public void setProcessorThreads(int processorThreads) {
+        this.processorThreads = processorThreads;
+    }
+
+    /**
+     * The number of threads calling the record processor, shared by all the
+     * shards.
+     */
+    public StreamConsumerConfig withProcessorThreads(int processorThreads) {
+        setProcessorThreads(processorThreads);
+        return this;
+    }
+
+    /**
+     * Whether records aggregated in the format of the Kinesis Producer
+     * Library, as done by {@link AmazonKinesisBufferedProducer}, are split
+     * back into user records before being processed.
+     */
+    public boolean isDeaggregationEnabled() {
+        return deaggregationEnabled;
+    }
+
+    /**
+     * Whether records aggregated in the format of the Kinesis Producer
+     * Library, as done by {@link AmazonKinesisBufferedProducer}, are split
+     * back into user records before being processed.
+     */
+    public void setDeaggregationEnabled(boolean deaggregationEnabled) {
+        this.deaggregationEnabled = deaggregationEnabled;
+    }
+
+    /**
+     * Whether records aggregated in the format of the Kinesis Producer
+     * Library, as done by {@link AmazonKinesisBufferedProducer}, are split
+     * back into user records before being processed.
+     */
+    public StreamConsumerConfig withDeaggregationEnabled(boolean deaggregationEnabled) {
+        setDeaggregationEnabled(deaggregationEnabled);
+        return this;
+    }
+}
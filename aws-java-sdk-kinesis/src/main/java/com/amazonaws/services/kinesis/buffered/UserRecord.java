@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.math.BigInteger;
+
+import com.amazonaws.services.kinesis.internal.SettableFuture;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * A record added to an {@link AmazonKinesisBufferedProducer}, together with
+ * the future to complete once it has been put.
+ */
+class UserRecord {
+    final String partitionKey;
+    final byte[] partitionKeyBytes;
+    /** The explicit hash key given by the user, or null. */
+    final String explicitHashKey;
+    /** The hash key that determines the shard of the record. */
+    final BigInteger hashKey;
+    final byte[] data;
+    final SettableFuture<UserRecordResult> future = new SettableFuture<UserRecordResult>();
+
+    /**
+     * @throws NumberFormatException
+     *             if the explicit hash key is not a decimal number
+     */
+    UserRecord(String partitionKey, String explicitHashKey, byte[] data) {
+        this.partitionKey = partitionKey;
+        this.partitionKeyBytes = partitionKey.getBytes(StringUtils.UTF8);
+        this.explicitHashKey = explicitHashKey;
+        this.hashKey = explicitHashKey == null
+                ? ShardMap.hashKeyOf(partitionKeyBytes)
+                : new BigInteger(explicitHashKey);
+        this.data = data;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Thrown, wrapped in an {@link java.util.concurrent.ExecutionException}, by
+ * the future of a user record that could not be put, either because Kinesis
+ * rejected the record it was part of more times than allowed by
+ * {@link StreamBufferConfig#getMaxRetries()}, or because the PutRecords request
+ * failed with a non-retryable error.
+ */
+public class UserRecordFailedException extends AmazonClientException {
+    private static final long serialVersionUID = 1L;
+
+    private final String errorCode;
+    private final int attempts;
+
+    public UserRecordFailedException(String message, String errorCode,
+            int attempts) {
+        super(message);
+        this.errorCode = errorCode;
+        this.attempts = attempts;
+    }
+
+    public UserRecordFailedException(String message, Throwable cause,
+            int attempts) {
+        super(message, cause);
+        this.errorCode = null;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Returns the error code Kinesis returned for the record in the last
+     * attempt, or null if the whole PutRecords request failed.
+     */
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Returns the number of PutRecords requests attempted.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+/**
+ * The outcome of successfully putting a user record with an
+ * {@link AmazonKinesisBufferedProducer}.
+ */
+public class UserRecordResult {
+    private final String shardId;
+    private final String sequenceNumber;
+    private final int subSequenceNumber;
+    private final int attempts;
+
+    UserRecordResult(String shardId, String sequenceNumber,
+            int subSequenceNumber, int attempts) {
+        this.shardId = shardId;
+        this.sequenceNumber = sequenceNumber;
+        this.subSequenceNumber = subSequenceNumber;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Returns the id of the shard the user record was put in.
+     */
+    public String getShardId() {
+        return shardId;
+    }
+
+    /**
+     * Returns the sequence number of the Kinesis record holding the user
+     * record. User records aggregated together share the same sequence number.
+     */
+    public String getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Returns the index of the user record within its aggregated Kinesis
+     * record, or zero if the user record was not aggregated.
+     */
+    public int getSubSequenceNumber() {
+        return subSequenceNumber;
+    }
+
+    /**
+     * Returns the number of PutRecords requests it took to put the user
+     * record, including the successful one.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "UserRecordResult [shardId=" + shardId + ", sequenceNumber="
+                + sequenceNumber + ", subSequenceNumber=" + subSequenceNumber
+                + ", attempts=" + attempts + "]";
+    }
+}
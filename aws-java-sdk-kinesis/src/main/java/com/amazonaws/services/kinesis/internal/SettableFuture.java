@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.internal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.amazonaws.annotation.SdkInternalApi;
+
+/**
+ * Delivers the outcome of a record handed to one of the buffered Kinesis or
+ * Firehose clients, once the batch it was sent in completes. SettableFutures
+ * are not cancellable.
+ *
+ * @param <V>
+ *            type of the result
+ */
+@SdkInternalApi
+public final class SettableFuture<V> implements Future<V> {
+    private V result;
+    private Exception e;
+    private boolean done;
+
+    /**
+     * Report that the record has been delivered.
+     */
+    public synchronized void setSuccess(V paramResult) {
+        if (done)
+            return; // can't mark done twice
+        result = paramResult;
+        done = true;
+        notifyAll();
+    }
+
+    /**
+     * Report that the record could not be delivered.
+     */
+    public synchronized void setFailure(Exception paramE) {
+        if (done)
+            return; // can't mark done twice
+        e = paramE;
+        done = true;
+        notifyAll();
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        // not cancellable
+        return false;
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                return get(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException te) {
+                // shouldn't really happen, since we're specifying a very-very
+                // long wait. but if it does, just loop and wait more.
+            }
+        }
+    }
+
+    @Override
+    public synchronized V get(long timeout, TimeUnit tu)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        final long timeoutMs = tu.toMillis(timeout);
+        final long waitStartMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        long timeToWaitMs = timeoutMs;
+
+        while (!done) {
+            // wait(0) means "wait forever", which is the opposite of what we
+            // want
+            if (timeToWaitMs <= 0) {
+                throw new TimeoutException("Timed out waiting for results after " + timeout + " " + tu);
+            }
+            wait(timeToWaitMs);
+            final long nowMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+            timeToWaitMs = timeoutMs - (nowMs - waitStartMs);
+        }
+        if (e != null) {
+            throw new ExecutionException(e);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        // not cancellable
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+}
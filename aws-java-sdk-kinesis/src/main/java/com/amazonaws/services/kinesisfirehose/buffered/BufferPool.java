@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of fixed size blocks that records are copied into back to back, so
+ * that buffering many small records neither allocates an array per record
+ * nor churns large arrays once the writer has warmed up.
+ * <p>
+ * A block is reference counted: it goes back to the pool once the writer has
+ * moved on to another block and every record copied into it has been
+ * delivered or failed.
+ */
+class BufferPool {
+    private final int blockSize;
+    private final int maxPooledBlocks;
+    private final LinkedList<byte[]> free = new LinkedList<byte[]>();
+
+    BufferPool(int blockSize, int maxPooledBlocks) {
+        this.blockSize = blockSize;
+        this.maxPooledBlocks = maxPooledBlocks;
+    }
+
+    /**
+     * Returns an empty block, with a reference held by the caller.
+     */
+    Block acquire() {
+        byte[] bytes;
+        synchronized (free) {
+            bytes = free.poll();
+        }
+        return new Block(bytes == null ? new byte[blockSize] : bytes);
+    }
+
+    private void release(byte[] bytes) {
+        synchronized (free) {
+            if (free.size() < maxPooledBlocks)
+                free.add(bytes);
+        }
+    }
+
+    final class Block {
+        final byte[] bytes;
+        /** Where the next record goes; only used by the writer, under its lock. */
+        int position;
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        private Block(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int remaining() {
+            return bytes.length - position;
+        }
+
+        void retain() {
+            refs.incrementAndGet();
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0)
+                BufferPool.this.release(bytes);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.kinesis.internal.SettableFuture;
+import com.amazonaws.services.kinesisfirehose.buffered.BufferPool.Block;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+
+/**
+ * A Firehose record being buffered: a range of a pooled block holding the
+ * data of one or more written records, together with their futures.
+ */
+class BufferedRecord {
+    private final Block block;
+    private final int offset;
+    private int length;
+    private final List<SettableFuture<String>> futures = new ArrayList<SettableFuture<String>>(1);
+
+    /** When the record must be sent, in {@link System#nanoTime()} terms. */
+    final long deadlineNanos;
+    /** The number of PutRecordBatch requests this record has been part of. */
+    int attempts;
+
+    /**
+     * Creates an empty record starting at the current position of the given
+     * block, and holds a reference to the block until {@link #release()}.
+     */
+    BufferedRecord(Block block, long deadlineNanos) {
+        block.retain();
+        this.block = block;
+        this.offset = block.position;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Appends data at the current position of the block, which must directly
+     * follow this record and have room for the data and delimiter.
+     */
+    void append(ByteBuffer data, boolean delimit, SettableFuture<String> future) {
+        final int n = data.remaining();
+        data.duplicate().get(block.bytes, block.position, n);
+        block.position += n;
+        if (delimit)
+            block.bytes[block.position++] = '\n';
+        length = block.position - offset;
+        futures.add(future);
+    }
+
+    int length() {
+        return length;
+    }
+
+    List<SettableFuture<String>> getFutures() {
+        return futures;
+    }
+
+    /**
+     * Returns a new Firehose record viewing the buffered data.
+     */
+    Record toRecord() {
+        return new Record().withData(ByteBuffer.wrap(block.bytes, offset, length));
+    }
+
+    /**
+     * Releases the reference to the block, once the record has been delivered
+     * or failed.
+     */
+    void release() {
+        block.release();
+    }
+}
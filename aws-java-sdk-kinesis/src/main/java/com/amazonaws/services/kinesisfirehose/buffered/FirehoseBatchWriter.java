@@ -0,0 +1,425 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.internal.DaemonThreadFactory;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.kinesis.internal.SettableFuture;
+import com.amazonaws.services.kinesisfirehose.AmazonKinesisFirehose;
+import com.amazonaws.services.kinesisfirehose.buffered.BufferPool.Block;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchRequest;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResponseEntry;
+import com.amazonaws.services.kinesisfirehose.model.PutRecordBatchResult;
+import com.amazonaws.services.kinesisfirehose.model.Record;
+
+/**
+ * Writes records to a Kinesis Firehose delivery stream asynchronously, in
+ * PutRecordBatch requests that each carry as many records as the service
+ * limits and the configured linger time allow.
+ * <p>
+ * Written data is copied into pooled blocks, back to back, and a batch is sent
+ * as soon as enough records are buffered to fill it, or when the oldest
+ * record has lingered for {@link FirehoseBatchWriterConfig#getLingerMs()}.
+ * Optionally, consecutive records are concatenated into newline-delimited
+ * Firehose records, to reduce the per-record cost of small records such as
+ * log lines. Only the records Firehose rejected are retried, with exponential
+ * backoff; Firehose only rejects individual records for transient reasons.
+ * <p>
+ * The amount of data buffered is bounded by
+ * {@link FirehoseBatchWriterConfig#getMaxBufferedBytes()}: writing blocks
+ * while the budget is used up, which applies backpressure to the caller.
+ * <p>
+ * This class is thread safe, and uses daemon threads; call
+ * {@link #flushSync()} or {@link #shutdown()} before exiting to make sure the
+ * buffered records are delivered.
+ */
+public class FirehoseBatchWriter {
+    private static final Log log = LogFactory.getLog(FirehoseBatchWriter.class);
+
+    private static final int BLOCK_SIZE = FirehoseBatchWriterConfig.SERVICE_MAX_RECORD_BYTES;
+
+    private final AmazonKinesisFirehose firehose;
+    private final String deliveryStreamName;
+    private final FirehoseBatchWriterConfig config;
+    private final long lingerNanos;
+    private final BufferPool pool;
+
+    /** Times the linger, and delays the retries. */
+    private final ScheduledExecutorService scheduler;
+    /** Sends the PutRecordBatch requests. */
+    private final ExecutorService senders;
+    /** The bytes of data that can still be buffered. */
+    private final Semaphore budget;
+
+    private final Object lock = new Object();
+    /** The block records are being copied into, or null. */
+    private Block block;
+    /** The record being concatenated to, or null. */
+    private BufferedRecord open;
+    /** The records waiting to be sent. */
+    private final LinkedList<BufferedRecord> ready = new LinkedList<BufferedRecord>();
+    private long readyBytes;
+    private int inflightBatches;
+    private int outstandingRecords;
+    /** Whether buffered records are sent regardless of the linger time. */
+    private boolean flushing;
+    private boolean shutdown;
+
+    public FirehoseBatchWriter(AmazonKinesisFirehose firehose, String deliveryStreamName) {
+        this(firehose, deliveryStreamName, new FirehoseBatchWriterConfig());
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the configuration is not valid
+     */
+    public FirehoseBatchWriter(AmazonKinesisFirehose firehose, String deliveryStreamName,
+            FirehoseBatchWriterConfig config) {
+        this.config = new FirehoseBatchWriterConfig(config);
+        this.config.validate();
+        this.firehose = firehose;
+        this.deliveryStreamName = deliveryStreamName;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(this.config.getLingerMs());
+        this.budget = new Semaphore((int) this.config.getMaxBufferedBytes(), true);
+        this.pool = new BufferPool(BLOCK_SIZE, (int) (this.config.getMaxBufferedBytes() / BLOCK_SIZE));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("FirehoseBatchWriterTimerThread-"));
+        this.senders = Executors.newFixedThreadPool(this.config.getMaxInflightBatches(),
+                new DaemonThreadFactory("FirehoseBatchWriterWorkerThread-"));
+
+        final long tickMs = Math.max(1, this.config.getLingerMs() / 4);
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    onTick();
+                } catch (RuntimeException e) {
+                    log.warn("Unexpected failure while buffering records for delivery stream "
+                            + deliveryStreamName, e);
+                }
+            }
+        }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @see #write(ByteBuffer)
+     */
+    public Future<String> write(byte[] data) {
+        return write(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Writes a record to the delivery stream. The remaining bytes of the data
+     * are copied, so the buffer can be reused as soon as this method returns.
+     * Blocks while the data buffered is at
+     * {@link FirehoseBatchWriterConfig#getMaxBufferedBytes()}.
+     *
+     * @return a future for the id of the Firehose record holding the data,
+     *         which fails with a {@link FirehoseRecordFailedException} if it
+     *         could not be delivered
+     * @throws IllegalArgumentException
+     *             if the record is too large
+     * @throws IllegalStateException
+     *             if the writer has been shut down
+     */
+    public Future<String> write(ByteBuffer data) {
+        final int length = data.remaining();
+        final boolean delimit = config.isConcatenationEnabled()
+                && (length == 0 || data.get(data.limit() - 1) != '\n');
+        final int size = delimit ? length + 1 : length;
+        if (size > FirehoseBatchWriterConfig.SERVICE_MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("The data of a record must not exceed "
+                    + FirehoseBatchWriterConfig.SERVICE_MAX_RECORD_BYTES + " bytes");
+        }
+        if (!budget.tryAcquire(size)) {
+            // make room, rather than wait for the linger time
+            flush();
+            try {
+                budget.acquire(size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AbortedException(e);
+            }
+        }
+        final SettableFuture<String> future = new SettableFuture<String>();
+        synchronized (lock) {
+            if (shutdown) {
+                budget.release(size);
+                throw new IllegalStateException("The writer has been shut down");
+            }
+            outstandingRecords++;
+            buffer(data, size, delimit, future);
+            sendReady();
+        }
+        return future;
+    }
+
+    /**
+     * Sends all the buffered records without waiting for the linger time to
+     * elapse, and returns without waiting for them to be delivered.
+     */
+    public void flush() {
+        synchronized (lock) {
+            flushing = true;
+            sendReady();
+        }
+    }
+
+    /**
+     * Sends all the buffered records, and blocks until every record written
+     * has been delivered or has failed.
+     */
+    public void flushSync() {
+        flush();
+        synchronized (lock) {
+            while (outstandingRecords > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AbortedException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting records, blocks until the outstanding ones have been
+     * delivered or have failed, and releases the threads of the writer. The
+     * Firehose client is not shut down.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+        }
+        flushSync();
+        synchronized (lock) {
+            if (block != null) {
+                block.release();
+                block = null;
+            }
+        }
+        scheduler.shutdownNow();
+        senders.shutdown();
+    }
+
+    /**
+     * Copies the data into the current block, either concatenated to the open
+     * record or as a record of its own. Must be called with the lock held.
+     */
+    private void buffer(ByteBuffer data, int size, boolean delimit, SettableFuture<String> future) {
+        if (open != null
+        &&  (open.length() + size > config.getMaxConcatenatedRecordBytes() || block.remaining() < size))
+            closeOpen();
+        if (open == null) {
+            if (block == null || block.remaining() < size) {
+                if (block != null)
+                    block.release();
+                block = pool.acquire();
+            }
+            open = new BufferedRecord(block, System.nanoTime() + lingerNanos);
+        }
+        open.append(data, delimit, future);
+        if (!config.isConcatenationEnabled())
+            closeOpen();
+    }
+
+    /** Must be called with the lock held. */
+    private void closeOpen() {
+        enqueue(open);
+        open = null;
+    }
+
+    /** Must be called with the lock held. */
+    private void enqueue(BufferedRecord record) {
+        ready.add(record);
+        readyBytes += record.length();
+    }
+
+    /**
+     * Sends as many PutRecordBatch requests as the ready records and the limit
+     * of requests in flight allow, leaving the records that can still wait for
+     * more to batch with. Must be called with the lock held.
+     */
+    private void sendReady() {
+        if (flushing && open != null)
+            closeOpen();
+        final int maxRecords = config.getMaxRecordsPerBatch();
+        final long maxBytes = config.getMaxBatchBytes();
+        while (inflightBatches < config.getMaxInflightBatches() && !ready.isEmpty()) {
+            if (!flushing && ready.size() < maxRecords && readyBytes < maxBytes
+            &&  ready.getFirst().deadlineNanos - System.nanoTime() > 0)
+                break;
+            final List<BufferedRecord> batch = new ArrayList<BufferedRecord>();
+            long batchBytes = 0;
+            while (!ready.isEmpty() && batch.size() < maxRecords) {
+                final BufferedRecord next = ready.getFirst();
+                if (batchBytes + next.length() > maxBytes)
+                    break;
+                ready.removeFirst();
+                readyBytes -= next.length();
+                batchBytes += next.length();
+                batch.add(next);
+            }
+            inflightBatches++;
+            senders.execute(new PutRecordBatchTask(batch));
+        }
+        if (ready.isEmpty())
+            flushing = false;
+    }
+
+    private void onTick() {
+        synchronized (lock) {
+            if (open != null && open.deadlineNanos - System.nanoTime() <= 0)
+                closeOpen();
+            sendReady();
+        }
+    }
+
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof AmazonServiceException) {
+            final AmazonServiceException ase = (AmazonServiceException) e;
+            return RetryUtils.isThrottlingException(ase)
+                    || RetryUtils.isRetryableServiceException(ase);
+        }
+        return e instanceof AmazonClientException
+                && ((AmazonClientException) e).isRetryable();
+    }
+
+    private void scheduleRetry(final BufferedRecord record) {
+        final long backoffMs = Math.min(config.getMaxRetryBackoffMs(),
+                config.getRetryBackoffMs() << Math.min(record.attempts - 1, 20));
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    // ahead of the records that have not been tried yet
+                    ready.addFirst(record);
+                    readyBytes += record.length();
+                    sendReady();
+                }
+            }
+        }, backoffMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a batch of records in a PutRecordBatch request, then completes the
+     * records that were delivered or cannot be retried, and schedules the
+     * retry of the others.
+     */
+    private class PutRecordBatchTask implements Runnable {
+        private final List<BufferedRecord> batch;
+
+        PutRecordBatchTask(List<BufferedRecord> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            final List<Record> records = new ArrayList<Record>(batch.size());
+            for (BufferedRecord record : batch) {
+                record.attempts++;
+                records.add(record.toRecord());
+            }
+            final List<BufferedRecord> retries = new ArrayList<BufferedRecord>();
+            int completed = 0;
+            List<PutRecordBatchResponseEntry> responses = null;
+            try {
+                final PutRecordBatchResult result = firehose.putRecordBatch(new PutRecordBatchRequest()
+                        .withDeliveryStreamName(deliveryStreamName)
+                        .withRecords(records));
+                responses = result.getRequestResponses();
+                if (responses.size() != batch.size()) {
+                    throw new AmazonClientException("Expected " + batch.size()
+                            + " responses in the PutRecordBatch result, but got " + responses.size());
+                }
+            } catch (RuntimeException e) {
+                final boolean retryable = isRetryable(e);
+                for (BufferedRecord record : batch) {
+                    if (retryable && record.attempts <= config.getMaxRetries()) {
+                        retries.add(record);
+                    } else {
+                        completed += fail(record, new FirehoseRecordFailedException(
+                                "Unable to deliver record to " + deliveryStreamName, e,
+                                record.attempts));
+                    }
+                }
+                if (retryable && log.isDebugEnabled())
+                    log.debug("Retrying PutRecordBatch request to " + deliveryStreamName, e);
+                responses = null;
+            }
+            for (int i = 0; responses != null && i < batch.size(); i++) {
+                final BufferedRecord record = batch.get(i);
+                final PutRecordBatchResponseEntry response = responses.get(i);
+                if (response.getErrorCode() == null) {
+                    completed += succeed(record, response.getRecordId());
+                } else if (record.attempts <= config.getMaxRetries()) {
+                    retries.add(record);
+                } else {
+                    completed += fail(record, new FirehoseRecordFailedException(
+                            "Unable to deliver record to " + deliveryStreamName + ": "
+                                    + response.getErrorMessage(),
+                            response.getErrorCode(), record.attempts));
+                }
+            }
+            for (BufferedRecord record : retries)
+                scheduleRetry(record);
+            synchronized (lock) {
+                inflightBatches--;
+                outstandingRecords -= completed;
+                if (outstandingRecords == 0)
+                    lock.notifyAll();
+                sendReady();
+            }
+        }
+
+        /** Returns the number of records written that are completed. */
+        private int succeed(BufferedRecord record, String recordId) {
+            for (SettableFuture<String> future : record.getFutures())
+                future.setSuccess(recordId);
+            return complete(record);
+        }
+
+        /** Returns the number of records written that are completed. */
+        private int fail(BufferedRecord record, Exception e) {
+            for (SettableFuture<String> future : record.getFutures())
+                future.setFailure(e);
+            return complete(record);
+        }
+
+        private int complete(BufferedRecord record) {
+            record.release();
+            budget.release(record.length());
+            return record.getFutures().size();
+        }
+    }
+}
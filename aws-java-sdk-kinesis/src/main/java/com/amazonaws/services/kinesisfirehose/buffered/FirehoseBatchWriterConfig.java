@@ -0,0 +1,437 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+/**
+ * Configuration of a {@link FirehoseBatchWriter}.
+ */
+public class FirehoseBatchWriterConfig {
+
+    /** Maximum number of records in a PutRecordBatch request. */
+    public static final int SERVICE_MAX_RECORDS_PER_BATCH = 500;
+
+    /** Maximum size of the data of a PutRecordBatch request. */
+    public static final long SERVICE_MAX_BATCH_BYTES = 4L * 1024 * 1024;
+
+    /** Maximum size of the data of a Firehose record. */
+    public static final int SERVICE_MAX_RECORD_BYTES = 1000 * 1024;
+
+    /**
+     * The maximum number of records in a PutRecordBatch request; no more than
+     * {@value #SERVICE_MAX_RECORDS_PER_BATCH}.
+     */
+    private int maxRecordsPerBatch;
+
+    /** 500 records, the service limit */
+    public static final int MAX_RECORDS_PER_BATCH_DEFAULT = SERVICE_MAX_RECORDS_PER_BATCH;
+
+    /**
+     * The maximum size (bytes) of the data of a PutRecordBatch request; no
+     * more than {@value #SERVICE_MAX_BATCH_BYTES}.
+     */
+    private long maxBatchBytes;
+
+    /** 4 MiB, the service limit */
+    public static final long MAX_BATCH_BYTES_DEFAULT = SERVICE_MAX_BATCH_BYTES;
+
+    /**
+     * The maximum time (milliseconds) a record is buffered before it is sent.
+     * The longer this time, the fuller the batches, at the expense of latency.
+     */
+    private long lingerMs;
+
+    /** 100 milliseconds */
+    public static final long LINGER_MS_DEFAULT = 100;
+
+    /**
+     * Whether consecutive records are concatenated into a single Firehose
+     * record, each followed by a newline unless it already ends with one. This
+     * reduces the number of records Firehose bills and delivers, and suits
+     * line-oriented data such as logs delivered to S3.
+     */
+    private boolean concatenationEnabled;
+
+    /** false */
+    public static final boolean CONCATENATION_ENABLED_DEFAULT = false;
+
+    /**
+     * The maximum size (bytes) of a Firehose record made of concatenated
+     * records; no more than {@value #SERVICE_MAX_RECORD_BYTES}.
+     */
+    private int maxConcatenatedRecordBytes;
+
+    /** 1000 KiB, the service limit */
+    public static final int MAX_CONCATENATED_RECORD_BYTES_DEFAULT = SERVICE_MAX_RECORD_BYTES;
+
+    /**
+     * The maximum number of bytes of data written but not yet delivered or
+     * failed. Writing more blocks until enough data has been delivered.
+     */
+    private long maxBufferedBytes;
+
+    /** 64 MiB */
+    public static final long MAX_BUFFERED_BYTES_DEFAULT = 64L * 1024 * 1024;
+
+    /**
+     * The maximum number of concurrent PutRecordBatch requests.
+     */
+    private int maxInflightBatches;
+
+    /** 5 requests */
+    public static final int MAX_INFLIGHT_BATCHES_DEFAULT = 5;
+
+    /**
+     * The number of times a record that failed with a retryable error is
+     * retried before it is failed.
+     */
+    private int maxRetries;
+
+    /** 10 retries */
+    public static final int MAX_RETRIES_DEFAULT = 10;
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry up to the maximum retry backoff.
+     */
+    private long retryBackoffMs;
+
+    /** 100 milliseconds */
+    public static final long RETRY_BACKOFF_MS_DEFAULT = 100;
+
+    /**
+     * The maximum delay (milliseconds) between retries of a failed record.
+     */
+    private long maxRetryBackoffMs;
+
+    /** 5 seconds */
+    public static final long MAX_RETRY_BACKOFF_MS_DEFAULT = 5000;
+
+    public FirehoseBatchWriterConfig() {
+        maxRecordsPerBatch = MAX_RECORDS_PER_BATCH_DEFAULT;
+        maxBatchBytes = MAX_BATCH_BYTES_DEFAULT;
+        lingerMs = LINGER_MS_DEFAULT;
+        concatenationEnabled = CONCATENATION_ENABLED_DEFAULT;
+        maxConcatenatedRecordBytes = MAX_CONCATENATED_RECORD_BYTES_DEFAULT;
+        maxBufferedBytes = MAX_BUFFERED_BYTES_DEFAULT;
+        maxInflightBatches = MAX_INFLIGHT_BATCHES_DEFAULT;
+        maxRetries = MAX_RETRIES_DEFAULT;
+        retryBackoffMs = RETRY_BACKOFF_MS_DEFAULT;
+        maxRetryBackoffMs = MAX_RETRY_BACKOFF_MS_DEFAULT;
+    }
+
+    /** copy constructor */
+    public FirehoseBatchWriterConfig(FirehoseBatchWriterConfig other) {
+        maxRecordsPerBatch = other.maxRecordsPerBatch;
+        maxBatchBytes = other.maxBatchBytes;
+        lingerMs = other.lingerMs;
+        concatenationEnabled = other.concatenationEnabled;
+        maxConcatenatedRecordBytes = other.maxConcatenatedRecordBytes;
+        maxBufferedBytes = other.maxBufferedBytes;
+        maxInflightBatches = other.maxInflightBatches;
+        maxRetries = other.maxRetries;
+        retryBackoffMs = other.retryBackoffMs;
+        maxRetryBackoffMs = other.maxRetryBackoffMs;
+    }
+
+    @Override
+    public String toString() {
+        return "FirehoseBatchWriterConfig [maxRecordsPerBatch=" + maxRecordsPerBatch +
+                ", maxBatchBytes=" + maxBatchBytes + ", lingerMs=" + lingerMs +
+                ", concatenationEnabled=" + concatenationEnabled +
+                ", maxConcatenatedRecordBytes=" + maxConcatenatedRecordBytes +
+                ", maxBufferedBytes=" + maxBufferedBytes + ", maxInflightBatches=" + maxInflightBatches +
+                ", maxRetries=" + maxRetries + ", retryBackoffMs=" + retryBackoffMs +
+                ", maxRetryBackoffMs=" + maxRetryBackoffMs + "]";
+    }
+
+    /**
+     * Checks that the configuration is consistent.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    void validate() {
+        if (maxRecordsPerBatch <= 0 || maxRecordsPerBatch > SERVICE_MAX_RECORDS_PER_BATCH)
+            throw new IllegalArgumentException("maxRecordsPerBatch must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_BATCH);
+        if (maxBatchBytes < SERVICE_MAX_RECORD_BYTES || maxBatchBytes > SERVICE_MAX_BATCH_BYTES)
+            throw new IllegalArgumentException("maxBatchBytes must be between " + SERVICE_MAX_RECORD_BYTES
+                    + " and " + SERVICE_MAX_BATCH_BYTES);
+        if (lingerMs <= 0)
+            throw new IllegalArgumentException("lingerMs must be positive");
+        if (maxConcatenatedRecordBytes <= 0 || maxConcatenatedRecordBytes > SERVICE_MAX_RECORD_BYTES)
+            throw new IllegalArgumentException("maxConcatenatedRecordBytes must be between 1 and "
+                    + SERVICE_MAX_RECORD_BYTES);
+        if (maxBufferedBytes < SERVICE_MAX_RECORD_BYTES || maxBufferedBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maxBufferedBytes must be between " + SERVICE_MAX_RECORD_BYTES
+                    + " and " + Integer.MAX_VALUE);
+        if (maxInflightBatches <= 0)
+            throw new IllegalArgumentException("maxInflightBatches must be positive");
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        if (retryBackoffMs <= 0 || maxRetryBackoffMs < retryBackoffMs)
+            throw new IllegalArgumentException(
+                    "retryBackoffMs must be positive and no larger than maxRetryBackoffMs");
+    }
+
+    /**
+     * The maximum number of records in a PutRecordBatch request; no more than
+     * {@value #SERVICE_MAX_RECORDS_PER_BATCH}.
+     */
+    public int getMaxRecordsPerBatch() {
+        return maxRecordsPerBatch;
+    }
+
+    /**
+     * The maximum number of records in a PutRecordBatch request; no more than
+     * {@value #SERVICE_MAX_RECORDS_PER_BATCH}.
+     */
+    public void setMaxRecordsPerBatch(int maxRecordsPerBatch) {
+        this.maxRecordsPerBatch = maxRecordsPerBatch;
+    }
+
+    /**
+     * The maximum number of records in a PutRecordBatch request; no more than
+     * {@value #SERVICE_MAX_RECORDS_PER_BATCH}.
+     */
+    public FirehoseBatchWriterConfig withMaxRecordsPerBatch(int maxRecordsPerBatch) {
+        setMaxRecordsPerBatch(maxRecordsPerBatch);
+        return this;
+    }
+
+    /**
+     * The maximum size (bytes) of the data of a PutRecordBatch request; no
+     * more than {@value #SERVICE_MAX_BATCH_BYTES}.
+     */
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of the data of a PutRecordBatch request; no
+     * more than {@value #SERVICE_MAX_BATCH_BYTES}.
+     */
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of the data of a PutRecordBatch request; no
+     * more than {@value #SERVICE_MAX_BATCH_BYTES}.
+     */
+    public FirehoseBatchWriterConfig withMaxBatchBytes(long maxBatchBytes) {
+        setMaxBatchBytes(maxBatchBytes);
+        return this;
+    }
+
+    /**
+     * The maximum time (milliseconds) a record is buffered before it is sent.
+     * The longer this time, the fuller the batches, at the expense of latency.
+     */
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) a record is buffered before it is sent.
+     * The longer this time, the fuller the batches, at the expense of latency.
+     */
+    public void setLingerMs(long lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) a record is buffered before it is sent.
+     * The longer this time, the fuller the batches, at the expense of latency.
+     */
+    public FirehoseBatchWriterConfig withLingerMs(long lingerMs) {
+        setLingerMs(lingerMs);
+        return this;
+    }
+
+    /**
+     * Whether consecutive records are concatenated into a single Firehose
+     * record, each followed by a newline unless it already ends with one. This
+     * reduces the number of records Firehose bills and delivers, and suits
+     * line-oriented data such as logs delivered to S3.
+     */
+    public boolean isConcatenationEnabled() {
+        return concatenationEnabled;
+    }
+
+    /**
+     * Whether consecutive records are concatenated into a single Firehose
+     * record, each followed by a newline unless it already ends with one. This
+     * reduces the number of records Firehose bills and delivers, and suits
+     * line-oriented data such as logs delivered to S3.
+     */
+    public void setConcatenationEnabled(boolean concatenationEnabled) {
+        this.concatenationEnabled = concatenationEnabled;
+    }
+
+    /**
+     * Whether consecutive records are concatenated into a single Firehose
+     * record, each followed by a newline unless it already ends with one. This
+     * reduces the number of records Firehose bills and delivers, and suits
+     * line-oriented data such as logs delivered to S3.
+     */
+    public FirehoseBatchWriterConfig withConcatenationEnabled(boolean concatenationEnabled) {
+        setConcatenationEnabled(concatenationEnabled);
+        return this;
+    }
+
+    /**
+     * The maximum size (bytes) of a Firehose record made of concatenated
+     * records; no more than {@value #SERVICE_MAX_RECORD_BYTES}.
+     */
+    public int getMaxConcatenatedRecordBytes() {
+        return maxConcatenatedRecordBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of a Firehose record made of concatenated
+     * records; no more than {@value #SERVICE_MAX_RECORD_BYTES}.
+     */
+    public void setMaxConcatenatedRecordBytes(int maxConcatenatedRecordBytes) {
+        this.maxConcatenatedRecordBytes = maxConcatenatedRecordBytes;
+    }
+
+    /**
+     * The maximum size (bytes) of a Firehose record made of concatenated
+     * records; no more than {@value #SERVICE_MAX_RECORD_BYTES}.
+     */
+    public FirehoseBatchWriterConfig withMaxConcatenatedRecordBytes(int maxConcatenatedRecordBytes) {
+        setMaxConcatenatedRecordBytes(maxConcatenatedRecordBytes);
+        return this;
+    }
+
+    /**
+     * The maximum number of bytes of data written but not yet delivered or
+     * failed. Writing more blocks until enough data has been delivered.
+     */
+    public long getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    /**
+     * The maximum number of bytes of data written but not yet delivered or
+     * failed. Writing more blocks until enough data has been delivered.
+     */
+    public void setMaxBufferedBytes(long maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * The maximum number of bytes of data written but not yet delivered or
+     * failed. Writing more blocks until enough data has been delivered.
+     */
+    public FirehoseBatchWriterConfig withMaxBufferedBytes(long maxBufferedBytes) {
+        setMaxBufferedBytes(maxBufferedBytes);
+        return this;
+    }
+
+    /**
+     * The maximum number of concurrent PutRecordBatch requests.
+     */
+    public int getMaxInflightBatches() {
+        return maxInflightBatches;
+    }
+
+    /**
+     * The maximum number of concurrent PutRecordBatch requests.
+     */
+    public void setMaxInflightBatches(int maxInflightBatches) {
+        this.maxInflightBatches = maxInflightBatches;
+    }
+
+    /**
+     * The maximum number of concurrent PutRecordBatch requests.
+     */
+    public FirehoseBatchWriterConfig withMaxInflightBatches(int maxInflightBatches) {
+        setMaxInflightBatches(maxInflightBatches);
+        return this;
+    }
+
+    /**
+     * The number of times a record that failed with a retryable error is
+     * retried before it is failed.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * The number of times a record that failed with a retryable error is
+     * retried before it is failed.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * The number of times a record that failed with a retryable error is
+     * retried before it is failed.
+     */
+    public FirehoseBatchWriterConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry up to the maximum retry backoff.
+     */
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry up to the maximum retry backoff.
+     */
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a failed record,
+     * doubled for every following retry up to the maximum retry backoff.
+     */
+    public FirehoseBatchWriterConfig withRetryBackoffMs(long retryBackoffMs) {
+        setRetryBackoffMs(retryBackoffMs);
+        return this;
+    }
+
+    /**
+     * The maximum delay (milliseconds) between retries of a failed record.
+     */
+    public long getMaxRetryBackoffMs() {
+        return maxRetryBackoffMs;
+    }
+
+    /**
+     * The maximum delay (milliseconds) between retries of a failed record.
+     */
+    public void setMaxRetryBackoffMs(long maxRetryBackoffMs) {
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+    }
+
+    /**
+     * The maximum delay (milliseconds) between retries of a failed record.
+     */
+    public FirehoseBatchWriterConfig withMaxRetryBackoffMs(long maxRetryBackoffMs) {
+        setMaxRetryBackoffMs(maxRetryBackoffMs);
+        return this;
+    }
+}
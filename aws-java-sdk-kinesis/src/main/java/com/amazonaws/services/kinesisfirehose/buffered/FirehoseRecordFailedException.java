@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesisfirehose.buffered;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Thrown, wrapped in an {@link java.util.concurrent.ExecutionException}, by
+ * the future of a record written to a {@link FirehoseBatchWriter} that could
+ * not be delivered, either because Firehose rejected it more times than
+ * allowed by {@link FirehoseBatchWriterConfig#getMaxRetries()}, or because the
+ * PutRecordBatch request failed with a non-retryable error.
+ */
+public class FirehoseRecordFailedException extends AmazonClientException {
+    private static final long serialVersionUID = 1L;
+
+    private final String errorCode;
+    private final int attempts;
+
+    public FirehoseRecordFailedException(String message, String errorCode,
+            int attempts) {
+        super(message);
+        this.errorCode = errorCode;
+        this.attempts = attempts;
+    }
+
+    public FirehoseRecordFailedException(String message, Throwable cause,
+            int attempts) {
+        super(message, cause);
+        this.errorCode = null;
+        this.attempts = attempts;
+    }
+
+    /**
+     * Returns the error code Firehose returned for the record in the last
+     * attempt, or null if the whole PutRecordBatch request failed.
+     */
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Returns the number of PutRecordBatch requests attempted.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return false;
+    }
+}
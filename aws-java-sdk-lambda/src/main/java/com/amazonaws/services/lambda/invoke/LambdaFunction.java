@@ -74,4 +74,14 @@ public @interface LambdaFunction {
      * @see LogFactory#getLog(Class)
      */
     LogType logType() default LogType.None;
+
+    /**
+     * Whether a call made while an identical one is in progress, that is a call with the same
+     * function name, log type and input, waits for the result of that call instead of invoking the
+     * function again. Only suitable for functions without side effects, this can save many
+     * invocations when the same input is commonly used by concurrent callers. Only applies to the
+     * {@code RequestResponse} invocation type. The future returned by a method invoked through an
+     * {@code AWSLambdaAsync} client that shares an invocation cannot be cancelled.
+     */
+    boolean shareIdenticalInvocations() default false;
 }
@@ -16,6 +16,10 @@ package com.amazonaws.services.lambda.invoke;
 
 import java.lang.reflect.Method;
 
+/**
+ * Resolves the name of the Lambda function invoked by a method. The name is resolved the first
+ * time the method is called, and used for all its subsequent calls.
+ */
 public interface LambdaFunctionNameResolver {
     String getFunctionName(Method method, LambdaFunction annotation, LambdaInvokerFactoryConfig config);
 }
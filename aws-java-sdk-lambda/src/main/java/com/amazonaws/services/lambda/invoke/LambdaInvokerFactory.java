@@ -18,15 +18,30 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.handlers.AsyncHandler;
 import com.amazonaws.services.lambda.AWSLambda;
+import com.amazonaws.services.lambda.AWSLambdaAsync;
 import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.lambda.model.InvokeResult;
@@ -35,8 +50,9 @@ import com.amazonaws.util.Base64;
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.StringUtils;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * A factory for objects that implement a user-supplied interface by invoking a remote Lambda
@@ -59,11 +75,24 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *                 LambdaInvokerFactory.build( LambdaFunctions.class, new AWSLambdaClient());
  *                 Request request = new Request(...); Result result =
  *                 functions.doSomeStuff(request); </code>
+ * <p>
+ * A method declared to return a {@code Future<Result>} invokes the function asynchronously:
+ * through {@link AWSLambdaAsync#invokeAsync(InvokeRequest)} if the client is an
+ * {@link AWSLambdaAsync}, or on the executor configured with
+ * {@link LambdaInvokerFactoryConfig#withExecutorService(java.util.concurrent.ExecutorService)}
+ * otherwise. Errors, including those raised by the function, are then thrown by
+ * {@link Future#get()} wrapped in an {@link ExecutionException}.
+ * <p>
+ * Everything about a method that does not depend on its arguments, such as the name of the
+ * function it invokes and how its input and output are converted to and from JSON, is worked out
+ * the first time it is called, and reused afterwards.
  */
 public final class LambdaInvokerFactory {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    private static final ObjectReader ERROR_READER = MAPPER.readerFor(LambdaFunctionError.class);
+
     /**
      * Creates a new Lambda invoker implementing the given interface and wrapping the given
      * {@code AWSLambda} client.
@@ -104,6 +133,13 @@ public final class LambdaInvokerFactory {
         private final Log log;
         private final LambdaInvokerFactoryConfig config;
 
+        /** The invocation plan of every method called so far. */
+        private final ConcurrentMap<Method, InvocationPlan> plans = new ConcurrentHashMap<Method, InvocationPlan>();
+
+        /** The invocations that identical concurrent ones can wait for, by request. */
+        private final ConcurrentMap<String, SharedInvocation> sharedInvocations =
+                new ConcurrentHashMap<String, SharedInvocation>();
+
         public LambdaInvocationHandler(Class<?> interfaceClass, AWSLambda awsLambda, LambdaInvokerFactoryConfig config) {
 
             this.awsLambda = awsLambda;
@@ -114,19 +150,40 @@ public final class LambdaInvokerFactory {
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
 
-            LambdaFunction annotation = validateInterfaceMethod(method, args);
+            final InvocationPlan plan = getInvocationPlan(method);
 
-            InvokeRequest invokeRequest = buildInvokeRequest(method, annotation, args == null ? null : args[0]);
+            final InvokeRequest invokeRequest = buildInvokeRequest(plan, args == null ? null : args[0]);
 
-            InvokeResult invokeResult = awsLambda.invoke(invokeRequest);
+            if (plan.async) {
+                return invokeAsync(plan, invokeRequest);
+            }
 
-            return processInvokeResult(method, invokeResult);
+            return processInvokeResult(plan, invoke(plan, invokeRequest));
+        }
+
+        /**
+         * Returns the invocation plan of the given method, working it out if this is the first
+         * time the method is called.
+         */
+        private InvocationPlan getInvocationPlan(Method method) {
+
+            InvocationPlan plan = plans.get(method);
+
+            if (plan == null) {
+                plan = new InvocationPlan(method, validateInterfaceMethod(method));
+                InvocationPlan existing = plans.putIfAbsent(method, plan);
+                if (existing != null) {
+                    plan = existing;
+                }
+            }
+
+            return plan;
         }
 
         /**
          * Verifies that the given method is annotated appropriately.
          */
-        private LambdaFunction validateInterfaceMethod(Method method, Object[] args) {
+        private LambdaFunction validateInterfaceMethod(Method method) {
 
             LambdaFunction annotation = method.getAnnotation(LambdaFunction.class);
 
@@ -138,31 +195,34 @@ public final class LambdaInvokerFactory {
                 throw new LambdaSerializationException("InvocationType must be RequestResponse if LogType " + "is set");
             }
 
-            if (args != null && args.length > 1) {
+            if (method.getParameterTypes().length > 1) {
                 throw new LambdaSerializationException("LambdaFunctions take either 0 or 1 arguments");
             }
 
+            if (Future.class.equals(method.getReturnType()) && !(awsLambda instanceof AWSLambdaAsync)
+                    && config.getExecutorService() == null) {
+                throw new LambdaSerializationException("Method " + method.getName()
+                        + " returns a Future, which requires either an AWSLambdaAsync client or an executor service");
+            }
+
             return annotation;
         }
 
         /**
-         * Builds an InvokeRequest from the given method, its {@code LambdaFunction} annotation, and
-         * the input parameter (if any).
+         * Builds an InvokeRequest from the given plan and the input parameter (if any).
          */
-        private InvokeRequest buildInvokeRequest(Method method, LambdaFunction annotation, Object input) {
+        private InvokeRequest buildInvokeRequest(InvocationPlan plan, Object input) {
 
             InvokeRequest invokeRequest = new InvokeRequest();
 
-            String functionName = config.getLambdaFunctionNameResolver().getFunctionName(method, annotation, config);
-
-            invokeRequest.setFunctionName(functionName);
-            invokeRequest.setInvocationType(annotation.invocationType());
-            invokeRequest.setLogType(annotation.logType());
+            invokeRequest.setFunctionName(plan.functionName);
+            invokeRequest.setInvocationType(plan.annotation.invocationType());
+            invokeRequest.setLogType(plan.annotation.logType());
 
             if (input != null) {
                 try {
 
-                    String payload = MAPPER.writer().writeValueAsString(input);
+                    String payload = plan.writer.writeValueAsString(input);
                     if (log.isDebugEnabled()) {
                         log.debug("Serialized request object to '" + payload + "'");
                     }
@@ -176,20 +236,124 @@ public final class LambdaInvokerFactory {
             return invokeRequest;
         }
 
+        /**
+         * Invokes the function synchronously, or, if the method allows it, waits for an identical
+         * invocation already in progress and shares its result.
+         */
+        private InvokeResult invoke(InvocationPlan plan, InvokeRequest invokeRequest) {
+
+            if (!plan.shareIdenticalInvocations) {
+                return awsLambda.invoke(invokeRequest);
+            }
+
+            final String key = getSharingKey(plan, invokeRequest);
+
+            final SharedInvocation invocation = new SharedInvocation();
+            final SharedInvocation inProgress = sharedInvocations.putIfAbsent(key, invocation);
+            if (inProgress != null) {
+                return inProgress.await();
+            }
+
+            try {
+                InvokeResult invokeResult = awsLambda.invoke(invokeRequest);
+                sharedInvocations.remove(key, invocation);
+                invocation.complete(invokeResult, null);
+                return invokeResult;
+            } catch (RuntimeException ex) {
+                sharedInvocations.remove(key, invocation);
+                invocation.complete(null, ex);
+                throw ex;
+            } finally {
+                if (sharedInvocations.remove(key, invocation)) {
+                    invocation.complete(null, new AmazonClientException("Failed to invoke Lambda function"));
+                }
+            }
+        }
+
+        /**
+         * Invokes the function asynchronously, returning the future result of the method.
+         */
+        private Future<Object> invokeAsync(final InvocationPlan plan, final InvokeRequest invokeRequest) {
+
+            if (awsLambda instanceof AWSLambdaAsync) {
+                return new ResultFuture(plan, invokeAsync((AWSLambdaAsync) awsLambda, plan, invokeRequest));
+            }
+
+            return config.getExecutorService().submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return processInvokeResult(plan, invoke(plan, invokeRequest));
+                }
+            });
+        }
+
+        /**
+         * Invokes the function through the asynchronous client, or, if the method allows it,
+         * shares the result of an identical invocation already in progress.
+         */
+        private Future<InvokeResult> invokeAsync(AWSLambdaAsync awsLambdaAsync, InvocationPlan plan,
+                InvokeRequest invokeRequest) {
+
+            if (!plan.shareIdenticalInvocations) {
+                return awsLambdaAsync.invokeAsync(invokeRequest);
+            }
+
+            final String key = getSharingKey(plan, invokeRequest);
+
+            final SharedInvocation invocation = new SharedInvocation();
+            final SharedInvocation inProgress = sharedInvocations.putIfAbsent(key, invocation);
+            if (inProgress != null) {
+                return new SharedInvocationFuture(inProgress);
+            }
+
+            try {
+                awsLambdaAsync.invokeAsync(invokeRequest, new AsyncHandler<InvokeRequest, InvokeResult>() {
+                    @Override
+                    public void onSuccess(InvokeRequest request, InvokeResult invokeResult) {
+                        sharedInvocations.remove(key, invocation);
+                        invocation.complete(invokeResult, null);
+                    }
+
+                    @Override
+                    public void onError(Exception exception) {
+                        sharedInvocations.remove(key, invocation);
+                        invocation.complete(null, exception instanceof RuntimeException
+                                ? (RuntimeException) exception
+                                : new AmazonClientException("Failed to invoke Lambda function", exception));
+                    }
+                });
+            } catch (RuntimeException ex) {
+                sharedInvocations.remove(key, invocation);
+                invocation.complete(null, ex);
+                throw ex;
+            }
+            return new SharedInvocationFuture(invocation);
+        }
+
+        /**
+         * Returns the key under which identical invocations share their result.
+         */
+        private String getSharingKey(InvocationPlan plan, InvokeRequest invokeRequest) {
+            return plan.functionName + '\n' + plan.annotation.logType() + '\n'
+                    + (invokeRequest.getPayload() == null
+                            ? ""
+                            : new String(BinaryUtils.copyAllBytesFrom(invokeRequest.getPayload()), StringUtils.UTF8));
+        }
+
         /**
          * Process the result of invoking a remote function. If the response includes server-side
          * logs, dump them into our logs; if it includes a server-side error indication, parse it
          * into a corresponding {@code Exception} type, otherwise parse the result payload into a
          * Java object suitable for returning from this method.
          */
-        private Object processInvokeResult(Method method, InvokeResult invokeResult) throws Throwable {
+        private Object processInvokeResult(InvocationPlan plan, InvokeResult invokeResult) throws Exception {
 
             if (invokeResult.getLogResult() != null && log.isInfoEnabled()) {
                 try {
 
                     String decoded = new String(Base64.decode(invokeResult.getLogResult()), StringUtils.UTF8);
 
-                    log.info(method.getName() + " log:\n\t" + decoded.replaceAll("\n", "\n\t"));
+                    log.info(plan.method.getName() + " log:\n\t" + decoded.replaceAll("\n", "\n\t"));
 
                 } catch (Exception ex) {
                     log.warn("Error decoding log result '" + invokeResult.getLogResult() + "'", ex);
@@ -200,10 +364,14 @@ public final class LambdaInvokerFactory {
 
             if (functionError == null) {
                 // Success.
-                return getObjectFromPayload(method, invokeResult);
-            } else {
-                throw getExceptionFromPayload(method, invokeResult);
+                return getObjectFromPayload(plan, invokeResult);
             }
+
+            Throwable throwable = getExceptionFromPayload(plan, invokeResult);
+            if (throwable instanceof Error) {
+                throw (Error) throwable;
+            }
+            throw (Exception) throwable;
         }
 
         /**
@@ -214,18 +382,18 @@ public final class LambdaInvokerFactory {
          * @throws LambdaSerializationException
          *             on error deserializing
          */
-        private Object getObjectFromPayload(Method method, InvokeResult invokeResult) {
+        private Object getObjectFromPayload(InvocationPlan plan, InvokeResult invokeResult) {
 
             try {
 
-                return getObjectFromPayload(method.getGenericReturnType(), invokeResult.getPayload());
+                return getObjectFromPayload(plan.reader, invokeResult.getPayload());
 
             } catch (IOException ex) {
                 throw new LambdaSerializationException("Failed to parse Lambda function result", ex);
             }
         }
 
-        private Throwable getExceptionFromPayload(Method method, InvokeResult invokeResult) {
+        private Throwable getExceptionFromPayload(InvocationPlan plan, InvokeResult invokeResult) {
 
             Throwable throwable = null;
 
@@ -235,14 +403,15 @@ public final class LambdaInvokerFactory {
 
             try {
 
-                LambdaFunctionError error = getObjectFromPayload(LambdaFunctionError.class, invokeResult.getPayload());
+                LambdaFunctionError error = (LambdaFunctionError) getObjectFromPayload(ERROR_READER,
+                        invokeResult.getPayload());
 
                 if (error != null) {
                     message = error.getErrorMessage();
                     type = error.getErrorType();
                     stackTrace = error.getStackTrace();
 
-                    throwable = getCustomException(method, error);
+                    throwable = getCustomException(plan, error);
                 }
 
             } catch (Exception ex) {
@@ -255,24 +424,22 @@ public final class LambdaInvokerFactory {
             }
 
             if (stackTrace != null) {
-                fillStackTrace(throwable, stackTrace, method.getDeclaringClass());
+                fillStackTrace(throwable, stackTrace, plan.method.getDeclaringClass());
             }
 
             return throwable;
         }
 
-        private Throwable getCustomException(Method method, LambdaFunctionError error) {
+        private Throwable getCustomException(InvocationPlan plan, LambdaFunctionError error) {
 
             String type = error.getErrorType();
             Constructor<?> constructor = null;
 
             if (type != null) {
-                for (Class<?> exceptionType : method.getExceptionTypes()) {
-                    if (exceptionType.getSimpleName().startsWith(type)) {
-                        constructor = findConstructor(exceptionType);
-                        if (constructor != null) {
-                            break;
-                        }
+                for (int i = 0; i < plan.exceptionNames.length; ++i) {
+                    if (plan.exceptionNames[i].startsWith(type)) {
+                        constructor = plan.exceptionConstructors[i];
+                        break;
                     }
                 }
             }
@@ -290,45 +457,268 @@ public final class LambdaInvokerFactory {
             return null;
         }
 
-        private Constructor<?> findConstructor(Class<?> type) {
+        private void fillStackTrace(Throwable throwable, List<String> stackTrace, Class<?> interfaceClass) {
+
+            StackTraceElement[] elements = new StackTraceElement[stackTrace.size()];
+
+            for (int i = 0; i < stackTrace.size(); ++i) {
+                elements[i] = new StackTraceElement(interfaceClass.getName(), stackTrace.get(i).trim(), null, 0);
+            }
+
+            throwable.setStackTrace(elements);
+        }
+
+        private Object getObjectFromPayload(ObjectReader reader, ByteBuffer payload) throws IOException {
+
+            if (reader == null || payload == null || payload.remaining() == 0) {
+                return null;
+            }
+
+            return reader.readValue(BinaryUtils.copyAllBytesFrom(payload));
+        }
 
-            for (Constructor<?> constructor : type.getConstructors()) {
-                Class<?>[] params = constructor.getParameterTypes();
+        /**
+         * Everything needed to invoke the function of a method that does not depend on the
+         * arguments of a call.
+         */
+        private final class InvocationPlan {
+
+            final Method method;
+            final LambdaFunction annotation;
+            final String functionName;
+            final boolean async;
+            final boolean shareIdenticalInvocations;
+
+            /** Writes the input of the method. */
+            final ObjectWriter writer;
+
+            /** Reads the result of the method; or null if the method has no result. */
+            final ObjectReader reader;
+
+            /**
+             * The simple names of the exceptions declared by the method that can be constructed
+             * from a message, along with their constructors.
+             */
+            final String[] exceptionNames;
+            final Constructor<?>[] exceptionConstructors;
+
+            InvocationPlan(Method method, LambdaFunction annotation) {
+
+                this.method = method;
+                this.annotation = annotation;
+                this.functionName = config.getLambdaFunctionNameResolver().getFunctionName(method, annotation, config);
+                this.async = Future.class.equals(method.getReturnType());
+                this.shareIdenticalInvocations = annotation.shareIdenticalInvocations()
+                        && annotation.invocationType() == InvocationType.RequestResponse;
+
+                // The declared type only determines how the input is serialized if the input
+                // cannot be of a subtype
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                if (parameterTypes.length == 1 && !parameterTypes[0].isPrimitive()
+                        && Modifier.isFinal(parameterTypes[0].getModifiers())) {
+                    this.writer = MAPPER.writerFor(parameterTypes[0]);
+                } else {
+                    this.writer = MAPPER.writer();
+                }
 
-                if (params != null && params.length == 1 && String.class.equals(params[0])) {
+                Type resultType = method.getGenericReturnType();
+                if (async) {
+                    resultType = resultType instanceof ParameterizedType
+                            ? ((ParameterizedType) resultType).getActualTypeArguments()[0]
+                            : Object.class;
+                }
+                if (resultType == void.class || resultType == Void.class) {
+                    this.reader = null;
+                } else {
+                    this.reader = MAPPER.readerFor(MAPPER.getTypeFactory().constructType(resultType));
+                }
 
-                    return constructor;
+                List<String> names = new ArrayList<String>();
+                List<Constructor<?>> constructors = new ArrayList<Constructor<?>>();
+                for (Class<?> exceptionType : method.getExceptionTypes()) {
+                    if (!Exception.class.isAssignableFrom(exceptionType)
+                            && !Error.class.isAssignableFrom(exceptionType)) {
+                        continue;
+                    }
+                    Constructor<?> constructor = findConstructor(exceptionType);
+                    if (constructor != null) {
+                        names.add(exceptionType.getSimpleName());
+                        constructors.add(constructor);
+                    }
                 }
+                this.exceptionNames = names.toArray(new String[names.size()]);
+                this.exceptionConstructors = constructors.toArray(new Constructor<?>[constructors.size()]);
             }
 
-            return null;
+            private Constructor<?> findConstructor(Class<?> type) {
+
+                for (Constructor<?> constructor : type.getConstructors()) {
+                    Class<?>[] params = constructor.getParameterTypes();
+
+                    if (params != null && params.length == 1 && String.class.equals(params[0])) {
+
+                        return constructor;
+                    }
+                }
+
+                return null;
+            }
         }
 
-        private void fillStackTrace(Throwable throwable, List<String> stackTrace, Class<?> interfaceClass) {
+        /**
+         * An invocation in progress whose result is shared with identical invocations made in the
+         * meantime.
+         */
+        private static final class SharedInvocation {
 
-            StackTraceElement[] elements = new StackTraceElement[stackTrace.size()];
+            private final CountDownLatch done = new CountDownLatch(1);
+            private volatile InvokeResult invokeResult;
+            private volatile RuntimeException exception;
 
-            for (int i = 0; i < stackTrace.size(); ++i) {
-                elements[i] = new StackTraceElement(interfaceClass.getName(), stackTrace.get(i).trim(), null, 0);
+            void complete(InvokeResult invokeResult, RuntimeException exception) {
+                if (done.getCount() > 0) {
+                    this.invokeResult = invokeResult;
+                    this.exception = exception;
+                    done.countDown();
+                }
             }
 
-            throwable.setStackTrace(elements);
+            boolean isDone() {
+                return done.getCount() == 0;
+            }
+
+            InvokeResult await() {
+                try {
+                    done.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new AbortedException(ex);
+                }
+                return getResult();
+            }
+
+            boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+                return done.await(timeout, unit);
+            }
+
+            /**
+             * Returns the result of the completed invocation, or throws its error.
+             */
+            InvokeResult getResult() {
+                if (exception != null) {
+                    throw exception;
+                }
+                // Each caller reads the payload on its own
+                return new InvokeResult()
+                        .withStatusCode(invokeResult.getStatusCode())
+                        .withFunctionError(invokeResult.getFunctionError())
+                        .withLogResult(invokeResult.getLogResult())
+                        .withPayload(invokeResult.getPayload() == null
+                                ? null
+                                : invokeResult.getPayload().duplicate());
+            }
         }
 
-        private <T> T getObjectFromPayload(Class<T> type, ByteBuffer payload) throws IOException {
+        /**
+         * The future result of a shared invocation. Not cancellable, since other callers may be
+         * waiting for the same result.
+         */
+        private static final class SharedInvocationFuture implements Future<InvokeResult> {
+
+            private final SharedInvocation invocation;
+
+            SharedInvocationFuture(SharedInvocation invocation) {
+                this.invocation = invocation;
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
 
-            return type.cast(getObjectFromPayload((Type) type, payload));
+            @Override
+            public boolean isDone() {
+                return invocation.isDone();
+            }
+
+            @Override
+            public InvokeResult get() throws InterruptedException, ExecutionException {
+                while (!invocation.await(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    // keep waiting
+                }
+                return getResult();
+            }
+
+            @Override
+            public InvokeResult get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                if (!invocation.await(timeout, unit)) {
+                    throw new TimeoutException();
+                }
+                return getResult();
+            }
+
+            private InvokeResult getResult() throws ExecutionException {
+                try {
+                    return invocation.getResult();
+                } catch (RuntimeException ex) {
+                    throw new ExecutionException(ex);
+                }
+            }
         }
 
-        private Object getObjectFromPayload(Type type, ByteBuffer payload) throws IOException {
+        /**
+         * The result of a method, read from the result of an asynchronous invocation once it is
+         * available.
+         */
+        private final class ResultFuture implements Future<Object> {
 
-            if (type == void.class || payload.remaining() == 0) {
-                return null;
+            private final InvocationPlan plan;
+            private final Future<InvokeResult> invokeResultFuture;
+
+            ResultFuture(InvocationPlan plan, Future<InvokeResult> invokeResultFuture) {
+                this.plan = plan;
+                this.invokeResultFuture = invokeResultFuture;
+            }
+
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return invokeResultFuture.cancel(mayInterruptIfRunning);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return invokeResultFuture.isCancelled();
             }
 
-            JavaType javaType = MAPPER.getTypeFactory().constructType(type);
+            @Override
+            public boolean isDone() {
+                return invokeResultFuture.isDone();
+            }
 
-            return MAPPER.reader(javaType).readValue(BinaryUtils.copyAllBytesFrom(payload));
+            @Override
+            public Object get() throws InterruptedException, ExecutionException {
+                return toResult(invokeResultFuture.get());
+            }
+
+            @Override
+            public Object get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                return toResult(invokeResultFuture.get(timeout, unit));
+            }
+
+            private Object toResult(InvokeResult invokeResult) throws ExecutionException {
+                try {
+                    return processInvokeResult(plan, invokeResult);
+                } catch (Throwable t) {
+                    throw new ExecutionException(t);
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -15,6 +15,8 @@
 
 package com.amazonaws.services.lambda.invoke;
 
+import java.util.concurrent.ExecutorService;
+
 import com.amazonaws.util.ValidationUtils;
 
 /**
@@ -24,6 +26,8 @@ public class LambdaInvokerFactoryConfig {
 
     private LambdaFunctionNameResolver lambdaFunctionNameResolver = new DefaultLambdaFunctionNameResolver();
 
+    private ExecutorService executorService;
+
     public LambdaFunctionNameResolver getLambdaFunctionNameResolver() {
         return lambdaFunctionNameResolver;
     }
@@ -39,4 +43,22 @@ public class LambdaInvokerFactoryConfig {
         this.lambdaFunctionNameResolver = ValidationUtils.assertNotNull(functionNameResolver, "functionNameResolver");
         return this;
     }
-}
\ No newline at end of file
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Sets the executor service on which methods returning a {@code Future} invoke their function,
+     * when the client is not an {@code AWSLambdaAsync}. The executor service is not shut down by
+     * the invoker.
+     * 
+     * @param executorService
+     *            The executor service for asynchronous invocations
+     * @return The current object for method chaining
+     */
+    public LambdaInvokerFactoryConfig withExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+}
@@ -0,0 +1,642 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.logs.AWSLogs;
+import com.amazonaws.services.logs.model.CreateLogStreamRequest;
+import com.amazonaws.services.logs.model.DataAlreadyAcceptedException;
+import com.amazonaws.services.logs.model.InputLogEvent;
+import com.amazonaws.services.logs.model.InvalidSequenceTokenException;
+import com.amazonaws.services.logs.model.PutLogEventsRequest;
+import com.amazonaws.services.logs.model.PutLogEventsResult;
+import com.amazonaws.services.logs.model.RejectedLogEventsInfo;
+import com.amazonaws.services.logs.model.ResourceAlreadyExistsException;
+import com.amazonaws.services.logs.model.ResourceNotFoundException;
+
+/**
+ * Publishes log events to CloudWatch Logs asynchronously, in PutLogEvents
+ * requests that each carry as many events of a log stream as the service
+ * limits and the configured batch delay allow.
+ * <p>
+ * Publishing an event only adds it to a lock-free ring buffer, which a single
+ * publisher thread drains into per log stream batches. A batch is sent once
+ * it is full, or once its oldest event has waited for
+ * {@link LogPublisherConfig#getMaxBatchDelayMs()}; its events are sorted by
+ * timestamp, as the service requires. Each log stream has at most one request
+ * in flight, since every request needs the sequence token returned by the
+ * previous one; the tokens are tracked by the publisher, and refreshed from
+ * the service when another writer has moved them on. Throttled and transient
+ * failures are retried with exponential backoff.
+ * <p>
+ * The number of events published but not sent yet is bounded by
+ * {@link LogPublisherConfig#getBufferCapacity()}; once it is reached,
+ * publishing either blocks or drops the event, according to the configured
+ * {@link OverflowPolicy}.
+ * <p>
+ * This class is thread safe, and uses daemon threads; call
+ * {@link #flushSync()} or {@link #shutdown()} before exiting to make sure the
+ * published events are sent.
+ */
+public class AWSLogsBufferedPublisher {
+    private static final Log log = LogFactory.getLog(AWSLogsBufferedPublisher.class);
+
+    /** The service accepts five PutLogEvents requests per second per log stream. */
+    private static final long MIN_PUT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    /** The events of a request must not span more than 24 hours. */
+    private static final long MAX_BATCH_SPAN_MS = TimeUnit.HOURS.toMillis(24);
+    /** How long blocked publishers wait before trying again, in case of a missed wake-up. */
+    private static final long BLOCKED_WAIT_MS = 10;
+
+    private static final Comparator<Event> BY_TIMESTAMP = new Comparator<Event>() {
+        @Override
+        public int compare(Event a, Event b) {
+            return a.timestamp < b.timestamp ? -1 : a.timestamp == b.timestamp ? 0 : 1;
+        }
+    };
+
+    private final AWSLogs logs;
+    private final LogPublisherConfig config;
+    private final long maxBatchDelayNanos;
+    private final RingBuffer<Event> buffer;
+    /** The number of buffered events from which the publisher thread is woken up early. */
+    private final int wakeUpThreshold;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, LogStream>> logStreams =
+            new ConcurrentHashMap<String, ConcurrentMap<String, LogStream>>();
+
+    /** Drains the buffer and sends the batches. */
+    private final Thread publisher;
+    /** Sends the PutLogEvents requests. */
+    private final ScheduledThreadPoolExecutor senders;
+
+    /** The events published that have not been sent or have not failed yet. */
+    private final AtomicLong outstandingEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+
+    /** Notified when events complete while publishers are blocked, or when none is outstanding. */
+    private final Object monitor = new Object();
+    private volatile int blockedPublishers;
+
+    /** Whether the publisher thread is about to park, or parked. */
+    private volatile boolean parked;
+    /** Whether pending events are sent regardless of the batch delay. */
+    private volatile boolean flushing;
+    private volatile boolean shutdown;
+    private volatile boolean stopped;
+
+    public AWSLogsBufferedPublisher(AWSLogs logs) {
+        this(logs, new LogPublisherConfig());
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the configuration is not valid
+     */
+    public AWSLogsBufferedPublisher(AWSLogs logs, LogPublisherConfig config) {
+        this.config = new LogPublisherConfig(config);
+        this.config.validate();
+        this.logs = logs;
+        this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(this.config.getMaxBatchDelayMs());
+        this.buffer = new RingBuffer<Event>(this.config.getBufferCapacity());
+        this.wakeUpThreshold = Math.max(1, Math.min(buffer.capacity() / 2, this.config.getMaxBatchEvents()));
+        this.senders = new ScheduledThreadPoolExecutor(this.config.getSenderThreads(),
+                new DaemonThreadFactory("AWSLogsBufferedPublisherSenderThread-"));
+        this.publisher = new DaemonThreadFactory("AWSLogsBufferedPublisherThread-")
+                .newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish();
+                    }
+                });
+        this.publisher.start();
+    }
+
+    /**
+     * Publishes an event timestamped with the current time.
+     *
+     * @see #publish(String, String, long, String)
+     */
+    public boolean publish(String logGroupName, String logStreamName, String message) {
+        return publish(logGroupName, logStreamName, System.currentTimeMillis(), message);
+    }
+
+    /**
+     * Publishes an event to a log stream. Does not wait for the event to be
+     * sent, but blocks while the buffer is full if the overflow policy is
+     * {@link OverflowPolicy#BLOCK}.
+     *
+     * @param timestamp
+     *            the time of the event, in milliseconds since the epoch
+     * @return false if the event was dropped because the buffer is full
+     * @throws IllegalArgumentException
+     *             if the message is too large
+     * @throws IllegalStateException
+     *             if the publisher has been shut down
+     */
+    public boolean publish(String logGroupName, String logStreamName, long timestamp, String message) {
+        final int size = utf8Length(message) + LogPublisherConfig.SERVICE_EVENT_OVERHEAD_BYTES;
+        if (size > LogPublisherConfig.SERVICE_MAX_EVENT_BYTES) {
+            throw new IllegalArgumentException("The UTF-8 encoding of a message must not exceed "
+                    + (LogPublisherConfig.SERVICE_MAX_EVENT_BYTES - LogPublisherConfig.SERVICE_EVENT_OVERHEAD_BYTES)
+                    + " bytes");
+        }
+        // Counted before checking for shutdown, which waits for the count to drop to zero
+        if (!reserve()) {
+            droppedEvents.incrementAndGet();
+            return false;
+        }
+        if (shutdown) {
+            completed(1);
+            throw new IllegalStateException("The publisher has been shut down");
+        }
+        final Event event = new Event(getLogStream(logGroupName, logStreamName), timestamp, message, size);
+        // There is room, as the buffer can hold every outstanding event
+        while (!buffer.offer(event))
+            Thread.yield();
+        if (parked && buffer.size() >= wakeUpThreshold)
+            LockSupport.unpark(publisher);
+        return true;
+    }
+
+    /**
+     * Sends all the pending events without waiting for the batch delay to
+     * elapse, and returns without waiting for them to be sent.
+     */
+    public void flush() {
+        flushing = true;
+        LockSupport.unpark(publisher);
+    }
+
+    /**
+     * Sends all the pending events, and blocks until every event published
+     * has been sent or has failed.
+     */
+    public void flushSync() {
+        flush();
+        synchronized (monitor) {
+            while (outstandingEvents.get() > 0) {
+                try {
+                    monitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AbortedException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting events, blocks until the outstanding ones have been sent
+     * or have failed, and releases the threads of the publisher. The
+     * CloudWatch Logs client is not shut down.
+     */
+    public void shutdown() {
+        shutdown = true;
+        flushSync();
+        stopped = true;
+        LockSupport.unpark(publisher);
+        senders.shutdown();
+    }
+
+    /**
+     * Returns the number of events published that have not been sent, nor
+     * have failed, yet.
+     */
+    public long getQueueDepth() {
+        return outstandingEvents.get();
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Returns the number of events that could not be sent, or that the
+     * service rejected for being too old or too far in the future.
+     */
+    public long getFailedEventCount() {
+        return failedEvents.get();
+    }
+
+    private LogStream getLogStream(String logGroupName, String logStreamName) {
+        ConcurrentMap<String, LogStream> group = logStreams.get(logGroupName);
+        if (group == null) {
+            final ConcurrentMap<String, LogStream> newGroup = new ConcurrentHashMap<String, LogStream>();
+            group = logStreams.putIfAbsent(logGroupName, newGroup);
+            if (group == null)
+                group = newGroup;
+        }
+        LogStream logStream = group.get(logStreamName);
+        if (logStream == null) {
+            final LogStream newLogStream = new LogStream(logGroupName, logStreamName);
+            logStream = group.putIfAbsent(logStreamName, newLogStream);
+            if (logStream == null)
+                logStream = newLogStream;
+        }
+        return logStream;
+    }
+
+    /**
+     * Counts an event as outstanding if the buffer capacity allows, waiting
+     * for room if the overflow policy says so.
+     *
+     * @return false if the event is to be dropped
+     */
+    private boolean reserve() {
+        final int capacity = config.getBufferCapacity();
+        while (outstandingEvents.incrementAndGet() > capacity) {
+            completed(1);
+            if (config.getOverflowPolicy() == OverflowPolicy.DROP)
+                return false;
+            synchronized (monitor) {
+                blockedPublishers++;
+                try {
+                    if (outstandingEvents.get() >= capacity) {
+                        // have the pending events sent without waiting for the batch delay
+                        LockSupport.unpark(publisher);
+                        monitor.wait(BLOCKED_WAIT_MS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AbortedException(e);
+                } finally {
+                    blockedPublishers--;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Accounts for events that have been sent, have failed or were not
+     * published after all.
+     */
+    private void completed(int count) {
+        if (outstandingEvents.addAndGet(-count) == 0 || blockedPublishers > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The loop of the publisher thread.
+     */
+    private void publish() {
+        // The log streams with pending events
+        final Set<LogStream> pendingStreams = new LinkedHashSet<LogStream>();
+        while (!stopped) {
+            long waitNanos = Math.max(maxBatchDelayNanos, TimeUnit.MILLISECONDS.toNanos(1));
+            try {
+                drain(pendingStreams);
+                final boolean flush = flushing || blockedPublishers > 0;
+                final long now = System.nanoTime();
+                for (Iterator<LogStream> it = pendingStreams.iterator(); it.hasNext();) {
+                    final LogStream logStream = it.next();
+                    // a stream with a request in flight is considered again once it completes
+                    if (!logStream.inFlight)
+                        waitNanos = Math.min(waitNanos, logStream.sendIfDue(now, flush));
+                    if (logStream.pending.isEmpty())
+                        it.remove();
+                }
+                if (flush && pendingStreams.isEmpty() && buffer.size() == 0)
+                    flushing = false;
+            } catch (RuntimeException e) {
+                log.warn("Unexpected failure while publishing log events", e);
+            }
+            parked = true;
+            if (buffer.size() < wakeUpThreshold && !stopped)
+                LockSupport.parkNanos(this, waitNanos);
+            parked = false;
+        }
+    }
+
+    /**
+     * Moves the buffered events to the pending events of their log streams.
+     */
+    private void drain(Set<LogStream> pendingStreams) {
+        Event event;
+        while ((event = buffer.poll()) != null) {
+            final LogStream logStream = event.logStream;
+            if (logStream.pending.isEmpty())
+                logStream.firstPendingNanos = event.publishNanos;
+            logStream.pending.add(event);
+            logStream.pendingBytes += event.size;
+            pendingStreams.add(logStream);
+        }
+    }
+
+    private static int utf8Length(String s) {
+        final int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80)
+                continue;
+            if (c < 0x800) {
+                bytes++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // 4 bytes for the pair
+                bytes += 2;
+                i++;
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean isRetryable(RuntimeException e) {
+        if (e instanceof AmazonServiceException) {
+            final AmazonServiceException ase = (AmazonServiceException) e;
+            return RetryUtils.isThrottlingException(ase)
+                    || RetryUtils.isRetryableServiceException(ase);
+        }
+        return e instanceof AmazonClientException
+                && ((AmazonClientException) e).isRetryable();
+    }
+
+    private static final class Event {
+        final LogStream logStream;
+        final long timestamp;
+        final String message;
+        /** The size the service counts for the event. */
+        final int size;
+        final long publishNanos = System.nanoTime();
+
+        Event(LogStream logStream, long timestamp, String message, int size) {
+            this.logStream = logStream;
+            this.timestamp = timestamp;
+            this.message = message;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The state of a log stream. The pending events are only accessed by the
+     * publisher thread; the sequence token is only accessed by the request in
+     * flight, and handed over to the next request through the in-flight flag.
+     */
+    private final class LogStream {
+        final String logGroupName;
+        final String logStreamName;
+
+        final List<Event> pending = new ArrayList<Event>();
+        long pendingBytes;
+        /** When the oldest pending event was published. */
+        long firstPendingNanos;
+        long lastPutNanos = System.nanoTime() - MIN_PUT_INTERVAL_NANOS;
+
+        volatile boolean inFlight;
+        String sequenceToken;
+        boolean creationAttempted;
+
+        LogStream(String logGroupName, String logStreamName) {
+            this.logGroupName = logGroupName;
+            this.logStreamName = logStreamName;
+        }
+
+        /**
+         * Sends a batch of pending events if it is full, if its oldest event
+         * is due or if flushing, and returns how long to wait before
+         * considering this stream again.
+         */
+        long sendIfDue(long now, boolean flush) {
+            final long untilPutAllowed = lastPutNanos + MIN_PUT_INTERVAL_NANOS - now;
+            if (untilPutAllowed > 0)
+                return untilPutAllowed;
+            final long untilDue = firstPendingNanos + maxBatchDelayNanos - now;
+            if (!flush && untilDue > 0 && pending.size() < config.getMaxBatchEvents()
+            &&  pendingBytes < config.getMaxBatchBytes())
+                return untilDue;
+            final List<Event> batch = takeBatch();
+            inFlight = true;
+            lastPutNanos = now;
+            try {
+                senders.execute(new PutLogEventsTask(this, batch));
+            } catch (RejectedExecutionException e) {
+                inFlight = false;
+                failedEvents.addAndGet(batch.size());
+                completed(batch.size());
+            }
+            return pending.isEmpty() ? Long.MAX_VALUE : MIN_PUT_INTERVAL_NANOS;
+        }
+
+        /**
+         * Removes from the pending events the earliest ones that fit in a
+         * request.
+         */
+        private List<Event> takeBatch() {
+            Collections.sort(pending, BY_TIMESTAMP);
+            final long firstTimestamp = pending.get(0).timestamp;
+            long batchBytes = 0;
+            int count = 0;
+            while (count < pending.size() && count < config.getMaxBatchEvents()) {
+                final Event event = pending.get(count);
+                if (batchBytes + event.size > config.getMaxBatchBytes()
+                ||  event.timestamp - firstTimestamp > MAX_BATCH_SPAN_MS)
+                    break;
+                batchBytes += event.size;
+                count++;
+            }
+            final List<Event> batch = new ArrayList<Event>(pending.subList(0, count));
+            pending.subList(0, count).clear();
+            pendingBytes -= batchBytes;
+            long first = Long.MAX_VALUE;
+            for (Event event : pending) {
+                if (first == Long.MAX_VALUE || event.publishNanos - first < 0)
+                    first = event.publishNanos;
+            }
+            firstPendingNanos = first;
+            return batch;
+        }
+    }
+
+    /**
+     * Sends a batch of events of a log stream, retrying on throttling,
+     * transient failures and stale sequence tokens.
+     */
+    private class PutLogEventsTask implements Runnable {
+        private final LogStream logStream;
+        private final List<Event> batch;
+        private int retries;
+
+        PutLogEventsTask(LogStream logStream, List<Event> batch) {
+            this.logStream = logStream;
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            final List<InputLogEvent> events = new ArrayList<InputLogEvent>(batch.size());
+            for (Event event : batch)
+                events.add(new InputLogEvent().withTimestamp(event.timestamp).withMessage(event.message));
+            while (true) {
+                try {
+                    final PutLogEventsResult result = logs.putLogEvents(new PutLogEventsRequest()
+                            .withLogGroupName(logStream.logGroupName)
+                            .withLogStreamName(logStream.logStreamName)
+                            .withLogEvents(events)
+                            .withSequenceToken(logStream.sequenceToken));
+                    logStream.sequenceToken = result.getNextSequenceToken();
+                    complete(rejected(result.getRejectedLogEventsInfo()));
+                    return;
+                } catch (InvalidSequenceTokenException e) {
+                    // another writer has written to the stream
+                    logStream.sequenceToken = e.getExpectedSequenceToken();
+                    if (retries++ >= config.getMaxRetries()) {
+                        fail(e);
+                        return;
+                    }
+                } catch (DataAlreadyAcceptedException e) {
+                    // a previous attempt succeeded after all
+                    logStream.sequenceToken = e.getExpectedSequenceToken();
+                    complete(0);
+                    return;
+                } catch (ResourceNotFoundException e) {
+                    if (!config.isLogStreamCreationEnabled() || logStream.creationAttempted) {
+                        fail(e);
+                        return;
+                    }
+                    logStream.creationAttempted = true;
+                    if (!createLogStream())
+                        return;
+                } catch (RuntimeException e) {
+                    if (!isRetryable(e) || retries >= config.getMaxRetries()) {
+                        fail(e);
+                        return;
+                    }
+                    retries++;
+                    scheduleRetry();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns true if the log stream was created, or already existed.
+         */
+        private boolean createLogStream() {
+            try {
+                logs.createLogStream(new CreateLogStreamRequest()
+                        .withLogGroupName(logStream.logGroupName)
+                        .withLogStreamName(logStream.logStreamName));
+            } catch (ResourceAlreadyExistsException e) {
+                // created concurrently
+            } catch (RuntimeException e) {
+                fail(e);
+                return false;
+            }
+            logStream.sequenceToken = null;
+            return true;
+        }
+
+        private void scheduleRetry() {
+            final long backoffMs = Math.min(config.getMaxRetryBackoffMs(),
+                    config.getRetryBackoffMs() << Math.min(retries - 1, 20));
+            try {
+                senders.schedule(this, backoffMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Returns the number of events of the batch the service rejected.
+         */
+        private int rejected(RejectedLogEventsInfo info) {
+            if (info == null)
+                return 0;
+            int end = -1;
+            if (info.getTooOldLogEventEndIndex() != null)
+                end = Math.max(end, info.getTooOldLogEventEndIndex());
+            if (info.getExpiredLogEventEndIndex() != null)
+                end = Math.max(end, info.getExpiredLogEventEndIndex());
+            int start = batch.size();
+            if (info.getTooNewLogEventStartIndex() != null)
+                start = Math.max(end + 1, info.getTooNewLogEventStartIndex());
+            final int rejected = end + 1 + batch.size() - start;
+            if (log.isDebugEnabled()) {
+                log.debug(rejected + " events rejected by log stream " + logStream.logStreamName
+                        + " of log group " + logStream.logGroupName + ": " + info);
+            }
+            return rejected;
+        }
+
+        private void fail(Exception e) {
+            log.warn("Unable to send " + batch.size() + " events to log stream " + logStream.logStreamName
+                    + " of log group " + logStream.logGroupName, e);
+            complete(batch.size());
+        }
+
+        private void complete(int failed) {
+            if (failed > 0)
+                failedEvents.addAndGet(failed);
+            logStream.inFlight = false;
+            LockSupport.unpark(publisher);
+            completed(batch.size());
+        }
+    }
+
+    /**
+     * We need daemon threads so that we don't keep the process running if our
+     * threads are the only ones left in the process.
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        static final AtomicInteger threadCount = new AtomicInteger(0);
+
+        private final String namePrefix;
+
+        DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName(namePrefix + threadCount.incrementAndGet());
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+/**
+ * Configuration of an {@link AWSLogsBufferedPublisher}.
+ */
+public class LogPublisherConfig {
+
+    /** Maximum number of events in a PutLogEvents request. */
+    public static final int SERVICE_MAX_BATCH_EVENTS = 10000;
+
+    /**
+     * Maximum size of a PutLogEvents request: the sum of the UTF-8 sizes of
+     * the messages, plus 26 bytes per event.
+     */
+    public static final int SERVICE_MAX_BATCH_BYTES = 1048576;
+
+    /** Bytes counted for each event in addition to its message. */
+    public static final int SERVICE_EVENT_OVERHEAD_BYTES = 26;
+
+    /** Maximum size of an event, including its overhead. */
+    public static final int SERVICE_MAX_EVENT_BYTES = 262144;
+
+    /**
+     * The maximum number of events published that have not been sent yet.
+     * What happens to the events published once it is reached is decided by
+     * the overflow policy.
+     */
+    private int bufferCapacity;
+
+    /** 16,384 events */
+    public static final int BUFFER_CAPACITY_DEFAULT = 16384;
+
+    /**
+     * What publishing an event does when the buffer is full.
+     */
+    private OverflowPolicy overflowPolicy;
+
+    /** BLOCK */
+    public static final OverflowPolicy OVERFLOW_POLICY_DEFAULT = OverflowPolicy.BLOCK;
+
+    /**
+     * The maximum number of events in a PutLogEvents request.
+     */
+    private int maxBatchEvents;
+
+    /** 10,000 events, the service limit */
+    public static final int MAX_BATCH_EVENTS_DEFAULT = SERVICE_MAX_BATCH_EVENTS;
+
+    /**
+     * The maximum size of a PutLogEvents request, as counted by the service:
+     * the UTF-8 size of the messages plus 26 bytes per event.
+     */
+    private int maxBatchBytes;
+
+    /** 1MB, the service limit */
+    public static final int MAX_BATCH_BYTES_DEFAULT = SERVICE_MAX_BATCH_BYTES;
+
+    /**
+     * The maximum time (milliseconds) an event waits for more events of its
+     * log stream to batch with. A full batch is sent right away.
+     */
+    private long maxBatchDelayMs;
+
+    /** 1 second */
+    public static final long MAX_BATCH_DELAY_MS_DEFAULT = 1000;
+
+    /**
+     * The maximum number of PutLogEvents requests in flight across all the log
+     * streams. There is never more than one per log stream, as each request
+     * needs the sequence token returned by the previous one.
+     */
+    private int senderThreads;
+
+    /** 4 threads */
+    public static final int SENDER_THREADS_DEFAULT = 4;
+
+    /**
+     * The maximum number of times a PutLogEvents request is retried after a
+     * throttling or transient failure, in addition to the retries of the
+     * client itself.
+     */
+    private int maxRetries;
+
+    /** 3 retries */
+    public static final int MAX_RETRIES_DEFAULT = 3;
+
+    /**
+     * The delay (milliseconds) before the first retry of a request, doubled
+     * for each subsequent retry.
+     */
+    private long retryBackoffMs;
+
+    /** 200 milliseconds */
+    public static final long RETRY_BACKOFF_MS_DEFAULT = 200;
+
+    /**
+     * The maximum delay (milliseconds) before retrying a request.
+     */
+    private long maxRetryBackoffMs;
+
+    /** 5 seconds */
+    public static final long MAX_RETRY_BACKOFF_MS_DEFAULT = 5000;
+
+    /**
+     * Whether a log stream that does not exist is created on the first
+     * request to it. The log group must exist.
+     */
+    private boolean logStreamCreationEnabled;
+
+    /** true */
+    public static final boolean LOG_STREAM_CREATION_ENABLED_DEFAULT = true;
+
+    public LogPublisherConfig() {
+        bufferCapacity = BUFFER_CAPACITY_DEFAULT;
+        overflowPolicy = OVERFLOW_POLICY_DEFAULT;
+        maxBatchEvents = MAX_BATCH_EVENTS_DEFAULT;
+        maxBatchBytes = MAX_BATCH_BYTES_DEFAULT;
+        maxBatchDelayMs = MAX_BATCH_DELAY_MS_DEFAULT;
+        senderThreads = SENDER_THREADS_DEFAULT;
+        maxRetries = MAX_RETRIES_DEFAULT;
+        retryBackoffMs = RETRY_BACKOFF_MS_DEFAULT;
+        maxRetryBackoffMs = MAX_RETRY_BACKOFF_MS_DEFAULT;
+        logStreamCreationEnabled = LOG_STREAM_CREATION_ENABLED_DEFAULT;
+    }
+
+    /** copy constructor */
+    public LogPublisherConfig(LogPublisherConfig other) {
+        bufferCapacity = other.bufferCapacity;
+        overflowPolicy = other.overflowPolicy;
+        maxBatchEvents = other.maxBatchEvents;
+        maxBatchBytes = other.maxBatchBytes;
+        maxBatchDelayMs = other.maxBatchDelayMs;
+        senderThreads = other.senderThreads;
+        maxRetries = other.maxRetries;
+        retryBackoffMs = other.retryBackoffMs;
+        maxRetryBackoffMs = other.maxRetryBackoffMs;
+        logStreamCreationEnabled = other.logStreamCreationEnabled;
+    }
+
+    @Override
+    public String toString() {
+        return "LogPublisherConfig [bufferCapacity=" + bufferCapacity + ", overflowPolicy=" + overflowPolicy +
+                ", maxBatchEvents=" + maxBatchEvents + ", maxBatchBytes=" + maxBatchBytes +
+                ", maxBatchDelayMs=" + maxBatchDelayMs + ", senderThreads=" + senderThreads +
+                ", maxRetries=" + maxRetries + ", retryBackoffMs=" + retryBackoffMs +
+                ", maxRetryBackoffMs=" + maxRetryBackoffMs +
+                ", logStreamCreationEnabled=" + logStreamCreationEnabled + "]";
+    }
+
+    /**
+     * Checks that the configuration is consistent.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    void validate() {
+        if (bufferCapacity <= 0 || bufferCapacity > 1 << 30)
+            throw new IllegalArgumentException("bufferCapacity must be between 1 and 2^30");
+        if (overflowPolicy == null)
+            throw new IllegalArgumentException("overflowPolicy must be set");
+        if (maxBatchEvents <= 0 || maxBatchEvents > SERVICE_MAX_BATCH_EVENTS)
+            throw new IllegalArgumentException("maxBatchEvents must be between 1 and " + SERVICE_MAX_BATCH_EVENTS);
+        if (maxBatchBytes < SERVICE_MAX_EVENT_BYTES || maxBatchBytes > SERVICE_MAX_BATCH_BYTES)
+            throw new IllegalArgumentException("maxBatchBytes must be between " + SERVICE_MAX_EVENT_BYTES
+                    + " and " + SERVICE_MAX_BATCH_BYTES);
+        if (maxBatchDelayMs < 0)
+            throw new IllegalArgumentException("maxBatchDelayMs must not be negative");
+        if (senderThreads <= 0)
+            throw new IllegalArgumentException("senderThreads must be positive");
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        if (retryBackoffMs <= 0 || maxRetryBackoffMs < retryBackoffMs)
+            throw new IllegalArgumentException(
+                    "retryBackoffMs must be positive, and not larger than maxRetryBackoffMs");
+    }
+
+    /**
+     * The maximum number of events published that have not been sent yet.
+     * What happens to the events published once it is reached is decided by
+     * the overflow policy.
+     */
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    /**
+     * The maximum number of events published that have not been sent yet.
+     * What happens to the events published once it is reached is decided by
+     * the overflow policy.
+     */
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * The maximum number of events published that have not been sent yet.
+     * What happens to the events published once it is reached is decided by
+     * the overflow policy.
+     */
+    public LogPublisherConfig withBufferCapacity(int bufferCapacity) {
+        setBufferCapacity(bufferCapacity);
+        return this;
+    }
+
+    /**
+     * What publishing an event does when the buffer is full.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * What publishing an event does when the buffer is full.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * What publishing an event does when the buffer is full.
+     */
+    public LogPublisherConfig withOverflowPolicy(OverflowPolicy overflowPolicy) {
+        setOverflowPolicy(overflowPolicy);
+        return this;
+    }
+
+    /**
+     * The maximum number of events in a PutLogEvents request.
+     */
+    public int getMaxBatchEvents() {
+        return maxBatchEvents;
+    }
+
+    /**
+     * The maximum number of events in a PutLogEvents request.
+     */
+    public void setMaxBatchEvents(int maxBatchEvents) {
+        this.maxBatchEvents = maxBatchEvents;
+    }
+
+    /**
+     * The maximum number of events in a PutLogEvents request.
+     */
+    public LogPublisherConfig withMaxBatchEvents(int maxBatchEvents) {
+        setMaxBatchEvents(maxBatchEvents);
+        return this;
+    }
+
+    /**
+     * The maximum size of a PutLogEvents request, as counted by the service:
+     * the UTF-8 size of the messages plus 26 bytes per event.
+     */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * The maximum size of a PutLogEvents request, as counted by the service:
+     * the UTF-8 size of the messages plus 26 bytes per event.
+     */
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * The maximum size of a PutLogEvents request, as counted by the service:
+     * the UTF-8 size of the messages plus 26 bytes per event.
+     */
+    public LogPublisherConfig withMaxBatchBytes(int maxBatchBytes) {
+        setMaxBatchBytes(maxBatchBytes);
+        return this;
+    }
+
+    /**
+     * The maximum time (milliseconds) an event waits for more events of its
+     * log stream to batch with. A full batch is sent right away.
+     */
+    public long getMaxBatchDelayMs() {
+        return maxBatchDelayMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) an event waits for more events of its
+     * log stream to batch with. A full batch is sent right away.
+     */
+    public void setMaxBatchDelayMs(long maxBatchDelayMs) {
+        this.maxBatchDelayMs = maxBatchDelayMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) an event waits for more events of its
+     * log stream to batch with. A full batch is sent right away.
+     */
+    public LogPublisherConfig withMaxBatchDelayMs(long maxBatchDelayMs) {
+        setMaxBatchDelayMs(maxBatchDelayMs);
+        return this;
+    }
+
+    /**
+     * The maximum number of PutLogEvents requests in flight across all the log
+     * streams. There is never more than one per log stream, as each request
+     * needs the sequence token returned by the previous one.
+     */
+    public int getSenderThreads() {
+        return senderThreads;
+    }
+
+    /**
+     * The maximum number of PutLogEvents requests in flight across all the log
+     * streams. There is never more than one per log stream, as each request
+     * needs the sequence token returned by the previous one.
+     */
+    public void setSenderThreads(int senderThreads) {
+        this.senderThreads = senderThreads;
+    }
+
+    /**
+     * The maximum number of PutLogEvents requests in flight across all the log
+     * streams. There is never more than one per log stream, as each request
+     * needs the sequence token returned by the previous one.
+     */
+    public LogPublisherConfig withSenderThreads(int senderThreads) {
+        setSenderThreads(senderThreads);
+        return this;
+    }
+
+    /**
+     * The maximum number of times a PutLogEvents request is retried after a
+     * throttling or transient failure, in addition to the retries of the
+     * client itself.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * The maximum number of times a PutLogEvents request is retried after a
+     * throttling or transient failure, in addition to the retries of the
+     * client itself.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * The maximum number of times a PutLogEvents request is retried after a
+     * throttling or transient failure, in addition to the retries of the
+     * client itself.
+     */
+    public LogPublisherConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a request, doubled
+     * for each subsequent retry.
+     */
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a request, doubled
+     * for each subsequent retry.
+     */
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    /**
+     * The delay (milliseconds) before the first retry of a request, doubled
+     * for each subsequent retry.
+     */
+    public LogPublisherConfig withRetryBackoffMs(long retryBackoffMs) {
+        setRetryBackoffMs(retryBackoffMs);
+        return this;
+    }
+
+    /**
+     * The maximum delay (milliseconds) before retrying a request.
+     */
+    public long getMaxRetryBackoffMs() {
+        return maxRetryBackoffMs;
+    }
+
+    /**
+     * The maximum delay (milliseconds) before retrying a request.
+     */
+    public void setMaxRetryBackoffMs(long maxRetryBackoffMs) {
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+    }
+
+    /**
+     * The maximum delay (milliseconds) before retrying a request.
+     */
+    public LogPublisherConfig withMaxRetryBackoffMs(long maxRetryBackoffMs) {
+        setMaxRetryBackoffMs(maxRetryBackoffMs);
+        return this;
+    }
+
+    /**
+     * Whether a log stream that does not exist is created on the first
+     * request to it. The log group must exist.
+     */
+    public boolean isLogStreamCreationEnabled() {
+        return logStreamCreationEnabled;
+    }
+
+    /**
+     * Whether a log stream that does not exist is created on the first
+     * request to it. The log group must exist.
+     */
+    public void setLogStreamCreationEnabled(boolean logStreamCreationEnabled) {
+        this.logStreamCreationEnabled = logStreamCreationEnabled;
+    }
+
+    /**
+     * Whether a log stream that does not exist is created on the first
+     * request to it. The log group must exist.
+     */
+    public LogPublisherConfig withLogStreamCreationEnabled(boolean logStreamCreationEnabled) {
+        setLogStreamCreationEnabled(logStreamCreationEnabled);
+        return this;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+/**
+ * What an {@link AWSLogsBufferedPublisher} does with an event published while
+ * its buffer is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Wait for room in the buffer, which slows the publishing threads down to
+     * the pace at which events can be sent.
+     */
+    BLOCK,
+
+    /**
+     * Discard the event, and count it as dropped, so that publishing never
+     * waits.
+     */
+    DROP
+}
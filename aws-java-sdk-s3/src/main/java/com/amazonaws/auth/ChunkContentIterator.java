@@ -14,17 +14,29 @@
  */
 package com.amazonaws.auth;
 
+/**
+ * Iterates over a signed chunk, made of the chunk header, the chunk data and
+ * the trailing CRLF, without copying them into a single array.
+ */
 class ChunkContentIterator {
 
-    private final byte[] signedChunk;
+    private static final byte[] CRLF = { '\r', '\n' };
+
+    private final byte[] header;
+    private final byte[] data;
+    private final int dataLength;
+    private final int length;
     private int pos;
 
-    public ChunkContentIterator(byte[] signedChunk) {
-        this.signedChunk = signedChunk;
+    public ChunkContentIterator(byte[] header, byte[] data, int dataLength) {
+        this.header = header;
+        this.data = data;
+        this.dataLength = dataLength;
+        this.length = header.length + dataLength + CRLF.length;
     }
 
     public boolean hasNext() {
-        return pos < signedChunk.length;
+        return pos < length;
     }
 
     public int read(byte[] output, int offset, int length) {
@@ -32,10 +44,29 @@ class ChunkContentIterator {
             return 0;
         if ( !hasNext() )
             return -1;
-        int remaingBytesNum = signedChunk.length - pos;
-        int bytesToRead = Math.min(remaingBytesNum, length);
-        System.arraycopy(signedChunk, pos, output, offset, bytesToRead);
-        pos += bytesToRead;
-        return bytesToRead;
+        int bytesRead = 0;
+        while (bytesRead < length && hasNext()) {
+            final byte[] segment;
+            final int segmentPos;
+            final int segmentLength;
+            if (pos < header.length) {
+                segment = header;
+                segmentPos = pos;
+                segmentLength = header.length;
+            } else if (pos < header.length + dataLength) {
+                segment = data;
+                segmentPos = pos - header.length;
+                segmentLength = dataLength;
+            } else {
+                segment = CRLF;
+                segmentPos = pos - header.length - dataLength;
+                segmentLength = CRLF.length;
+            }
+            int bytesToRead = Math.min(segmentLength - segmentPos, length - bytesRead);
+            System.arraycopy(segment, segmentPos, output, offset + bytesRead, bytesToRead);
+            pos += bytesToRead;
+            bytesRead += bytesToRead;
+        }
+        return bytesRead;
     }
-}
\ No newline at end of file
+}
@@ -35,6 +35,7 @@ import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
 import com.amazonaws.services.s3.model.CopyPartRequest;
 import com.amazonaws.services.s3.model.CopyPartResult;
 import com.amazonaws.services.s3.model.CryptoConfiguration;
+import com.amazonaws.services.s3.model.CryptoMode;
 import com.amazonaws.services.s3.model.DeleteObjectRequest;
 import com.amazonaws.services.s3.model.EncryptedInitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.EncryptedPutObjectRequest;
@@ -492,6 +493,35 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
         return crypto.getObjectSecurely(req, dest);
     }
 
+    /**
+     * Same as {@link #getObject(GetObjectRequest, File)}, but downloads and
+     * decrypts ranges of the object concurrently using the given thread pool
+     * when the object has been encrypted using authenticated encryption
+     * (AES/GCM). The ranges are written to a temporary file in the directory
+     * of the destination file, which is only replaced once the authentication
+     * tag has been verified over the whole object. A range that fails to
+     * download is retried once, and only a few ranges are held in memory at a
+     * time.
+     * <p>
+     * {@link com.amazonaws.services.s3.transfer.TransferManager} does not use
+     * this method; parallel downloads are only performed when it is called
+     * explicitly.
+     * <p>
+     * Requests for a range or a part, as well as objects encrypted using
+     * {@link CryptoMode#EncryptionOnly}, are downloaded as per
+     * {@link #getObject(GetObjectRequest, File)}.
+     *
+     * @param executor
+     *            the thread pool used to download and decrypt the ranges
+     *
+     * @return the object metadata, or null if the constraints of the request
+     *         are not met
+     */
+    public ObjectMetadata getObject(GetObjectRequest req, File dest,
+            ExecutorService executor) {
+        return crypto.getObjectSecurely(req, dest, executor);
+    }
+
     @Override
     public void deleteObject(DeleteObjectRequest req) {
         req.getRequestClientOptions().appendUserAgent(USER_AGENT);
@@ -650,7 +680,9 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
      * There are many ways you can customize the behavior of this method,
      * including
      * <ul>
-     * <li>the configuration of your own custom thread pool</li>
+     * <li>the configuration of your own custom thread pool, which is also
+     * used to encrypt a file concurrently when using authenticated encryption
+     * (AES/GCM)</li>
      * <li>the part size of each multi-part upload request; By default, a
      * temporary ciphertext file is generated per part and gets uploaded
      * immediately to S3</li>
@@ -677,8 +709,8 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
      * <li>Initialize a multi-part upload request to S3 by calling
      * {@link UploadObjectObserver#onUploadInitiation(UploadObjectRequest)}</li>
      * <li>A {@link MultiFileOutputStream} is constructed (or retrieved from the
-     * request) which serves as the pipeline for incremental (but serial)
-     * encryption to disk with concurrent multipart uploads to S3 whenever the
+     * request) which serves as the pipeline for incremental encryption to
+     * disk with concurrent multipart uploads to S3 whenever the
      * parts on the disk are ready</li>
      * <li>Initialize the <code>MultiFileOutputStream</code></li>
      * <li>Kicks off the pipeline for incremental encryption to disk with
@@ -723,7 +755,11 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
             mfos.init(observer, req.getPartSize(), req.getDiskLimit());
             // Kicks off the encryption-upload pipeline;
             // Note mfos is automatically closed upon method completion.
-            crypto.putLocalObjectSecurely(req, uploadId, mfos);
+            // The thread pool is also used to encrypt a file concurrently
+            // under authenticated encryption.
+            crypto.putLocalObjectSecurely(
+                    defaultExecutorService ? req.clone().withExecutorService(es) : req,
+                    uploadId, mfos);
             // block till all part have been uploaded
             for (Future<UploadPartResult> future: observer.getFutures()) {
                 UploadPartResult partResult = future.get();
@@ -20,6 +20,7 @@ import static com.amazonaws.services.s3.model.CryptoMode.EncryptionOnly;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
@@ -123,6 +124,13 @@ public class CryptoModuleDispatcher extends S3CryptoModule<MultipartUploadContex
         return ae.getObjectSecurely(req, destinationFile);
     }
 
+    @Override
+    public ObjectMetadata getObjectSecurely(GetObjectRequest req,
+            File destinationFile, ExecutorService executor) {
+        // AE module can handle S3 objects encrypted in either AE or EO format
+        return ae.getObjectSecurely(req, destinationFile, executor);
+    }
+
     @Override
     public CompleteMultipartUploadResult completeMultipartUploadSecurely(
             CompleteMultipartUploadRequest req)
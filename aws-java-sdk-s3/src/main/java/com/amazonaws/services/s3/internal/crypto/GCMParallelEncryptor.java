@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.util.Throwables.failure;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+
+import com.amazonaws.AbortedException;
+
+/**
+ * Encrypts a plaintext of known length with AES/GCM, splitting the work across
+ * the threads of an executor. The output is byte for byte the same as that of
+ * the {@link GCMCipherLite} it is created from: the ciphertext followed by the
+ * 16 byte authentication tag.
+ * <p>
+ * The plaintext is read in chunks whose size is a multiple of the block size.
+ * Each chunk is encrypted with an AES/CTR cipher starting at the counter GCM
+ * would use for that position, and the GHASH of its ciphertext is computed
+ * along the way. The chunks are written out in order, and the tag is derived
+ * by combining the GHASH of every chunk (see {@link GHash}).
+ */
+final class GCMParallelEncryptor {
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;  // 1MB
+
+    private final CipherLite cipherLite;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+
+    /**
+     * @param cipherLite
+     *            a GCM cipher lite for encryption, which will not be used
+     *            other than to derive the auxiliary ciphers
+     * @param executor
+     *            used to encrypt the chunks
+     */
+    GCMParallelEncryptor(CipherLite cipherLite, ExecutorService executor) {
+        this(cipherLite, executor, DEFAULT_CHUNK_SIZE,
+                2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    GCMParallelEncryptor(CipherLite cipherLite, ExecutorService executor,
+            int chunkSize, int maxChunksInFlight) {
+        if (cipherLite.getContentCryptoScheme() != ContentCryptoScheme.AES_GCM
+        ||  cipherLite.getCipherMode() != Cipher.ENCRYPT_MODE)
+            throw new IllegalArgumentException("Expecting an AES/GCM cipher for encryption");
+        if (chunkSize <= 0 || chunkSize % 16 != 0)
+            throw new IllegalArgumentException("chunkSize must be a positive multiple of 16");
+        this.cipherLite = cipherLite;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = Math.max(2, maxChunksInFlight);
+    }
+
+    /**
+     * Reads exactly <code>length</code> bytes of plaintext from the given input
+     * stream, and writes the resultant ciphertext and tag to the given output
+     * stream. Neither stream is closed.
+     */
+    void encrypt(InputStream is, long length, OutputStream os)
+            throws IOException {
+        final GHash ghash = GHash.of(cipherLite);
+        final long[] chunkPower = ghash.power(chunkSize / 16);
+        final LinkedList<Future<Chunk>> inFlight = new LinkedList<Future<Chunk>>();
+        long[] state = { 0, 0 };
+        long offset = 0;
+        try {
+            while (offset < length || !inFlight.isEmpty()) {
+                while (offset < length && inFlight.size() < maxChunksInFlight) {
+                    final int size = (int) Math.min(chunkSize, length - offset);
+                    final byte[] plaintext = new byte[size];
+                    readFully(is, plaintext);
+                    inFlight.add(executor.submit(
+                            new ChunkTask(plaintext, offset, ghash)));
+                    offset += size;
+                }
+                final Chunk chunk = inFlight.removeFirst().get();
+                os.write(chunk.ciphertext);
+                final long[] power = chunk.ciphertext.length == chunkSize
+                        ? chunkPower
+                        : ghash.power((chunk.ciphertext.length + 15) / 16);
+                state = GHash.multiply(state, power);
+                state[0] ^= chunk.hash[0];
+                state[1] ^= chunk.hash[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException(e);
+        } catch (ExecutionException e) {
+            throw failure(e.getCause(), "Unable to encrypt the plaintext");
+        } finally {
+            for (Future<Chunk> f : inFlight)
+                f.cancel(true);
+        }
+        if (is.read() != -1) {
+            throw new IOException("More data read than expected: length="
+                    + length);
+        }
+        final byte[] tag = ghash.tag(state, length);
+        os.write(tag);
+    }
+
+    private static void readFully(InputStream is, byte[] b) throws IOException {
+        int n = 0;
+        while (n < b.length) {
+            final int count = is.read(b, n, b.length - n);
+            if (count == -1) {
+                throw new IOException("Data read has a different length than the expected: dataLength="
+                        + n + "; expectedLength=" + b.length);
+            }
+            n += count;
+        }
+    }
+
+    private static final class Chunk {
+        final byte[] ciphertext;
+        final long[] hash;
+
+        Chunk(byte[] ciphertext, long[] hash) {
+            this.ciphertext = ciphertext;
+            this.hash = hash;
+        }
+    }
+
+    private final class ChunkTask implements Callable<Chunk> {
+        private final byte[] plaintext;
+        private final long offset;
+        private final GHash ghash;
+
+        ChunkTask(byte[] plaintext, long offset, GHash ghash) {
+            this.plaintext = plaintext;
+            this.offset = offset;
+            this.ghash = ghash;
+        }
+
+        @Override
+        public Chunk call() throws Exception {
+            final CipherLite ctr = cipherLite.createAuxiliary(offset);
+            final byte[] ciphertext = ctr.doFinal(plaintext);
+            return new Chunk(ciphertext,
+                    ghash.hash(ciphertext, 0, ciphertext.length));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import static com.amazonaws.util.Throwables.failure;
+
+import javax.crypto.Cipher;
+
+/**
+ * The GHASH function of AES/GCM for the hash subkey H and pre-counter block
+ * J<sub>0</sub> of a given key and IV. See <a href=
+ * "http://csrc.nist.gov/publications/nistpubs/800-38D/SP-800-38D.pdf">
+ * NIST Special Publication 800-38D</a>.
+ * <p>
+ * GHASH is linear, so the hash of a long input can be computed from the hashes
+ * of its pieces: if Y is the hash of the first part and Z the hash (starting
+ * from zero) of the m blocks that follow, the hash of the whole is
+ * Y&middot;H<sup>m</sup> &oplus; Z. This allows the pieces to be hashed
+ * concurrently.
+ * <p>
+ * A field element is represented as two longs holding the 16 bytes of the
+ * block in big-endian order. Instances are immutable and thread safe.
+ */
+final class GHash {
+    /** x<sup>0</sup>, the multiplicative identity. */
+    private static final long ONE_HI = 0x8000000000000000L;
+    /** The reduction polynomial x<sup>128</sup> + x<sup>7</sup> + x<sup>2</sup> + x + 1. */
+    private static final long R = 0xE100000000000000L;
+
+    /**
+     * For every byte position i and byte value b, the product of H with the
+     * block that only has b at position i; stored as hi/lo pairs.
+     */
+    private final long[] table = new long[16 * 256 * 2];
+    /** E<sub>K</sub>(J<sub>0</sub>), which masks the hash to form the tag. */
+    private final byte[] tagMask;
+
+    private GHash(byte[] h, byte[] tagMask) {
+        this.tagMask = tagMask;
+        long vHi = getLong(h, 0);
+        long vLo = getLong(h, 8);
+        for (int i = 0; i < 16; i++) {
+            final int base = i << 9;
+            for (int bit = 0x80; bit > 0; bit >>= 1) {
+                table[base + (bit << 1)] = vHi;
+                table[base + (bit << 1) + 1] = vLo;
+                // multiply by x
+                final long carry = vLo & 1;
+                vLo = (vLo >>> 1) | (vHi << 63);
+                vHi = (vHi >>> 1) ^ (carry == 0 ? 0 : R);
+            }
+            for (int b = 3; b < 256; b++) {
+                final int low = b & -b;
+                if (low == b)
+                    continue;
+                table[base + (b << 1)] = table[base + ((b ^ low) << 1)] ^ table[base + (low << 1)];
+                table[base + (b << 1) + 1] = table[base + ((b ^ low) << 1) + 1] ^ table[base + (low << 1) + 1];
+            }
+        }
+    }
+
+    /**
+     * Returns the GHASH function for the key and IV of the given AES/GCM cipher
+     * lite, which can be in either encryption or decryption mode.
+     */
+    static GHash of(CipherLite gcm) {
+        final byte[] iv = gcm.getIV();
+        if (iv.length != 12)
+            throw new UnsupportedOperationException();
+        try {
+            final Cipher ecb = Cipher.getInstance("AES/ECB/NoPadding",
+                    gcm.getCipherProvider());
+            ecb.init(Cipher.ENCRYPT_MODE, gcm.getSecretKey());
+            final byte[] j0 = new byte[16];
+            System.arraycopy(iv, 0, j0, 0, iv.length);
+            j0[15] = 1;
+            return new GHash(ecb.doFinal(new byte[16]), ecb.doFinal(j0));
+        } catch (Exception e) {
+            throw failure(e, "Unable to build cipher");
+        }
+    }
+
+    /**
+     * Returns the authentication tag given the GHASH of the whole ciphertext
+     * and its length in bytes, assuming there is no additional authenticated
+     * data.
+     */
+    byte[] tag(long[] ciphertextHash, long ciphertextLength) {
+        // The length block: the bit length of the (empty) additional
+        // authenticated data followed by that of the ciphertext
+        final long[] state = multiplyH(new long[] {
+                ciphertextHash[0], ciphertextHash[1] ^ (ciphertextLength << 3) });
+        final byte[] tag = new byte[16];
+        putLong(state[0], tag, 0);
+        putLong(state[1], tag, 8);
+        for (int i = 0; i < tag.length; i++)
+            tag[i] ^= tagMask[i];
+        return tag;
+    }
+
+    /**
+     * Returns the GHASH of the given bytes starting from a zero state, with the
+     * final partial block, if any, padded with zeros.
+     */
+    long[] hash(byte[] data, int offset, int length) {
+        long hi = 0, lo = 0;
+        final int end = offset + length;
+        final byte[] block = new byte[16];
+        for (int i = offset; i < end; i += 16) {
+            final byte[] src;
+            final int pos;
+            if (end - i >= 16) {
+                src = data;
+                pos = i;
+            } else {
+                System.arraycopy(data, i, block, 0, end - i);
+                src = block;
+                pos = 0;
+            }
+            hi ^= getLong(src, pos);
+            lo ^= getLong(src, pos + 8);
+            long zHi = 0, zLo = 0;
+            for (int j = 0; j < 8; j++) {
+                final int index = (j << 9) + ((int) (hi >>> (56 - 8 * j)) & 0xFF) * 2;
+                zHi ^= table[index];
+                zLo ^= table[index + 1];
+            }
+            for (int j = 0; j < 8; j++) {
+                final int index = ((j + 8) << 9) + ((int) (lo >>> (56 - 8 * j)) & 0xFF) * 2;
+                zHi ^= table[index];
+                zLo ^= table[index + 1];
+            }
+            hi = zHi;
+            lo = zLo;
+        }
+        return new long[] { hi, lo };
+    }
+
+    /**
+     * Returns x&middot;H.
+     */
+    long[] multiplyH(long[] x) {
+        long zHi = 0, zLo = 0;
+        for (int j = 0; j < 16; j++) {
+            final long half = j < 8 ? x[0] : x[1];
+            final int index = (j << 9) + ((int) (half >>> (56 - 8 * (j & 7))) & 0xFF) * 2;
+            zHi ^= table[index];
+            zLo ^= table[index + 1];
+        }
+        return new long[] { zHi, zLo };
+    }
+
+    /**
+     * Returns H<sup>exponent</sup>.
+     */
+    long[] power(long exponent) {
+        long[] result = { ONE_HI, 0 };
+        long[] square = multiplyH(result);
+        for (long e = exponent; e != 0; e >>>= 1) {
+            if ((e & 1) != 0)
+                result = multiply(result, square);
+            square = multiply(square, square);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the product of two field elements.
+     */
+    static long[] multiply(long[] x, long[] y) {
+        long zHi = 0, zLo = 0;
+        long vHi = y[0], vLo = y[1];
+        for (int i = 0; i < 128; i++) {
+            final long bits = i < 64 ? x[0] : x[1];
+            if ((bits << (i & 63)) < 0) {
+                zHi ^= vHi;
+                zLo ^= vLo;
+            }
+            final long carry = vLo & 1;
+            vLo = (vLo >>> 1) | (vHi << 63);
+            vHi = (vHi >>> 1) ^ (carry == 0 ? 0 : R);
+        }
+        return new long[] { zHi, zLo };
+    }
+
+    static long getLong(byte[] b, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++)
+            value = (value << 8) | (b[offset + i] & 0xFF);
+        return value;
+    }
+
+    static void putLong(long value, byte[] b, int offset) {
+        for (int i = 7; i >= 0; i--) {
+            b[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.amazonaws.services.s3.internal.crypto;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
@@ -52,6 +53,16 @@ public abstract class S3CryptoModule<T extends MultipartUploadContext> {
     public abstract ObjectMetadata getObjectSecurely(GetObjectRequest req,
             File dest);
 
+    /**
+     * Same as {@link #getObjectSecurely(GetObjectRequest, File)}, but may
+     * download and decrypt parts of the object concurrently using the given
+     * executor. Downloads serially unless overridden.
+     */
+    public ObjectMetadata getObjectSecurely(GetObjectRequest req,
+            File dest, ExecutorService executor) {
+        return getObjectSecurely(req, dest);
+    }
+
     public abstract CompleteMultipartUploadResult completeMultipartUploadSecurely(
             CompleteMultipartUploadRequest req);
 
@@ -19,18 +19,35 @@ import static com.amazonaws.services.s3.model.CryptoMode.AuthenticatedEncryption
 import static com.amazonaws.services.s3.model.CryptoMode.StrictAuthenticatedEncryption;
 import static com.amazonaws.services.s3.model.ExtraMaterialsDescription.NONE;
 import static com.amazonaws.util.IOUtils.closeQuietly;
+import static com.amazonaws.util.Throwables.failure;
 
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import javax.net.ssl.SSLProtocolException;
+
+import com.amazonaws.AbortedException;
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.internal.SdkFilterInputStream;
@@ -54,6 +71,16 @@ import com.amazonaws.util.json.Jackson;
  * Authenticated encryption (AE) cryptographic module for the S3 encryption client.
  */
 class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext> {
+    /**
+     * Size of the ranges of an object that are downloaded and decrypted
+     * concurrently.
+     */
+    static final int PARALLEL_GET_RANGE_SIZE = 8 << 20; // 8MB
+    /**
+     * Maximum number of ranges of a parallel get being downloaded or held in
+     * memory at any time.
+     */
+    static final int PARALLEL_GET_MAX_RANGES = 4;
     static {
         // Enable bouncy castle if available
         CryptoRuntime.enableBouncyCastle();
@@ -359,6 +386,330 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
         return s3Object.getObjectMetadata();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * An object encrypted with AES/GCM is fetched in block aligned ranges of
+     * {@link #PARALLEL_GET_RANGE_SIZE} bytes, with at most
+     * {@link #PARALLEL_GET_MAX_RANGES} ranges in flight at a time. Each range
+     * is decrypted with AES/CTR at the counter of its offset and written to a
+     * temporary file next to the destination file at that offset, and the
+     * GHASH of its ciphertext is computed along the way. A range that fails to
+     * download is retried once. Once all the ranges are done, the tag of the
+     * whole object is verified against the combined GHASH, and only then is
+     * the temporary file renamed to the destination file. The temporary file
+     * is deleted if the verification or the download fails.
+     * <p>
+     * Other objects, as well as requests for a range or a part, are downloaded
+     * as per {@link #getObjectSecurely(GetObjectRequest, File)}.
+     */
+    @Override
+    public ObjectMetadata getObjectSecurely(GetObjectRequest req,
+            File destinationFile, ExecutorService executor) {
+        assertParameterNotNull(destinationFile,
+        "The destination file parameter must be specified when downloading an object directly to a file");
+        if (executor == null || req.getRange() != null || req.getPartNumber() != null)
+            return getObjectSecurely(req, destinationFile);
+        appendUserAgent(req, USER_AGENT);
+        // The first range also tells if the object is encrypted, and how.
+        final GetObjectRequest firstRangeReq = newRangeRequest(req,
+                0, PARALLEL_GET_RANGE_SIZE - 1)
+            .withModifiedSinceConstraint(req.getModifiedSinceConstraint())
+            .withUnmodifiedSinceConstraint(req.getUnmodifiedSinceConstraint());
+        firstRangeReq.setMatchingETagConstraints(req.getMatchingETagConstraints());
+        firstRangeReq.setNonmatchingETagConstraints(req.getNonmatchingETagConstraints());
+        final S3Object firstRange;
+        try {
+            firstRange = s3.getObject(firstRangeReq);
+        } catch (AmazonServiceException e) {
+            if (e.getStatusCode() != 416)
+                throw e;
+            // An empty object cannot have been encrypted with AES/GCM
+            return getObjectSecurely(req, destinationFile);
+        }
+        if (firstRange == null)
+            return null;
+        final CipherLite cipherLite;
+        try {
+            cipherLite = gcmCipherLiteOf(req, new S3ObjectWrapper(firstRange,
+                    req.getS3ObjectId()));
+        } catch (RuntimeException e) {
+            closeQuietly(firstRange, log);
+            throw e;
+        }
+        if (cipherLite == null) {
+            closeQuietly(firstRange, log);
+            return getObjectSecurely(req, destinationFile);
+        }
+        final ObjectMetadata metadata = firstRange.getObjectMetadata();
+        final long ciphertextLength = metadata.getInstanceLength();
+        final int tagLength = ContentCryptoScheme.AES_GCM.getTagLengthInBits() / 8;
+        final long plaintextLength = ciphertextLength - tagLength;
+        if (plaintextLength < 0) {
+            closeQuietly(firstRange, log);
+            throw new SecurityException("S3 object [bucket: "
+                    + req.getBucketName() + ", key: " + req.getKey()
+                    + "] is too short to have been encrypted using AES/GCM");
+        }
+        final GHash ghash = GHash.of(cipherLite);
+        final byte[] tag = new byte[tagLength];
+        final int numRanges = (int) ((ciphertextLength + PARALLEL_GET_RANGE_SIZE - 1) / PARALLEL_GET_RANGE_SIZE);
+        final List<Future<long[]>> futures = new ArrayList<Future<long[]>>(numRanges);
+        File tempFile = null;
+        RandomAccessFile raf = null;
+        boolean success = false;
+        try {
+            // Nothing is written to the destination before the tag is verified
+            final File dest = destinationFile.getAbsoluteFile();
+            tempFile = File.createTempFile("." + dest.getName(), ".tmp",
+                    dest.getParentFile());
+            raf = new RandomAccessFile(tempFile, "rw");
+            raf.setLength(plaintextLength);
+            final FileChannel channel = raf.getChannel();
+            long[] hash = { 0, 0 };
+            long[] rangePower = null;
+            for (int i = 0; i < numRanges; i++) {
+                // Keep at most PARALLEL_GET_MAX_RANGES ranges in flight
+                while (futures.size() < numRanges
+                        && futures.size() < i + PARALLEL_GET_MAX_RANGES) {
+                    final long start = futures.size() * (long) PARALLEL_GET_RANGE_SIZE;
+                    final long end = Math.min(start + PARALLEL_GET_RANGE_SIZE, ciphertextLength);
+                    futures.add(executor.submit(new DecryptRangeTask(
+                            req, metadata.getETag(),
+                            start == 0 ? firstRange : null, start, end,
+                            plaintextLength, cipherLite, ghash, channel, tag)));
+                }
+                final long rangeStart = i * (long) PARALLEL_GET_RANGE_SIZE;
+                final long rangeEnd = Math.min(rangeStart + PARALLEL_GET_RANGE_SIZE, plaintextLength);
+                final long[] rangeHash = futures.get(i).get();
+                if (rangeEnd <= rangeStart)
+                    continue;   // only the tag
+                final long blocks = (rangeEnd - rangeStart + 15) / 16;
+                final long[] power;
+                if (rangeEnd - rangeStart == PARALLEL_GET_RANGE_SIZE) {
+                    if (rangePower == null)
+                        rangePower = ghash.power(blocks);
+                    power = rangePower;
+                } else {
+                    power = ghash.power(blocks);
+                }
+                hash = GHash.multiply(hash, power);
+                hash[0] ^= rangeHash[0];
+                hash[1] ^= rangeHash[1];
+            }
+            if (!MessageDigest.isEqual(tag, ghash.tag(hash, plaintextLength))) {
+                throw new SecurityException("Tag mismatch for S3 object [bucket: "
+                        + req.getBucketName() + ", key: " + req.getKey() + "]");
+            }
+            raf.close();
+            if (destinationFile.exists() && !destinationFile.delete()) {
+                throw new AmazonClientException("Unable to replace "
+                        + destinationFile + " with the downloaded object");
+            }
+            if (!tempFile.renameTo(destinationFile)) {
+                throw new AmazonClientException("Unable to rename " + tempFile
+                        + " to " + destinationFile);
+            }
+            success = true;
+        } catch (IOException e) {
+            throw new AmazonClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AbortedException(e);
+        } catch (ExecutionException e) {
+            throw failure(e.getCause(), "Unable to download and decrypt the object");
+        } finally {
+            for (Future<long[]> f : futures)
+                f.cancel(true);
+            closeQuietly(raf, log);
+            if (!success) {
+                // In case the first range has not been read
+                closeQuietly(firstRange, log);
+                if (tempFile != null && !tempFile.delete())
+                    log.debug("Unable to delete " + tempFile);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Returns the AES/GCM cipher lite for decrypting the whole of the given
+     * S3 object; or null if the object is not encrypted, or not encrypted
+     * using AES/GCM.
+     */
+    private CipherLite gcmCipherLiteOf(GetObjectRequest req,
+            S3ObjectWrapper retrieved) {
+        ExtraMaterialsDescription extraMatDesc = NONE;
+        boolean keyWrapExpected = isStrict();
+        String suffix = null;
+        if (req instanceof EncryptedGetObjectRequest) {
+            EncryptedGetObjectRequest ereq = (EncryptedGetObjectRequest)req;
+            extraMatDesc = ereq.getExtraMaterialDescription();
+            if (!keyWrapExpected)
+                keyWrapExpected = ereq.isKeyWrapExpected();
+            suffix = ereq.getInstructionFileSuffix();
+        }
+        final boolean hasSuffix = suffix != null && !suffix.trim().isEmpty();
+        ContentCryptoMaterial cekMaterial;
+        if (!hasSuffix && retrieved.hasEncryptionInfo()) {
+            cekMaterial = ContentCryptoMaterial.fromObjectMetadata(
+                    retrieved.getObjectMetadata(), kekMaterialsProvider,
+                    cryptoConfig.getCryptoProvider(), null, extraMatDesc,
+                    keyWrapExpected, kms);
+        } else {
+            S3ObjectWrapper ifile = fetchInstructionFile(req.getS3ObjectId(),
+                    hasSuffix ? suffix : null);
+            if (ifile == null)
+                return null;
+            try {
+                if (!ifile.isInstructionFile())
+                    return null;
+                @SuppressWarnings("unchecked")
+                Map<String, String> matdesc = Collections.unmodifiableMap(
+                        Jackson.fromJsonString(ifile.toJsonString(), Map.class));
+                cekMaterial = ContentCryptoMaterial.fromInstructionFile(
+                        matdesc, kekMaterialsProvider,
+                        cryptoConfig.getCryptoProvider(), null, extraMatDesc,
+                        keyWrapExpected, kms);
+            } finally {
+                closeQuietly(ifile, log);
+            }
+        }
+        securityCheck(cekMaterial, retrieved);
+        return cekMaterial.getContentCryptoScheme() == ContentCryptoScheme.AES_GCM
+             ? cekMaterial.getCipherLite()
+             : null
+             ;
+    }
+
+    /**
+     * Returns a request for the given range of the same object as the given
+     * request.
+     */
+    private static GetObjectRequest newRangeRequest(GetObjectRequest req,
+            long start, long end) {
+        GetObjectRequest rangeReq = new GetObjectRequest(req.getBucketName(),
+                req.getKey(), req.getVersionId())
+            .withSSECustomerKey(req.getSSECustomerKey())
+            .withRange(start, end)
+            .withGeneralProgressListener(req.getGeneralProgressListener())
+            .withRequestMetricCollector(req.getRequestMetricCollector());
+        rangeReq.setRequesterPays(req.isRequesterPays());
+        rangeReq.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        return rangeReq;
+    }
+
+    /**
+     * Downloads and decrypts a range of an object encrypted using AES/GCM, and
+     * returns the GHASH of the ciphertext in the range excluding the tag.
+     */
+    private final class DecryptRangeTask implements Callable<long[]> {
+        private final GetObjectRequest req;
+        private final String eTag;
+        private final long start;
+        private final long end;
+        private final long plaintextLength;
+        private final CipherLite cipherLite;
+        private final GHash ghash;
+        private final FileChannel channel;
+        private final byte[] tag;
+        private S3Object range;
+
+        /**
+         * @param range
+         *            the range if already retrieved; or null if it is to be
+         *            retrieved by this task
+         * @param tag
+         *            where the bytes of the tag found in this range are
+         *            copied to
+         */
+        DecryptRangeTask(GetObjectRequest req, String eTag, S3Object range,
+                long start, long end, long plaintextLength,
+                CipherLite cipherLite, GHash ghash, FileChannel channel,
+                byte[] tag) {
+            this.req = req;
+            this.eTag = eTag;
+            this.range = range;
+            this.start = start;
+            this.end = end;
+            this.plaintextLength = plaintextLength;
+            this.cipherLite = cipherLite;
+            this.ghash = ghash;
+            this.channel = channel;
+            this.tag = tag;
+        }
+
+        @Override
+        public long[] call() throws Exception {
+            final byte[] ciphertext = new byte[(int) (end - start)];
+            boolean hasRetried = false;
+            while (true) {
+                try {
+                    read(ciphertext);
+                    break;
+                } catch (IOException e) {
+                    // Same as ServiceUtils#retryableDownloadS3ObjectToFile
+                    if (hasRetried || e instanceof SocketException
+                            || e instanceof SSLProtocolException) {
+                        throw new AmazonClientException(
+                                "Unable to read the object contents: " + e.getMessage(), e);
+                    }
+                    log.info("Retry the download of range [" + start + ", "
+                            + end + ") of object " + req.getKey() + " (bucket "
+                            + req.getBucketName() + ")", e);
+                    hasRetried = true;
+                }
+            }
+            final int length = (int) Math.max(0, Math.min(end, plaintextLength) - start);
+            // Copy whatever part of the tag is in this range
+            for (long pos = Math.max(start, plaintextLength); pos < end; pos++)
+                tag[(int) (pos - plaintextLength)] = ciphertext[(int) (pos - start)];
+            if (length == 0)
+                return new long[] { 0, 0 };
+            final byte[] plaintext = cipherLite.createAuxiliary(start)
+                    .doFinal(ciphertext, 0, length);
+            final ByteBuffer buffer = ByteBuffer.wrap(plaintext);
+            long position = start;
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+            return ghash.hash(ciphertext, 0, length);
+        }
+
+        /**
+         * Reads the whole range into the given buffer, retrieving the range
+         * if necessary.
+         */
+        private void read(byte[] ciphertext) throws IOException {
+            try {
+                if (range == null) {
+                    // Make sure the object has not changed since the first range
+                    range = s3.getObject(newRangeRequest(req, start, end - 1)
+                            .withMatchingETagConstraint(eTag));
+                    if (range == null) {
+                        throw new AmazonClientException("S3 object [bucket: "
+                                + req.getBucketName() + ", key: " + req.getKey()
+                                + "] has been modified during the download");
+                    }
+                }
+                final InputStream is = range.getObjectContent();
+                int n = 0;
+                while (n < ciphertext.length) {
+                    final int count = is.read(ciphertext, n, ciphertext.length - n);
+                    if (count == -1) {
+                        throw new EOFException("Data read has a different length than the expected: dataLength="
+                                + n + "; expectedLength=" + ciphertext.length);
+                    }
+                    n += count;
+                }
+            } finally {
+                if (range != null)
+                    closeQuietly(range, log);
+                range = null;
+            }
+        }
+    }
+
     @Override
     final MultipartUploadCryptoContext newUploadContext(
             InitiateMultipartUploadRequest req, ContentCryptoMaterial cekMaterial) {
@@ -28,6 +28,7 @@ import static com.amazonaws.util.Throwables.failure;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -37,6 +38,7 @@ import java.security.Provider;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -500,6 +502,23 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
 
         final T uploadContext = multipartUploadContexts.get(uploadId);
         ContentCryptoMaterial cekMaterial = uploadContext.getContentCryptoMaterial();
+        final CipherLite cipherLite = cekMaterial.getCipherLite();
+        final ExecutorService es = req.getExecutorService();
+        if (fileOrig != null && es != null
+        &&  cipherLite.getContentCryptoScheme() == ContentCryptoScheme.AES_GCM) {
+            // Unlike CBC, the counter of each block of GCM is known upfront,
+            // so the file can be encrypted concurrently
+            final InputStream is = new FileInputStream(fileOrig);
+            try {
+                new GCMParallelEncryptor(cipherLite, es).encrypt(
+                        is, fileOrig.length(), os);
+                uploadContext.setHasFinalPartBeenSeen(true);
+            } finally {
+                closeQuietly(is, log);
+                closeQuietly(os, log);
+            }
+            return;
+        }
         req = wrapWithCipher(req, cekMaterial);
 
         try {
@@ -0,0 +1,632 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Iterates over the objects of an Amazon S3 bucket like {@link S3Objects}, but
+ * lists several parts of the key space at the same time. For example:
+ *
+ * <pre class="brush: java">
+ * for ( S3ObjectSummary summary : ParallelS3Objects.withPrefix(s3, &quot;my-bucket&quot;, &quot;photos/&quot;) ) {
+ *     System.out.printf(&quot;Object with key '%s'\n&quot;, summary.getKey());
+ * }
+ * </pre>
+ * <p>
+ * The key space is split into partitions in one of two ways:
+ * <ul>
+ * <li>By default, the keys are grouped by the prefixes found by listing the
+ * first level of the hierarchy under the prefix with a
+ * {@link #withDelimiter(String) delimiter}, and each group is listed
+ * separately. This works well when the objects are spread over many
+ * "directories"; a flat key space is listed sequentially.</li>
+ * <li>When {@link #withSplitPoints(Collection) split points} are given, each
+ * range of keys between two consecutive split points is listed separately.
+ * Split points can be any keys, for example sampled from a previous listing or
+ * derived from a known key format.</li>
+ * </ul>
+ * <p>
+ * Up to {@link #withParallelism(int) parallelism} partitions are listed at the
+ * same time, each by its own thread, which fetches the next page while the
+ * previous ones are consumed. A bounded number of pages is buffered ahead of
+ * the caller, so that listing threads wait for the caller rather than filling
+ * the memory. The objects are returned in no particular order, unless
+ * {@link #withOrderedResults(boolean) ordered results} are requested, in which
+ * case they are returned in the same order as {@link S3Objects} does.
+ * <p>
+ * The threads are released once the iteration completes or fails. Iterations
+ * that are stopped before should be {@link ParallelS3ObjectIterator#close()
+ * closed}.
+ */
+public class ParallelS3Objects implements Iterable<S3ObjectSummary> {
+
+    private static final int DEFAULT_PARALLELISM = 10;
+
+    private static final int DEFAULT_PREFETCH_PAGES = 2;
+
+    private static final String DEFAULT_DELIMITER = "/";
+
+    /**
+     * Orders keys the way Amazon S3 lists them, by the code points of their
+     * characters, which is the same as the bytes of their UTF-8 encoding.
+     */
+    private static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+        @Override
+        public int compare(String key1, String key2) {
+            int i1 = 0;
+            int i2 = 0;
+            while (i1 < key1.length() && i2 < key2.length()) {
+                int c1 = key1.codePointAt(i1);
+                int c2 = key2.codePointAt(i2);
+                if (c1 != c2) {
+                    return c1 < c2 ? -1 : 1;
+                }
+                i1 += Character.charCount(c1);
+                i2 += Character.charCount(c2);
+            }
+            return (key1.length() - i1) - (key2.length() - i2);
+        }
+    };
+
+    /** Marks the end of the partitions when the results are ordered */
+    private static final BlockingQueue<Page> END_OF_PARTITIONS = new ArrayBlockingQueue<Page>(1);
+
+    /**
+     * A page of object summaries, or the end of a partition, or the failure
+     * to list one.
+     */
+    private static final class Page {
+        private static final Page END = new Page(null, null);
+
+        private final List<S3ObjectSummary> summaries;
+        private final Throwable error;
+
+        private Page(List<S3ObjectSummary> summaries, Throwable error) {
+            this.summaries = summaries;
+            this.error = error;
+        }
+    }
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private String prefix = null;
+    private Integer batchSize = null;
+    private String delimiter = DEFAULT_DELIMITER;
+    private List<String> splitPoints = null;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private boolean orderedResults = false;
+
+    private ParallelS3Objects(AmazonS3 s3, String bucketName) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an Amazon S3
+     * bucket.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects inBucket(AmazonS3 s3, String bucketName) {
+        return new ParallelS3Objects(s3, bucketName);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with the given prefix.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefix
+     *            The prefix.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects withPrefix(AmazonS3 s3, String bucketName, String prefix) {
+        ParallelS3Objects objects = new ParallelS3Objects(s3, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
+     * fetched at once.
+     *
+     * @param batchSize
+     *            How many object summaries to fetch at once.
+     */
+    public ParallelS3Objects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the delimiter used to find the prefixes that the keys are grouped
+     * by, when no split points are given. Defaults to "/".
+     */
+    public ParallelS3Objects withDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("The delimiter must not be empty");
+        }
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Splits the keys into ranges that are listed separately, instead of
+     * grouping them by prefix. Each split point belongs to the range that ends
+     * with it.
+     *
+     * @param splitPoints
+     *            The keys to split the key space at, in any order.
+     */
+    public ParallelS3Objects withSplitPoints(Collection<String> splitPoints) {
+        TreeSet<String> sorted = new TreeSet<String>(KEY_ORDER);
+        for (String splitPoint : splitPoints) {
+            if (splitPoint == null) {
+                throw new IllegalArgumentException("Split points must not be null");
+            }
+            sorted.add(splitPoint);
+        }
+        this.splitPoints = new ArrayList<String>(sorted);
+        return this;
+    }
+
+    /**
+     * @see #withSplitPoints(Collection)
+     */
+    public ParallelS3Objects withSplitPoints(String... splitPoints) {
+        return withSplitPoints(Arrays.asList(splitPoints));
+    }
+
+    /**
+     * Sets the maximum number of partitions listed at the same time. Defaults
+     * to 10.
+     */
+    public ParallelS3Objects withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets how many pages each listing thread may fetch ahead of the caller.
+     * Defaults to 2.
+     */
+    public ParallelS3Objects withPrefetchPages(int prefetchPages) {
+        if (prefetchPages < 1) {
+            throw new IllegalArgumentException("Prefetch pages must be at least 1: " + prefetchPages);
+        }
+        this.prefetchPages = prefetchPages;
+        return this;
+    }
+
+    /**
+     * Sets whether the objects are returned in key order, like
+     * {@link S3Objects} does. Ordered results are slower to start with, since
+     * partitions listed ahead only buffer a few pages until the caller gets to
+     * them. Defaults to false.
+     */
+    public ParallelS3Objects withOrderedResults(boolean orderedResults) {
+        this.orderedResults = orderedResults;
+        return this;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public AmazonS3 getS3() {
+        return s3;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public List<String> getSplitPoints() {
+        return splitPoints == null ? null : Collections.unmodifiableList(splitPoints);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getPrefetchPages() {
+        return prefetchPages;
+    }
+
+    public boolean isOrderedResults() {
+        return orderedResults;
+    }
+
+    /**
+     * Starts listing the objects in the background and returns an iterator
+     * over them.
+     */
+    @Override
+    public ParallelS3ObjectIterator iterator() {
+        return new ParallelS3ObjectIterator();
+    }
+
+    /**
+     * Iterator over the objects listed in the background. Closing it stops
+     * the listing threads.
+     */
+    public final class ParallelS3ObjectIterator implements Iterator<S3ObjectSummary>, Closeable {
+
+        private final ExecutorService executor;
+
+        /** Pages of all the partitions when the results are not ordered */
+        private final BlockingQueue<Page> pages;
+
+        /**
+         * Pages of each partition in key order, when the results are ordered.
+         */
+        private final BlockingQueue<BlockingQueue<Page>> partitions;
+
+        /**
+         * Number of tasks that have yet to end their partition, including the
+         * one finding the partitions.
+         */
+        private final AtomicInteger activeTasks = new AtomicInteger(1);
+
+        private BlockingQueue<Page> currentPartition;
+
+        private Iterator<S3ObjectSummary> currentIterator = Collections.<S3ObjectSummary>emptyList().iterator();
+
+        private volatile boolean done;
+
+        private ParallelS3ObjectIterator() {
+            // One more thread finds the partitions
+            this.executor = Executors.newFixedThreadPool(parallelism + 1, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "java-sdk-s3-listing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            if (orderedResults) {
+                this.pages = null;
+                this.partitions = new ArrayBlockingQueue<BlockingQueue<Page>>(parallelism * prefetchPages);
+            } else {
+                this.pages = new ArrayBlockingQueue<Page>(parallelism * prefetchPages);
+                this.partitions = null;
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    findPartitions();
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!currentIterator.hasNext()) {
+                if (done) {
+                    return false;
+                }
+                Page page = nextPage();
+                if (page == null) {
+                    close();
+                    return false;
+                }
+                currentIterator = page.summaries.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops listing the objects. The objects already returned by
+         * {@link #next()} are not affected.
+         */
+        @Override
+        public void close() {
+            done = true;
+            executor.shutdownNow();
+        }
+
+        /**
+         * Returns the next page to return objects from, or null once all the
+         * partitions are listed.
+         */
+        private Page nextPage() {
+            while (true) {
+                final Page page;
+                if (orderedResults) {
+                    if (currentPartition == null) {
+                        BlockingQueue<Page> partition = take(partitions);
+                        if (partition == END_OF_PARTITIONS) {
+                            return null;
+                        }
+                        currentPartition = partition;
+                    }
+                    page = take(currentPartition);
+                    if (page == Page.END) {
+                        currentPartition = null;
+                        continue;
+                    }
+                } else {
+                    page = take(pages);
+                    if (page == Page.END) {
+                        if (activeTasks.decrementAndGet() == 0) {
+                            return null;
+                        }
+                        continue;
+                    }
+                }
+                if (page.error != null) {
+                    close();
+                    throw toClientException(page.error);
+                }
+                return page;
+            }
+        }
+
+        private <T> T take(BlockingQueue<T> queue) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new AbortedException(e);
+            }
+        }
+
+        private RuntimeException toClientException(Throwable error) {
+            if (error instanceof RuntimeException) {
+                return (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            return new AmazonClientException("Unable to list objects: " + error.getMessage(), error);
+        }
+
+        /**
+         * Finds the partitions of the key space and starts listing them.
+         */
+        private void findPartitions() {
+            try {
+                if (splitPoints != null) {
+                    String startAfter = null;
+                    for (String splitPoint : splitPoints) {
+                        startPartition(startAfter, splitPoint);
+                        startAfter = splitPoint;
+                    }
+                    startPartition(startAfter, null);
+                } else {
+                    findPrefixPartitions();
+                }
+                if (orderedResults) {
+                    partitions.put(END_OF_PARTITIONS);
+                } else {
+                    pages.put(Page.END);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                if (orderedResults) {
+                    // Reported in place of the next partition
+                    BlockingQueue<Page> partition = new ArrayBlockingQueue<Page>(1);
+                    partition.add(new Page(null, t));
+                    try {
+                        partitions.put(partition);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    endWithError(pages, t);
+                }
+            }
+        }
+
+        /**
+         * Lists the first level of the hierarchy under the prefix; the objects
+         * found there are returned as is and each common prefix is listed as a
+         * partition.
+         */
+        private void findPrefixPartitions() throws InterruptedException {
+            ObjectListing listing = s3.listObjects(new ListObjectsRequest(
+                    bucketName, prefix, null, delimiter, batchSize));
+            while (true) {
+                final List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                final List<String> commonPrefixes = listing.getCommonPrefixes();
+                int summaryIndex = 0;
+                for (String commonPrefix : commonPrefixes) {
+                    int end = summaryIndex;
+                    while (end < summaries.size()
+                            && KEY_ORDER.compare(summaries.get(end).getKey(), commonPrefix) < 0) {
+                        end++;
+                    }
+                    addListedObjects(summaries.subList(summaryIndex, end));
+                    summaryIndex = end;
+                    startPrefixPartition(commonPrefix);
+                }
+                addListedObjects(summaries.subList(summaryIndex, summaries.size()));
+
+                if (!listing.isTruncated()) {
+                    return;
+                }
+                listing = s3.listNextBatchOfObjects(listing);
+            }
+        }
+
+        private void addListedObjects(List<S3ObjectSummary> summaries) throws InterruptedException {
+            if (summaries.isEmpty()) {
+                return;
+            }
+            Page page = new Page(new ArrayList<S3ObjectSummary>(summaries), null);
+            if (orderedResults) {
+                BlockingQueue<Page> partition = new ArrayBlockingQueue<Page>(2);
+                partition.add(page);
+                partition.add(Page.END);
+                partitions.put(partition);
+            } else {
+                pages.put(page);
+            }
+        }
+
+        private void startPrefixPartition(final String partitionPrefix) throws InterruptedException {
+            final BlockingQueue<Page> output = newPartition();
+            if (output == null) {
+                throw new InterruptedException();
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listPartition(output, partitionPrefix, null, null);
+                }
+            });
+        }
+
+        private void startPartition(final String startAfter, final String endInclusive) throws InterruptedException {
+            final BlockingQueue<Page> output = newPartition();
+            if (output == null) {
+                throw new InterruptedException();
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    listPartition(output, prefix, startAfter, endInclusive);
+                }
+            });
+        }
+
+        /**
+         * Returns the queue that the pages of a new partition are put in, or
+         * null if the iteration has been closed.
+         */
+        private BlockingQueue<Page> newPartition() {
+            if (!orderedResults) {
+                activeTasks.incrementAndGet();
+                return pages;
+            }
+            BlockingQueue<Page> partition = new ArrayBlockingQueue<Page>(prefetchPages + 1);
+            try {
+                partitions.put(partition);
+                return partition;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        /**
+         * Lists the keys that start with the given prefix, come after
+         * startAfter and up to endInclusive.
+         */
+        private void listPartition(BlockingQueue<Page> output, String partitionPrefix,
+                String startAfter, String endInclusive) {
+            try {
+                ObjectListing listing = s3.listObjects(new ListObjectsRequest(
+                        bucketName, partitionPrefix, startAfter, null, batchSize));
+                while (true) {
+                    List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                    boolean pastEnd = false;
+                    if (endInclusive != null && !summaries.isEmpty()
+                            && KEY_ORDER.compare(summaries.get(summaries.size() - 1).getKey(), endInclusive) > 0) {
+                        int end = 0;
+                        while (KEY_ORDER.compare(summaries.get(end).getKey(), endInclusive) <= 0) {
+                            end++;
+                        }
+                        summaries = summaries.subList(0, end);
+                        pastEnd = true;
+                    }
+                    if (!summaries.isEmpty()) {
+                        output.put(new Page(summaries, null));
+                    }
+                    if (pastEnd || !listing.isTruncated() || done) {
+                        break;
+                    }
+                    listing = s3.listNextBatchOfObjects(listing);
+                }
+                output.put(Page.END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                endWithError(output, t);
+            }
+        }
+
+        private void endWithError(BlockingQueue<Page> output, Throwable t) {
+            if (done) {
+                // Most likely caused by the iteration being closed
+                return;
+            }
+            try {
+                output.put(new Page(null, t));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -16,9 +16,13 @@ package com.amazonaws.services.sqs;
 
 import static com.amazonaws.util.StringUtils.UTF8;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -42,13 +46,18 @@ import com.amazonaws.services.sqs.model.SendMessageBatchResultEntry;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import com.amazonaws.services.sqs.model.SendMessageResult;
 import com.amazonaws.util.BinaryUtils;
-import com.amazonaws.util.Md5Utils;
 import com.amazonaws.util.TimingInfo;
 
 /**
  * SQS operations on sending and receiving messages will return the MD5 digest of the message body.
  * This custom request handler will verify that the message is correctly received by SQS, by
  * comparing the returned MD5 with the calculation according to the original request.
+ * <p>
+ * Digests are computed with a per-thread {@link MessageDigest}, strings are UTF-8 encoded straight
+ * into the digest through a per-thread scratch buffer, and the results are compared against the
+ * returned hex strings without hex-encoding the local digests. Verifying a message thus allocates
+ * no copy of its body or attributes: only the digest result and the small buffer views wrapping
+ * each string or binary value.
  */
 public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
 
@@ -70,6 +79,22 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
 
     private static final Log log = LogFactory.getLog(MessageMD5ChecksumHandler.class);
 
+    private static final int ENCODE_BUFFER_SIZE = 4096;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Per-thread state reused across digest calculations. {@link MessageDigest} and
+     * {@link CharsetEncoder} instances are not thread safe, and creating them is comparatively
+     * expensive.
+     */
+    private static final ThreadLocal<DigestState> DIGEST_STATE = new ThreadLocal<DigestState>() {
+        @Override
+        protected DigestState initialValue() {
+            return new DigestState();
+        }
+    };
+
     @Override
     public void afterResponse(Request<?> request, Object response, TimingInfo timingInfo) {
         if (request != null && response != null) {
@@ -106,19 +131,19 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
                                                      SendMessageResult sendMessageResult) {
         String messageBodySent = sendMessageRequest.getMessageBody();
         String bodyMd5Returned = sendMessageResult.getMD5OfMessageBody();
-        String clientSideBodyMd5 = calculateMessageBodyMd5(messageBodySent);
-        if (!clientSideBodyMd5.equals(bodyMd5Returned)) {
-            throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_BODY, clientSideBodyMd5,
-                    bodyMd5Returned));
+        byte[] clientSideBodyMd5 = calculateMessageBodyMd5(messageBodySent);
+        if (!md5Matches(clientSideBodyMd5, bodyMd5Returned)) {
+            throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_BODY,
+                    BinaryUtils.toHex(clientSideBodyMd5), bodyMd5Returned));
         }
 
         Map<String, MessageAttributeValue> messageAttrSent = sendMessageRequest.getMessageAttributes();
         if (messageAttrSent != null && !messageAttrSent.isEmpty()) {
-            String clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttrSent);
+            byte[] clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttrSent);
             String attrMd5Returned = sendMessageResult.getMD5OfMessageAttributes();
-            if (!clientSideAttrMd5.equals(attrMd5Returned)) {
+            if (!md5Matches(clientSideAttrMd5, attrMd5Returned)) {
                 throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_ATTRIBUTES,
-                        clientSideAttrMd5, attrMd5Returned));
+                        BinaryUtils.toHex(clientSideAttrMd5), attrMd5Returned));
             }
         }
     }
@@ -132,19 +157,19 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
             for (Message messageReceived : receiveMessageResult.getMessages()) {
                 String messageBody = messageReceived.getBody();
                 String bodyMd5Returned = messageReceived.getMD5OfBody();
-                String clientSideBodyMd5 = calculateMessageBodyMd5(messageBody);
-                if (!clientSideBodyMd5.equals(bodyMd5Returned)) {
+                byte[] clientSideBodyMd5 = calculateMessageBodyMd5(messageBody);
+                if (!md5Matches(clientSideBodyMd5, bodyMd5Returned)) {
                     throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_BODY,
-                            clientSideBodyMd5, bodyMd5Returned));
+                            BinaryUtils.toHex(clientSideBodyMd5), bodyMd5Returned));
                 }
 
                 Map<String, MessageAttributeValue> messageAttr = messageReceived.getMessageAttributes();
                 if (messageAttr != null && !messageAttr.isEmpty()) {
                     String attrMd5Returned = messageReceived.getMD5OfMessageAttributes();
-                    String clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttr);
-                    if (!clientSideAttrMd5.equals(attrMd5Returned)) {
+                    byte[] clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttr);
+                    if (!md5Matches(clientSideAttrMd5, attrMd5Returned)) {
                         throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE, MESSAGE_ATTRIBUTES,
-                                clientSideAttrMd5, attrMd5Returned));
+                                BinaryUtils.toHex(clientSideAttrMd5), attrMd5Returned));
                     }
                 }
             }
@@ -168,20 +193,21 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
             for (SendMessageBatchResultEntry entry : sendMessageBatchResult.getSuccessful()) {
                 String messageBody = idToRequestEntryMap.get(entry.getId()).getMessageBody();
                 String bodyMd5Returned = entry.getMD5OfMessageBody();
-                String clientSideBodyMd5 = calculateMessageBodyMd5(messageBody);
-                if (!clientSideBodyMd5.equals(bodyMd5Returned)) {
+                byte[] clientSideBodyMd5 = calculateMessageBodyMd5(messageBody);
+                if (!md5Matches(clientSideBodyMd5, bodyMd5Returned)) {
                     throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE_WITH_ID, MESSAGE_BODY,
-                            entry.getId(), clientSideBodyMd5, bodyMd5Returned));
+                            entry.getId(), BinaryUtils.toHex(clientSideBodyMd5), bodyMd5Returned));
                 }
 
                 Map<String, MessageAttributeValue> messageAttr = idToRequestEntryMap.get(entry.getId())
                         .getMessageAttributes();
                 if (messageAttr != null && !messageAttr.isEmpty()) {
                     String attrMd5Returned = entry.getMD5OfMessageAttributes();
-                    String clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttr);
-                    if (!clientSideAttrMd5.equals(attrMd5Returned)) {
+                    byte[] clientSideAttrMd5 = calculateMessageAttributesMd5(messageAttr);
+                    if (!md5Matches(clientSideAttrMd5, attrMd5Returned)) {
                         throw new AmazonClientException(String.format(MD5_MISMATCH_ERROR_MESSAGE_WITH_ID,
-                                MESSAGE_ATTRIBUTES, entry.getId(), clientSideAttrMd5, attrMd5Returned));
+                                MESSAGE_ATTRIBUTES, entry.getId(), BinaryUtils.toHex(clientSideAttrMd5),
+                                attrMd5Returned));
                     }
                 }
             }
@@ -189,30 +215,32 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
     }
 
     /**
-     * Returns the hex-encoded MD5 hash String of the given message body.
+     * Returns the MD5 hash of the given message body.
      */
-    private static String calculateMessageBodyMd5(String messageBody) {
+    private static byte[] calculateMessageBodyMd5(String messageBody) {
         if (log.isDebugEnabled()) {
             log.debug("Message body: " + messageBody);
         }
         byte[] expectedMd5;
         try {
-            expectedMd5 = Md5Utils.computeMD5Hash(messageBody.getBytes(UTF8));
+            DigestState state = DIGEST_STATE.get();
+            MessageDigest md5Digest = state.resetDigest();
+            state.updateUtf8(messageBody);
+            expectedMd5 = md5Digest.digest();
         } catch (Exception e) {
             throw new AmazonClientException("Unable to calculate the MD5 hash of the message body. " + e.getMessage(),
                     e);
         }
-        String expectedMd5Hex = BinaryUtils.toHex(expectedMd5);
         if (log.isDebugEnabled()) {
-            log.debug("Expected  MD5 of message body: " + expectedMd5Hex);
+            log.debug("Expected  MD5 of message body: " + BinaryUtils.toHex(expectedMd5));
         }
-        return expectedMd5Hex;
+        return expectedMd5;
     }
 
     /**
-     * Returns the hex-encoded MD5 hash String of the given message attributes.
+     * Returns the MD5 hash of the given message attributes.
      */
-    private static String calculateMessageAttributesMd5(final Map<String, MessageAttributeValue> messageAttributes) {
+    private static byte[] calculateMessageAttributesMd5(final Map<String, MessageAttributeValue> messageAttributes) {
         if (log.isDebugEnabled()) {
             log.debug("Message attribtues: " + messageAttributes);
         }
@@ -221,32 +249,33 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
 
         MessageDigest md5Digest = null;
         try {
-            md5Digest = MessageDigest.getInstance("MD5");
+            DigestState state = DIGEST_STATE.get();
+            md5Digest = state.resetDigest();
 
             for (String attrName : sortedAttributeNames) {
                 MessageAttributeValue attrValue = messageAttributes.get(attrName);
 
                 // Encoded Name
-                updateLengthAndBytes(md5Digest, attrName);
+                state.updateLengthAndBytes(attrName);
                 // Encoded Type
-                updateLengthAndBytes(md5Digest, attrValue.getDataType());
+                state.updateLengthAndBytes(attrValue.getDataType());
 
                 // Encoded Value
                 if (attrValue.getStringValue() != null) {
                     md5Digest.update(STRING_TYPE_FIELD_INDEX);
-                    updateLengthAndBytes(md5Digest, attrValue.getStringValue());
+                    state.updateLengthAndBytes(attrValue.getStringValue());
                 } else if (attrValue.getBinaryValue() != null) {
                     md5Digest.update(BINARY_TYPE_FIELD_INDEX);
-                    updateLengthAndBytes(md5Digest, attrValue.getBinaryValue());
+                    state.updateLengthAndBytes(attrValue.getBinaryValue());
                 } else if (attrValue.getStringListValues().size() > 0) {
                     md5Digest.update(STRING_LIST_TYPE_FIELD_INDEX);
                     for (String strListMember : attrValue.getStringListValues()) {
-                        updateLengthAndBytes(md5Digest, strListMember);
+                        state.updateLengthAndBytes(strListMember);
                     }
                 } else if (attrValue.getBinaryListValues().size() > 0) {
                     md5Digest.update(BINARY_LIST_TYPE_FIELD_INDEX);
                     for (ByteBuffer byteListMember : attrValue.getBinaryListValues()) {
-                        updateLengthAndBytes(md5Digest, byteListMember);
+                        state.updateLengthAndBytes(byteListMember);
                     }
                 }
             }
@@ -255,33 +284,126 @@ public class MessageMD5ChecksumHandler extends AbstractRequestHandler {
                     + e.getMessage(), e);
         }
 
-        String expectedMd5Hex = BinaryUtils.toHex(md5Digest.digest());
+        byte[] expectedMd5 = md5Digest.digest();
         if (log.isDebugEnabled()) {
-            log.debug("Expected  MD5 of message attributes: " + expectedMd5Hex);
+            log.debug("Expected  MD5 of message attributes: " + BinaryUtils.toHex(expectedMd5));
+        }
+        return expectedMd5;
+    }
+
+    /**
+     * Returns true if the given lower-case hex string is the encoding of the given digest. This is
+     * equivalent to {@code BinaryUtils.toHex(digest).equals(hex)} without creating the string.
+     */
+    private static boolean md5Matches(byte[] digest, String hex) {
+        if (hex == null || hex.length() != digest.length * 2) {
+            return false;
         }
-        return expectedMd5Hex;
+        for (int i = 0; i < digest.length; i++) {
+            if (hex.charAt(2 * i) != HEX_DIGITS[(digest[i] >> 4) & 0xF]
+                    || hex.charAt(2 * i + 1) != HEX_DIGITS[digest[i] & 0xF]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
-     * input String and the actual utf8-encoded byte values.
+     * Returns the number of bytes of the UTF-8 encoding of the given string, as produced by
+     * {@code String.getBytes(UTF8)}; unpaired surrogates are replaced by a single '?' byte.
      */
-    private static void updateLengthAndBytes(MessageDigest digest, String str) throws UnsupportedEncodingException {
-        byte[] utf8Encoded = str.getBytes(UTF8);
-        ByteBuffer lengthBytes = ByteBuffer.allocate(INTEGER_SIZE_IN_BYTES).putInt(utf8Encoded.length);
-        digest.update(lengthBytes.array());
-        digest.update(utf8Encoded);
+    static int utf8Length(String str) {
+        int length = 0;
+        int size = str.length();
+        for (int i = 0; i < size; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size
+                    && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
     }
 
     /**
-     * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of the
-     * input ByteBuffer and all the bytes it contains.
+     * The reusable digest and encoding buffers of one thread.
      */
-    private static void updateLengthAndBytes(MessageDigest digest, ByteBuffer binaryValue) {
-        ByteBuffer readOnlyBuffer = binaryValue.asReadOnlyBuffer();
-        int size = readOnlyBuffer.remaining();
-        ByteBuffer lengthBytes = ByteBuffer.allocate(INTEGER_SIZE_IN_BYTES).putInt(size);
-        digest.update(lengthBytes.array());
-        digest.update(readOnlyBuffer);
+    private static final class DigestState {
+        private final MessageDigest digest;
+        private final CharsetEncoder encoder;
+        private final ByteBuffer encodeBuffer = ByteBuffer.allocate(ENCODE_BUFFER_SIZE);
+        private final byte[] lengthBytes = new byte[INTEGER_SIZE_IN_BYTES];
+
+        DigestState() {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new AmazonClientException("Unable to create an MD5 message digest. " + e.getMessage(), e);
+            }
+            encoder = UTF8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        MessageDigest resetDigest() {
+            digest.reset();
+            return digest;
+        }
+
+        /**
+         * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of
+         * the input String and the actual utf8-encoded byte values.
+         */
+        void updateLengthAndBytes(String str) {
+            updateLength(utf8Length(str));
+            updateUtf8(str);
+        }
+
+        /**
+         * Update the digest using a sequence of bytes that consists of the length (in 4 bytes) of
+         * the input ByteBuffer and all the bytes it contains.
+         */
+        void updateLengthAndBytes(ByteBuffer binaryValue) {
+            ByteBuffer readOnlyBuffer = binaryValue.asReadOnlyBuffer();
+            updateLength(readOnlyBuffer.remaining());
+            digest.update(readOnlyBuffer);
+        }
+
+        /**
+         * Feeds the utf8-encoded bytes of the given string to the digest, one scratch buffer at a
+         * time.
+         */
+        void updateUtf8(String str) {
+            CharBuffer in = CharBuffer.wrap(str);
+            encoder.reset();
+            CoderResult result;
+            do {
+                encodeBuffer.clear();
+                result = encoder.encode(in, encodeBuffer, true);
+                digest.update(encodeBuffer.array(), 0, encodeBuffer.position());
+            } while (result.isOverflow());
+            do {
+                encodeBuffer.clear();
+                result = encoder.flush(encodeBuffer);
+                digest.update(encodeBuffer.array(), 0, encodeBuffer.position());
+            } while (result.isOverflow());
+        }
+
+        private void updateLength(int length) {
+            lengthBytes[0] = (byte) (length >>> 24);
+            lengthBytes[1] = (byte) (length >>> 16);
+            lengthBytes[2] = (byte) (length >>> 8);
+            lengthBytes[3] = (byte) length;
+            digest.update(lengthBytes);
+        }
     }
 }
@@ -109,6 +109,19 @@ public class QueueBufferConfig {
 
     public static final int LONGPOLL_WAIT_TIMEOUT_SECONDS_DEFAULT = 20;
 
+    /**
+     * If true, the receive buffer sizes its pre-fetch from the observed rate at which messages are
+     * handed out to callers and from the visibility timeout, instead of always keeping
+     * maxDoneReceiveBatches batches. Buffered batches that are about to be handed out get their
+     * visibility timeout extended once, and surplus batches that are unlikely to be consumed before
+     * they expire are released back to the queue. maxInflightReceiveBatches and
+     * maxDoneReceiveBatches remain upper bounds.
+     */
+    private boolean adaptivePrefetching;
+
+    /** false */
+    public static final boolean ADAPTIVE_PREFETCHING_DEFAULT = false;
+
     public QueueBufferConfig(long maxBatchOpenMs, int maxInflightOutboundBatches, int maxInflightReceiveBatches,
             int maxDoneReceiveBatches, boolean paramLongPoll, long maxBatchSizeBytes, int visibilityTimeout,
             int longPollTimeout, int maxBatch) {
@@ -122,6 +135,7 @@ public class QueueBufferConfig {
         this.visibilityTimeoutSeconds = visibilityTimeout;
         this.longPollWaitTimeoutSeconds = longPollTimeout;
         this.maxBatchSize = maxBatch;
+        this.adaptivePrefetching = ADAPTIVE_PREFETCHING_DEFAULT;
     }
 
     public QueueBufferConfig() {
@@ -141,6 +155,7 @@ public class QueueBufferConfig {
         maxInflightOutboundBatches = other.maxInflightOutboundBatches;
         maxInflightReceiveBatches = other.maxInflightReceiveBatches;
         visibilityTimeoutSeconds = other.visibilityTimeoutSeconds;
+        adaptivePrefetching = other.adaptivePrefetching;
     }
 
     @Override
@@ -149,7 +164,8 @@ public class QueueBufferConfig {
                 + longPoll + ", maxInflightOutboundBatches=" + maxInflightOutboundBatches
                 + ", maxInflightReceiveBatches=" + maxInflightReceiveBatches + ", maxDoneReceiveBatches="
                 + maxDoneReceiveBatches + ", maxBatchSizeBytes=" + maxBatchSizeBytes + ", visibilityTimeoutSeconds="
-                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds + "]";
+                + visibilityTimeoutSeconds + ", longPollWaitTimeoutSeconds=" + longPollWaitTimeoutSeconds
+                + ", adaptivePrefetching=" + adaptivePrefetching + "]";
     }
 
     /**
@@ -429,6 +445,43 @@ public class QueueBufferConfig {
         return this;
     }
 
+    /**
+     * If true, the receive buffer sizes its pre-fetch from the observed rate at which messages are
+     * handed out to callers and from the visibility timeout, instead of always keeping
+     * maxDoneReceiveBatches batches. Buffered batches that are about to be handed out get their
+     * visibility timeout extended once, and surplus batches that are unlikely to be consumed before
+     * they expire are released back to the queue. maxInflightReceiveBatches and
+     * maxDoneReceiveBatches remain upper bounds.
+     */
+    public boolean isAdaptivePrefetching() {
+        return adaptivePrefetching;
+    }
+
+    /**
+     * If true, the receive buffer sizes its pre-fetch from the observed rate at which messages are
+     * handed out to callers and from the visibility timeout, instead of always keeping
+     * maxDoneReceiveBatches batches. Buffered batches that are about to be handed out get their
+     * visibility timeout extended once, and surplus batches that are unlikely to be consumed before
+     * they expire are released back to the queue. maxInflightReceiveBatches and
+     * maxDoneReceiveBatches remain upper bounds.
+     */
+    public void setAdaptivePrefetching(boolean adaptivePrefetching) {
+        this.adaptivePrefetching = adaptivePrefetching;
+    }
+
+    /**
+     * If true, the receive buffer sizes its pre-fetch from the observed rate at which messages are
+     * handed out to callers and from the visibility timeout, instead of always keeping
+     * maxDoneReceiveBatches batches. Buffered batches that are about to be handed out get their
+     * visibility timeout extended once, and surplus batches that are unlikely to be consumed before
+     * they expire are released back to the queue. maxInflightReceiveBatches and
+     * maxDoneReceiveBatches remain upper bounds.
+     */
+    public QueueBufferConfig withAdaptivePrefetching(boolean adaptivePrefetching) {
+        setAdaptivePrefetching(adaptivePrefetching);
+        return this;
+    }
+
     /**
      * this method checks the config for validity. If the config is deemed to be invalid, an
      * informative exception is thrown.
@@ -15,12 +15,20 @@
 
 package com.amazonaws.services.sqs.buffered;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -40,11 +48,20 @@ import com.amazonaws.services.sqs.model.ReceiveMessageResult;
  * which it uses to satisfy incoming requests. The number of requests pre-fetched and kept in the
  * buffer, as well as the maximum number of threads used to retrieve the messages are configurable.
  * <p>
+ * When {@link QueueBufferConfig#isAdaptivePrefetching()} is enabled, the number of completed
+ * batches kept in the buffer is derived from the rate at which messages are handed out to callers
+ * and from the visibility timeout, so that the buffer holds roughly what can be consumed within half
+ * of the visibility timeout. Batches about to be handed out have their visibility extended once, and
+ * surplus batches that would likely expire in the buffer are released back to the queue. The rate is
+ * also sampled once per second while no caller is waiting for messages, so an idle consumer counts
+ * as consuming nothing.
+ * <p>
  * Synchronization strategy: - Threads must hold the TaskSpawnSyncPoint object monitor to spawn a
- * new task or modify the number of inflight tasks - Threads must hold the monitor of the "futures"
- * list to modify the list - Threads must hold the monitor of the "finishedTasks" list to modify the
- * list - If you need to lock both futures and finishedTasks, lock futures first and finishedTasks
- * second
+ * new task or modify the number of inflight tasks - The "futures" and "finishedTasks" queues are
+ * concurrent and may be appended to without locking - Only the thread holding {@code drainLock}
+ * may remove futures or finished tasks, consume messages from a finished task or update the
+ * consumption rate estimate. Threads that fail to acquire it leave the work to the current holder,
+ * which re-checks both queues after releasing the lock.
  */
 public class ReceiveQueueBuffer {
 
@@ -64,6 +81,26 @@ public class ReceiveQueueBuffer {
 
     private static Log log = LogFactory.getLog(ReceiveQueueBuffer.class);
 
+    /** Smoothing factor of the exponentially weighted consumption rate. */
+    private static final double RATE_SMOOTHING_FACTOR = 0.3;
+
+    /** Minimum interval between two samples of the consumption rate. */
+    private static final long RATE_SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Shared by all receive buffers, since a JVM can access hundreds of queues. It only triggers
+     * the periodic maintenance of adaptive buffers, which then runs on the buffer's executor.
+     */
+    private static final ScheduledExecutorService maintenanceTimer = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r);
+                    thread.setDaemon(true);
+                    thread.setName("SQSReceiveQueueBufferTimer");
+                    return thread;
+                }
+            });
+
     private final QueueBufferConfig config;
 
     private final String qUrl;
@@ -96,10 +133,28 @@ public class ReceiveQueueBuffer {
     volatile boolean shutDown = false;
 
     /** message delivery futures we gave out */
-    private final LinkedList<ReceiveMessageFuture> futures = new LinkedList<ReceiveMessageFuture>();
+    private final ConcurrentLinkedQueue<ReceiveMessageFuture> futures = new ConcurrentLinkedQueue<ReceiveMessageFuture>();
+
+    /** finished batches are stored in this queue. */
+    private final ConcurrentLinkedQueue<ReceiveMessageBatchTask> finishedTasks = new ConcurrentLinkedQueue<ReceiveMessageBatchTask>();
+
+    /** held by the single thread matching futures against finished batches */
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    /**
+     * Exponentially weighted number of messages handed out to callers per second. Written while
+     * holding {@code drainLock}.
+     */
+    private volatile double consumedPerSecond = 0;
+
+    /** Messages handed out since the last rate sample. Guarded by {@code drainLock}. */
+    private long consumedSinceLastSample = 0;
+
+    /** Time of the last rate sample. Guarded by {@code drainLock}. */
+    private long lastSampleNanos = System.nanoTime();
 
-    /** finished batches are stored in this list. */
-    private LinkedList<ReceiveMessageBatchTask> finishedTasks = new LinkedList<ReceiveMessageBatchTask>();
+    /** Periodic maintenance of an adaptive buffer, null otherwise. */
+    private final ScheduledFuture<?> maintenance;
 
     ReceiveQueueBuffer(AmazonSQS paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig, String url) {
         config = paramConfig;
@@ -107,6 +162,14 @@ public class ReceiveQueueBuffer {
         sqsClient = paramSQS;
         qUrl = url;
 
+        if (config.isAdaptivePrefetching()) {
+            MaintenanceTick tick = new MaintenanceTick(this);
+            maintenance = maintenanceTimer.scheduleWithFixedDelay(tick, RATE_SAMPLE_INTERVAL_NANOS,
+                    RATE_SAMPLE_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+            tick.schedule = maintenance;
+        } else {
+            maintenance = null;
+        }
     }
 
     /**
@@ -115,6 +178,9 @@ public class ReceiveQueueBuffer {
      */
     public void shutdown() {
         shutDown = true;
+        if (maintenance != null) {
+            maintenance.cancel(false);
+        }
         try {
             while (inflightReceiveMessageBatches > 0)
                 Thread.sleep(100);
@@ -160,20 +226,23 @@ public class ReceiveQueueBuffer {
      */
     private ReceiveMessageFuture issueFuture(int size,
                                              QueueBufferCallback<ReceiveMessageRequest, ReceiveMessageResult> callback) {
-        synchronized (futures) {
-            ReceiveMessageFuture theFuture = new ReceiveMessageFuture(callback, size);
-            futures.addLast(theFuture);
-            return theFuture;
-        }
+        ReceiveMessageFuture theFuture = new ReceiveMessageFuture(callback, size);
+        futures.add(theFuture);
+        return theFuture;
     }
 
     /**
      * Attempts to satisfy some or all of the already-issued futures from the local buffer. If the
-     * buffer is empty or there are no futures, this method won't do anything.
+     * buffer is empty or there are no futures, this method won't do anything. If another thread is
+     * already draining the buffer, this method returns immediately and leaves the work to it.
      */
     private void satisfyFuturesFromBuffer() {
-        synchronized (futures) {
-            synchronized (finishedTasks) {
+        while (!futures.isEmpty() && !finishedTasks.isEmpty()) {
+            if (!drainLock.tryLock()) {
+                // the current holder re-checks both queues after unlocking
+                return;
+            }
+            try {
                 // attempt to satisfy futures until we run out of either futures or
                 // finished tasks
                 while ((!futures.isEmpty()) && (!finishedTasks.isEmpty())) {
@@ -186,6 +255,12 @@ public class ReceiveQueueBuffer {
                         fufillFuture(futures.poll());
                     }
                 }
+                if (config.isAdaptivePrefetching()) {
+                    sampleConsumptionRate();
+                    manageBufferedVisibility();
+                }
+            } finally {
+                drainLock.unlock();
             }
         }
     }
@@ -193,11 +268,11 @@ public class ReceiveQueueBuffer {
     /**
      * Fills the future with whatever results were received by the full batch currently at the head
      * of the completed batch queue. Those results may be retrieved messages, or an exception. This
-     * method assumes that you are holding the finished tasks lock locks when invoking it. violate
-     * this assumption at your own peril
+     * method assumes that you are holding the {@code drainLock} when invoking it. violate this
+     * assumption at your own peril
      */
     private void fufillFuture(ReceiveMessageFuture future) {
-        ReceiveMessageBatchTask task = finishedTasks.getFirst();
+        ReceiveMessageBatchTask task = finishedTasks.peek();
         ReceiveMessageResult result = new ReceiveMessageResult();
         LinkedList<Message> messages = new LinkedList<Message>();
         result.setMessages(messages);
@@ -219,9 +294,10 @@ public class ReceiveQueueBuffer {
         // we may have just drained the batch.
         batchDone = batchDone || task.isEmpty() || (exception != null);
         if (batchDone) {
-            finishedTasks.removeFirst();
+            finishedTasks.poll();
         }
         result.setMessages(messages);
+        consumedSinceLastSample += numRetrieved;
 
         // if after the above runs the exception is not null,
         // the finished batch has encountered an error, and we will
@@ -234,9 +310,118 @@ public class ReceiveQueueBuffer {
         }
     }
 
+    /**
+     * Samples the consumption rate and manages the visibility of buffered batches even if no
+     * caller is waiting for messages. Skipped if another thread holds the {@code drainLock}, since
+     * that thread does the same before releasing it.
+     */
+    private void maintainBuffer() {
+        if (!drainLock.tryLock()) {
+            return;
+        }
+        try {
+            sampleConsumptionRate();
+            manageBufferedVisibility();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Folds the messages handed out since the previous sample into the consumption rate estimate.
+     * This method assumes that you are holding the {@code drainLock} when invoking it.
+     */
+    private void sampleConsumptionRate() {
+        long now = System.nanoTime();
+        long elapsed = now - lastSampleNanos;
+        if (elapsed < RATE_SAMPLE_INTERVAL_NANOS) {
+            return;
+        }
+        double sample = consumedSinceLastSample * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        consumedPerSecond = RATE_SMOOTHING_FACTOR * sample + (1 - RATE_SMOOTHING_FACTOR) * consumedPerSecond;
+        consumedSinceLastSample = 0;
+        lastSampleNanos = now;
+    }
+
+    /**
+     * Extends the visibility of buffered batches that are expected to be handed out before they
+     * expire, and releases the surplus batches that are likely to expire in the buffer, so that
+     * other consumers can receive those messages instead of waiting for the timeout. Each batch is
+     * extended at most once, so an idle consumer cannot hold on to messages indefinitely. This
+     * method assumes that you are holding the {@code drainLock} when invoking it.
+     */
+    private void manageBufferedVisibility() {
+        long visibilityNanos = effectiveVisibilityTimeoutNanos();
+        if (visibilityNanos <= 0) {
+            return;
+        }
+        int desiredBatches = desiredDoneReceiveBatches();
+        int position = 0;
+        Iterator<ReceiveMessageBatchTask> it = finishedTasks.iterator();
+        while (it.hasNext()) {
+            final ReceiveMessageBatchTask task = it.next();
+            if (task.getException() != null || task.isEmpty()) {
+                ++position;
+                continue;
+            }
+            long remaining = task.getRemainingVisibilityNanos();
+            if (position >= desiredBatches && remaining < visibilityNanos / 2) {
+                it.remove();
+                executor.execute(new Runnable() {
+                    public void run() {
+                        task.clear();
+                    }
+                });
+                continue;
+            }
+            if (position < desiredBatches && remaining > 0 && remaining < visibilityNanos / 4
+                    && task.markExtended()) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        task.extendVisibility();
+                    }
+                });
+            }
+            ++position;
+        }
+    }
+
+    /**
+     * @return the visibility timeout applied to the messages this buffer receives, or -1 if it is
+     *         not known yet
+     */
+    private long effectiveVisibilityTimeoutNanos() {
+        if (config.getVisibilityTimeoutSeconds() > 0) {
+            return TimeUnit.SECONDS.toNanos(config.getVisibilityTimeoutSeconds());
+        }
+        return visibilityTimeoutNanos;
+    }
+
+    /**
+     * @return the number of completed batches the buffer should hold. Without adaptive
+     *         pre-fetching this is maxDoneReceiveBatches; with it, it is the number of batches
+     *         consumed within half of the visibility timeout at the measured rate, capped by
+     *         maxDoneReceiveBatches.
+     */
+    private int desiredDoneReceiveBatches() {
+        int max = config.getMaxDoneReceiveBatches();
+        max = max < 1 ? 1 : max;
+        if (!config.isAdaptivePrefetching()) {
+            return max;
+        }
+        long visibilityNanos = effectiveVisibilityTimeoutNanos();
+        if (visibilityNanos <= 0) {
+            return 1;
+        }
+        int batchSize = config.getMaxBatchSize() < 1 ? 1 : config.getMaxBatchSize();
+        double windowSeconds = visibilityNanos / 2.0 / TimeUnit.SECONDS.toNanos(1);
+        int desired = (int) Math.ceil(consumedPerSecond * windowSeconds / batchSize);
+        return Math.max(1, Math.min(max, desired));
+    }
+
     /**
      * Prune any expired tasks that do not have an exception associated with them. This method
-     * assumes that you are holding the finishedTasks lock when invoking it
+     * assumes that you are holding the {@code drainLock} when invoking it
      */
     private void pruneExpiredTasks() {
         int numberExpiredTasksPruned = pruneHeadTasks(new Predicate<ReceiveQueueBuffer.ReceiveMessageBatchTask>() {
@@ -260,7 +445,7 @@ public class ReceiveQueueBuffer {
     /**
      * Prune all tasks at the beginning of the finishedTasks list that meet the given condition.
      * Once a task is found that does not meet the given condition the pruning stops. This method
-     * assumes that you are holding the finishedTasks lock when invoking it.
+     * assumes that you are holding the {@code drainLock} when invoking it.
      * 
      * @param pruneCondition
      *            Condition on whether a task is eligible to be pruned
@@ -269,8 +454,8 @@ public class ReceiveQueueBuffer {
     private int pruneHeadTasks(Predicate<ReceiveMessageBatchTask> pruneCondition) {
         int numberPruned = 0;
         while (!finishedTasks.isEmpty()) {
-            if (pruneCondition.test(finishedTasks.getFirst())) {
-                finishedTasks.removeFirst();
+            if (pruneCondition.test(finishedTasks.peek())) {
+                finishedTasks.poll();
                 numberPruned++;
             } else {
                 break;
@@ -288,20 +473,18 @@ public class ReceiveQueueBuffer {
             return;
         }
 
-        int desiredBatches = config.getMaxDoneReceiveBatches();
-        desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
+        int desiredBatches = desiredDoneReceiveBatches();
+        int finishedCount = finishedTasks.size();
 
-        synchronized (finishedTasks) {
-            if (finishedTasks.size() >= desiredBatches)
-                return;
+        if (finishedCount >= desiredBatches)
+            return;
 
-            // if we have some finished batches already, and
-            // existing inflight batches will bring us to the limit,
-            // don't spawn more. if our finished tasks cache is empty, we will
-            // always spawn a thread.
-            if (finishedTasks.size() > 0 && (finishedTasks.size() + inflightReceiveMessageBatches) >= desiredBatches) {
-                return;
-            }
+        // if we have some finished batches already, and
+        // existing inflight batches will bring us to the limit,
+        // don't spawn more. if our finished tasks cache is empty, we will
+        // always spawn a thread.
+        if (finishedCount > 0 && (finishedCount + inflightReceiveMessageBatches) >= desiredBatches) {
+            return;
         }
 
         synchronized (taskSpawnSyncPoint) {
@@ -318,6 +501,10 @@ public class ReceiveQueueBuffer {
             // must allow at least one inflight receive task, or receive won't
             // work at all.
             max = max > 0 ? max : 1;
+            if (config.isAdaptivePrefetching()) {
+                // no point in fetching more batches at once than we want to keep
+                max = Math.min(max, desiredDoneReceiveBatches());
+            }
             int toSpawn = max - inflightReceiveMessageBatches;
             if (toSpawn > 0) {
                 ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this);
@@ -336,16 +523,17 @@ public class ReceiveQueueBuffer {
      * This method is called by the batches after they have finished retrieving the messages.
      */
     void reportBatchFinished(ReceiveMessageBatchTask batch) {
-        synchronized (finishedTasks) {
-            finishedTasks.addLast(batch);
-            if (log.isTraceEnabled()) {
-                log.info("Queue " + qUrl + " now has " + finishedTasks.size() + " receive results cached ");
-            }
+        finishedTasks.add(batch);
+        if (log.isTraceEnabled()) {
+            log.trace("Queue " + qUrl + " now has " + finishedTasks.size() + " receive results cached ");
         }
         synchronized (taskSpawnSyncPoint) {
             --inflightReceiveMessageBatches;
         }
         satisfyFuturesFromBuffer();
+        if (config.isAdaptivePrefetching()) {
+            maintainBuffer();
+        }
         spawnMoreReceiveTasks();
     }
 
@@ -355,10 +543,7 @@ public class ReceiveQueueBuffer {
     public void clear() {
         boolean done = false;
         while (!done) {
-            ReceiveMessageBatchTask currentBatch = null;
-            synchronized (finishedTasks) {
-                currentBatch = finishedTasks.poll();
-            }
+            ReceiveMessageBatchTask currentBatch = finishedTasks.poll();
 
             if (currentBatch != null) {
                 currentBatch.clear();
@@ -369,6 +554,39 @@ public class ReceiveQueueBuffer {
         }
     }
 
+    /**
+     * Hands the periodic maintenance of a buffer off to its executor. Only weakly references the
+     * buffer, so that a buffer dropped without being shut down stops being scheduled.
+     */
+    private static class MaintenanceTick implements Runnable {
+        private final WeakReference<ReceiveQueueBuffer> bufferRef;
+
+        volatile ScheduledFuture<?> schedule;
+
+        MaintenanceTick(ReceiveQueueBuffer buffer) {
+            bufferRef = new WeakReference<ReceiveQueueBuffer>(buffer);
+        }
+
+        public void run() {
+            final ReceiveQueueBuffer buffer = bufferRef.get();
+            if (buffer == null) {
+                ScheduledFuture<?> toCancel = schedule;
+                if (toCancel != null) {
+                    toCancel.cancel(false);
+                }
+                return;
+            }
+            if (buffer.shutDown) {
+                return;
+            }
+            buffer.executor.execute(new Runnable() {
+                public void run() {
+                    buffer.maintainBuffer();
+                }
+            });
+        }
+    }
+
     private class ReceiveMessageFuture extends QueueBufferFuture<ReceiveMessageRequest, ReceiveMessageResult> {
         /* how many messages did the request ask for */
         private int requestedSize;
@@ -393,8 +611,11 @@ public class ReceiveQueueBuffer {
     private class ReceiveMessageBatchTask implements Runnable {
         private Exception exception = null;
         private List<Message> messages;
-        private long visibilityDeadlineNano;
-        private boolean open = false;
+        private volatile long visibilityDeadlineNano;
+        private boolean extended = false;
+        /** Whether a visibility extension request is in flight; guarded by this. */
+        private boolean extending = false;
+        private volatile boolean open = false;
         private ReceiveQueueBuffer parentBuffer;
 
         /**
@@ -455,33 +676,103 @@ public class ReceiveQueueBuffer {
             return System.nanoTime() > visibilityDeadlineNano;
         }
 
+        long getRemainingVisibilityNanos() {
+            return visibilityDeadlineNano - System.nanoTime();
+        }
+
         /**
-         * Nacks and clears all messages remaining in the batch.
+         * @return true if the batch had not been marked for a visibility extension yet
          */
-        synchronized void clear() {
-            if (!open) {
-                throw new IllegalStateException("batch is not open");
+        synchronized boolean markExtended() {
+            if (extended) {
+                return false;
+            }
+            extended = true;
+            return true;
+        }
+
+        /**
+         * Resets the visibility timeout of all messages remaining in the batch, moving the expiry
+         * deadline forward. The request is made without holding the lock, so {@link #removeMessage()}
+         * keeps handing out messages meanwhile; a message handed out while the request is in flight
+         * may have its visibility extended as well, which only delays its redelivery if the caller
+         * neither deletes it nor changes its visibility.
+         */
+        void extendVisibility() {
+            final List<Message> toChange;
+            synchronized (this) {
+                if (isExpired() || messages.isEmpty()) {
+                    return;
+                }
+                toChange = new ArrayList<Message>(messages);
+                extending = true;
+            }
+
+            long visibilityNanos = effectiveVisibilityTimeoutNanos();
+            int visibilitySeconds = (int) TimeUnit.NANOSECONDS.toSeconds(visibilityNanos);
+            long requestStart = System.nanoTime();
+            boolean succeeded = false;
+            try {
+                changeVisibility(toChange, visibilitySeconds);
+                succeeded = true;
+            } catch (AmazonClientException e) {
+                // Log and ignore, the messages will simply expire at the original deadline.
+                log.warn("ReceiveMessageBatchTask: visibility extension failed " + e);
+            } finally {
+                synchronized (this) {
+                    if (succeeded) {
+                        visibilityDeadlineNano = requestStart + visibilityNanos;
+                    }
+                    extending = false;
+                    notifyAll();
+                }
             }
+        }
+
+        private void changeVisibility(List<Message> toChange, int visibilitySeconds) {
+            ChangeMessageVisibilityBatchRequest batchRequest = new ChangeMessageVisibilityBatchRequest()
+                    .withQueueUrl(qUrl);
+            ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
-            if (!isExpired()) {
-                ChangeMessageVisibilityBatchRequest batchRequest = new ChangeMessageVisibilityBatchRequest()
-                        .withQueueUrl(qUrl);
-                ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
+            List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<ChangeMessageVisibilityBatchRequestEntry>(
+                    toChange.size());
 
-                List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<ChangeMessageVisibilityBatchRequestEntry>(
-                        messages.size());
+            int i = 0;
+            for (Message m : toChange) {
+
+                entries.add(new ChangeMessageVisibilityBatchRequestEntry().withId(Integer.toString(i))
+                        .withReceiptHandle(m.getReceiptHandle()).withVisibilityTimeout(visibilitySeconds));
+                ++i;
+            }
 
-                int i = 0;
-                for (Message m : messages) {
+            batchRequest.setEntries(entries);
+            sqsClient.changeMessageVisibilityBatch(batchRequest);
+        }
 
-                    entries.add(new ChangeMessageVisibilityBatchRequestEntry().withId(Integer.toString(i))
-                            .withReceiptHandle(m.getReceiptHandle()).withVisibilityTimeout(0));
-                    ++i;
+        /**
+         * Nacks and clears all messages remaining in the batch. Waits for a visibility extension in
+         * flight to complete first, so that it can't override the nack.
+         */
+        synchronized void clear() {
+            if (!open) {
+                throw new IllegalStateException("batch is not open");
+            }
+
+            boolean interrupted = false;
+            while (extending) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
 
+            if (!isExpired() && !messages.isEmpty()) {
                 try {
-                    batchRequest.setEntries(entries);
-                    sqsClient.changeMessageVisibilityBatch(batchRequest);
+                    changeVisibility(messages, 0);
                 } catch (AmazonClientException e) {
                     // Log and ignore.
                     log.warn("ReceiveMessageBatchTask: changeMessageVisibility failed " + e);
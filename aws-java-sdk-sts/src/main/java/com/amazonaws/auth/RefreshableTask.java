@@ -22,9 +22,13 @@ import com.amazonaws.annotation.ThreadSafe;
 import com.amazonaws.internal.SdkPredicate;
 import com.amazonaws.util.ValidationUtils;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -47,6 +51,8 @@ class RefreshableTask<T> {
      */
     private static final long BLOCKING_REFRESH_MAX_WAIT_IN_SECONDS = 5;
 
+    private static final Log LOG = LogFactory.getLog(RefreshableTask.class);
+
     /**
      * Used to synchronize a blocking refresh. Used when a caller can't return without getting the
      * refreshed value.
@@ -59,16 +65,10 @@ class RefreshableTask<T> {
     private final AtomicReference<T> refreshableValueHolder = new AtomicReference<T>();
 
     /**
-     * Single threaded executor to asynchronous refresh the value.
+     * Executor to asynchronously refresh the value. Either shared or a single threaded executor
+     * owned by this task.
      */
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-	@Override
-	public Thread newThread(Runnable runnable) {
-	    Thread thread = Executors.defaultThreadFactory().newThread(runnable);
-	    thread.setDaemon(true);
-	    return thread;
-	}
-    });
+    private final ExecutorService executor;
 
     /**
      * Used to ensure only one thread at any given time refreshes the value.
@@ -91,7 +91,8 @@ class RefreshableTask<T> {
     private final SdkPredicate<T> shouldDoAsyncRefresh;
 
     private RefreshableTask(Callable<T> refreshCallable, SdkPredicate<T> shouldDoBlockingRefresh,
-                            SdkPredicate<T> shouldDoAsyncRefresh) {
+                            SdkPredicate<T> shouldDoAsyncRefresh, ExecutorService executor) {
+        this.executor = executor != null ? executor : createDefaultExecutor();
         this.refreshCallable = ValidationUtils.assertNotNull(refreshCallable, "refreshCallable");
         this.shouldDoBlockingRefresh = ValidationUtils
                 .assertNotNull(shouldDoBlockingRefresh, "shouldDoBlockingRefresh");
@@ -99,11 +100,23 @@ class RefreshableTask<T> {
                 .assertNotNull(shouldDoAsyncRefresh, "shouldDoAsyncRefresh");
     }
 
+    private static ExecutorService createDefaultExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     @NotThreadSafe
     public static class Builder<T> {
         private Callable<T> refreshCallable;
         private SdkPredicate<T> shouldDoBlockingRefresh;
         private SdkPredicate<T> shouldDoAsyncRefresh;
+        private ExecutorService executor;
 
         /**
          * Set the callable that will provide the value when a refresh occurs.
@@ -136,12 +149,23 @@ class RefreshableTask<T> {
             return this;
         }
 
+        /**
+         * Set a shared executor to run async refreshes on. By default each task creates its own
+         * single threaded executor.
+         *
+         * @return This object for method chaining.
+         */
+        public Builder<T> withExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
         /**
          * @return The configured RefreshableTask
          */
         public RefreshableTask<T> build() {
             return new RefreshableTask<T>(refreshCallable, shouldDoBlockingRefresh,
-                                          shouldDoAsyncRefresh);
+                                          shouldDoAsyncRefresh, executor);
         }
     }
 
@@ -174,6 +198,32 @@ class RefreshableTask<T> {
         return getRefreshedValue();
     }
 
+    /**
+     * Refreshes the value unless another refresh completes while waiting for the refresh lock, so
+     * that a proactive refresh coalesces with concurrent blocking or async refreshes.
+     *
+     * @throws AmazonClientException If error occurs during refresh.
+     */
+    public void coalescingRefresh() {
+        T valueBeforeRefresh = refreshableValueHolder.get();
+        try {
+            if (blockingRefreshLock
+                    .tryLock(BLOCKING_REFRESH_MAX_WAIT_IN_SECONDS, TimeUnit.SECONDS)) {
+                try {
+                    if (refreshableValueHolder.get() == valueBeforeRefresh) {
+                        refreshValue();
+                    }
+                    return;
+                } finally {
+                    blockingRefreshLock.unlock();
+                }
+            }
+        } catch (InterruptedException ex) {
+            handleInterruptedException("Interrupted waiting to refresh the value.", ex);
+        }
+        refreshValue();
+    }
+
     /**
      * @return The refreshed value.
      * @throws IllegalStateException If the refreshed value is still invalid.
@@ -228,7 +278,8 @@ class RefreshableTask<T> {
     }
 
     /**
-     * Used to asynchronously refresh the value. Caller is never blocked.
+     * Used to asynchronously refresh the value. Caller is only blocked if the executor no longer
+     * accepts tasks, in which case the value is refreshed on the caller's thread.
      */
     private void asyncRefresh() {
         // Immediately return if refresh already in progress
@@ -238,12 +289,22 @@ class RefreshableTask<T> {
                     @Override
                     public void run() {
                         try {
-                            refreshValue();
+                            coalescingRefresh();
                         } finally {
                             asyncRefreshing.set(false);
                         }
                     }
                 });
+            } catch (RejectedExecutionException ex) {
+                // The executor was shut down, refresh on the caller's thread instead
+                try {
+                    coalescingRefresh();
+                } catch (AmazonClientException ace) {
+                    // The current value is still valid, a later call will try again
+                    LOG.debug("Unable to refresh the value", ace);
+                } finally {
+                    asyncRefreshing.set(false);
+                }
             } catch (RuntimeException ex) {
                 asyncRefreshing.set(false);
                 throw ex;
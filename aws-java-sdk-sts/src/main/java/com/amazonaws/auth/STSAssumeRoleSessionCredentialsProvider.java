@@ -63,10 +63,18 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
      */
     private final int roleSessionDurationSeconds;
 
+    /**
+     * Optional scheduler that refreshes sessions ahead of expiry, may be null.
+     */
+    private final SessionCredentialsRefreshScheduler refreshScheduler;
+
     private final Callable<SessionCredentialsHolder> refreshCallable = new Callable<SessionCredentialsHolder>() {
         @Override
         public SessionCredentialsHolder call() throws Exception {
-            return newSession();
+            if (refreshScheduler == null) {
+                return newSession();
+            }
+            return newScheduledSession();
         }
     };
 
@@ -168,7 +176,9 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
         return new RefreshableTask.Builder<SessionCredentialsHolder>()
                 .withRefreshCallable(refreshCallable)
                 .withBlockingRefreshPredicate(new ShouldDoBlockingSessionRefresh())
-                .withAsyncRefreshPredicate(new ShouldDoAsyncSessionRefresh()).build();
+                .withAsyncRefreshPredicate(new ShouldDoAsyncSessionRefresh())
+                .withExecutor(refreshScheduler == null ? null : refreshScheduler.getExecutor())
+                .build();
     }
 
     /**
@@ -211,6 +221,7 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
             this.roleSessionDurationSeconds = DEFAULT_DURATION_SECONDS;
         }
 
+        this.refreshScheduler = builder.refreshScheduler;
         this.refreshableTask = createRefreshableTask();
     }
 
@@ -303,6 +314,23 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
         return new SessionCredentialsHolder(assumeRoleResult.getCredentials());
     }
 
+    /**
+     * Starts a new session, records the call in the refresh scheduler's metrics and schedules the
+     * next refresh of the session.
+     */
+    private SessionCredentialsHolder newScheduledSession() {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            SessionCredentialsHolder session = newSession();
+            success = true;
+            refreshScheduler.scheduleRefresh(refreshableTask, session.getSessionCredentialsExpiration());
+            return session;
+        } finally {
+            refreshScheduler.recordRefresh(System.nanoTime() - start, success);
+        }
+    }
+
     /**
      * Provides a builder pattern to avoid combinatorial explosion of the number of parameters that
      * are passed to constructors. The builder introspects which parameters have been set and calls
@@ -320,6 +348,7 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
         private String serviceEndpoint;
         private int roleSessionDurationSeconds;
         private AWSSecurityTokenService sts;
+        private SessionCredentialsRefreshScheduler refreshScheduler;
 
         /**
          * @param roleArn         Required roleArn parameter used when starting a session
@@ -427,6 +456,19 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSSessionCreden
             return this;
         }
 
+        /**
+         * Sets a scheduler that refreshes the session ahead of its expiration on threads shared
+         * with other providers, instead of refreshing it when credentials are requested. Without a
+         * scheduler each provider uses its own thread for async refreshes.
+         *
+         * @param refreshScheduler Shared refresh scheduler to use.
+         * @return This object for chained calls.
+         */
+        public Builder withRefreshScheduler(SessionCredentialsRefreshScheduler refreshScheduler) {
+            this.refreshScheduler = refreshScheduler;
+            return this;
+        }
+
         /**
          * Build the configured provider
          *
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2011-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import com.amazonaws.annotation.ThreadSafe;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes the session credentials of many {@link STSAssumeRoleSessionCredentialsProvider}
+ * instances on a small shared thread pool, instead of a thread per provider.
+ * <p>
+ * Each provider configured with a scheduler is refreshed proactively, ahead of the window in which
+ * {@link STSAssumeRoleSessionCredentialsProvider#getCredentials()} would trigger a refresh, with a
+ * random jitter so providers created at the same time don't all call STS at the same time. A
+ * scheduled refresh that overlaps with a refresh triggered by a caller is coalesced into a single
+ * call. Failed refreshes are retried with jittered exponential backoff. A provider that is no
+ * longer referenced stops being refreshed.
+ * <p>
+ * To also share the STS client and its connection pool, build the providers with the same client
+ * through {@link STSAssumeRoleSessionCredentialsProvider.Builder#withStsClient}.
+ *
+ * <pre>
+ * SessionCredentialsRefreshScheduler scheduler = new SessionCredentialsRefreshScheduler();
+ * AWSSecurityTokenService sts = new AWSSecurityTokenServiceClient();
+ *
+ * STSAssumeRoleSessionCredentialsProvider provider =
+ *         new STSAssumeRoleSessionCredentialsProvider.Builder(roleArn, sessionName)
+ *                 .withStsClient(sts)
+ *                 .withRefreshScheduler(scheduler)
+ *                 .build();
+ * </pre>
+ */
+@ThreadSafe
+public class SessionCredentialsRefreshScheduler {
+
+    private static final Log log = LogFactory.getLog(SessionCredentialsRefreshScheduler.class);
+
+    public static final int DEFAULT_THREAD_COUNT = 2;
+
+    /**
+     * Refreshes are scheduled this long before expiration, which is before callers start
+     * triggering async refreshes.
+     */
+    private static final long REFRESH_BEFORE_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(6);
+
+    /**
+     * Upper bound of the random amount by which a refresh is moved earlier.
+     */
+    private static final long MAX_JITTER_MILLIS = TimeUnit.MINUTES.toMillis(3);
+
+    private static final long RETRY_BASE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final long RETRY_MAX_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final Random random = new Random();
+
+    /**
+     * Latest scheduled refresh of each task, so that rescheduling cancels the previous one.
+     */
+    private final Map<RefreshableTask<?>, ScheduledFuture<?>> scheduledRefreshes =
+            new WeakHashMap<RefreshableTask<?>, ScheduledFuture<?>>();
+
+    private long refreshCount;
+
+    private long refreshFailureCount;
+
+    private long refreshTimeNanos;
+
+    private long maximumRefreshTimeNanos;
+
+    /**
+     * Creates a scheduler with {@link #DEFAULT_THREAD_COUNT} daemon threads.
+     */
+    public SessionCredentialsRefreshScheduler() {
+        this(DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * @param threadCount Number of daemon threads used to refresh credentials.
+     */
+    public SessionCredentialsRefreshScheduler(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive: " + threadCount);
+        }
+        executor = new ScheduledThreadPoolExecutor(threadCount, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "sts-credentials-refresh-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return Number of refreshes done by the providers using this scheduler, including the ones
+     * triggered by callers.
+     */
+    public synchronized long getRefreshCount() {
+        return refreshCount;
+    }
+
+    /**
+     * @return Number of refreshes that failed.
+     */
+    public synchronized long getRefreshFailureCount() {
+        return refreshFailureCount;
+    }
+
+    public synchronized double getAverageRefreshLatencyMillis() {
+        return refreshCount == 0 ? 0 : refreshTimeNanos / 1000000.0 / refreshCount;
+    }
+
+    public synchronized long getMaximumRefreshLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maximumRefreshTimeNanos);
+    }
+
+    /**
+     * Stops all scheduled refreshes. Providers using this scheduler keep working but only refresh
+     * their credentials when callers need them, on the caller's thread.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return Executor used for async refreshes triggered by callers.
+     */
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    synchronized void recordRefresh(long durationNanos, boolean success) {
+        refreshCount++;
+        if (!success) {
+            refreshFailureCount++;
+        }
+        refreshTimeNanos += durationNanos;
+        maximumRefreshTimeNanos = Math.max(maximumRefreshTimeNanos, durationNanos);
+    }
+
+    /**
+     * Schedules the next refresh of credentials expiring at the given date, replacing any refresh
+     * already scheduled for the task.
+     */
+    void scheduleRefresh(RefreshableTask<?> task, Date expiration) {
+        if (expiration == null) {
+            return;
+        }
+        long delay = expiration.getTime() - System.currentTimeMillis() - REFRESH_BEFORE_EXPIRY_MILLIS;
+        delay -= (long) (nextRandom() * Math.min(MAX_JITTER_MILLIS, Math.max(delay, 0)));
+        schedule(task, new ScheduledRefresh(task), Math.max(delay, 0));
+    }
+
+    private void schedule(RefreshableTask<?> task, ScheduledRefresh refresh, long delayMillis) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        synchronized (scheduledRefreshes) {
+            ScheduledFuture<?> future;
+            try {
+                future = executor.schedule(refresh, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                // Rejected after shutdown; callers still refresh on demand
+                return;
+            }
+            ScheduledFuture<?> previous = scheduledRefreshes.put(task, future);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        }
+    }
+
+    private synchronized double nextRandom() {
+        return random.nextDouble();
+    }
+
+    private final class ScheduledRefresh implements Runnable {
+
+        private final WeakReference<RefreshableTask<?>> taskReference;
+
+        private int failures;
+
+        ScheduledRefresh(RefreshableTask<?> task) {
+            this.taskReference = new WeakReference<RefreshableTask<?>>(task);
+        }
+
+        @Override
+        public void run() {
+            RefreshableTask<?> task = taskReference.get();
+            if (task == null) {
+                return;
+            }
+            try {
+                // A successful refresh schedules the next one
+                task.coalescingRefresh();
+            } catch (RuntimeException e) {
+                failures++;
+                long backoff = Math.min(RETRY_MAX_DELAY_MILLIS,
+                        RETRY_BASE_DELAY_MILLIS << Math.min(failures - 1, 16));
+                long delay = backoff / 2 + (long) (nextRandom() * backoff / 2);
+                if (log.isWarnEnabled()) {
+                    log.warn("Unable to refresh session credentials, retrying in " + delay + " ms", e);
+                }
+                schedule(task, this, delay);
+            }
+        }
+    }
+}
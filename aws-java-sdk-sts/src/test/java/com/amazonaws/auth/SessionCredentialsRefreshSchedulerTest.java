@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.services.securitytoken.AbstractAWSSecurityTokenService;
+import com.amazonaws.services.securitytoken.model.AssumeRoleRequest;
+import com.amazonaws.services.securitytoken.model.AssumeRoleResult;
+import com.amazonaws.services.securitytoken.model.Credentials;
+
+public class SessionCredentialsRefreshSchedulerTest {
+
+    /** Issues credentials expiring within the window of async refreshes. */
+    private static class ShortSessionStsClient extends AbstractAWSSecurityTokenService {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public AssumeRoleResult assumeRole(AssumeRoleRequest request) {
+            int call = calls.incrementAndGet();
+            return new AssumeRoleResult().withCredentials(new Credentials()
+                    .withAccessKeyId("ACCESS_KEY_ID_" + call)
+                    .withSecretAccessKey("SECRET_ACCESS_KEY")
+                    .withSessionToken("TOKEN")
+                    .withExpiration(new Date(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(3))));
+        }
+    }
+
+    @Test
+    public void providerRefreshesOnCallerThreadAfterShutdown() {
+        ShortSessionStsClient sts = new ShortSessionStsClient();
+        SessionCredentialsRefreshScheduler scheduler = new SessionCredentialsRefreshScheduler(1);
+        STSAssumeRoleSessionCredentialsProvider provider =
+                new STSAssumeRoleSessionCredentialsProvider.Builder("roleArn", "session")
+                        .withStsClient(sts)
+                        .withRefreshScheduler(scheduler)
+                        .build();
+        provider.getCredentials();
+
+        scheduler.shutdown();
+        int callsBeforeRefresh = sts.calls.get();
+
+        // Within the async window: the refresh can't go to the executor any more
+        AWSSessionCredentials credentials = provider.getCredentials();
+        assertTrue(sts.calls.get() > callsBeforeRefresh);
+        assertEquals("ACCESS_KEY_ID_" + sts.calls.get(), credentials.getAWSAccessKeyId());
+    }
+}
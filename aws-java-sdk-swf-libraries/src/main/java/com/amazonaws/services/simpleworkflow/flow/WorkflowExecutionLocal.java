@@ -15,7 +15,9 @@
 package com.amazonaws.services.simpleworkflow.flow;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Contains value that is bound to a currently executing workflow. Has the same
@@ -68,6 +70,49 @@ public class WorkflowExecutionLocal<T> {
         }
     }
 
+    /**
+     * Captures the values bound to the current thread so that a workflow
+     * execution kept in memory between decisions can later be resumed on
+     * another thread through {@link #restoreValues(Map)}. It is not a good idea
+     * to call this method from non framework code.
+     */
+    public static Map<WorkflowExecutionLocal<?>, Object> saveValues() {
+        List<WorkflowExecutionLocal<?>> currentLocals;
+        synchronized (locals) {
+            currentLocals = new ArrayList<WorkflowExecutionLocal<?>>(locals);
+        }
+        Map<WorkflowExecutionLocal<?>, Object> result = new IdentityHashMap<WorkflowExecutionLocal<?>, Object>();
+        for (WorkflowExecutionLocal<?> local : currentLocals) {
+            Wrapper<?> w = local.value.get();
+            if (w != null) {
+                result.put(local, w);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Binds values previously captured by {@link #saveValues()} to the current
+     * thread. Locals created after the values were captured get their initial
+     * value. Must be paired with {@link #after()}. It is not a good idea to call
+     * this method from non framework code.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static void restoreValues(Map<WorkflowExecutionLocal<?>, Object> values) {
+        List<WorkflowExecutionLocal<?>> currentLocals;
+        synchronized (locals) {
+            currentLocals = new ArrayList<WorkflowExecutionLocal<?>>(locals);
+        }
+        for (WorkflowExecutionLocal local : currentLocals) {
+            Wrapper w = (Wrapper) values.get(local);
+            if (w == null) {
+                w = new Wrapper();
+                w.wrapped = local.initialValue();
+            }
+            local.set(w);
+        }
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public WorkflowExecutionLocal() {
         Wrapper w = new Wrapper();
@@ -36,6 +36,12 @@ public class ActivityTaskPoller extends SynchronousActivityTaskPoller {
 
     protected Semaphore pollSemaphore;
 
+    private int pollSemaphorePermits;
+
+    private boolean taskExecutorServiceShared;
+
+    private PollStatistics pollStatistics;
+
     private UncaughtExceptionHandler uncaughtExceptionHandler = new UncaughtExceptionHandler() {
 
         @Override
@@ -56,7 +62,43 @@ public class ActivityTaskPoller extends SynchronousActivityTaskPoller {
 
     public void setTaskExecutorService(ThreadPoolExecutor taskExecutorService) {
         this.taskExecutorService = taskExecutorService;
-        pollSemaphore = new Semaphore(taskExecutorService.getMaximumPoolSize());
+        pollSemaphorePermits = taskExecutorService.getMaximumPoolSize();
+        pollSemaphore = new Semaphore(pollSemaphorePermits);
+    }
+
+    public boolean isTaskExecutorServiceShared() {
+        return taskExecutorServiceShared;
+    }
+
+    /**
+     * Marks the task executor as shared with other pollers, for example ones
+     * polling other task lists. A shared executor is not shut down by this
+     * poller and {@link #awaitTermination(long, TimeUnit)} waits only for the
+     * tasks this poller submitted.
+     */
+    public void setTaskExecutorServiceShared(boolean taskExecutorServiceShared) {
+        this.taskExecutorServiceShared = taskExecutorServiceShared;
+    }
+
+    public PollStatistics getPollStatistics() {
+        return pollStatistics;
+    }
+
+    /**
+     * @param pollStatistics
+     *            receives the time each polled task waits for the executor,
+     *            may be null
+     */
+    public void setPollStatistics(PollStatistics pollStatistics) {
+        this.pollStatistics = pollStatistics;
+    }
+
+    /**
+     * @return true if a polled task would have to wait for the executor
+     */
+    public boolean isTaskExecutorServiceSaturated() {
+        return (pollSemaphore != null && pollSemaphore.availablePermits() == 0)
+                || taskExecutorService.getActiveCount() >= taskExecutorService.getMaximumPoolSize();
     }
 
     /**
@@ -83,11 +125,15 @@ public class ActivityTaskPoller extends SynchronousActivityTaskPoller {
                 return false;
             }
             semaphoreNeedsRelease = false;
+            final long polledNanos = System.nanoTime();
             try {
                 taskExecutorService.execute(new Runnable() {
 
                     @Override
                     public void run() {
+                        if (pollStatistics != null) {
+                            pollStatistics.recordTaskWait(System.nanoTime() - polledNanos);
+                        }
                         try {
                             execute(task);
                         }
@@ -127,16 +173,28 @@ public class ActivityTaskPoller extends SynchronousActivityTaskPoller {
 
     @Override
     public void shutdown() {
-        taskExecutorService.shutdown();
+        if (!taskExecutorServiceShared) {
+            taskExecutorService.shutdown();
+        }
     }
 
     @Override
     public void shutdownNow() {
-        taskExecutorService.shutdownNow();
+        if (!taskExecutorServiceShared) {
+            taskExecutorService.shutdownNow();
+        }
     }
 
     @Override
     public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
-        return taskExecutorService.awaitTermination(timeout, unit);
+        if (!taskExecutorServiceShared) {
+            return taskExecutorService.awaitTermination(timeout, unit);
+        }
+        // All permits are back once the tasks submitted by this poller are done
+        if (pollSemaphore.tryAcquire(pollSemaphorePermits, timeout, unit)) {
+            pollSemaphore.release(pollSemaphorePermits);
+            return true;
+        }
+        return false;
     }
 }
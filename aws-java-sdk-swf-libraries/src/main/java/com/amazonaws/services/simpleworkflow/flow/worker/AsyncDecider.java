@@ -16,6 +16,7 @@ package com.amazonaws.services.simpleworkflow.flow.worker;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 
 import org.apache.commons.logging.Log;
@@ -25,6 +26,7 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.AmazonServiceException.ErrorType;
 import com.amazonaws.services.simpleworkflow.flow.DecisionContext;
 import com.amazonaws.services.simpleworkflow.flow.WorkflowException;
+import com.amazonaws.services.simpleworkflow.flow.WorkflowExecutionLocal;
 import com.amazonaws.services.simpleworkflow.flow.core.AsyncScope;
 import com.amazonaws.services.simpleworkflow.flow.core.AsyncTaskInfo;
 import com.amazonaws.services.simpleworkflow.flow.core.Promise;
@@ -131,7 +133,7 @@ class AsyncDecider {
 
     private WorkflowDefinition definition;
 
-    private final HistoryHelper historyHelper;
+    private HistoryHelper historyHelper;
 
     private final DecisionsHelper decisionsHelper;
 
@@ -157,6 +159,19 @@ class AsyncDecider {
 
     private Throwable failure;
 
+    /**
+     * True when the workflow definition is kept alive after the last decision
+     * so that the decider can be resumed with the events of the next decision
+     * task.
+     */
+    private boolean retained;
+
+    /**
+     * Values of the workflow execution locals saved at the end of the last
+     * decision of a retained decider.
+     */
+    private Map<WorkflowExecutionLocal<?>, Object> executionLocals;
+
     public AsyncDecider(WorkflowDefinitionFactory workflowDefinitionFactory, HistoryHelper historyHelper,
             DecisionsHelper decisionsHelper) throws Exception {
         this.workflowDefinitionFactory = workflowDefinitionFactory;
@@ -444,8 +459,54 @@ class AsyncDecider {
     }
 
     public void decide() throws Exception {
+        decide(false);
+    }
+
+    /**
+     * Continues a retained decider with a history that contains only the
+     * events that follow the DecisionTaskStarted event of its last decision.
+     */
+    void resume(HistoryHelper newHistoryHelper) throws Exception {
+        if (!retained) {
+            throw new IllegalStateException("decider was not retained");
+        }
+        retained = false;
+        historyHelper = newHistoryHelper;
+        WorkflowExecutionLocal.restoreValues(executionLocals);
+        executionLocals = null;
+        decide(true);
+    }
+
+    /**
+     * Releases the workflow definition of a retained decider.
+     */
+    void close() {
+        if (!retained) {
+            return;
+        }
+        retained = false;
+        WorkflowExecutionLocal.restoreValues(executionLocals);
+        executionLocals = null;
+        try {
+            workflowDefinitionFactory.deleteWorkflowDefinition(definition);
+        }
+        finally {
+            WorkflowExecutionLocal.after();
+        }
+    }
+
+    /**
+     * @param retain
+     *            when true the workflow definition is not released at the end
+     *            of the decision and the decider can be continued later through
+     *            {@link #resume(HistoryHelper)}; {@link #close()} must be
+     *            called if it is not.
+     */
+    void decide(boolean retain) throws Exception {
         try {
-            definition = workflowDefinitionFactory.getWorkflowDefinition(context);
+            if (definition == null) {
+                definition = workflowDefinitionFactory.getWorkflowDefinition(context);
+            }
             if (definition == null) {
                 throw new IllegalStateException("Unknown workflow type: " + context.getWorkflowContext().getWorkflowType());
             }
@@ -553,7 +614,14 @@ class AsyncDecider {
             catch (Throwable e) {
                 decisionsHelper.setWorkflowContextData(e.getMessage());
             }
-            workflowDefinitionFactory.deleteWorkflowDefinition(this.definition);
+            if (retain) {
+                executionLocals = WorkflowExecutionLocal.saveValues();
+                WorkflowExecutionLocal.after();
+                retained = true;
+            }
+            else {
+                workflowDefinitionFactory.deleteWorkflowDefinition(this.definition);
+            }
         }
     }
 
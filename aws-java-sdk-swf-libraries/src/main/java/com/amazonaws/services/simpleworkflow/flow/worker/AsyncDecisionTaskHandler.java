@@ -27,6 +27,7 @@ import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinitionFact
 import com.amazonaws.services.simpleworkflow.flow.generic.WorkflowDefinitionFactoryFactory;
 import com.amazonaws.services.simpleworkflow.model.Decision;
 import com.amazonaws.services.simpleworkflow.model.DecisionTask;
+import com.amazonaws.services.simpleworkflow.model.HistoryEvent;
 import com.amazonaws.services.simpleworkflow.model.RespondDecisionTaskCompletedRequest;
 import com.amazonaws.services.simpleworkflow.model.WorkflowType;
 
@@ -39,17 +40,53 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
 
     private final WorkflowDefinitionFactoryFactory definitionFactoryFactory;
 
+    private final DeciderCache deciderCache;
+
     public AsyncDecisionTaskHandler(WorkflowDefinitionFactoryFactory definitionFactoryFactory) {
+        this(definitionFactoryFactory, null);
+    }
+
+    /**
+     * @param deciderCache
+     *            cache of decider state that allows processing only the new
+     *            events of a decision task; <code>null</code> to replay the
+     *            whole history of every decision task
+     */
+    public AsyncDecisionTaskHandler(WorkflowDefinitionFactoryFactory definitionFactoryFactory, DeciderCache deciderCache) {
         this.definitionFactoryFactory = definitionFactoryFactory;
+        this.deciderCache = deciderCache;
+    }
+
+    @Override
+    public DeciderCache getDeciderCache() {
+        return deciderCache;
     }
 
     @Override
     public RespondDecisionTaskCompletedRequest handleDecisionTask(Iterator<DecisionTask> decisionTaskIterator) throws Exception {
         HistoryHelper historyHelper = new HistoryHelper(decisionTaskIterator);
-        AsyncDecider decider = createDecider(historyHelper);
-        decider.decide();
+        AsyncDecider decider = null;
+        if (deciderCache != null) {
+            decider = getCachedDecider(historyHelper);
+        }
+        Collection<Decision> decisions;
+        try {
+            if (decider != null) {
+                decider.resume(historyHelper);
+            }
+            else {
+                decider = createDecider(historyHelper);
+                decider.decide(deciderCache != null);
+            }
+            decisions = decider.getDecisionsHelper().getDecisions();
+        }
+        catch (Exception e) {
+            if (decider != null) {
+                decider.close();
+            }
+            throw e;
+        }
         DecisionsHelper decisionsHelper = decider.getDecisionsHelper();
-        Collection<Decision> decisions = decisionsHelper.getDecisions();
         String context = decisionsHelper.getWorkflowContextDataToReturn();
         DecisionTask decisionTask = historyHelper.getDecisionTask();
         if (log.isDebugEnabled()) {
@@ -60,6 +97,9 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
             asyncThreadDumpLog.trace("Empty decision list with the following waiting tasks:\n"
                     + decider.getAsynchronousThreadDumpAsString());
         }
+        if (deciderCache != null) {
+            cacheDecider(decisionTask, decider, decisions);
+        }
         RespondDecisionTaskCompletedRequest completedRequest = new RespondDecisionTaskCompletedRequest();
         completedRequest.setTaskToken(decisionTask.getTaskToken());
         completedRequest.setDecisions(decisions);
@@ -95,6 +135,43 @@ public class AsyncDecisionTaskHandler extends DecisionTaskHandler {
         return decider.getAsynchronousThreadDumpAsString();
     }
 
+    /**
+     * @return the cached decider that continues exactly where the given history
+     *         starts or null if the history has to be replayed from the start
+     */
+    private AsyncDecider getCachedDecider(HistoryHelper historyHelper) {
+        DecisionTask decisionTask = historyHelper.getDecisionTask();
+        String runId = decisionTask.getWorkflowExecution().getRunId();
+        List<HistoryEvent> events = decisionTask.getEvents();
+        if (events == null || events.isEmpty() || events.get(0).getEventId() == 1) {
+            // full history
+            deciderCache.invalidate(runId);
+            return null;
+        }
+        // the poller reserves the decider before it fetches a partial history
+        AsyncDecider result = deciderCache.takeReserved(decisionTask.getTaskToken());
+        if (result == null) {
+            throw new IllegalStateException("Partial history received without reserved decider state: runId=" + runId
+                    + ", firstEventId=" + events.get(0).getEventId());
+        }
+        return result;
+    }
+
+    private void cacheDecider(DecisionTask decisionTask, AsyncDecider decider, Collection<Decision> decisions) {
+        boolean closing = decider.getDecisionsHelper().isWorkflowFailed();
+        for (Decision decision : decisions) {
+            if (decider.getDecisionsHelper().isCompletionEvent(decision)) {
+                closing = true;
+            }
+        }
+        if (closing) {
+            decider.close();
+        }
+        else {
+            deciderCache.put(decisionTask.getWorkflowExecution().getRunId(), decisionTask.getStartedEventId(), decider);
+        }
+    }
+
     private AsyncDecider createDecider(HistoryHelper historyHelper) throws Exception {
         DecisionTask decisionTask = historyHelper.getDecisionTask();
         WorkflowType workflowType = decisionTask.getWorkflowType();
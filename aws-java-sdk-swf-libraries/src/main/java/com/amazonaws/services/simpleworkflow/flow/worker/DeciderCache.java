@@ -0,0 +1,224 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. A copy of the License is
+ * located at
+ * 
+ * http://aws.amazon.com/apache2.0
+ * 
+ * or in the "license" file accompanying this file. This file is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.simpleworkflow.flow.worker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the state of recently decided workflow executions in memory, keyed by
+ * run id, so that the next decision task of the same execution received by
+ * this worker only needs the events added since the previous decision instead
+ * of a replay of the whole history.
+ * <p>
+ * A cached decider is taken out of the cache and reserved for a decision task
+ * as soon as the poller decides to fetch only the new events, so at most one
+ * thread works on a given execution and the state can't be lost before the
+ * task is processed. When the cache is full the least recently used execution
+ * is evicted and its workflow definition is released; its next decision task
+ * falls back to a full replay.
+ * <p>
+ * Workflow definitions are kept alive between decisions, including the values
+ * of {@link com.amazonaws.services.simpleworkflow.flow.WorkflowExecutionLocal}
+ * instances. Workflow implementations that keep other thread-bound state
+ * should not be used with a cache.
+ */
+public class DeciderCache {
+
+    private static final Log log = LogFactory.getLog(DeciderCache.class);
+
+    private static final class Entry {
+
+        private final long startedEventId;
+
+        private final AsyncDecider decider;
+
+        Entry(long startedEventId, AsyncDecider decider) {
+            this.startedEventId = startedEventId;
+            this.decider = decider;
+        }
+    }
+
+    private final int maximumSize;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    private final Map<String, Entry> reserved = new HashMap<String, Entry>();
+
+    private long hits;
+
+    private long misses;
+
+    /**
+     * @param maximumSize
+     *            maximum number of workflow executions kept in memory
+     */
+    public DeciderCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("expected value should be positive: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of decision tasks that were processed from cached state
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return number of decision tasks that required a full history replay
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Drops the cached state of the given run. Its next decision task is
+     * processed through a full history replay.
+     */
+    public void invalidate(String runId) {
+        Entry removed;
+        synchronized (this) {
+            removed = entries.remove(runId);
+        }
+        if (removed != null) {
+            removed.decider.close();
+        }
+    }
+
+    public void invalidateAll() {
+        List<Entry> removed;
+        synchronized (this) {
+            removed = new ArrayList<Entry>(entries.values());
+            entries.clear();
+        }
+        for (Entry entry : removed) {
+            entry.decider.close();
+        }
+    }
+
+    /**
+     * Takes the cached decider of the run out of the cache if it can continue
+     * from a history that starts right after the given DecisionTaskStarted
+     * event, and holds it for the decision task with the given token until
+     * {@link #takeReserved(String)} or {@link #release(String)} is called. A
+     * reserved decider is not affected by eviction or invalidation of the run.
+     * A stale entry is closed.
+     *
+     * @return false if there is no usable cached state
+     */
+    boolean reserve(String taskToken, String runId, long previousStartedEventId) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(runId);
+            if (entry != null && entry.startedEventId == previousStartedEventId) {
+                reserved.put(taskToken, entry);
+                return true;
+            }
+            misses++;
+        }
+        if (entry != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Discarding stale decider state of runId=" + runId + ", cachedStartedEventId="
+                        + entry.startedEventId + ", previousStartedEventId=" + previousStartedEventId);
+            }
+            entry.decider.close();
+        }
+        return false;
+    }
+
+    /**
+     * Hands out the decider reserved for the decision task with the given
+     * token.
+     *
+     * @return null if nothing is reserved for the task
+     */
+    synchronized AsyncDecider takeReserved(String taskToken) {
+        Entry entry = reserved.remove(taskToken);
+        if (entry == null) {
+            return null;
+        }
+        hits++;
+        return entry.decider;
+    }
+
+    /**
+     * Closes the decider reserved for the decision task with the given token
+     * if it was not handed out. Does nothing otherwise.
+     */
+    void release(String taskToken) {
+        Entry entry;
+        synchronized (this) {
+            entry = reserved.remove(taskToken);
+            if (entry == null) {
+                return;
+            }
+            misses++;
+        }
+        entry.decider.close();
+    }
+
+    /**
+     * Caches a decider that just made the decisions of the decision task with
+     * the given DecisionTaskStarted event id, evicting the least recently used
+     * entries if the cache is full.
+     */
+    void put(String runId, long startedEventId, AsyncDecider decider) {
+        List<Entry> evicted = null;
+        Entry replaced;
+        synchronized (this) {
+            replaced = entries.put(runId, new Entry(startedEventId, decider));
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maximumSize && iterator.hasNext()) {
+                if (evicted == null) {
+                    evicted = new ArrayList<Entry>();
+                }
+                evicted.add(iterator.next().getValue());
+                iterator.remove();
+            }
+        }
+        if (replaced != null && replaced.decider != decider) {
+            replaced.decider.close();
+        }
+        if (evicted != null) {
+            for (Entry entry : evicted) {
+                entry.decider.close();
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DeciderCache[maximumSize=" + maximumSize + ", size=" + entries.size() + ", hits=" + hits + ", misses="
+                + misses + "]";
+    }
+}
@@ -59,4 +59,14 @@ public abstract class DecisionTaskHandler {
 
     public abstract Object loadWorkflowThroughReplay(Iterator<DecisionTask> decisionTaskIterator) throws Exception;
 
+    /**
+     * @return cache of decider state kept between decision tasks. When not
+     *         <code>null</code> the poller passes to
+     *         {@link #handleDecisionTask(Iterator)} only the events that follow
+     *         the previous decision of a cached workflow execution.
+     */
+    public DeciderCache getDeciderCache() {
+        return null;
+    }
+
 }
@@ -15,7 +15,10 @@
 package com.amazonaws.services.simpleworkflow.flow.worker;
 
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -24,6 +27,9 @@ import org.apache.commons.logging.LogFactory;
 import com.amazonaws.services.simpleworkflow.AmazonSimpleWorkflow;
 import com.amazonaws.services.simpleworkflow.flow.common.WorkflowExecutionUtils;
 import com.amazonaws.services.simpleworkflow.model.DecisionTask;
+import com.amazonaws.services.simpleworkflow.model.DecisionTaskCompletedEventAttributes;
+import com.amazonaws.services.simpleworkflow.model.EventType;
+import com.amazonaws.services.simpleworkflow.model.HistoryEvent;
 import com.amazonaws.services.simpleworkflow.model.PollForDecisionTaskRequest;
 import com.amazonaws.services.simpleworkflow.model.RespondDecisionTaskCompletedRequest;
 import com.amazonaws.services.simpleworkflow.model.TaskList;
@@ -147,21 +153,30 @@ public class DecisionTaskPoller implements TaskPoller {
         this.taskListToPoll = pollTaskList;
     }
 
+    private DecisionTask poll(String nextResultToken) {
+        return poll(nextResultToken, false);
+    }
+
     /**
      * Poll for a task using {@link #getPollTimeoutInSeconds()}
      * 
      * @param nextResultToken
+     * @param reverseOrder
+     *            return the history pages starting from the most recent event
      * 
      * @return null if poll timed out
      * @throws DeciderExecutorConfigurationException
      */
-    private DecisionTask poll(String nextResultToken) {
+    private DecisionTask poll(String nextResultToken, boolean reverseOrder) {
         validate();
         PollForDecisionTaskRequest pollRequest = new PollForDecisionTaskRequest();
 
         pollRequest.setDomain(domain);
         pollRequest.setIdentity(identity);
         pollRequest.setNextPageToken(nextResultToken);
+        if (reverseOrder) {
+            pollRequest.setReverseOrder(true);
+        }
 
         pollRequest.setTaskList(new TaskList().withName(taskListToPoll));
 
@@ -180,6 +195,92 @@ public class DecisionTaskPoller implements TaskPoller {
         return result;
     }
 
+    /**
+     * Polls for a decision task of a decider that caches workflow state. The
+     * history is paged in reverse order, starting from the most recent event.
+     * If the decider holds the state of the workflow run as of the previous
+     * decision task, paging stops at the events of that decision and only the
+     * new events are returned. Otherwise the whole history is loaded.
+     * 
+     * @return null if poll timed out, otherwise a decision task whose events
+     *         are in chronological order and whose history is not paginated
+     */
+    private DecisionTask pollNewEvents(DeciderCache deciderCache) {
+        DecisionTask firstTask = poll(null, true);
+        if (firstTask == null) {
+            return null;
+        }
+        String runId = firstTask.getWorkflowExecution().getRunId();
+        String taskToken = firstTask.getTaskToken();
+        Long previousStartedEventId = firstTask.getPreviousStartedEventId();
+        // Reserving takes the decider out of the cache, so it can't be evicted
+        // or invalidated by another thread before the task is handled
+        boolean partial = previousStartedEventId != null && previousStartedEventId.longValue() > 0
+                && deciderCache.reserve(taskToken, runId, previousStartedEventId.longValue());
+
+        List<HistoryEvent> events = new ArrayList<HistoryEvent>(firstTask.getEvents());
+        String nextPageToken = firstTask.getNextPageToken();
+        try {
+            if (partial) {
+                long cachedStartedEventId = previousStartedEventId.longValue();
+                while (nextPageToken != null
+                        && (events.isEmpty() || events.get(events.size() - 1).getEventId() > cachedStartedEventId)) {
+                    nextPageToken = pollNextPage(nextPageToken, events);
+                }
+                int newEventCount = 0;
+                while (newEventCount < events.size() && events.get(newEventCount).getEventId() > cachedStartedEventId) {
+                    newEventCount++;
+                }
+                List<HistoryEvent> newEvents = events.subList(0, newEventCount);
+                if (isDecisionCompleted(newEvents, cachedStartedEventId)) {
+                    events = new ArrayList<HistoryEvent>(newEvents);
+                    nextPageToken = null;
+                }
+                else {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Previous decision of runId=" + runId + " was not completed, replaying the whole history");
+                    }
+                    deciderCache.release(taskToken);
+                }
+            }
+            while (nextPageToken != null) {
+                nextPageToken = pollNextPage(nextPageToken, events);
+            }
+        }
+        catch (RuntimeException e) {
+            deciderCache.release(taskToken);
+            throw e;
+        }
+        Collections.reverse(events);
+
+        DecisionTask result = firstTask.clone();
+        result.setEvents(events);
+        result.setNextPageToken(null);
+        return result;
+    }
+
+    private String pollNextPage(String nextPageToken, List<HistoryEvent> events) {
+        DecisionTask page = poll(nextPageToken, true);
+        if (page == null) {
+            throw new IllegalStateException("Failure retrieving history page of the decision task");
+        }
+        events.addAll(page.getEvents());
+        return page.getNextPageToken();
+    }
+
+    private static boolean isDecisionCompleted(List<HistoryEvent> events, long startedEventId) {
+        for (HistoryEvent event : events) {
+            if (EventType.DecisionTaskCompleted.toString().equals(event.getEventType())) {
+                DecisionTaskCompletedEventAttributes attributes = event.getDecisionTaskCompletedEventAttributes();
+                if (attributes != null && attributes.getStartedEventId() != null
+                        && attributes.getStartedEventId().longValue() == startedEventId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Poll for a workflow task and call appropriate decider. This method might
      * call the service multiple times to retrieve the whole history it it is
@@ -191,10 +292,21 @@ public class DecisionTaskPoller implements TaskPoller {
      */
     @Override
     public boolean pollAndProcessSingleTask() throws Exception {
-        DecisionTaskIterator tasks = null;
+        DecisionTask firstTask = null;
         RespondDecisionTaskCompletedRequest taskCompletedRequest = null;
+        DeciderCache deciderCache = decisionTaskHandler == null ? null : decisionTaskHandler.getDeciderCache();
         try {
-            tasks = new DecisionTaskIterator();
+            Iterator<DecisionTask> tasks;
+            if (deciderCache == null) {
+                DecisionTaskIterator pages = new DecisionTaskIterator();
+                firstTask = pages.getFirstDecisionTask();
+                tasks = pages;
+            }
+            else {
+                firstTask = pollNewEvents(deciderCache);
+                tasks = firstTask == null ? Collections.<DecisionTask> emptyList().iterator() : Collections.singletonList(
+                        firstTask).iterator();
+            }
             if (!tasks.hasNext()) {
                 return false;
             }
@@ -205,17 +317,17 @@ public class DecisionTaskPoller implements TaskPoller {
             service.respondDecisionTaskCompleted(taskCompletedRequest);
         }
         catch (Exception e) {
-            if (tasks != null) {
-                DecisionTask firstTask = tasks.getFirstDecisionTask();
-                if (firstTask != null) {
-                    if (log.isWarnEnabled()) {
-                        log.warn("DecisionTask failure: taskId= " + firstTask.getStartedEventId() + ", workflowExecution="
-                                + firstTask.getWorkflowExecution(), e);
-                    }
-                    if (log.isDebugEnabled() && firstTask.getEvents() != null) {
-                        log.debug("Failed taskId=" + firstTask.getStartedEventId() + " history: "
-                                + WorkflowExecutionUtils.prettyPrintHistory(firstTask.getEvents(), true));
-                    }
+            if (firstTask != null) {
+                if (deciderCache != null) {
+                    deciderCache.invalidate(firstTask.getWorkflowExecution().getRunId());
+                }
+                if (log.isWarnEnabled()) {
+                    log.warn("DecisionTask failure: taskId= " + firstTask.getStartedEventId() + ", workflowExecution="
+                            + firstTask.getWorkflowExecution(), e);
+                }
+                if (log.isDebugEnabled() && firstTask.getEvents() != null) {
+                    log.debug("Failed taskId=" + firstTask.getStartedEventId() + " history: "
+                            + WorkflowExecutionUtils.prettyPrintHistory(firstTask.getEvents(), true));
                 }
                 if (taskCompletedRequest != null && decisionsLog.isWarnEnabled()) {
                     decisionsLog.warn("Failed taskId=" + firstTask.getStartedEventId() + " decisions="
@@ -224,6 +336,12 @@ public class DecisionTaskPoller implements TaskPoller {
             }
             throw e;
         }
+        finally {
+            if (firstTask != null && deciderCache != null) {
+                // no-op unless the handler didn't consume the reserved decider
+                deciderCache.release(firstTask.getTaskToken());
+            }
+        }
         return true;
     }
 
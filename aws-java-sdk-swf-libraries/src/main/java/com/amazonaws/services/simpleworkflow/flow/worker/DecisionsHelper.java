@@ -461,7 +461,7 @@ class DecisionsHelper {
         return result;
     }
 
-    private boolean isCompletionEvent(Decision decision) {
+    boolean isCompletionEvent(Decision decision) {
         DecisionType type = DecisionType.fromValue(decision.getDecisionType());
         switch (type) {
         case CancelWorkflowExecution:
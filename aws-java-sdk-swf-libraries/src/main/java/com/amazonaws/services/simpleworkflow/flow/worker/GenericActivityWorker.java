@@ -45,6 +45,10 @@ public class GenericActivityWorker extends GenericWorker {
 
     private int taskExecutorThreadPoolSize = 100;
 
+    private ThreadPoolExecutor taskExecutorService;
+
+    private volatile ActivityTaskPoller activityTaskPoller;
+
     public GenericActivityWorker(AmazonSimpleWorkflow service, String domain, String taskListToPoll) {
         super(service, domain, taskListToPoll);
         if (service == null) {
@@ -76,6 +80,23 @@ public class GenericActivityWorker extends GenericWorker {
         this.taskExecutorThreadPoolSize = taskExecutorThreadPoolSize;
     }
 
+    public ThreadPoolExecutor getTaskExecutorService() {
+        return taskExecutorService;
+    }
+
+    /**
+     * Executes activity tasks using the given executor instead of a pool
+     * created by this worker. The same executor can be given to workers
+     * polling different task lists to share execution threads between them.
+     * It is not shut down together with the worker. The number of tasks this
+     * worker hands to the executor at the same time is limited by its maximum
+     * pool size; {@link #setTaskExecutorThreadPoolSize(int)} is ignored.
+     */
+    public void setTaskExecutorService(ThreadPoolExecutor taskExecutorService) {
+        checkStarted();
+        this.taskExecutorService = taskExecutorService;
+    }
+
     protected Semaphore createPollSemaphore() {
         return new Semaphore(taskExecutorThreadPoolSize);
     }
@@ -83,7 +104,7 @@ public class GenericActivityWorker extends GenericWorker {
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + " [super=" + super.toString() + ", taskExecutorThreadPoolSize="
-                + taskExecutorThreadPoolSize + "]";
+                + taskExecutorThreadPoolSize + ", sharedTaskExecutor=" + (taskExecutorService != null) + "]";
     }
 
     @Override
@@ -93,11 +114,25 @@ public class GenericActivityWorker extends GenericWorker {
 
     @Override
     protected TaskPoller createPoller() {
-        ThreadPoolExecutor tasksExecutor = new ThreadPoolExecutor(1, taskExecutorThreadPoolSize, 1, TimeUnit.MINUTES,
-                new SynchronousQueue<Runnable>());
-        tasksExecutor.setThreadFactory(new ExecutorThreadFactory(ACTIVITY_THREAD_NAME_PREFIX + " " + getTaskListToPoll() + " "));
-        tasksExecutor.setRejectedExecutionHandler(new BlockCallerPolicy());
-        return new ActivityTaskPoller(service, domain, getTaskListToPoll(), activityImplementationFactory, tasksExecutor);
+        ThreadPoolExecutor tasksExecutor = taskExecutorService;
+        if (tasksExecutor == null) {
+            tasksExecutor = new ThreadPoolExecutor(1, taskExecutorThreadPoolSize, 1, TimeUnit.MINUTES,
+                    new SynchronousQueue<Runnable>());
+            tasksExecutor.setThreadFactory(new ExecutorThreadFactory(ACTIVITY_THREAD_NAME_PREFIX + " " + getTaskListToPoll() + " "));
+            tasksExecutor.setRejectedExecutionHandler(new BlockCallerPolicy());
+        }
+        ActivityTaskPoller result = new ActivityTaskPoller(service, domain, getTaskListToPoll(), activityImplementationFactory,
+                tasksExecutor);
+        result.setTaskExecutorServiceShared(taskExecutorService != null);
+        result.setPollStatistics(getPollStatistics());
+        activityTaskPoller = result;
+        return result;
+    }
+
+    @Override
+    protected boolean isTaskExecutorSaturated() {
+        ActivityTaskPoller poller = activityTaskPoller;
+        return poller != null && poller.isTaskExecutorServiceSaturated();
     }
 
     @Override
@@ -64,17 +64,49 @@ public abstract class GenericWorker implements WorkerBase {
 
         @Override
         public void run() {
+            // Poll in a loop instead of resubmitting to pollExecutor so the
+            // thread count reflects the number of active poll tasks
+            while (!pollExecutor.isShutdown()) {
+                Boolean taskReturned = pollOnce();
+                if (taskReturned == null || !isPollThreadAutoscaling() || pollExecutor.isShutdown()) {
+                    continue;
+                }
+                if (taskReturned) {
+                    if (pollStatistics.getRecentEmptyPollRatio() < SCALE_UP_EMPTY_POLL_RATIO && !isTaskExecutorSaturated()
+                            && pollStatistics.addPollThread(pollThreadCount)) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("adding poll thread: " + pollStatistics);
+                        }
+                        startPollTask();
+                    }
+                }
+                else if (pollStatistics.getRecentEmptyPollRatio() > SCALE_DOWN_EMPTY_POLL_RATIO
+                        && pollStatistics.removePollThread(minimumPollThreadCount)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("removing poll thread: " + pollStatistics);
+                    }
+                    return;
+                }
+            }
+            pollStatistics.removePollThread(0);
+        }
+
+        /**
+         * @return whether the poll returned a task, or null if there was no
+         *         poll or it failed
+         */
+        private Boolean pollOnce() {
             try {
                 if (log.isDebugEnabled()) {
                     log.debug("poll task begin");
                 }
 
                 if (pollExecutor.isTerminating()) {
-                    return;
+                    return null;
                 }
                 pollBackoffThrottler.throttle();
                 if (pollExecutor.isTerminating()) {
-                    return;
+                    return null;
                 }
                 if (pollRateThrottler != null) {
                     pollRateThrottler.throttle();
@@ -89,22 +121,20 @@ public abstract class GenericWorker implements WorkerBase {
                 }
 
                 if (pollExecutor.isTerminating()) {
-                    return;
+                    return null;
                 }
-                poller.pollAndProcessSingleTask();
+                long start = System.nanoTime();
+                boolean taskReturned = poller.pollAndProcessSingleTask();
+                pollStatistics.recordPoll(System.nanoTime() - start, !taskReturned);
                 pollBackoffThrottler.success();
+                return taskReturned;
             }
             catch (Throwable e) {
                 pollBackoffThrottler.failure();
                 if (!(e.getCause() instanceof InterruptedException)) {
                     uncaughtExceptionHandler.uncaughtException(Thread.currentThread(), e);
                 }
-            }
-            finally {
-                // Resubmit itself back to pollExecutor
-                if (!pollExecutor.isShutdown()) {
-                    pollExecutor.execute(this);
-                }
+                return null;
             }
         }
     }
@@ -113,6 +143,18 @@ public abstract class GenericWorker implements WorkerBase {
 
     protected static final int MAX_IDENTITY_LENGTH = 256;
 
+    /**
+     * A poll thread is added after a poll that returned a task when the recent
+     * empty poll ratio is below this value.
+     */
+    private static final double SCALE_UP_EMPTY_POLL_RATIO = 0.2;
+
+    /**
+     * A poll thread is removed after an empty poll when the recent empty poll
+     * ratio is above this value.
+     */
+    private static final double SCALE_DOWN_EMPTY_POLL_RATIO = 0.8;
+
     protected AmazonSimpleWorkflow service;
 
     protected String domain;
@@ -145,6 +187,10 @@ public abstract class GenericWorker implements WorkerBase {
 
     private int pollThreadCount = 1;
 
+    private int minimumPollThreadCount;
+
+    private final PollStatistics pollStatistics = new PollStatistics();
+
     private BackoffThrottler pollBackoffThrottler;
 
     private Throttler pollRateThrottler;
@@ -338,6 +384,46 @@ public abstract class GenericWorker implements WorkerBase {
         this.pollThreadCount = threadCount;
     }
 
+    public int getMinimumPollThreadCount() {
+        return minimumPollThreadCount;
+    }
+
+    /**
+     * Enables autoscaling of poll threads when set to a value smaller than
+     * {@link #getPollThreadCount()}. The worker then starts with the minimum
+     * number of poll threads, adds a thread after a poll that returned a task
+     * when most recent polls returned tasks and the task executor is not
+     * saturated, and removes a thread after an empty poll when most recent
+     * polls were empty. {@link #getPollThreadCount()} is the upper bound.
+     * Default is <code>0</code> which keeps the number of poll threads fixed.
+     */
+    public void setMinimumPollThreadCount(int minimumPollThreadCount) {
+        if (minimumPollThreadCount < 0) {
+            throw new IllegalArgumentException("expected value should be positive or 0: " + minimumPollThreadCount);
+        }
+        checkStarted();
+        this.minimumPollThreadCount = minimumPollThreadCount;
+    }
+
+    /**
+     * @return poll counters, poll latency and task wait time of this worker
+     */
+    public PollStatistics getPollStatistics() {
+        return pollStatistics;
+    }
+
+    protected boolean isPollThreadAutoscaling() {
+        return minimumPollThreadCount > 0 && minimumPollThreadCount < pollThreadCount;
+    }
+
+    /**
+     * Used by poll thread autoscaling to avoid adding poll threads when polled
+     * tasks cannot be executed any faster.
+     */
+    protected boolean isTaskExecutorSaturated() {
+        return false;
+    }
+
     @Override
     public void setDisableTypeRegistrationOnStart(boolean disableTypeRegistrationOnStart) {
         this.disableTypeRegitrationOnStart = disableTypeRegistrationOnStart;
@@ -376,15 +462,26 @@ public abstract class GenericWorker implements WorkerBase {
                 new LinkedBlockingQueue<Runnable>(pollThreadCount));
         ExecutorThreadFactory pollExecutorThreadFactory = getExecutorThreadFactory();
         pollExecutor.setThreadFactory(pollExecutorThreadFactory);
+        int initialPollThreadCount = pollThreadCount;
+        if (isPollThreadAutoscaling()) {
+            // Let threads of removed poll tasks expire
+            pollExecutor.allowCoreThreadTimeOut(true);
+            initialPollThreadCount = minimumPollThreadCount;
+        }
 
         pollBackoffThrottler = new BackoffThrottler(pollBackoffInitialInterval, pollBackoffMaximumInterval,
                 pollBackoffCoefficient);
         poller = createPoller();
-        for (int i = 0; i < pollThreadCount; i++) {
-            pollExecutor.execute(new PollServiceTask(poller));
+        for (int i = 0; i < initialPollThreadCount; i++) {
+            pollStatistics.addPollThread(pollThreadCount);
+            startPollTask();
         }
     }
 
+    private void startPollTask() {
+        pollExecutor.execute(new PollServiceTask(poller));
+    }
+
     private ExecutorThreadFactory getExecutorThreadFactory() {
         ExecutorThreadFactory pollExecutorThreadFactory = new ExecutorThreadFactory(getPollThreadNamePrefix());
         return pollExecutorThreadFactory;
@@ -492,7 +589,7 @@ public abstract class GenericWorker implements WorkerBase {
         return this.getClass().getSimpleName() + "[service=" + service + ", domain=" + domain + ", taskListToPoll="
                 + taskListToPoll + ", identity=" + identity + ", backoffInitialInterval=" + pollBackoffInitialInterval
                 + ", backoffMaximumInterval=" + pollBackoffMaximumInterval + ", backoffCoefficient=" + pollBackoffCoefficient
-                + "]";
+                + ", pollThreadCount=" + pollThreadCount + ", minimumPollThreadCount=" + minimumPollThreadCount + "]";
     }
 
     @Override
@@ -38,6 +38,10 @@ public class GenericWorkflowWorker extends GenericWorker {
 
     private WorkflowDefinitionFactoryFactory workflowDefinitionFactoryFactory;
 
+    private int deciderCacheSize;
+
+    private DeciderCache deciderCache;
+
     public GenericWorkflowWorker() {
         setIdentity(ManagementFactory.getRuntimeMXBean().getName());
     }
@@ -57,6 +61,35 @@ public class GenericWorkflowWorker extends GenericWorker {
         this.workflowDefinitionFactoryFactory = workflowDefinitionFactoryFactory;
     }
 
+    public int getDeciderCacheSize() {
+        return deciderCacheSize;
+    }
+
+    /**
+     * Maximum number of workflow executions whose decider state is kept in
+     * memory between decision tasks. When a decision task of a cached
+     * execution is received, only the events added since the previous decision
+     * are retrieved and processed instead of replaying the whole history.
+     * Default is <code>0</code> which disables the cache.
+     * 
+     * @see DeciderCache
+     */
+    public void setDeciderCacheSize(int deciderCacheSize) {
+        checkStarted();
+        if (deciderCacheSize < 0) {
+            throw new IllegalArgumentException("expected value should be positive or 0: " + deciderCacheSize);
+        }
+        this.deciderCacheSize = deciderCacheSize;
+    }
+
+    /**
+     * @return the cache of decider state or <code>null</code> if the worker
+     *         is not started or the cache is disabled
+     */
+    public DeciderCache getDeciderCache() {
+        return deciderCache;
+    }
+
     protected DecisionTaskPoller createWorkflowPoller() {
         DecisionTaskPoller poller = new DecisionTaskPoller();
         return poller;
@@ -75,7 +108,10 @@ public class GenericWorkflowWorker extends GenericWorker {
     @Override
     protected TaskPoller createPoller() {
         DecisionTaskPoller result = new DecisionTaskPoller();
-        result.setDecisionTaskHandler(new AsyncDecisionTaskHandler(workflowDefinitionFactoryFactory));
+        if (deciderCacheSize > 0) {
+            deciderCache = new DeciderCache(deciderCacheSize);
+        }
+        result.setDecisionTaskHandler(new AsyncDecisionTaskHandler(workflowDefinitionFactoryFactory, deciderCache));
         result.setDomain(getDomain());
         result.setIdentity(getIdentity());
         result.setService(getService());
@@ -91,7 +127,7 @@ public class GenericWorkflowWorker extends GenericWorker {
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "[super=" + super.toString() + ", workflowDefinitionFactoryFactory="
-                + workflowDefinitionFactoryFactory + "]";
+                + workflowDefinitionFactoryFactory + ", deciderCacheSize=" + deciderCacheSize + "]";
     }
 
     public static void registerWorkflowTypes(AmazonSimpleWorkflow service, String domain, String defaultTaskList,
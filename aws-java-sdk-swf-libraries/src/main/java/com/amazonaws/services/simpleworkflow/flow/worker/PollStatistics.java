@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ * use this file except in compliance with the License. A copy of the License is
+ * located at
+ * 
+ * http://aws.amazon.com/apache2.0
+ * 
+ * or in the "license" file accompanying this file. This file is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.simpleworkflow.flow.worker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters describing the polling activity of a worker. All values are
+ * cumulative since the worker was created, except for the number of active poll
+ * threads and the recent empty poll ratio.
+ * <p>
+ * Poll latency is the time a poll thread spends in a single poll. For workflow
+ * workers decision tasks are processed on the poll thread, so it includes the
+ * decision processing time. Task wait time is the time an activity task spends
+ * between being returned by a poll and starting its execution on the task
+ * executor.
+ */
+public class PollStatistics {
+
+    /**
+     * Weight of the latest poll in the recent empty poll ratio.
+     */
+    private static final double EMPTY_POLL_RATIO_WEIGHT = 0.2;
+
+    private long pollCount;
+
+    private long emptyPollCount;
+
+    private long pollTimeNanos;
+
+    private long maximumPollTimeNanos;
+
+    private long taskCount;
+
+    private long taskWaitTimeNanos;
+
+    private long maximumTaskWaitTimeNanos;
+
+    private double recentEmptyPollRatio = 0.5;
+
+    private int activePollThreadCount;
+
+    public synchronized long getPollCount() {
+        return pollCount;
+    }
+
+    /**
+     * @return number of polls that timed out without returning a task
+     */
+    public synchronized long getEmptyPollCount() {
+        return emptyPollCount;
+    }
+
+    public synchronized double getAveragePollLatencyMillis() {
+        return average(pollTimeNanos, pollCount);
+    }
+
+    public synchronized long getMaximumPollLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maximumPollTimeNanos);
+    }
+
+    /**
+     * @return number of tasks handed off to the task executor
+     */
+    public synchronized long getTaskCount() {
+        return taskCount;
+    }
+
+    public synchronized double getAverageTaskWaitTimeMillis() {
+        return average(taskWaitTimeNanos, taskCount);
+    }
+
+    public synchronized long getMaximumTaskWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maximumTaskWaitTimeNanos);
+    }
+
+    /**
+     * @return exponentially weighted share of recent polls that returned no
+     *         task, between 0 and 1
+     */
+    public synchronized double getRecentEmptyPollRatio() {
+        return recentEmptyPollRatio;
+    }
+
+    public synchronized int getActivePollThreadCount() {
+        return activePollThreadCount;
+    }
+
+    synchronized void recordPoll(long durationNanos, boolean empty) {
+        pollCount++;
+        pollTimeNanos += durationNanos;
+        maximumPollTimeNanos = Math.max(maximumPollTimeNanos, durationNanos);
+        if (empty) {
+            emptyPollCount++;
+        }
+        recentEmptyPollRatio = recentEmptyPollRatio * (1 - EMPTY_POLL_RATIO_WEIGHT) + (empty ? EMPTY_POLL_RATIO_WEIGHT : 0);
+    }
+
+    synchronized void recordTaskWait(long waitNanos) {
+        taskCount++;
+        taskWaitTimeNanos += waitNanos;
+        maximumTaskWaitTimeNanos = Math.max(maximumTaskWaitTimeNanos, waitNanos);
+    }
+
+    /**
+     * Registers a poll thread if fewer than the given maximum are active.
+     */
+    synchronized boolean addPollThread(int maximum) {
+        if (activePollThreadCount >= maximum) {
+            return false;
+        }
+        activePollThreadCount++;
+        return true;
+    }
+
+    /**
+     * Unregisters a poll thread if more than the given minimum are active.
+     */
+    synchronized boolean removePollThread(int minimum) {
+        if (activePollThreadCount <= minimum) {
+            return false;
+        }
+        activePollThreadCount--;
+        return true;
+    }
+
+    private static double average(long totalNanos, long count) {
+        return count == 0 ? 0 : totalNanos / 1000000.0 / count;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PollStatistics[pollCount=" + pollCount + ", emptyPollCount=" + emptyPollCount + ", averagePollLatencyMillis="
+                + getAveragePollLatencyMillis() + ", taskCount=" + taskCount + ", averageTaskWaitTimeMillis="
+                + getAverageTaskWaitTimeMillis() + ", activePollThreadCount=" + activePollThreadCount + "]";
+    }
+}